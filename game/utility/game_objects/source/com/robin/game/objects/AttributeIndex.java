@@ -0,0 +1,206 @@
+/* 
+ * RealmSpeak is the Java application for playing the board game Magic Realm.
+ * Copyright (c) 2005-2015 Robin Warren
+ * E-mail: robin@dewkid.com
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the
+ * implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ *
+ * http://www.gnu.org/licenses/
+ */
+package com.robin.game.objects;
+
+import java.util.*;
+
+import com.robin.general.util.OrderedHashtable;
+
+/**
+ * An inverted index of the keyVal terms ("key" and "key=val") of every GameObject in a GameData, mapping each term
+ * to the ids of the objects that have it.  This is what hasAllKeyVals used to build from scratch (as a HashSet) for
+ * every object on every query.
+ * 
+ * The index is maintained incrementally:  GameData marks an object dirty whenever it is modified (committed or not),
+ * and dirty objects are reindexed the next time the index is used.  Objects are indexed as they currently appear,
+ * which includes any uncommitted changes, so the answers always agree with GameObject.hasAllKeyVals.
+ */
+class AttributeIndex {
+	
+	private static final String[] NO_TERMS = new String[0];
+	
+	private GameData data;
+	private HashMap<String,BitSet> termBits;
+	private String[][] termsById;
+	private BitSet indexed;
+	private BitSet dirty;
+	
+	AttributeIndex(GameData data) {
+		this.data = data;
+		termBits = new HashMap<String,BitSet>();
+		termsById = new String[Math.max(16,data.getGameObjects().size())][];
+		indexed = new BitSet();
+		dirty = new BitSet();
+		for (GameObject go:data.getGameObjects()) {
+			if (isIndexable(go.getId())) {
+				dirty.set((int)go.getId());
+			}
+		}
+	}
+	
+	static boolean isIndexable(long id) {
+		return id>=0 && id<Integer.MAX_VALUE;
+	}
+	
+	synchronized void markDirty(long id) {
+		if (isIndexable(id)) {
+			dirty.set((int)id);
+		}
+	}
+	
+	/**
+	 * @return		true if the object (which must be the registered object for its id) matches the query
+	 */
+	synchronized boolean matches(GameObject go,KeyValQuery query) {
+		String[] positive = query.positive;
+		String[] negative = query.negative;
+		update();
+		int id = (int)go.getId();
+		for (int i=0;i<positive.length;i++) {
+			BitSet bits = termBits.get(positive[i]);
+			if (bits==null || !bits.get(id)) {
+				return false;
+			}
+		}
+		for (int i=0;i<negative.length;i++) {
+			BitSet bits = termBits.get(negative[i]);
+			if (bits!=null && bits.get(id)) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * @return		The ids of all indexed objects that match the query
+	 */
+	synchronized BitSet find(KeyValQuery query) {
+		String[] positive = query.positive;
+		String[] negative = query.negative;
+		update();
+		BitSet result = null;
+		for (int i=0;i<positive.length;i++) {
+			BitSet bits = termBits.get(positive[i]);
+			if (bits==null) {
+				return new BitSet();
+			}
+			if (result==null) {
+				result = (BitSet)bits.clone();
+			}
+			else {
+				result.and(bits);
+			}
+		}
+		if (result==null) {
+			result = (BitSet)indexed.clone();
+		}
+		for (int i=0;i<negative.length;i++) {
+			BitSet bits = termBits.get(negative[i]);
+			if (bits!=null) {
+				result.andNot(bits);
+			}
+		}
+		return result;
+	}
+	
+	synchronized int getTermCount() {
+		update();
+		return termBits.size();
+	}
+	
+	private void update() {
+		for (int id=dirty.nextSetBit(0);id>=0;id=dirty.nextSetBit(id+1)) {
+			reindex(id);
+		}
+		dirty.clear();
+	}
+	
+	private void reindex(int id) {
+		String[] oldTerms = id<termsById.length?termsById[id]:null;
+		if (oldTerms!=null) {
+			for (int i=0;i<oldTerms.length;i++) {
+				BitSet bits = termBits.get(oldTerms[i]);
+				bits.clear(id);
+				if (bits.isEmpty()) {
+					termBits.remove(oldTerms[i]);
+				}
+			}
+			termsById[id] = null;
+			indexed.clear(id);
+		}
+		GameObject go = data.getGameObject((long)id);
+		if (go==null) {
+			return;
+		}
+		String[] terms = collectTerms(go);
+		if (id>=termsById.length) {
+			String[][] grown = new String[Math.max(id+1,termsById.length*2)][];
+			System.arraycopy(termsById,0,grown,0,termsById.length);
+			termsById = grown;
+		}
+		termsById[id] = terms;
+		indexed.set(id);
+		for (int i=0;i<terms.length;i++) {
+			BitSet bits = termBits.get(terms[i]);
+			if (bits==null) {
+				bits = new BitSet();
+				termBits.put(terms[i],bits);
+			}
+			bits.set(id);
+		}
+	}
+	
+	/**
+	 * Collects the same terms that GameObject.hasAllKeyVals matches against
+	 */
+	private static String[] collectTerms(GameObject go) {
+		LinkedHashSet<String> terms = new LinkedHashSet<String>();
+		terms.add("name=" + go.getName()); // name is always one of the choices
+		OrderedHashtable blocks = go.getAttributeBlocks();
+		ArrayList blockNames = blocks.orderedKeys();
+		for (int b=0;b<blockNames.size();b++) {
+			OrderedHashtable block = (OrderedHashtable)blocks.get(blockNames.get(b));
+			if (block==null) continue;
+			ArrayList keys = block.orderedKeys();
+			for (int k=0;k<keys.size();k++) {
+				String key = (String)keys.get(k);
+				Object val = block.get(key);
+				if (val instanceof String) {
+					terms.add(key);
+					if (val.toString().trim().length() > 0) {
+						terms.add(key + "=" + val);
+					}
+				}
+				else if (val instanceof ArrayList) {
+					terms.add(key);
+					ArrayList c = (ArrayList)val;
+					for (int n=0;n<c.size();n++) {
+						String stringVal = (String)c.get(n);
+						if (stringVal.trim().length() > 0) {
+							terms.add(key + "=" + stringVal);
+						}
+					}
+				}
+			}
+		}
+		if (terms.isEmpty()) {
+			return NO_TERMS;
+		}
+		return terms.toArray(new String[terms.size()]);
+	}
+}
@@ -0,0 +1,145 @@
+/* 
+ * RealmSpeak is the Java application for playing the board game Magic Realm.
+ * Copyright (c) 2005-2015 Robin Warren
+ * E-mail: robin@dewkid.com
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the
+ * implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ *
+ * http://www.gnu.org/licenses/
+ */
+package com.robin.game.objects;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A process wide symbol table for attribute block names, keys and short values.  Every distinct name gets a
+ * small int id the first time it is seen, and one canonical String instance is shared by all the GameObjects
+ * that use it.  Keys are always stored lowercased, so looking up the canonical key also takes care of the
+ * toLowerCase() that every attribute read used to do.
+ *
+ * The table stops growing at MAX_SYMBOLS, after which names are simply passed through (lowercased where needed)
+ * without an id.
+ */
+public final class AttributeSymbols {
+
+	public static final int NO_SYMBOL = -1;
+	public static final int MAX_SYMBOLS = 1<<16;
+
+	/**
+	 * Values longer than this are never pooled (descriptions, notes, etc)
+	 */
+	private static final int MAX_POOLED_VALUE_LENGTH = 32;
+
+	private static final ConcurrentHashMap<String,String> keyHash = new ConcurrentHashMap<String,String>(); // raw key -> canonical lowercased key
+	private static final ConcurrentHashMap<String,String> valueHash = new ConcurrentHashMap<String,String>();
+	private static final ConcurrentHashMap<String,Integer> symbolHash = new ConcurrentHashMap<String,Integer>();
+	private static volatile String[] names = new String[256];
+	private static volatile int symbolCount = 0;
+
+	private AttributeSymbols() {
+	}
+
+	/**
+	 * @return		The canonical (lowercased and shared) instance of the attribute key
+	 */
+	public static String key(String raw) {
+		if (raw==null) return null;
+		String key = keyHash.get(raw);
+		if (key==null) {
+			key = raw.toLowerCase();
+			if (keyHash.size()<MAX_SYMBOLS) {
+				String existing = keyHash.putIfAbsent(key,key);
+				if (existing!=null) {
+					key = existing;
+				}
+				keyHash.putIfAbsent(raw,key);
+			}
+		}
+		return key;
+	}
+
+	/**
+	 * @return		The canonical instance of the block name (block names are case sensitive)
+	 */
+	public static String block(String raw) {
+		return pool(raw);
+	}
+
+	/**
+	 * @return		A shared instance of the attribute value, if short enough to be worth pooling
+	 */
+	public static String value(String raw) {
+		if (raw==null || raw.length()>MAX_POOLED_VALUE_LENGTH) {
+			return raw;
+		}
+		return pool(raw);
+	}
+
+	private static String pool(String raw) {
+		if (raw==null) return null;
+		String val = valueHash.get(raw);
+		if (val==null) {
+			if (valueHash.size()>=MAX_SYMBOLS) {
+				return raw;
+			}
+			val = valueHash.putIfAbsent(raw,raw);
+			if (val==null) {
+				val = raw;
+			}
+		}
+		return val;
+	}
+
+	/**
+	 * @return		The int id of the name, or NO_SYMBOL if the table is full.  The name is used as-is, so pass
+	 * 				keys through key(String) first.
+	 */
+	public static int symbol(String name) {
+		Integer id = symbolHash.get(name);
+		if (id!=null) {
+			return id.intValue();
+		}
+		return addSymbol(name);
+	}
+
+	private static synchronized int addSymbol(String name) {
+		Integer id = symbolHash.get(name);
+		if (id!=null) {
+			return id.intValue();
+		}
+		if (symbolCount>=MAX_SYMBOLS) {
+			return NO_SYMBOL;
+		}
+		if (symbolCount==names.length) {
+			String[] grown = new String[names.length*2];
+			System.arraycopy(names,0,grown,0,names.length);
+			names = grown;
+		}
+		int n = symbolCount++;
+		names[n] = name;
+		symbolHash.put(name,Integer.valueOf(n));
+		return n;
+	}
+
+	/**
+	 * @return		The name for the provided symbol id
+	 */
+	public static String name(int symbol) {
+		if (symbol<0 || symbol>=symbolCount) {
+			throw new IllegalArgumentException("Unknown attribute symbol: "+symbol);
+		}
+		return names[symbol];
+	}
+
+	public static int getSymbolCount() {
+		return symbolCount;
+	}
+}
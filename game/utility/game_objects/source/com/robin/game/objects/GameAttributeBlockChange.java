@@ -17,6 +17,8 @@
  */
 package com.robin.game.objects;
 
+import java.io.*;
+
 public class GameAttributeBlockChange extends GameObjectChange {
 	
 	private Long sourceId;
@@ -29,6 +31,18 @@ public class GameAttributeBlockChange extends GameObjectChange {
 		from = null;
 		to = null;
 	}
+	GameAttributeBlockChange() {
+	}
+	protected void writeFields(GameChangeCodec codec,DataOutput out) throws IOException {
+		codec.writeId(out,sourceId);
+		codec.writeString(out,from);
+		codec.writeString(out,to);
+	}
+	protected void readFields(GameChangeCodec codec,DataInput in) throws IOException {
+		sourceId = codec.readId(in);
+		from = codec.readString(in);
+		to = codec.readString(in);
+	}
 	public String toString() {
 		StringBuffer sb = new StringBuffer(super.toString());
 		if (sourceId==null) {
@@ -39,6 +53,9 @@ public class GameAttributeBlockChange extends GameObjectChange {
 		}
 		return sb.toString();
 	}
+	Long getSourceId() {
+		return sourceId;
+	}
 	public void rename(String inFrom,String inTo) {
 		this.sourceId = null;
 		this.from = inFrom;
@@ -17,6 +17,8 @@
  */
 package com.robin.game.objects;
 
+import java.io.*;
+
 /**
  * This class will encapsulate a single change that needs to happen to the GameData
  */
@@ -32,6 +34,18 @@ public class GameAttributeChange extends GameObjectChange {
 		attributeName = null;
 		newValue = null;
 	}
+	GameAttributeChange() {
+	}
+	protected void writeFields(GameChangeCodec codec,DataOutput out) throws IOException {
+		codec.writeString(out,blockName);
+		codec.writeString(out,attributeName);
+		codec.writeString(out,newValue);
+	}
+	protected void readFields(GameChangeCodec codec,DataInput in) throws IOException {
+		blockName = codec.readString(in);
+		attributeName = codec.readString(in);
+		newValue = codec.readString(in);
+	}
 //	public boolean equals(Object o1) {
 //		if (o1 instanceof GameAttributeChange) {
 //			GameAttributeChange other = (GameAttributeChange)o1;
@@ -51,6 +65,15 @@ public class GameAttributeChange extends GameObjectChange {
 //		}
 //		return false;
 //	}
+	String getBlockName() {
+		return blockName;
+	}
+	String getAttributeName() {
+		return attributeName;
+	}
+	String getNewValue() {
+		return newValue;
+	}
 	public void setAttribute(String blockName,String attributeName,String newValue) {
 		this.blockName = blockName;
 		this.attributeName = attributeName;
@@ -17,6 +17,7 @@
  */
 package com.robin.game.objects;
 
+import java.io.*;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.logging.Logger;
@@ -41,12 +42,116 @@ public class GameAttributeListChange extends GameObjectChange {
 		addList = null;
 		removeList = null;
 	}
+	GameAttributeListChange() {
+	}
+	protected void writeFields(GameChangeCodec codec,DataOutput out) throws IOException {
+		codec.writeString(out,blockName);
+		codec.writeString(out,attributeName);
+		out.writeBoolean(clearList);
+		codec.writeStringList(out,addList);
+		codec.writeStringList(out,removeList);
+	}
+	protected void readFields(GameChangeCodec codec,DataInput in) throws IOException {
+		blockName = codec.readString(in);
+		attributeName = codec.readString(in);
+		clearList = in.readBoolean();
+		addList = codec.readStringList(in);
+		removeList = codec.readStringList(in);
+	}
 	/**
 	 * Returns true if there are actual changes here (might not be if oldList and newList below are identical)
 	 */
 	public boolean hasChange() {
 		return (clearList || (addList!=null && !addList.isEmpty()));
 	}
+	String getBlockName() {
+		return blockName;
+	}
+	String getAttributeName() {
+		return attributeName;
+	}
+	Collection getAddList() {
+		return addList;
+	}
+	/**
+	 * @return		true if this change only removes the attribute
+	 */
+	boolean isClearOnly() {
+		return clearList && addList==null;
+	}
+	/**
+	 * Folds an earlier change to the same attribute into this one, so that applying only this change gives the same
+	 * list as applying both.  Used by GameChangeCompactor.
+	 * 
+	 * @return		false (and this change is left alone) if the two can't be expressed as one change
+	 */
+	boolean absorb(GameObjectChange earlier) {
+		if (clearList) {
+			return true; // nothing before matters
+		}
+		if (earlier instanceof GameAttributeChange) {
+			if (((GameAttributeChange)earlier).getNewValue()!=null) {
+				return false; // changing a list that was just set to a String...
+			}
+			setFinalList(simulate(null));
+			return true;
+		}
+		if (!(earlier instanceof GameAttributeListChange)) {
+			return false;
+		}
+		GameAttributeListChange other = (GameAttributeListChange)earlier;
+		if (other.clearList) {
+			// The earlier change started from nothing, so the final list is known
+			setFinalList(simulate(other.simulate(null)));
+			return true;
+		}
+		// Both only add and remove:  fine as long as nothing added here was removed before (applyChange always adds
+		// before it removes)
+		if (other.removeList!=null && addList!=null) {
+			for (Object item:addList) {
+				if (other.removeList.contains(item)) {
+					return false;
+				}
+			}
+		}
+		if (other.addList!=null) {
+			ArrayList add = new ArrayList(other.addList);
+			if (addList!=null) {
+				add.addAll(addList);
+			}
+			addList = add;
+		}
+		if (other.removeList!=null) {
+			ArrayList remove = new ArrayList(other.removeList);
+			if (removeList!=null) {
+				remove.addAll(removeList);
+			}
+			removeList = remove;
+		}
+		return true;
+	}
+	/**
+	 * @return		The list that applyChange would leave, given the list before (null for no attribute)
+	 */
+	private ArrayList simulate(ArrayList list) {
+		if (clearList) {
+			list = null;
+		}
+		if (addList!=null) {
+			list = list==null?new ArrayList():new ArrayList(list);
+			list.addAll(addList);
+		}
+		if (removeList!=null && list!=null) {
+			list = new ArrayList(list);
+			list.removeAll(removeList);
+		}
+		return list;
+	}
+	private void setFinalList(ArrayList list) {
+		clearList = true;
+		addList = list;
+		removeList = null;
+	}
 	public void addAttributeListItem(String inBlockName,String inAttributeName,String val) {
 		this.blockName = inBlockName;
 		this.attributeName = inAttributeName;
@@ -22,6 +22,8 @@ public class GameBumpVersionChange extends GameObjectChange {
 	public GameBumpVersionChange(GameObject go) {
 		super(go);
 	}
+	GameBumpVersionChange() {
+	}
 	protected void applyChange(GameData data,GameObject go) {
 		go._bumpVersion();
 	}
@@ -0,0 +1,278 @@
+/* 
+ * RealmSpeak is the Java application for playing the board game Magic Realm.
+ * Copyright (c) 2005-2015 Robin Warren
+ * E-mail: robin@dewkid.com
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the
+ * implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ *
+ * http://www.gnu.org/licenses/
+ */
+package com.robin.game.objects;
+
+import java.io.*;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * A compact binary format for sending GameObjectChanges over a connection, used in place of Java serialization
+ * when both ends agree on it at login.
+ * 
+ * Each change is written as a type code, followed by its common fields and then whatever fields the subclass writes in
+ * writeFields.  Strings (block names, keys, values, object names) go through a dictionary that lives as long as the
+ * connection:  the first time a string is sent it goes out in full, and after that only its index is sent.  Both ends
+ * apply the same rules for what gets added to the dictionary, so the dictionaries never need to be synchronized.
+ * 
+ * A codec instance keeps one dictionary for each direction, so use one instance per connection, and never share it
+ * between connections.  Change classes that the codec doesn't know about are sent with Java serialization, in place.
+ */
+public class GameChangeCodec {
+	
+	/**
+	 * The current version of the format.  Bump this whenever the encoding changes, so that a client and host with
+	 * different versions fall back to Java serialization.
+	 */
+	public static final int VERSION = 1;
+	
+	/**
+	 * Dictionary limits - strings beyond these are always sent in full
+	 */
+	private static final int MAX_DICTIONARY_SIZE = 1<<14;
+	private static final int MAX_DICTIONARY_STRING_LENGTH = 64;
+	
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	
+	private static final int STRING_NULL = 0;
+	private static final int STRING_LITERAL = 1;
+	private static final int STRING_INDEX_OFFSET = 2;
+	
+	private static final int TYPE_SERIALIZED = 0;
+	private static final int TYPE_ATTRIBUTE = 1;
+	private static final int TYPE_ATTRIBUTE_LIST = 2;
+	private static final int TYPE_HOLD_ADD = 3;
+	private static final int TYPE_HOLD_REMOVE = 4;
+	private static final int TYPE_ATTRIBUTE_BLOCK = 5;
+	private static final int TYPE_BUMP_VERSION = 6;
+	private static final int TYPE_OBJECT_CREATION = 7;
+	private static final int TYPE_OBJECT_DELETION = 8;
+	
+	private HashMap<String,Integer> outDictionary;
+	private ArrayList<String> inDictionary;
+	
+	private long changesWritten = 0;
+	private long changesRead = 0;
+	
+	public GameChangeCodec() {
+		outDictionary = new HashMap<String,Integer>();
+		inDictionary = new ArrayList<String>();
+	}
+	
+	/**
+	 * @return		The version to use when the other end supports up to otherVersion (0 means Java serialization)
+	 */
+	public static int negotiateVersion(int otherVersion) {
+		return Math.max(0,Math.min(VERSION,otherVersion));
+	}
+	
+	public void writeChanges(ObjectOutput out,ArrayList changes) throws IOException {
+		writeVarInt(out,changes.size());
+		for (int i=0;i<changes.size();i++) {
+			writeChange(out,(GameObjectChange)changes.get(i));
+		}
+	}
+	
+	public ArrayList<GameObjectChange> readChanges(ObjectInput in) throws IOException,ClassNotFoundException {
+		int size = readVarInt(in);
+		ArrayList<GameObjectChange> list = new ArrayList<GameObjectChange>(size);
+		for (int i=0;i<size;i++) {
+			list.add(readChange(in));
+		}
+		return list;
+	}
+	
+	public void writeChange(ObjectOutput out,GameObjectChange change) throws IOException {
+		int type = getType(change);
+		out.writeByte(type);
+		if (type==TYPE_SERIALIZED) {
+			out.writeObject(change);
+		}
+		else {
+			change.writeHeader(this,out);
+			change.writeFields(this,out);
+		}
+		changesWritten++;
+	}
+	
+	public GameObjectChange readChange(ObjectInput in) throws IOException,ClassNotFoundException {
+		int type = in.readByte();
+		GameObjectChange change;
+		switch(type) {
+			case TYPE_SERIALIZED:
+				changesRead++;
+				return (GameObjectChange)in.readObject();
+			case TYPE_ATTRIBUTE:			change = new GameAttributeChange();			break;
+			case TYPE_ATTRIBUTE_LIST:		change = new GameAttributeListChange();		break;
+			case TYPE_HOLD_ADD:				change = new GameHoldAddChange();			break;
+			case TYPE_HOLD_REMOVE:			change = new GameHoldRemoveChange();		break;
+			case TYPE_ATTRIBUTE_BLOCK:		change = new GameAttributeBlockChange();	break;
+			case TYPE_BUMP_VERSION:			change = new GameBumpVersionChange();		break;
+			case TYPE_OBJECT_CREATION:		change = new GameObjectCreationChange();	break;
+			case TYPE_OBJECT_DELETION:		change = new GameObjectDeletionChange();	break;
+			default:
+				throw new StreamCorruptedException("Unknown GameObjectChange type: "+type);
+		}
+		change.readHeader(this,in);
+		change.readFields(this,in);
+		changesRead++;
+		return change;
+	}
+	
+	private static int getType(GameObjectChange change) {
+		// Exact classes only:  a subclass may have fields of its own
+		Class c = change.getClass();
+		if (c==GameAttributeChange.class)		return TYPE_ATTRIBUTE;
+		if (c==GameAttributeListChange.class)	return TYPE_ATTRIBUTE_LIST;
+		if (c==GameHoldAddChange.class)			return TYPE_HOLD_ADD;
+		if (c==GameHoldRemoveChange.class)		return TYPE_HOLD_REMOVE;
+		if (c==GameAttributeBlockChange.class)	return TYPE_ATTRIBUTE_BLOCK;
+		if (c==GameBumpVersionChange.class)		return TYPE_BUMP_VERSION;
+		if (c==GameObjectCreationChange.class)	return TYPE_OBJECT_CREATION;
+		if (c==GameObjectDeletionChange.class)	return TYPE_OBJECT_DELETION;
+		return TYPE_SERIALIZED;
+	}
+	
+	public long getChangesWritten() {
+		return changesWritten;
+	}
+	public long getChangesRead() {
+		return changesRead;
+	}
+	public int getDictionarySize() {
+		return outDictionary.size();
+	}
+	
+	////////////////////////////////////////////
+	// Field encoding - used by the GameObjectChange classes
+	////////////////////////////////////////////
+	
+	void writeString(DataOutput out,String string) throws IOException {
+		if (string==null) {
+			writeVarInt(out,STRING_NULL);
+			return;
+		}
+		Integer index = outDictionary.get(string);
+		if (index!=null) {
+			writeVarInt(out,index.intValue()+STRING_INDEX_OFFSET);
+			return;
+		}
+		writeVarInt(out,STRING_LITERAL);
+		byte[] bytes = string.getBytes(UTF8);
+		writeVarInt(out,bytes.length);
+		out.write(bytes);
+		if (isDictionaryCandidate(string,outDictionary.size())) {
+			outDictionary.put(string,Integer.valueOf(outDictionary.size()));
+		}
+	}
+	
+	String readString(DataInput in) throws IOException {
+		int tag = readVarInt(in);
+		if (tag==STRING_NULL) {
+			return null;
+		}
+		if (tag==STRING_LITERAL) {
+			byte[] bytes = new byte[readVarInt(in)];
+			in.readFully(bytes);
+			String string = AttributeSymbols.value(new String(bytes,UTF8));
+			if (isDictionaryCandidate(string,inDictionary.size())) {
+				inDictionary.add(string);
+			}
+			return string;
+		}
+		int index = tag-STRING_INDEX_OFFSET;
+		if (index>=inDictionary.size()) {
+			throw new StreamCorruptedException("Unknown string index: "+index);
+		}
+		return inDictionary.get(index);
+	}
+	
+	private static boolean isDictionaryCandidate(String string,int dictionarySize) {
+		return dictionarySize<MAX_DICTIONARY_SIZE && string.length()<=MAX_DICTIONARY_STRING_LENGTH;
+	}
+	
+	void writeStringList(DataOutput out,java.util.Collection list) throws IOException {
+		if (list==null) {
+			writeVarInt(out,0);
+			return;
+		}
+		writeVarInt(out,list.size()+1);
+		for (Object o:list) {
+			writeString(out,(String)o);
+		}
+	}
+	
+	ArrayList readStringList(DataInput in) throws IOException {
+		int size = readVarInt(in)-1;
+		if (size<0) {
+			return null;
+		}
+		ArrayList<String> list = new ArrayList<String>(size);
+		for (int i=0;i<size;i++) {
+			list.add(readString(in));
+		}
+		return list;
+	}
+	
+	void writeId(DataOutput out,Long id) throws IOException {
+		if (id==null) {
+			writeVarLong(out,0);
+		}
+		else {
+			writeVarLong(out,id.longValue()+1);
+		}
+	}
+	
+	Long readId(DataInput in) throws IOException {
+		long val = readVarLong(in);
+		return val==0?null:Long.valueOf(val-1);
+	}
+	
+	static void writeVarInt(DataOutput out,int val) throws IOException {
+		writeVarLong(out,val&0xFFFFFFFFL);
+	}
+	
+	static int readVarInt(DataInput in) throws IOException {
+		return (int)readVarLong(in);
+	}
+	
+	/**
+	 * Seven bits per byte, high bit set when more bytes follow.  Negative numbers always take ten bytes, so this is
+	 * only meant for ids, versions and counts.
+	 */
+	static void writeVarLong(DataOutput out,long val) throws IOException {
+		while((val & ~0x7FL)!=0) {
+			out.writeByte((int)((val & 0x7F) | 0x80));
+			val >>>= 7;
+		}
+		out.writeByte((int)val);
+	}
+	
+	static long readVarLong(DataInput in) throws IOException {
+		long val = 0;
+		for (int shift=0;shift<64;shift+=7) {
+			int b = in.readByte();
+			val |= (long)(b & 0x7F) << shift;
+			if ((b & 0x80)==0) {
+				return val;
+			}
+		}
+		throw new StreamCorruptedException("Malformed variable length number");
+	}
+}
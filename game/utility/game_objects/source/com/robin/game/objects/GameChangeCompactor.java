@@ -0,0 +1,214 @@
+/* 
+ * RealmSpeak is the Java application for playing the board game Magic Realm.
+ * Copyright (c) 2005-2015 Robin Warren
+ * E-mail: robin@dewkid.com
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the
+ * implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ *
+ * http://www.gnu.org/licenses/
+ */
+package com.robin.game.objects;
+
+import java.util.*;
+
+/**
+ * Merges redundant changes out of a list of GameObjectChanges, so that applying the result leaves every object in the
+ * same final state as applying the original list:
+ * 
+ * 	- A later set/delete (or full list set) of an attribute replaces any earlier change to that attribute
+ * 	- Consecutive list changes to the same attribute are folded into one, when that can be done exactly
+ * 	- A hold add followed by a remove of the same object (with nothing else moving it in between) drops out
+ * 	- Only the first GameBumpVersionChange for each object is kept
+ * 
+ * A merged change takes the place of the earliest change it replaces, so objects are still first mentioned (and so
+ * created on the receiving end) in the same order.  Block renames/copies/deletes and object creation/deletion are left
+ * where they are, and nothing is merged across them for the objects involved.  Values, list contents, holds and which
+ * attribute blocks exist all come out the same, though a key that was deleted and set again may keep its old place
+ * in the block rather than moving to the end.
+ */
+final class GameChangeCompactor {
+	
+	private GameData data;
+	private ArrayList<GameObjectChange> out;
+	
+	private HashMap<String,Integer> slotIndex = new HashMap<String,Integer>();		// "id:block:key" -> index in out
+	private HashMap<Long,ArrayList<String>> slotsById = new HashMap<Long,ArrayList<String>>();
+	private HashMap<Long,Integer> holdAddIndex = new HashMap<Long,Integer>();		// held object id -> index of GameHoldAddChange
+	private HashMap<Long,Boolean> heldState = new HashMap<Long,Boolean>();			// held object id -> held as of this point in the list
+	private HashSet<Long> bumped = new HashSet<Long>();
+	private HashSet<Long> barriers = new HashSet<Long>();
+	
+	GameChangeCompactor(GameData data) {
+		this.data = data;
+	}
+	
+	/**
+	 * @return		A new list with the compacted changes.  The changes themselves may be modified.
+	 */
+	ArrayList<GameObjectChange> compact(List<GameObjectChange> changes) {
+		out = new ArrayList<GameObjectChange>(changes.size());
+		for (GameObjectChange change:changes) {
+			if (change instanceof GameAttributeChange) {
+				GameAttributeChange ac = (GameAttributeChange)change;
+				if (ac.getAttributeName()==null) {
+					barrier(change.getId());
+					out.add(change);
+				}
+				else {
+					// Setting or deleting an attribute replaces whatever was done to it before
+					String key = slotKey(change.getId(),ac.getBlockName(),ac.getAttributeName());
+					replaceSlot(change,key,ac.getNewValue()!=null || canRemove(key,ac.getBlockName()));
+				}
+			}
+			else if (change instanceof GameAttributeListChange) {
+				GameAttributeListChange lc = (GameAttributeListChange)change;
+				if (lc.getBlockName()==null || lc.getAttributeName()==null) {
+					out.add(change); // applying this does nothing, but leave it be
+				}
+				else {
+					String key = slotKey(change.getId(),lc.getBlockName(),lc.getAttributeName());
+					Integer index = slotIndex.get(key);
+					boolean merge = index!=null
+							&& (!lc.isClearOnly() || canRemove(key,lc.getBlockName()))
+							&& lc.absorb(out.get(index));
+					replaceSlot(change,key,merge);
+				}
+			}
+			else if (change instanceof GameHoldAddChange) {
+				Long heldId = ((GameHoldAddChange)change).holdId;
+				if (heldId!=null && !isHeld(heldId)) {
+					holdAddIndex.put(heldId,out.size());
+				}
+				else {
+					holdAddIndex.remove(heldId);
+				}
+				heldState.put(heldId,Boolean.TRUE);
+				out.add(change);
+			}
+			else if (change instanceof GameHoldRemoveChange) {
+				Long heldId = ((GameHoldRemoveChange)change).getHoldId();
+				Integer index = holdAddIndex.remove(heldId);
+				heldState.put(heldId,Boolean.FALSE);
+				if (index!=null && out.get(index).getId()==change.getId()) {
+					// Added and then removed from the same holder, which leaves both as they were
+					out.set(index.intValue(),null);
+				}
+				else {
+					out.add(change);
+				}
+			}
+			else if (change instanceof GameBumpVersionChange) {
+				if (bumped.add(change.getId())) {
+					out.add(change);
+				}
+			}
+			else {
+				barrier(change.getId());
+				if (change instanceof GameAttributeBlockChange) {
+					Long sourceId = ((GameAttributeBlockChange)change).getSourceId();
+					if (sourceId!=null) {
+						barrier(sourceId.longValue());
+					}
+				}
+				else if (change instanceof GameObjectDeletionChange) {
+					heldState.remove(change.getId());
+					holdAddIndex.remove(change.getId());
+					for (Iterator<Integer> i=holdAddIndex.values().iterator();i.hasNext();) {
+						if (out.get(i.next()).getId()==change.getId()) {
+							i.remove(); // the holder is going away
+						}
+					}
+				}
+				out.add(change);
+			}
+		}
+		ArrayList<GameObjectChange> compacted = new ArrayList<GameObjectChange>(out.size());
+		for (GameObjectChange change:out) {
+			if (change!=null) {
+				compacted.add(change);
+			}
+		}
+		return compacted;
+	}
+	
+	/**
+	 * Puts the change in the list.  If replace is true, and there is an earlier change to the same attribute, the
+	 * change takes its place.
+	 */
+	private void replaceSlot(GameObjectChange change,String key,boolean replace) {
+		Integer index = slotIndex.get(key);
+		if (replace && index!=null) {
+			out.set(index.intValue(),change);
+		}
+		else {
+			slotIndex.put(key,out.size());
+			ArrayList<String> keys = slotsById.get(change.getId());
+			if (keys==null) {
+				keys = new ArrayList<String>();
+				slotsById.put(change.getId(),keys);
+			}
+			keys.add(key);
+			out.add(change);
+		}
+	}
+	
+	/**
+	 * A change that only removes the attribute can't replace one that might have created its block (an empty block
+	 * would have been left behind), unless the block is known to be there already.
+	 */
+	private boolean canRemove(String key,String blockName) {
+		Integer index = slotIndex.get(key);
+		if (index==null) {
+			return true;
+		}
+		GameObjectChange earlier = out.get(index);
+		boolean createsBlock = true;
+		if (earlier instanceof GameAttributeChange) {
+			createsBlock = ((GameAttributeChange)earlier).getNewValue()!=null;
+		}
+		else if (earlier instanceof GameAttributeListChange) {
+			createsBlock = ((GameAttributeListChange)earlier).getAddList()!=null;
+		}
+		if (!createsBlock) {
+			return true;
+		}
+		// The block was there before this list of changes, and nothing since could have removed it
+		long id = earlier.getId();
+		GameObject go = data.getGameObject(id);
+		return go!=null && !barriers.contains(id) && go.attributeBlocks.containsKey(blockName);
+	}
+	
+	/**
+	 * Nothing before this point can be merged with anything after it, for the given object
+	 */
+	private void barrier(long id) {
+		barriers.add(id);
+		ArrayList<String> keys = slotsById.remove(id);
+		if (keys!=null) {
+			for (String key:keys) {
+				slotIndex.remove(key);
+			}
+		}
+	}
+	
+	private boolean isHeld(Long id) {
+		Boolean held = heldState.get(id);
+		if (held!=null) {
+			return held.booleanValue();
+		}
+		GameObject go = data.getGameObject(id);
+		return go==null || go.heldBy!=null; // unknown objects are assumed held, so nothing is dropped
+	}
+	
+	private static String slotKey(long id,String blockName,String attributeName) {
+		return id+":"+blockName+":"+AttributeSymbols.key(attributeName);
+	}
+}
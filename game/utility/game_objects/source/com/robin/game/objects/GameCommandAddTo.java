@@ -36,8 +36,8 @@ public class GameCommandAddTo extends GameCommand {
 	}
 	public String addTo(GamePool fromPool,ArrayList allGameObjects) {
 		// First find the targetObject copy
-		GameObject targetObjectCopy = null;
-		for (Iterator i=allGameObjects.iterator();i.hasNext();) {
+		GameObject targetObjectCopy = parent.getSetupObject(targetObject.getId());
+		for (Iterator i=allGameObjects.iterator();targetObjectCopy==null && i.hasNext();) {
 			GameObject copyObject = (GameObject)i.next();
 			if (copyObject.equalsId(targetObject.getId())) {
 				targetObjectCopy = copyObject;
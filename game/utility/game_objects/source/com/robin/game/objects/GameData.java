@@ -21,15 +21,16 @@ import java.io.*;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.*;
 
 import javax.swing.JOptionPane;
 import javax.swing.event.ChangeEvent;
 import javax.swing.event.ChangeListener;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 
 import org.jdom.*;
-import org.jdom.input.SAXBuilder;
-import org.jdom.output.Format;
-import org.jdom.output.XMLOutputter;
 
 import com.robin.general.io.*;
 import com.robin.general.util.*;
@@ -37,17 +38,48 @@ import com.robin.general.util.*;
 public class GameData extends ModifyableObject implements Serializable {
 	
 	private static long c_dataid = 0;
-	private long dataid = c_dataid++;
+	private long dataid = nextDataId();
+	private static synchronized long nextDataId() {
+		return c_dataid++; // copies can be made on several threads at once
+	}
 	public long getDataId() {
 		return dataid;
 	}
 	
 	public boolean reportFormatErrors = true;
 	public boolean ignoreRandomSeed = false;
+	public boolean zipAsXml = false; // set to write zip files as XML, for versions that can't read the snapshot format
+	private boolean readOnly = false;
+	
+	private static final HashMap<String,GameData> sharedData = new HashMap<String,GameData>();
+	
+	/**
+	 * @return		The data at path, which is read only once and then shared with everyone who asks for it.  Shared data
+	 * 				is read only, so use copy() to get data that can be changed.
+	 */
+	public static GameData getSharedData(String path) {
+		synchronized(sharedData) {
+			GameData data = sharedData.get(path);
+			if (data==null) {
+				data = new GameData();
+				if (!data.loadFromPath(path)) {
+					return data; // don't keep failures around
+				}
+				data.setDataName("master");
+				data.setReadOnly(true);
+				sharedData.put(path,data);
+			}
+			return data;
+		}
+	}
 	
 	private String dataName = "defaultDataName"; // can use this variable (which is never saved in xml) to identify local instances of GameData
 	
 	private static final String ZIP_INTERNAL_FILENAME = "GameData_CHEATER_.xml";
+	private static final String ZIP_SNAPSHOT_FILENAME = "GameData.snapshot";
+	
+	private static final int SNAPSHOT_MAGIC = 0x52534744; // "RSGD"
+	private static final int SNAPSHOT_VERSION = 1;
 
 	protected long cumulative_id = 0;
 	
@@ -63,11 +95,18 @@ public class GameData extends ModifyableObject implements Serializable {
 	protected HashMap gameObjectIDHash;
 	protected HashLists<String,GameObject> gameObjectNameHash;
 	protected ArrayList<GameObject> filteredGameObjects;
+	private transient AttributeIndex attributeIndex; // built on first query
+	private transient volatile ChangeListener[] objectChangeListeners;
+	private transient volatile ConcurrentHashMap<Object,Object> attachments; // see getAttachment
+	
+	private static final WeakHashMap<GameData,Boolean> attachedData = new WeakHashMap<GameData,Boolean>(); // every live GameData with attachments
 	
 	protected ArrayList gameSetups;
 	
 	protected boolean tracksChanges = false;
 	private ArrayList<GameObjectChange> objectChanges;
+	private long changesBeforeCompaction = 0;
+	private long changesAfterCompaction = 0;
 	
 	private ChangeListener modifyListener = new ChangeListener() {
 		public void stateChanged(ChangeEvent ev) {
@@ -131,19 +170,80 @@ public class GameData extends ModifyableObject implements Serializable {
 	public ChangeListener getModifyListener() {
 		return modifyListener;
 	}
+	/**
+	 * Adds a listener that is told whenever any GameObject in this data is modified (committed or not), so that
+	 * things derived from the objects can be invalidated.  The event source is the modified GameObject, which may be
+	 * the uncommitted view of an object, so listeners should go by the id.  Listeners are called on whatever thread
+	 * made the change.
+	 */
+	public synchronized void addObjectChangeListener(ChangeListener listener) {
+		ChangeListener[] old = objectChangeListeners;
+		int size = old==null?0:old.length;
+		ChangeListener[] listeners = new ChangeListener[size+1];
+		if (old!=null) {
+			System.arraycopy(old,0,listeners,0,size);
+		}
+		listeners[size] = listener;
+		objectChangeListeners = listeners;
+	}
+	public synchronized void removeObjectChangeListener(ChangeListener listener) {
+		ChangeListener[] old = objectChangeListeners;
+		if (old==null) return;
+		ArrayList<ChangeListener> list = new ArrayList<ChangeListener>(Arrays.asList(old));
+		if (list.remove(listener)) {
+			objectChangeListeners = list.isEmpty()?null:list.toArray(new ChangeListener[list.size()]);
+		}
+	}
+	private void fireObjectChanged(GameObject obj) {
+		ChangeListener[] listeners = objectChangeListeners;
+		if (listeners!=null && obj!=null) {
+			ChangeEvent ev = new ChangeEvent(obj);
+			for (int i=0;i<listeners.length;i++) {
+				listeners[i].stateChanged(ev);
+			}
+		}
+	}
+	/**
+	 * Makes a copy of the objects (with the same ids) and setups.  The copied objects share their attributes with
+	 * the originals until one or the other changes them (see GameObject.shareFrom), so a copy costs little more
+	 * than the objects themselves, and buildChanges between the two only has to look at what changed.
+	 */
 	public GameData copy() {
 		GameData data = new GameData(gameName);
+		data.gameDesc = gameDesc;
 		for (Iterator i=getGameObjects().iterator();i.hasNext();) {
 			GameObject go = (GameObject)i.next();
-			GameObject goCopy = data.createNewObject(go);
-			goCopy.copyFrom(go);
+			GameObject goCopy = data.createNewObject(go.getId());
+			goCopy.shareFrom(go);
 		}
 		for (Iterator i=data.getGameObjects().iterator();i.hasNext();) {
 			GameObject go = (GameObject)i.next();
 			go.resolveHold(data.getGameObjectIDHash());
 		}
+		for (Iterator i=gameSetups.iterator();i.hasNext();) {
+			GameSetup setup = (GameSetup)i.next();
+			GameSetup setupCopy = new GameSetup(data);
+			setupCopy.setXML(setup.getXML());
+			data.gameSetups.add(setupCopy);
+		}
+		data.cumulative_id = Math.max(data.cumulative_id,cumulative_id);
+		data.setModified(true);
 		return data;
 	}
+	/**
+	 * Read only data (like the shared master data) throws an IllegalStateException when anything tries to change it
+	 */
+	public void setReadOnly(boolean val) {
+		readOnly = val;
+	}
+	public boolean isReadOnly() {
+		return readOnly;
+	}
+	private void checkWritable() {
+		if (readOnly) {
+			throw new IllegalStateException(toIdentifier()+" is read only");
+		}
+	}
 	public boolean hasChanges() {
 		return tracksChanges && objectChanges!=null && !objectChanges.isEmpty();
 	}
@@ -266,6 +366,7 @@ public class GameData extends ModifyableObject implements Serializable {
 	 */
 	private void renumberObjects() {
 		gameObjectIDHash.clear();
+		attributeIndex = null;
 		cumulative_id = 0;
 		for (Iterator i=gameObjects.iterator();i.hasNext();) {
 			GameObject go = (GameObject)i.next();
@@ -289,6 +390,7 @@ public class GameData extends ModifyableObject implements Serializable {
 	}
 	public void renumberObjectsStartingWith(long startId) {
 		gameObjectIDHash.clear();
+		attributeIndex = null;
 		cumulative_id = startId;
 		for (Iterator i=gameObjects.iterator();i.hasNext();) {
 			GameObject go = (GameObject)i.next();
@@ -339,15 +441,9 @@ public class GameData extends ModifyableObject implements Serializable {
 			}
 			else {
 				// Filter gameObjects
-				ArrayList filterTerms = new ArrayList();
-				StringTokenizer tokens = new StringTokenizer(filterString,",");
-				while(tokens.hasMoreTokens()) {
-					filterTerms.add(tokens.nextToken());
-				}
-				
-				for (Iterator i=gameObjects.iterator();i.hasNext();) {
-					GameObject obj = (GameObject)i.next();
-					if (obj.hasAllKeyVals(filterTerms)) {
+				BitSet ids = getAttributeIndex().find(GameQuery.compile(filterString));
+				for (GameObject obj:gameObjects) {
+					if (AttributeIndex.isIndexable(obj.getId()) && ids.get((int)obj.getId())) {
 						// Conditions met - add it.
 						filteredGameObjects.add(obj);
 					}
@@ -375,16 +471,102 @@ public class GameData extends ModifyableObject implements Serializable {
 		}
 		cumulative_id++;
 	}
+	/**
+	 * Reads a zip file written by zipToFile, in either the snapshot or the XML format.  The data is read straight
+	 * out of the zip, without unzipping to a temp file.
+	 */
 	public boolean zipFromFile(File zipFile) {
-		ZipUtilities.unzip(zipFile);
-		String path = FileUtilities.getFilePathString(zipFile,false,false);
-		File tempFile = new File(path+ZIP_INTERNAL_FILENAME);
-		if (loadFromFile(tempFile)) {
-			tempFile.delete();
-			return true;
+		try {
+			ZipInputStream zip = new ZipInputStream(new BufferedInputStream(new FileInputStream(zipFile)));
+			try {
+				ZipEntry entry;
+				while((entry = zip.getNextEntry())!=null) {
+					if (ZIP_SNAPSHOT_FILENAME.equals(entry.getName())) {
+						readSnapshot(zip);
+						return true;
+					}
+					if (ZIP_INTERNAL_FILENAME.equals(entry.getName())) {
+						return loadFromStream(zip);
+					}
+				}
+				System.out.println("Problem loading file: "+zipFile+" has no game data");
+			}
+			finally {
+				zip.close();
+			}
+		}
+		catch(FileNotFoundException ex) {
+			System.out.println("Problem loading file: "+ex);
+		}
+		catch(IOException ex) {
+			if (reportFormatErrors) {
+				JOptionPane.showMessageDialog(null,"Invalid file/format:\n\n"+ex,"Error",JOptionPane.ERROR_MESSAGE);
+				ex.printStackTrace();
+			}
 		}
 		return false;
 	}
+	/**
+	 * Reads a binary snapshot written by writeSnapshot.  The stream is left open.
+	 */
+	public void readSnapshot(InputStream stream) throws IOException {
+		DataInputStream in = new DataInputStream(new BufferedInputStream(stream));
+		if (in.readInt()!=SNAPSHOT_MAGIC) {
+			throw new StreamCorruptedException("Not a game data snapshot");
+		}
+		int version = GameChangeCodec.readVarInt(in);
+		if (version!=SNAPSHOT_VERSION) {
+			throw new StreamCorruptedException("Unsupported snapshot version: "+version);
+		}
+		GameChangeCodec codec = new GameChangeCodec();
+		String name = codec.readString(in);
+		String desc = codec.readString(in);
+		String seedString = null;
+		String countString = null;
+		String rt = null;
+		if (in.readBoolean()) {
+			seedString = String.valueOf(in.readLong());
+			countString = String.valueOf(in.readLong());
+			rt = codec.readString(in);
+		}
+		readGameAttributes(name,desc,seedString,rt,countString);
+		
+		int objectCount = GameChangeCodec.readVarInt(in);
+		startReadingObjects();
+		for (int i=0;i<objectCount;i++) {
+			GameObject newObj = new GameObject(this);
+			newObj.readSnapshot(codec,in);
+			addReadObject(newObj);
+		}
+		finishReadingObjects();
+		
+		int setupCount = GameChangeCodec.readVarInt(in);
+		gameSetups.clear();
+		for (int i=0;i<setupCount;i++) {
+			GameSetup newSetup = new GameSetup(this);
+			newSetup.setXML(readSnapshotElement(codec,in));
+			gameSetups.add(newSetup);
+		}
+		
+		if (in.readInt()!=SNAPSHOT_MAGIC) {
+			throw new StreamCorruptedException("Snapshot is truncated");
+		}
+		
+		// Done.
+		setModified(false);
+	}
+	private static Element readSnapshotElement(GameChangeCodec codec,DataInput in) throws IOException {
+		Element element = new Element(codec.readString(in));
+		int attributeCount = GameChangeCodec.readVarInt(in);
+		for (int i=0;i<attributeCount;i++) {
+			element.setAttribute(codec.readString(in),codec.readString(in));
+		}
+		int childCount = GameChangeCodec.readVarInt(in);
+		for (int i=0;i<childCount;i++) {
+			element.addContent(readSnapshotElement(codec,in));
+		}
+		return element;
+	}
 	/**
 	 * This allows you to load from a file compressed in a jar archive
 	 */
@@ -412,12 +594,14 @@ public class GameData extends ModifyableObject implements Serializable {
 	}
 	public boolean loadFromStream(InputStream stream) {
 		try {
-			// Load file
-			Document doc = new SAXBuilder().build(stream);
-			
-			// Read game
-			Element game = doc.getRootElement();
-			setXML(game);
+			// Read game (objects are created as they are parsed)
+			XMLStreamReader in = GameXmlReader.open(stream);
+			try {
+				readXML(in);
+			}
+			finally {
+				in.close();
+			}
 			return true;
 		}
 		catch(Exception ex) {
@@ -429,40 +613,23 @@ public class GameData extends ModifyableObject implements Serializable {
 		return false;
 	}
 	public void setXML(Element game) {
-		gameName = game.getAttribute("name").getValue();
-		gameDesc = game.getAttribute("description").getValue();
-		String seedString = game.getAttributeValue("_rseed");
-		if (!ignoreRandomSeed && seedString!=null) {
-			String rt = game.getAttributeValue("_rgtype");
-			RandomNumber.setRandomNumberGenerator(rt==null ? RandomNumberType.System : RandomNumberType.valueOf(rt));
-			String countString = game.getAttributeValue("_rcount");
-			RandomNumber.init(Long.valueOf(seedString),Long.valueOf(countString));
-		}
+		readGameAttributes(
+				game.getAttribute("name").getValue(),
+				game.getAttribute("description").getValue(),
+				game.getAttributeValue("_rseed"),
+				game.getAttributeValue("_rgtype"),
+				game.getAttributeValue("_rcount"));
 		
 		// Read objects
 		Collection objects = game.getChild("objects").getChildren();
-		gameObjects.clear();
-		gameObjectIDHash.clear();
-		gameObjectNameHash.clear();
+		startReadingObjects();
 		for (Iterator i=objects.iterator();i.hasNext();) {
 			Element obj = (Element)i.next();
 			GameObject newObj = new GameObject(this);
 			newObj.setXML(obj);
-			gameObjects.add(newObj);
-			gameObjectIDHash.put(new Long(newObj.getId()),newObj);
-			gameObjectNameHash.put(newObj.getName(),newObj);
+			addReadObject(newObj);
 		}
-		
-		// Resolve objects (holds can't be calculated until all are loaded!)
-		for (Iterator i=gameObjects.iterator();i.hasNext();) {
-			GameObject obj = (GameObject)i.next();
-			obj.resolveHold(gameObjectIDHash);
-		}
-		
-		rebuildFilteredGameObjects();
-		
-		// Set cumulative_id to something real
-		resetIdToMax(gameObjects);
+		finishReadingObjects();
 		
 		// Read setups
 		Collection setups = game.getChild("setups").getChildren();
@@ -477,30 +644,213 @@ public class GameData extends ModifyableObject implements Serializable {
 		// Done.
 		setModified(false);
 	}
+	/**
+	 * Streaming version of setXML(Element).  The reader should be on the game start tag.  Unlike setXML, a badly
+	 * formed file is only discovered part way through, so the GameData should be discarded if this throws.
+	 */
+	private void readXML(XMLStreamReader in) throws XMLStreamException {
+		readGameAttributes(
+				in.getAttributeValue(null,"name"),
+				in.getAttributeValue(null,"description"),
+				in.getAttributeValue(null,"_rseed"),
+				in.getAttributeValue(null,"_rgtype"),
+				in.getAttributeValue(null,"_rcount"));
+		
+		boolean readObjects = false;
+		boolean readSetups = false;
+		while(GameXmlReader.nextChild(in)) {
+			String tag = in.getLocalName();
+			if (!readObjects && "objects".equals(tag)) {
+				startReadingObjects();
+				while(GameXmlReader.nextChild(in)) {
+					GameObject newObj = new GameObject(this);
+					newObj.readXML(in);
+					addReadObject(newObj);
+				}
+				finishReadingObjects();
+				readObjects = true;
+			}
+			else if (readObjects && !readSetups && "setups".equals(tag)) {
+				gameSetups.clear();
+				while(GameXmlReader.nextChild(in)) {
+					GameSetup newSetup = new GameSetup(this);
+					newSetup.setXML(GameXmlReader.readElement(in));
+					gameSetups.add(newSetup);
+				}
+				readSetups = true;
+			}
+			else {
+				GameXmlReader.skipElement(in);
+			}
+		}
+		if (!readObjects || !readSetups) {
+			throw new XMLStreamException("Missing "+(readObjects?"setups":"objects")+" element");
+		}
+		
+		// Done.
+		setModified(false);
+	}
+	private void readGameAttributes(String name,String desc,String seedString,String rt,String countString) {
+		gameName = name;
+		gameDesc = desc;
+		if (!ignoreRandomSeed && seedString!=null) {
+			// Restores the generator of whichever game is being loaded on this thread (or the shared one, if none is)
+			RandomNumber.init(rt==null ? RandomNumberType.System : RandomNumberType.valueOf(rt),Long.valueOf(seedString),Long.valueOf(countString));
+		}
+	}
+	private void startReadingObjects() {
+		gameObjects.clear();
+		gameObjectIDHash.clear();
+		gameObjectNameHash.clear();
+		attributeIndex = null;
+	}
+	private void addReadObject(GameObject newObj) {
+		gameObjects.add(newObj);
+		gameObjectIDHash.put(new Long(newObj.getId()),newObj);
+		gameObjectNameHash.put(newObj.getName(),newObj);
+	}
+	private void finishReadingObjects() {
+		// Resolve objects (holds can't be calculated until all are loaded!)
+		for (Iterator i=gameObjects.iterator();i.hasNext();) {
+			GameObject obj = (GameObject)i.next();
+			obj.resolveHold(gameObjectIDHash);
+		}
+		
+		rebuildFilteredGameObjects();
+		
+		// Set cumulative_id to something real
+		resetIdToMax(gameObjects);
+	}
+	/**
+	 * Writes the game to a zip file as a binary snapshot (or as XML, if zipAsXml is set), streaming straight into
+	 * the zip without a temp file.
+	 */
 	public boolean zipToFile(File zipFile) {
-		String path = FileUtilities.getFilePathString(zipFile,false,false);
-		File tempFile = new File(path+ZIP_INTERNAL_FILENAME);
-		
-		if (saveToFile(tempFile)) {
-			ArrayList<File> files = new ArrayList<File>();
-			files.add(tempFile);
-			ZipUtilities.zip(zipFile,files.toArray(new File[files.size()]));
-			tempFile.delete();
+		try {
+			ZipOutputStream zip = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(zipFile)));
+			try {
+				zip.setMethod(ZipOutputStream.DEFLATED);
+				if (zipAsXml) {
+					zip.putNextEntry(new ZipEntry(ZIP_INTERNAL_FILENAME));
+					saveToStream(zip);
+				}
+				else {
+					zip.putNextEntry(new ZipEntry(ZIP_SNAPSHOT_FILENAME));
+					writeSnapshot(zip);
+				}
+				zip.closeEntry();
+			}
+			finally {
+				zip.close();
+			}
+			setModified(false);
 			return true;
 		}
-		
+		catch(IOException ex) {
+			ex.printStackTrace();
+		}
 		return false;
 	}
+	/**
+	 * Takes a copy of the game as the bytes zipToFile would put in the zip, without compressing them or touching
+	 * the disk.  The result doesn't change when the game does, so it can be handed to another thread and written
+	 * out later with zipSnapshot.
+	 */
+	public byte[] takeZipSnapshot() {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(1<<16);
+		try {
+			if (zipAsXml) {
+				saveToStream(bytes);
+			}
+			else {
+				writeSnapshot(bytes);
+			}
+		}
+		catch(IOException ex) {
+			throw new IllegalStateException(ex); // can't happen writing to memory
+		}
+		setModified(false);
+		return bytes.toByteArray();
+	}
+	/**
+	 * Writes bytes from takeZipSnapshot as a zip file that zipFromFile can read.  The stream is closed.
+	 */
+	public static void zipSnapshot(byte[] snapshot,OutputStream stream) throws IOException {
+		boolean isSnapshot = snapshot.length>=4
+				&& ((snapshot[0]&0xff)<<24 | (snapshot[1]&0xff)<<16 | (snapshot[2]&0xff)<<8 | (snapshot[3]&0xff))==SNAPSHOT_MAGIC;
+		ZipOutputStream zip = new ZipOutputStream(new BufferedOutputStream(stream));
+		try {
+			zip.setMethod(ZipOutputStream.DEFLATED);
+			zip.putNextEntry(new ZipEntry(isSnapshot?ZIP_SNAPSHOT_FILENAME:ZIP_INTERNAL_FILENAME));
+			zip.write(snapshot);
+			zip.closeEntry();
+		}
+		finally {
+			zip.close();
+		}
+	}
+	/**
+	 * Writes the game in the binary snapshot format:  a header, then a record for each object and setup, in the
+	 * same order as the XML.  Block names, keys and values go through a string table (the same one GameChangeCodec
+	 * uses on the wire), so each distinct short string is only written once.  The stream is left open.
+	 */
+	public void writeSnapshot(OutputStream stream) throws IOException {
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream));
+		out.writeInt(SNAPSHOT_MAGIC);
+		GameChangeCodec.writeVarInt(out,SNAPSHOT_VERSION);
+		GameChangeCodec codec = new GameChangeCodec();
+		codec.writeString(out,gameName);
+		codec.writeString(out,gameDesc==null?"":gameDesc);
+		boolean writeRandom = !ignoreRandomSeed && RandomNumber.hasBeenInitialized();
+		out.writeBoolean(writeRandom);
+		if (writeRandom) {
+			out.writeLong(RandomNumber.getSeed());
+			out.writeLong(RandomNumber.getCount());
+			codec.writeString(out,RandomNumber.getRandomNumberGenerator().toString());
+		}
+		
+		GameChangeCodec.writeVarInt(out,gameObjects.size());
+		for (Iterator i=gameObjects.iterator();i.hasNext();) {
+			GameObject obj = (GameObject)i.next();
+			obj.writeSnapshot(codec,out);
+		}
+		
+		GameChangeCodec.writeVarInt(out,gameSetups.size());
+		for (Iterator i=gameSetups.iterator();i.hasNext();) {
+			GameSetup setup = (GameSetup)i.next();
+			writeSnapshotElement(codec,out,setup.getXML());
+		}
+		
+		out.writeInt(SNAPSHOT_MAGIC);
+		out.flush();
+	}
+	private static void writeSnapshotElement(GameChangeCodec codec,DataOutput out,Element element) throws IOException {
+		codec.writeString(out,element.getName());
+		List attributes = element.getAttributes();
+		GameChangeCodec.writeVarInt(out,attributes.size());
+		for (Iterator i=attributes.iterator();i.hasNext();) {
+			Attribute att = (Attribute)i.next();
+			codec.writeString(out,att.getName());
+			codec.writeString(out,att.getValue());
+		}
+		List children = element.getChildren();
+		GameChangeCodec.writeVarInt(out,children.size());
+		for (Iterator i=children.iterator();i.hasNext();) {
+			writeSnapshotElement(codec,out,(Element)i.next());
+		}
+	}
 	public boolean saveToFile(File file) {
 		file = fixFileExtension(file);
-		Element game = getXML();
 		
 		// Save file
 		try {
 			FileOutputStream stream = new FileOutputStream(file);
-			XMLOutputter outputter = new XMLOutputter(Format.getPrettyFormat());
-			outputter.output(game,stream);
-			stream.close();
+			try {
+				saveToStream(stream);
+			}
+			finally {
+				stream.close();
+			}
 			setModified(false);
 			return true;
 		}
@@ -514,6 +864,38 @@ public class GameData extends ModifyableObject implements Serializable {
 		}
 		return false;
 	}
+	/**
+	 * Writes the same XML as getXML() would produce, without building the Element tree first
+	 */
+	public void saveToStream(OutputStream stream) throws IOException {
+		GameXmlWriter out = new GameXmlWriter(stream);
+		out.startElement("game");
+		out.attribute("file_version","1.0");
+		out.attribute("name",gameName);
+		out.attribute("description",gameDesc==null?"":gameDesc);
+		if (!ignoreRandomSeed && RandomNumber.hasBeenInitialized()) {
+			out.attribute("_rseed",String.valueOf(RandomNumber.getSeed()));
+			out.attribute("_rcount",String.valueOf(RandomNumber.getCount()));
+			out.attribute("_rgtype",RandomNumber.getRandomNumberGenerator().toString());
+		}
+		
+		out.startElement("objects");
+		for (Iterator i=gameObjects.iterator();i.hasNext();) {
+			GameObject obj = (GameObject)i.next();
+			obj.writeXML(out);
+		}
+		out.endElement();
+		
+		out.startElement("setups");
+		for (Iterator i=gameSetups.iterator();i.hasNext();) {
+			GameSetup setup = (GameSetup)i.next();
+			out.element(setup.getXML());
+		}
+		out.endElement();
+		
+		out.endElement();
+		out.flush();
+	}
 	public Element getXML() {
 		// Build game
 		Element game = new Element("game");
@@ -559,6 +941,7 @@ public class GameData extends ModifyableObject implements Serializable {
 	public void removeObject(GameObject obj) {
 		int index = gameObjects.indexOf(obj);
 		if (index>=0) {
+			checkWritable();
 //			if (tracksChanges) {
 //				addChange(new GameObjectDeletionChange(obj));
 //			}
@@ -572,6 +955,7 @@ public class GameData extends ModifyableObject implements Serializable {
 			
 			gameObjects.remove(index);
 			gameObjectIDHash.remove(new Long(obj.getId()));
+			objectModified(obj);
 			gameObjectNameHash.removeKeyValue(obj.getName(),obj);
 			rebuildFilteredGameObjects();
 			setModified(true);
@@ -588,6 +972,7 @@ public class GameData extends ModifyableObject implements Serializable {
 		return createNewObject(cumulative_id);
 	}
 	public GameObject createNewObject(long anId) {
+		checkWritable();
 		if (!gameObjectIDHash.containsKey(anId)) {
 			if (anId>=cumulative_id) {
 				cumulative_id = anId + 1;
@@ -627,6 +1012,7 @@ public class GameData extends ModifyableObject implements Serializable {
 			gameObjectIDHash.put(new Long(obj.getId()),obj);
 			gameObjectNameHash.removeKeyValue(old.getName(),old);
 			gameObjectNameHash.put(obj.getName(),obj);
+			objectModified(obj);
 			return true;
 		}
 		return false;
@@ -634,6 +1020,89 @@ public class GameData extends ModifyableObject implements Serializable {
 	protected void changingName(String oldName,String newName,GameObject obj) {
 		gameObjectNameHash.removeKeyValue(oldName,obj);
 		gameObjectNameHash.put(newName,obj);
+		objectModified(obj);
+	}
+	/**
+	 * Called whenever a GameObject (or its uncommitted view) changes, so that the attribute index can catch up
+	 */
+	void objectModified(GameObject obj) {
+		AttributeIndex index = attributeIndex;
+		if (index!=null) {
+			index.markDirty(obj.getId());
+		}
+		fireObjectChanged(obj);
+	}
+	/**
+	 * Called when only the hold of a GameObject (or which object holds it) changes.  Holds aren't in the attribute
+	 * index, so this only tells the listeners.
+	 */
+	void holdModified(GameObject obj) {
+		fireObjectChanged(obj);
+	}
+	/**
+	 * Attachments are things derived from this data (component registries, indexes, caches) that belong to it, and
+	 * should live exactly as long as it does.  Unlike a static map keyed by data id, they don't keep the data (and
+	 * everything they reference) around after the data is discarded.
+	 * 
+	 * @return		The attachment for key, or null if there isn't one
+	 */
+	public Object getAttachment(Object key) {
+		ConcurrentHashMap<Object,Object> map = attachments; // no locking, since this is read all the time
+		return map==null?null:map.get(key);
+	}
+	/**
+	 * Sets (or removes, if val is null) the attachment for key
+	 * 
+	 * @return		The attachment that was replaced, if any
+	 */
+	public Object setAttachment(Object key,Object val) {
+		synchronized(attachedData) {
+			if (val==null) {
+				if (attachments==null) {
+					return null;
+				}
+				Object old = attachments.remove(key);
+				if (attachments.isEmpty()) {
+					attachedData.remove(this);
+				}
+				return old;
+			}
+			if (attachments==null) {
+				attachments = new ConcurrentHashMap<Object,Object>();
+			}
+			attachedData.put(this,Boolean.TRUE);
+			return attachments.put(key,val);
+		}
+	}
+	/**
+	 * Removes the attachment for key from every GameData that is still around
+	 * 
+	 * @return		The attachments that were removed
+	 */
+	public static ArrayList<Object> removeAllAttachments(Object key) {
+		ArrayList<Object> removed = new ArrayList<Object>();
+		synchronized(attachedData) {
+			for (GameData data:new ArrayList<GameData>(attachedData.keySet())) {
+				Object old = data.setAttachment(key,null);
+				if (old!=null) {
+					removed.add(old);
+				}
+			}
+		}
+		return removed;
+	}
+	synchronized AttributeIndex getAttributeIndex() {
+		if (attributeIndex==null) {
+			attributeIndex = new AttributeIndex(this);
+		}
+		return attributeIndex;
+	}
+	/**
+	 * @return		true if the object is the one registered in this GameData under its id (and so is covered by the
+	 * 				attribute index).  Copies of objects share ids with the originals, so they never are.
+	 */
+	boolean isIndexed(GameObject obj) {
+		return AttributeIndex.isIndexable(obj.getId()) && gameObjectIDHash.get(obj.getId())==obj;
 	}
 	/**
 	 * Returns true if the provided object is the same one as found in GameData
@@ -756,6 +1225,13 @@ public class GameData extends ModifyableObject implements Serializable {
 		dataVersion++;
 		if (tracksChanges) {
 			objectChanges.add(change);
+			AttributeIndex index = attributeIndex;
+			if (index!=null) {
+				index.markDirty(change.getId());
+			}
+			if (objectChangeListeners!=null) {
+				fireObjectChanged(getGameObject(change.getId()));
+			}
 //if (change instanceof GameAttributeBlockChange) {
 //	System.out.println("-------------------");
 //	(new Exception()).printStackTrace(System.out);
@@ -794,10 +1270,51 @@ public class GameData extends ModifyableObject implements Serializable {
 			}
 		}
 	}
+	/**
+	 * Merges redundant changes out of objectChanges (see GameChangeCompactor), leaving the same final state once
+	 * committed.
+	 * 
+	 * @return		The number of changes removed
+	 */
+	public synchronized int compactChanges() {
+		if (objectChanges==null || objectChanges.size()<2) {
+			return 0;
+		}
+		int before = objectChanges.size();
+		ArrayList<GameObjectChange> compacted = new GameChangeCompactor(this).compact(objectChanges);
+		if (compacted.size()<before) {
+			// Objects that no longer have any changes still need to lose their uncommitted view (which should look just
+			// like the committed object now)
+			HashSet<Long> remaining = new HashSet<Long>();
+			for (GameObjectChange change:compacted) {
+				remaining.add(change.getId());
+			}
+			for (GameObjectChange change:objectChanges) {
+				if (!remaining.contains(change.getId())) {
+					GameObject go = getGameObject(change.getId());
+					if (go!=null) {
+						go.stopUncommitted();
+					}
+				}
+			}
+			objectChanges.clear();
+			objectChanges.addAll(compacted);
+		}
+		changesBeforeCompaction += before;
+		changesAfterCompaction += compacted.size();
+		return before-compacted.size();
+	}
+	public long getChangesBeforeCompaction() {
+		return changesBeforeCompaction;
+	}
+	public long getChangesAfterCompaction() {
+		return changesAfterCompaction;
+	}
 	/**
 	 * This pops changes off the objectChanges stack, and commits them immediately
 	 */
 	public synchronized ArrayList<GameObjectChange> popAndCommit() {
+		compactChanges();
 		ArrayList<GameObjectChange> list = new ArrayList<GameObjectChange>();
 		int size = objectChanges.size();
 		if (size>0) {
@@ -812,6 +1329,7 @@ public class GameData extends ModifyableObject implements Serializable {
 	public synchronized void commit() {
 //(new Exception()).printStackTrace(System.out);
 		if (objectChanges!=null && !objectChanges.isEmpty()) {
+			compactChanges();
 //System.out.println(dataid+":  **** COMMIT "+objectChanges.size()+" OBJECTS ****");
 			for (GameObjectChange change:objectChanges) {
 				change.applyChange(this);
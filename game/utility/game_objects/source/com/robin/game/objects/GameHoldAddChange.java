@@ -17,6 +17,8 @@
  */
 package com.robin.game.objects;
 
+import java.io.*;
+
 public class GameHoldAddChange extends GameObjectChange {
 	
 	public Long holdId;
@@ -25,6 +27,14 @@ public class GameHoldAddChange extends GameObjectChange {
 		super(go);
 		holdId = null;
 	}
+	GameHoldAddChange() {
+	}
+	protected void writeFields(GameChangeCodec codec,DataOutput out) throws IOException {
+		codec.writeId(out,holdId);
+	}
+	protected void readFields(GameChangeCodec codec,DataInput in) throws IOException {
+		holdId = codec.readId(in);
+	}
 //	public boolean equals(Object o1) {
 //		if (o1 instanceof GameHoldAddChange) {
 //			GameHoldAddChange other = (GameHoldAddChange)o1;
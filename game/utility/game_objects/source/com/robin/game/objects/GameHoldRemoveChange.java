@@ -17,6 +17,8 @@
  */
 package com.robin.game.objects;
 
+import java.io.*;
+
 public class GameHoldRemoveChange extends GameObjectChange {
 	
 	private Long holdId;
@@ -25,6 +27,14 @@ public class GameHoldRemoveChange extends GameObjectChange {
 		super(go);
 		holdId = null;
 	}
+	GameHoldRemoveChange() {
+	}
+	protected void writeFields(GameChangeCodec codec,DataOutput out) throws IOException {
+		codec.writeId(out,holdId);
+	}
+	protected void readFields(GameChangeCodec codec,DataInput in) throws IOException {
+		holdId = codec.readId(in);
+	}
 //	public boolean equals(Object o1) {
 //		if (o1 instanceof GameHoldRemoveChange) {
 //			GameHoldRemoveChange other = (GameHoldRemoveChange)o1;
@@ -36,6 +46,9 @@ public class GameHoldRemoveChange extends GameObjectChange {
 //	public boolean sameTypeOfChange(GameObjectChange o1) {
 //		return false;
 //	}
+	Long getHoldId() {
+		return holdId;
+	}
 	public void setHoldId(long val) {
 		holdId = new Long(val);
 	}
@@ -17,10 +17,12 @@
  */
 package com.robin.game.objects;
 
-import java.io.IOException;
-import java.io.Serializable;
+import java.io.*;
 import java.util.*;
 
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
 import org.jdom.*;
 import org.jdom.output.Format;
 import org.jdom.output.XMLOutputter;
@@ -35,11 +37,15 @@ public class GameObject extends ModifyableObject implements Serializable {
 	protected static XMLOutputter outputter = new XMLOutputter(Format.getPrettyFormat());
 
 	private static final String THIS = "this";
+	private static final int SNAPSHOT_ATTRIBUTE = 0;
+	private static final int SNAPSHOT_ATTRIBUTE_LIST = 1;
 	protected OrderedHashtable attributeBlocks; // Holds Hashtables linked by a type key
+	protected boolean sharedAttributes; // attributeBlocks is shared with a copy (see shareFrom), and is never changed in place
 	protected GameObject heldBy; // Can only be held by one parent
 	protected ArrayList hold; // All GameObjects contained by this object
 
 	protected GameObject uncommitted; // a skeleton game object to manage uncommitted changes (tracks attributes AND hold)
+	protected transient TypedAttributeSlots typedSlots; // parsed int values, created on first use
 
 	protected long id;
 	protected long version;
@@ -141,6 +147,9 @@ public class GameObject extends ModifyableObject implements Serializable {
 	protected void stopUncommitted() {
 		if (uncommitted!=null) {
 			changeListeners.clear();
+			if (parent!=null) {
+				parent.objectModified(this); // what this object looks like is about to change
+			}
 		}
 		uncommitted = null;
 	}
@@ -188,13 +197,17 @@ public class GameObject extends ModifyableObject implements Serializable {
 		if (parent!=null && parent.getDataId() != obj.parent.getDataId()) {
 			throw new IllegalArgumentException("Cannot add object:  non-matching parent data!");
 		}
+		checkWritable();
 		if (obj.heldBy != null) {
 			obj.heldBy._remove(obj);
 		}
 		obj.heldBy = this;
 		hold.add(obj);
-		setModified(true);
+		setHoldModified();
 		version++;
+		if (parent != null) {
+			parent.holdModified(obj); // where the held object is has changed too
+		}
 	}
 
 	/**
@@ -222,7 +235,7 @@ public class GameObject extends ModifyableObject implements Serializable {
 		ArrayList<GameObjectChange> changes = new ArrayList<GameObjectChange>();
 		for (Iterator i = getAttributeBlockNames().iterator(); i.hasNext();) {
 			String blockName = (String) i.next();
-			OrderedHashtable block = getAttributeBlock(blockName);
+			OrderedHashtable block = (OrderedHashtable) attributeBlocks.get(blockName);
 			for (Iterator k = block.keySet().iterator(); k.hasNext();) {
 				String attributeName = (String) k.next();
 				Object value = block.get(attributeName);
@@ -261,10 +274,20 @@ public class GameObject extends ModifyableObject implements Serializable {
 		 * 		1)  Each game object with the same id in each data object has the same blockNames
 		 */
 		ArrayList changes = new ArrayList();
+		OrderedHashtable blocks = peekAttributeBlocks();
+		OrderedHashtable otherBlocks = other.peekAttributeBlocks();
+		if (blocks == otherBlocks) {
+			// Still sharing the same attributes (other is an unchanged copy), so only the hold can be different
+			addHoldChanges(other, changes);
+			return changes;
+		}
 		for (Iterator i = getAttributeBlockNames().iterator(); i.hasNext();) {
 			String blockName = (String) i.next();
-			OrderedHashtable block = getAttributeBlock(blockName);
-			OrderedHashtable otherBlock = other.getAttributeBlock(blockName);
+			OrderedHashtable block = (OrderedHashtable) blocks.get(blockName);
+			OrderedHashtable otherBlock = (OrderedHashtable) otherBlocks.get(blockName);
+			if (otherBlock == null) {
+				otherBlock = new OrderedHashtable(); // every attribute has been deleted
+			}
 			if (otherBlock != null) {
 				// check for changed and deleted attributes
 				for (Iterator k = block.keySet().iterator(); k.hasNext();) {
@@ -336,7 +359,7 @@ public class GameObject extends ModifyableObject implements Serializable {
 		for (Iterator i = other.getAttributeBlockNames().iterator(); i.hasNext();) {
 			String blockName = (String) i.next();
 			if (!hasAttributeBlock(blockName)) {
-				OrderedHashtable otherBlock = other.getAttributeBlock(blockName);
+				OrderedHashtable otherBlock = (OrderedHashtable) otherBlocks.get(blockName);
 				for (Iterator k = otherBlock.keySet().iterator(); k.hasNext();) {
 					String attributeName = (String) k.next();
 					Object value = otherBlock.get(attributeName);
@@ -354,6 +377,11 @@ public class GameObject extends ModifyableObject implements Serializable {
 			}
 		}
 
+		addHoldChanges(other, changes);
+		return changes;
+	}
+	
+	private void addHoldChanges(GameObject other, ArrayList changes) {
 		// Search for hold additions
 		for (Iterator i = other.hold.iterator(); i.hasNext();) {
 			GameObject go = (GameObject) i.next();
@@ -373,8 +401,6 @@ public class GameObject extends ModifyableObject implements Serializable {
 				changes.add(action);
 			}
 		}
-
-		return changes;
 	}
 
 	/**
@@ -401,9 +427,10 @@ public class GameObject extends ModifyableObject implements Serializable {
 		reset();
 		setName(new String(obj.getName()));
 		// Need to do a deep copy here!
-		for (Iterator i = obj.getAttributeBlocks().orderedKeys().iterator(); i.hasNext();) {
+		OrderedHashtable blocks = obj.peekAttributeBlocks();
+		for (Iterator i = blocks.orderedKeys().iterator(); i.hasNext();) {
 			String blockName = (String) i.next();
-			OrderedHashtable block = (OrderedHashtable) obj.getAttributeBlocks().get(blockName);
+			OrderedHashtable block = (OrderedHashtable) blocks.get(blockName);
 			for (Iterator v = block.orderedKeys().iterator(); v.hasNext();) {
 				String key = (String) v.next();
 				Object val = block.get(key);
@@ -429,12 +456,76 @@ public class GameObject extends ModifyableObject implements Serializable {
 		}
 	}
 
+	/**
+	 * Makes the same FULL copy (Except for ID) as copyFrom, but shares the attributes of obj instead of copying
+	 * them.  Neither object changes the shared attributes after this:  whichever one changes its attributes first
+	 * gets its own copy then (see ownAttributes).
+	 */
+	void shareFrom(GameObject obj) {
+		reset();
+		setName(obj.getName());
+		attributeBlocks = obj.peekAttributeBlocks();
+		sharedAttributes = true;
+		if (obj.uncommitted == null) {
+			obj.sharedAttributes = true;
+		}
+		else {
+			obj.uncommitted.sharedAttributes = true;
+		}
+		needHoldResolved = true;
+		for (Iterator i = obj.getHold().iterator(); i.hasNext();) {
+			GameObject held = (GameObject) i.next();
+			hold.add(new Long(held.getId()));
+		}
+	}
+	
+	/**
+	 * @return		The attributes as they are now (uncommitted changes included), without taking ownership.  Only
+	 * 				for reading!
+	 */
+	private OrderedHashtable peekAttributeBlocks() {
+		return uncommitted == null ? attributeBlocks : uncommitted.attributeBlocks;
+	}
+	
+	/**
+	 * Gives this object its own copy of the attributes, if they are shared, before they are changed or handed out
+	 * to be changed.  The attributes of read only data are never copied (or changed).
+	 */
+	private void ownAttributes() {
+		if (sharedAttributes && (parent == null || !parent.isReadOnly())) {
+			OrderedHashtable copy = new OrderedHashtable();
+			for (Iterator i = attributeBlocks.orderedKeys().iterator(); i.hasNext();) {
+				String blockName = (String) i.next();
+				OrderedHashtable block = (OrderedHashtable) attributeBlocks.get(blockName);
+				OrderedHashtable blockCopy = new OrderedHashtable();
+				for (Iterator k = block.orderedKeys().iterator(); k.hasNext();) {
+					Object key = k.next();
+					Object val = block.get(key);
+					blockCopy.put(key, val instanceof ArrayList ? new ArrayList((ArrayList) val) : val);
+				}
+				copy.put(blockName, blockCopy);
+			}
+			attributeBlocks = copy;
+			sharedAttributes = false;
+		}
+	}
+	
+	private void checkWritable() {
+		if (parent != null && parent.isReadOnly()) {
+			throw new IllegalStateException("Cannot change " + name + ", because " + parent.getDataName() + " is read only");
+		}
+	}
+
 	/**
 	 * Create a new attribute block (ie., side_1, side_2, this)
 	 */
 	private OrderedHashtable createAttributeBlock(String blockName) {
+		ownAttributes();
 		if (!hasAttributeBlock(blockName)) {
-			attributeBlocks.put(blockName, new OrderedHashtable());
+			if (parent != null && parent.isReadOnly()) {
+				return new OrderedHashtable(); // nothing to see
+			}
+			attributeBlocks.put(AttributeSymbols.block(blockName), new OrderedHashtable());
 		}
 		return (OrderedHashtable) attributeBlocks.get(blockName);
 	}
@@ -467,7 +558,7 @@ public class GameObject extends ModifyableObject implements Serializable {
 			if (!go.hasAttributeBlock(attributeBlock)) {
 				return false;
 			}
-			OrderedHashtable block = getAttributeBlock(attributeBlock);
+			OrderedHashtable block = (OrderedHashtable)peekAttributeBlocks().get(attributeBlock);
 			for (Iterator n=block.keySet().iterator();n.hasNext();) {
 				String key = (String)n.next();
 				String val = (String)block.get(key);
@@ -483,8 +574,22 @@ public class GameObject extends ModifyableObject implements Serializable {
 	}
 
 	public int getAttributeInt(String blockName, String key) {
+		if (uncommitted != null) {
+			return uncommitted.getAttributeInt(blockName, key);
+		}
 		// don't catch the exception here: I want it!
-		return Integer.valueOf(getAttribute(blockName, key)).intValue();
+		String val = getAttribute(blockName, key);
+		if (val == null) {
+			throw new NumberFormatException("null");
+		}
+		return getTypedSlots().getInt(blockName, AttributeSymbols.key(key), val);
+	}
+	
+	private TypedAttributeSlots getTypedSlots() {
+		if (typedSlots == null) {
+			typedSlots = new TypedAttributeSlots();
+		}
+		return typedSlots;
 	}
 
 	/**
@@ -496,7 +601,7 @@ public class GameObject extends ModifyableObject implements Serializable {
 		}
 		if (attributeBlocks.containsKey(blockName)) {
 			OrderedHashtable attributeBlock = (OrderedHashtable) attributeBlocks.get(blockName);
-			return (String) attributeBlock.get(key.toLowerCase());
+			return (String) attributeBlock.get(AttributeSymbols.key(key));
 		}
 		return null;
 	}
@@ -507,7 +612,7 @@ public class GameObject extends ModifyableObject implements Serializable {
 		}
 		if (attributeBlocks.containsKey(blockName)) {
 			OrderedHashtable attributeBlock = (OrderedHashtable) attributeBlocks.get(blockName);
-			return attributeBlock.get(key.toLowerCase());
+			return attributeBlock.get(AttributeSymbols.key(key));
 		}
 		return null;
 	}
@@ -537,6 +642,7 @@ public class GameObject extends ModifyableObject implements Serializable {
 		if (uncommitted != null) {
 			return uncommitted.getAttributeBlocks();
 		}
+		ownAttributes();
 		return attributeBlocks;
 	}
 
@@ -588,8 +694,9 @@ public class GameObject extends ModifyableObject implements Serializable {
 			return uncommitted.getAttributeList(blockName, key);
 		}
 		if (attributeBlocks.containsKey(blockName)) {
+			ownAttributes(); // the list could be changed by the caller
 			OrderedHashtable attributeBlock = (OrderedHashtable) attributeBlocks.get(blockName);
-			Object obj = attributeBlock.get(key.toLowerCase());
+			Object obj = attributeBlock.get(AttributeSymbols.key(key));
 			if (obj==null || obj instanceof ArrayList) {
 				return (ArrayList)obj;
 			}
@@ -657,9 +764,12 @@ public class GameObject extends ModifyableObject implements Serializable {
 	 * Convenience method for reading int attributes
 	 */
 	public int getInt(String blockName, String key) throws NumberFormatException {
+		if (uncommitted != null) {
+			return uncommitted.getInt(blockName, key);
+		}
 		String val = getAttribute(blockName, key);
 		if (val != null && val.trim().length()>0) {
-			return Integer.valueOf(val).intValue();
+			return getTypedSlots().getInt(blockName, AttributeSymbols.key(key), val);
 		}
 		return 0;
 	}
@@ -667,9 +777,12 @@ public class GameObject extends ModifyableObject implements Serializable {
 	 * Convenience method for reading integer attributes
 	 */
 	public Integer getInteger(String blockName, String key) throws NumberFormatException {
+		if (uncommitted != null) {
+			return uncommitted.getInteger(blockName, key);
+		}
 		String val = getAttribute(blockName, key);
 		if (val != null && val.trim().length()>0) {
-			return Integer.valueOf(val);
+			return Integer.valueOf(getTypedSlots().getInt(blockName, AttributeSymbols.key(key), val));
 		}
 		return null;
 	}
@@ -749,6 +862,136 @@ public class GameObject extends ModifyableObject implements Serializable {
 		// return
 		return element;
 	}
+	/**
+	 * Writes this object as a record in a binary snapshot (see GameData.writeSnapshot)
+	 */
+	void writeSnapshot(GameChangeCodec codec, DataOutput out) throws IOException {
+		if (uncommitted != null) {
+			uncommitted.writeSnapshot(codec, out);
+			return;
+		}
+		GameChangeCodec.writeVarLong(out, id);
+		codec.writeString(out, name);
+		GameChangeCodec.writeVarInt(out, attributeBlocks.size());
+		for (int i = 0; i < attributeBlocks.size(); i++) {
+			OrderedHashtable attributeBlock = (OrderedHashtable) attributeBlocks.getValue(i);
+			codec.writeString(out, (String) attributeBlocks.getKey(i));
+			int count = 0;
+			for (int n = 0; n < attributeBlock.size(); n++) {
+				Object val = attributeBlock.getValue(n);
+				if (val instanceof String || val instanceof Collection) {
+					count++;
+				}
+			}
+			GameChangeCodec.writeVarInt(out, count);
+			for (int n = 0; n < attributeBlock.size(); n++) {
+				Object val = attributeBlock.getValue(n);
+				if (val instanceof String) { // attribute
+					codec.writeString(out, (String) attributeBlock.getKey(n));
+					out.writeByte(SNAPSHOT_ATTRIBUTE);
+					codec.writeString(out, (String) val);
+				}
+				else if (val instanceof Collection) { // attributeList
+					ArrayList<String> list = new ArrayList<String>();
+					for (Object listVal : (Collection) val) {
+						list.add(listVal.toString());
+					}
+					codec.writeString(out, (String) attributeBlock.getKey(n));
+					out.writeByte(SNAPSHOT_ATTRIBUTE_LIST);
+					codec.writeStringList(out, list);
+				}
+			}
+		}
+		GameChangeCodec.writeVarInt(out, hold.size());
+		for (Iterator i = hold.iterator(); i.hasNext();) {
+			GameChangeCodec.writeVarLong(out, ((GameObject) i.next()).id);
+		}
+	}
+	/**
+	 * Reads a record written by writeSnapshot.  Like setXML, the hold is only resolved once all the objects are read.
+	 */
+	void readSnapshot(GameChangeCodec codec, DataInput in) throws IOException {
+		id = GameChangeCodec.readVarLong(in);
+		reset();
+		revertNameToDefault();
+		String nameVal = codec.readString(in);
+		if (nameVal != null) {
+			setName(nameVal);
+		}
+		int blocks = GameChangeCodec.readVarInt(in);
+		for (int i = 0; i < blocks; i++) {
+			String blockName = codec.readString(in);
+			createAttributeBlock(blockName);
+			int count = GameChangeCodec.readVarInt(in);
+			for (int n = 0; n < count; n++) {
+				String key = codec.readString(in);
+				int kind = in.readByte();
+				if (kind == SNAPSHOT_ATTRIBUTE) {
+					setAttribute(blockName, key, codec.readString(in));
+				}
+				else if (kind == SNAPSHOT_ATTRIBUTE_LIST) {
+					setAttributeList(blockName, key, codec.readStringList(in));
+				}
+				else {
+					throw new StreamCorruptedException("Unknown attribute kind: " + kind);
+				}
+			}
+		}
+		int holdSize = GameChangeCodec.readVarInt(in);
+		for (int i = 0; i < holdSize; i++) {
+			hold.add(Long.valueOf(GameChangeCodec.readVarLong(in)));
+		}
+		needHoldResolved = true;
+		setModified(true);
+	}
+	/**
+	 * Streaming version of getXML(), which writes the same XML without building the Element
+	 */
+	void writeXML(GameXmlWriter out) throws IOException {
+		if (uncommitted != null) {
+			uncommitted.writeXML(out);
+			return;
+		}
+		out.startElement("GameObject");
+		out.attribute("id", "" + id);
+		out.attribute("name", name);
+		// Write attribute block info (in order!)
+		for (int i = 0; i < attributeBlocks.size(); i++) {
+			String blockName = (String) attributeBlocks.getKey(i);
+			OrderedHashtable attributeBlock = (OrderedHashtable) attributeBlocks.getValue(i);
+			out.startElement("AttributeBlock");
+			out.attribute("blockName", blockName);
+			for (int n = 0; n < attributeBlock.size(); n++) {
+				String key = (String) attributeBlock.getKey(n);
+				Object val = attributeBlock.getValue(n);
+				if (val instanceof String) { // attribute
+					out.startElement("attribute");
+					out.attribute(key, val.toString());
+					out.endElement();
+				}
+				else if (val instanceof Collection) { // attributeList
+					out.startElement("attributeList");
+					out.attribute("keyName", key);
+					int count = 0;
+					for (Iterator v = ((Collection) val).iterator(); v.hasNext();) {
+						out.startElement("attributeVal");
+						out.attribute("N" + String.valueOf(count++), v.next().toString());
+						out.endElement();
+					}
+					out.endElement();
+				}
+			}
+			out.endElement();
+		}
+		// Write contains info
+		for (Iterator i = hold.iterator(); i.hasNext();) {
+			GameObject go = (GameObject) i.next();
+			out.startElement("contains");
+			out.attribute("id", "" + go.id);
+			out.endElement();
+		}
+		out.endElement();
+	}
 
 	public String getXMLString() {
 		return outputter.outputString(getXML());
@@ -773,7 +1016,7 @@ public class GameObject extends ModifyableObject implements Serializable {
 	 }*/
 
 	public boolean hasAllKeyVals(String query) {
-		return hasAllKeyVals(GamePool.makeKeyVals(query));
+		return hasAllKeyVals(GameQuery.compile(query));
 	}
 	/**
 	 * Searches ALL attribute blocks for all keys (and optionally values) in the collection.
@@ -781,37 +1024,23 @@ public class GameObject extends ModifyableObject implements Serializable {
 	 * items from the list based on negative keys like "!key=val" and "!key".
 	 */
 	public boolean hasAllKeyVals(Collection keyVals) {
+		return hasAllKeyVals(new KeyValQuery(keyVals));
+	}
+	/**
+	 * Same as hasAllKeyVals(Collection), for a query that has already been parsed.  Objects that belong to their
+	 * GameData are answered from its attribute index.
+	 */
+	public boolean hasAllKeyVals(KeyValQuery query) {
+		if (parent != null && parent.isIndexed(this)) {
+			return parent.getAttributeIndex().matches(this,query);
+		}
 		if (uncommitted != null) {
-			return uncommitted.hasAllKeyVals(keyVals);
-		}
-		// First, cleanup the keys and keyVals
-		ArrayList fixedKeyVals = new ArrayList();
-		ArrayList fixedNegativeKeyVals = new ArrayList();
-		for (Iterator i = keyVals.iterator(); i.hasNext();) {
-			String string = (String) i.next();
-			StringTokenizer tokens = new StringTokenizer(string, "=");
-			if (tokens.countTokens() == 1) {
-				String key = tokens.nextToken().trim().toLowerCase();
-				if (key.startsWith("!")) {
-					fixedNegativeKeyVals.add(key);
-				}
-				else {
-					fixedKeyVals.add(key);
-				}
-			}
-			else if (tokens.countTokens() == 2) {
-				String key = tokens.nextToken().trim().toLowerCase();
-				String val = tokens.nextToken().trim();
-				if (key.startsWith("!")) {
-					fixedNegativeKeyVals.add(key + "=" + val);
-				}
-				else {
-					fixedKeyVals.add(key + "=" + val);
-				}
-			}
+			return uncommitted.hasAllKeyVals(query);
 		}
+		String[] positive = query.positive;
+		String[] negative = query.negative;
 
-		// Now collect prepped keyVals from the attributeBlocks
+		// Collect prepped keyVals from the attributeBlocks
 		HashSet attributes = new HashSet();
 		attributes.add("name=" + name); // name is always one of the choices
 		ArrayList absOrderedKeys = attributeBlocks.orderedKeys();
@@ -843,17 +1072,17 @@ public class GameObject extends ModifyableObject implements Serializable {
 				}
 			}
 		}
-		boolean hasAllPos = attributes.containsAll(fixedKeyVals);
-		boolean hasNoNeg = true;
-		for (Iterator i = fixedNegativeKeyVals.iterator(); i.hasNext();) {
-			String keyVal = (String) i.next();
-			if (attributes.contains(keyVal.substring(1))) {
-				hasNoNeg = false;
-				break;
+		for (int i=0;i<positive.length;i++) {
+			if (!attributes.contains(positive[i])) {
+				return false;
 			}
 		}
-
-		return (hasAllPos && hasNoNeg);
+		for (int i=0;i<negative.length;i++) {
+			if (attributes.contains(negative[i])) {
+				return false;
+			}
+		}
+		return true;
 	}
 
 	public boolean hasAttribute(String blockName, String key) {
@@ -861,7 +1090,7 @@ public class GameObject extends ModifyableObject implements Serializable {
 			return uncommitted.hasAttribute(blockName, key);
 		}
 		if (key!=null && hasAttributeBlock(blockName)) {
-			return getAttributeBlock(blockName).containsKey(key.toLowerCase());
+			return ((OrderedHashtable) attributeBlocks.get(blockName)).containsKey(AttributeSymbols.key(key));
 		}
 		return false;
 	}
@@ -884,7 +1113,7 @@ public class GameObject extends ModifyableObject implements Serializable {
 		if (uncommitted != null) {
 			return uncommitted.hasKey(key);
 		}
-		key = key.toLowerCase();
+		key = AttributeSymbols.key(key);
 		for (Enumeration e = attributeBlocks.keys(); e.hasMoreElements();) {
 			String blockName = (String) e.nextElement();
 			OrderedHashtable attributeBlock = (OrderedHashtable) attributeBlocks.get(blockName);
@@ -902,7 +1131,7 @@ public class GameObject extends ModifyableObject implements Serializable {
 		if (uncommitted != null) {
 			return uncommitted.hasKey(blockName, key);
 		}
-		key = key.toLowerCase();
+		key = AttributeSymbols.key(key);
 		OrderedHashtable attributeBlock = (OrderedHashtable) attributeBlocks.get(blockName);
 		return (attributeBlock != null && attributeBlock.containsKey(key));
 	}
@@ -957,9 +1186,10 @@ public class GameObject extends ModifyableObject implements Serializable {
 			throw new IllegalArgumentException("Cannot remove object:  non-matching parent data!");
 		}
 		if (obj.heldBy == this) {
+			checkWritable();
 			obj.heldBy = null;
 			hold.remove(obj);
-			setModified(true);
+			setHoldModified();
 			version++;
 			return true;
 		}
@@ -992,6 +1222,8 @@ public class GameObject extends ModifyableObject implements Serializable {
 	public boolean _removeAttributeBlock(String blockName) {
 		stopUncommitted();
 		if (attributeBlocks.containsKey(blockName)) {
+			checkWritable();
+			ownAttributes();
 			boolean ret = (attributeBlocks.remove(blockName) != null);
 			if (ret) {
 				setModified(true);
@@ -1005,6 +1237,8 @@ public class GameObject extends ModifyableObject implements Serializable {
 		stopUncommitted();
 		if (attributeBlocks.containsKey(from)) {
 			if (!attributeBlocks.containsKey(to)) {
+				checkWritable();
+				ownAttributes();
 				OrderedHashtable block = (OrderedHashtable)attributeBlocks.remove(from);
 				attributeBlocks.put(to,block);
 				version++;
@@ -1034,7 +1268,7 @@ public class GameObject extends ModifyableObject implements Serializable {
 	public void _copyAttributeBlockFrom(GameObject source,String blockName) {
 		stopUncommitted();
 		if (source.hasAttributeBlock(blockName)) {
-			OrderedHashtable block = source.getAttributeBlock(blockName);
+			OrderedHashtable block = (OrderedHashtable) source.peekAttributeBlocks().get(blockName);
 			for (Iterator i=block.keySet().iterator();i.hasNext();) {
 				String key = (String)i.next();
 				Object val = block.get(key);
@@ -1110,8 +1344,10 @@ public class GameObject extends ModifyableObject implements Serializable {
 	public boolean _removeAttribute(String blockName, String key) {
 		stopUncommitted();
 		if (attributeBlocks.containsKey(blockName)) {
+			checkWritable();
+			ownAttributes();
 			OrderedHashtable attributeBlock = (OrderedHashtable) attributeBlocks.get(blockName);
-			boolean ret = (attributeBlock.remove(key.toLowerCase()) != null);
+			boolean ret = (attributeBlock.remove(AttributeSymbols.key(key)) != null);
 			if (ret) {
 				setModified(true);
 				version++;
@@ -1126,6 +1362,11 @@ public class GameObject extends ModifyableObject implements Serializable {
 	}
 
 	public void reset() {
+		checkWritable();
+		if (sharedAttributes) {
+			attributeBlocks = new OrderedHashtable();
+			sharedAttributes = false;
+		}
 		attributeBlocks.clear();
 		hold.clear();
 		needHoldResolved = false;
@@ -1207,8 +1448,9 @@ if (obj==null) {
 	 */
 	public void _setAttribute(String blockName, String key, String val) {
 		stopUncommitted();
+		checkWritable();
 		OrderedHashtable attributes = createAttributeBlock(blockName);
-		attributes.put(key.toLowerCase(), val);
+		attributes.put(AttributeSymbols.key(key), AttributeSymbols.value(val));
 		setModified(true);
 		version++;
 	}
@@ -1285,8 +1527,12 @@ if (obj==null) {
 		if (uncommitted != null) {
 			return uncommitted.hasAttributeListItem(blockName, key, val);
 		}
-		Collection c = getAttributeList(blockName, key);
-		return (c != null && c.contains(val));
+		OrderedHashtable block = (OrderedHashtable) attributeBlocks.get(blockName); // no need to own the list, just to read it
+		Object c = block == null ? null : block.get(AttributeSymbols.key(key));
+		if (c != null && !(c instanceof ArrayList)) {
+			throw new IllegalArgumentException("Found string instead of list for '"+blockName+"' and '"+key+"' in GameObject "+getName());
+		}
+		return (c != null && ((ArrayList) c).contains(val));
 	}
 	
 	public void removeThisAttributeListItem(String key, String val) {
@@ -1310,6 +1556,7 @@ if (obj==null) {
 
 	public void _removeAttributeListItem(String blockName, String key, String item) {
 		stopUncommitted();
+		checkWritable();
 		ArrayList c = getAttributeList(blockName, key);
 		if (c == null) {
 			return;
@@ -1344,6 +1591,7 @@ if (obj==null) {
 
 	public void _addAttributeListItem(String blockName, String key, String item) {
 		stopUncommitted();
+		checkWritable();
 		ArrayList c = getAttributeList(blockName, key);
 		if (c == null) {
 			c = new ArrayList();
@@ -1352,7 +1600,7 @@ if (obj==null) {
 		if (item==null) {
 			throw new IllegalArgumentException("list item cannot be null for blockName "+blockName+" and key "+key);
 		}
-		c.add(item);
+		c.add(AttributeSymbols.value(item));
 
 		setModified(true);
 		version++;
@@ -1360,13 +1608,14 @@ if (obj==null) {
 
 	public void _setAttributeList(String blockName, String key, ArrayList val) {
 		stopUncommitted();
+		checkWritable();
 		OrderedHashtable attributes = createAttributeBlock(blockName);
 		for (Iterator i=val.iterator();i.hasNext();) {
 			if (i.next()==null) {
 				throw new IllegalArgumentException("list items cannot be null for blockName "+blockName+" and key "+key);
 			}
 		}
-		attributes.put(key.toLowerCase(), val);
+		attributes.put(AttributeSymbols.key(key), val);
 		setModified(true);
 		version++;
 	}
@@ -1397,6 +1646,7 @@ if (obj==null) {
 
 	public void setName(String val) {
 		if (val != null && !val.equals(name)) {
+			checkWritable();
 			// Since name is changing, so is the way it should be hashed by its parent.  Fix that!
 			if (parent!=null) {
 				parent.changingName(name,val,this);
@@ -1466,6 +1716,78 @@ if (obj==null) {
 			ex.printStackTrace();
 		}
 	}
+	/**
+	 * Streaming version of setXML(Element).  The reader should be on the GameObject start tag, and is left on its
+	 * end tag.
+	 */
+	void readXML(XMLStreamReader in) throws XMLStreamException {
+		String sid = in.getAttributeValue(null,"id");
+		try {
+			Integer n = Integer.valueOf(sid);
+			id = n.intValue();
+			reset();
+			revertNameToDefault();
+			String nameVal = in.getAttributeValue(null,"name");
+			if (nameVal != null) {
+				setName(nameVal);
+			}
+			while (GameXmlReader.nextChild(in)) {
+				String tag = in.getLocalName();
+				if ("AttributeBlock".equals(tag)) {
+					readAttributeBlockXML(in);
+				}
+				else if ("contains".equals(tag)) {
+					// for now, add ids to hold and set the flag to resolve
+					hold.add(Long.valueOf(in.getAttributeValue(null,"id")));
+					GameXmlReader.skipElement(in);
+				}
+				else {
+					GameXmlReader.skipElement(in);
+				}
+			}
+			needHoldResolved = true;
+			setModified(true);
+		}
+		catch (NumberFormatException ex) {
+			reset();
+			ex.printStackTrace();
+			while (GameXmlReader.nextChild(in)) {
+				GameXmlReader.skipElement(in);
+			}
+		}
+	}
+	private void readAttributeBlockXML(XMLStreamReader in) throws XMLStreamException {
+		String blockName = in.getAttributeValue(null,"blockName");
+		createAttributeBlock(blockName);
+		// Normal attributes go in first, just like setAttributeBlockXML, so hold on to the lists until the end
+		ArrayList<String> listKeys = new ArrayList<String>();
+		ArrayList<ArrayList> lists = new ArrayList<ArrayList>();
+		while (GameXmlReader.nextChild(in)) {
+			String tag = in.getLocalName();
+			if ("attribute".equals(tag)) {
+				setAttribute(blockName, in.getAttributeLocalName(0), in.getAttributeValue(0));
+				GameXmlReader.skipElement(in);
+			}
+			else if ("attributeList".equals(tag)) {
+				listKeys.add(in.getAttributeValue(null,"keyName"));
+				TreeMap<Integer,String> attributeHash = new TreeMap<Integer,String>();
+				while (GameXmlReader.nextChild(in)) {
+					if ("attributeVal".equals(in.getLocalName())) {
+						Integer num = Integer.valueOf(in.getAttributeLocalName(0).substring(1));
+						attributeHash.put(num, in.getAttributeValue(0));
+					}
+					GameXmlReader.skipElement(in);
+				}
+				lists.add(new ArrayList(attributeHash.values()));
+			}
+			else {
+				GameXmlReader.skipElement(in);
+			}
+		}
+		for (int i = 0; i < lists.size(); i++) {
+			setAttributeList(blockName, listKeys.get(i), lists.get(i));
+		}
+	}
 
 	public String toString() {
 		String string = (parent==null?"":(parent.getDataId()+":"))+"[" + id + "] " + name;
@@ -1576,6 +1898,21 @@ if (obj==null) {
 			go.stripKeyVals(blockName,keyVals);
 		}
 	}
+	public void setModified(boolean val) {
+		super.setModified(val);
+		if (val && parent!=null) {
+			parent.objectModified(this);
+		}
+	}
+	/**
+	 * Like setModified(true), for a change to the hold only, which leaves the attribute index alone
+	 */
+	private void setHoldModified() {
+		super.setModified(true);
+		if (parent!=null) {
+			parent.holdModified(this);
+		}
+	}
 	public boolean isModified() {
 		if (uncommitted!=null) {
 			return uncommitted.isModified();
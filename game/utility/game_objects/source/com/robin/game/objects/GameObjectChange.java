@@ -17,7 +17,7 @@
  */
 package com.robin.game.objects;
 
-import java.io.Serializable;
+import java.io.*;
 
 public abstract class GameObjectChange implements Serializable {
 	
@@ -49,6 +49,31 @@ public abstract class GameObjectChange implements Serializable {
 		id = go.getId();
 		name = go.getName();
 	}
+	/**
+	 * Only used by GameChangeCodec, which fills in the fields with readHeader and readFields
+	 */
+	protected GameObjectChange() {
+	}
+	final void writeHeader(GameChangeCodec codec,DataOutput out) throws IOException {
+		GameChangeCodec.writeVarLong(out,changeid);
+		GameChangeCodec.writeVarLong(out,version);
+		GameChangeCodec.writeVarLong(out,id);
+		codec.writeString(out,name);
+	}
+	final void readHeader(GameChangeCodec codec,DataInput in) throws IOException {
+		changeid = GameChangeCodec.readVarLong(in);
+		version = GameChangeCodec.readVarLong(in);
+		id = GameChangeCodec.readVarLong(in);
+		name = codec.readString(in);
+	}
+	/**
+	 * Subclasses with fields of their own write them here, for GameChangeCodec.  Whatever is written must be read
+	 * back, in the same order, by readFields.
+	 */
+	protected void writeFields(GameChangeCodec codec,DataOutput out) throws IOException {
+	}
+	protected void readFields(GameChangeCodec codec,DataInput in) throws IOException {
+	}
 //	public abstract boolean equals(Object o);
 //	public abstract boolean sameTypeOfChange(GameObjectChange other);
 	public boolean equals(Object o) {
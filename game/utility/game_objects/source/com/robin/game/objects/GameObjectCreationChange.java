@@ -22,6 +22,8 @@ public class GameObjectCreationChange extends GameObjectChange {
 	public GameObjectCreationChange(GameObject go) {
 		super(go);
 	}
+	GameObjectCreationChange() {
+	}
 	
 	protected void applyChange(GameData data, GameObject go) {
 		// don't actually have to do anything here! :-)
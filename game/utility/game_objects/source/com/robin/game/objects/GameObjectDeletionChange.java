@@ -22,6 +22,8 @@ public class GameObjectDeletionChange extends GameObjectChange {
 	public GameObjectDeletionChange(GameObject go) {
 		super(go);
 	}
+	GameObjectDeletionChange() {
+	}
 	
 	public void applyChange(GameData data) {
 		GameObject go = data.getGameObject(getId());
@@ -19,6 +19,14 @@ package com.robin.game.objects;
 
 import java.util.*;
 
+import com.robin.general.util.RandomNumber;
+
+/**
+ * A pool of GameObjects, that objects can be found in, and drawn from.  Random draws use a java.util.Random that is
+ * seeded from the game's RandomNumber stream (unless one is provided, like GameSetup does), so they can be
+ * reproduced from the game seed.  A random draw swaps the last object into the place of the one drawn, so it takes
+ * the same time however big the pool is.  This changes the order of the pool, which random draws don't care about.
+ */
 public class GamePool extends ArrayList {
 
 	public static final int RANDOM = 0;
@@ -29,17 +37,41 @@ public class GamePool extends ArrayList {
 	public static final String FROM_BEGINNING_NAME = "From beginning";
 	public static final String FROM_END_NAME = "From end";
 	
-	private Random random;
+	private Random random; // created on the first random draw, unless provided
 	
 	public GamePool() {
 		super();
-		random = new Random();
 	}
 	
 	public GamePool(Collection c) {
 		super();
 		addAll(c);
-		random = new Random();
+	}
+	
+	public GamePool(Collection c,Random random) {
+		this(c);
+		this.random = random;
+	}
+	
+	/**
+	 * Sets the generator used for random draws and shuffles
+	 */
+	public void setRandom(Random random) {
+		this.random = random;
+	}
+	
+	private Random getRandom() {
+		if (random==null) {
+			random = new Random(nextSeed());
+		}
+		return random;
+	}
+	
+	/**
+	 * @return		A seed drawn from the game's RandomNumber stream
+	 */
+	public static long nextSeed() {
+		return (((long)RandomNumber.getRandom(Integer.MAX_VALUE))<<31)^RandomNumber.getRandom(Integer.MAX_VALUE);
 	}
 	
 	public GameObject getGameObject(int index) {
@@ -73,12 +105,17 @@ public class GamePool extends ArrayList {
 	}
 	
 	public GameObject findFirst(String keyVals) {
-		return findFirst(makeKeyVals(keyVals));
+		return findFirst(GameQuery.compile(keyVals));
 	}
 	public GameObject findFirst(Collection keyVals) {
-		ArrayList<GameObject> list = find(keyVals);
-		if (!list.isEmpty()) {
-			return list.get(0);
+		return findFirst(new KeyValQuery(keyVals));
+	}
+	public GameObject findFirst(KeyValQuery query) {
+		for (int i=0;i<size();i++) {
+			GameObject go = (GameObject)get(i);
+			if (go.hasAllKeyVals(query)) {
+				return go;
+			}
 		}
 		return null;
 	}
@@ -87,16 +124,35 @@ public class GamePool extends ArrayList {
 	 * Locates all GameObjects that have all members of "keyVals" in their attributes
 	 */
 	public ArrayList<GameObject> find(String keyVals) {
-		return find(makeKeyVals(keyVals));
+		return find(GameQuery.compile(keyVals));
 	}
 	/**
 	 * Locates all GameObjects that have all members of "keyVals" in their attributes
 	 */
 	public ArrayList<GameObject> find(Collection keyVals) {
+		return find(new KeyValQuery(keyVals));
+	}
+	/**
+	 * Locates all GameObjects that match the query
+	 */
+	public ArrayList<GameObject> find(KeyValQuery query) {
 		ArrayList<GameObject> foundObjects = new ArrayList<GameObject>();
+		GameData data = null;
+		BitSet ids = null;
 		for (int i=0;i<size();i++) {
 			GameObject go = (GameObject)get(i);
-			if (go.hasAllKeyVals(keyVals)) {
+			GameData goData = go.getGameData();
+			if (goData!=null && goData.isIndexed(go)) {
+				// Answer from the attribute index, with a single query per GameData
+				if (goData!=data) {
+					data = goData;
+					ids = data.getAttributeIndex().find(query);
+				}
+				if (ids.get((int)go.getId())) {
+					foundObjects.add(go);
+				}
+			}
+			else if (go.hasAllKeyVals(query)) {
 				foundObjects.add(go);
 			}
 		}
@@ -117,10 +173,10 @@ public class GamePool extends ArrayList {
 	 * Locates and extracts (removes) all GameObjects that have all members of "keyVals" in their attributes
 	 */
 	public ArrayList<GameObject> extract(String keyVals) {
-		return extract(makeKeyVals(keyVals),0);
+		return extract(GameQuery.compile(keyVals),0);
 	}
 	public ArrayList<GameObject> extract(String keyVals,int limit) {
-		return extract(makeKeyVals(keyVals),limit);
+		return extract(GameQuery.compile(keyVals),limit);
 	}
 	/**
 	 * Locates and extracts (removes) all GameObjects that have all members of "keyVals" in their attributes
@@ -135,15 +191,31 @@ public class GamePool extends ArrayList {
 	 * @param limit		The maximum number of objects to extract, or if less than 1, all of them.
 	 */
 	public ArrayList<GameObject> extract(Collection keyVals,int limit) {
-		ArrayList<GameObject> extractedObjects = find(keyVals);
-		for (GameObject extracted:extractedObjects) {
-			remove(extracted);
-			if (limit>0) {
-				limit--;
-				if (limit==0) {
-					break;
+		return extract(new KeyValQuery(keyVals),limit);
+	}
+	/**
+	 * Locates and extracts (removes) all GameObjects that match the query
+	 * 
+	 * @param query		The compiled keyvals
+	 * @param limit		The maximum number of objects to extract, or if less than 1, all of them.
+	 */
+	public ArrayList<GameObject> extract(KeyValQuery query,int limit) {
+		ArrayList<GameObject> extractedObjects = find(query);
+		if (limit>0 && extractedObjects.size()>limit) {
+			extractedObjects = new ArrayList<GameObject>(extractedObjects.subList(0,limit));
+		}
+		if (!extractedObjects.isEmpty()) {
+			// Remove them all in one pass, keeping the order of the rest
+			Set<GameObject> extracted = Collections.newSetFromMap(new IdentityHashMap<GameObject,Boolean>());
+			extracted.addAll(extractedObjects);
+			int kept = 0;
+			for (int i=0;i<size();i++) {
+				Object o = get(i);
+				if (!extracted.contains(o)) {
+					set(kept++,o);
 				}
 			}
+			removeRange(kept,size());
 		}
 		return extractedObjects;
 	}
@@ -180,7 +252,7 @@ public class GamePool extends ArrayList {
 			int n;
 			switch(type) {
 				case RANDOM:
-					n = random.nextInt(size());
+					n = getRandom().nextInt(size());
 					break;
 				case FROM_BEGINNING:
 					n = 0;
@@ -191,9 +263,8 @@ public class GamePool extends ArrayList {
 				default:
 					throw new IllegalArgumentException("Invalid type given to GamePool.move(...): "+type);
 			}
-			GameObject go = getGameObject(n);
-			remove(go);
-			to.add(go);			
+			GameObject go = take(n,type);
+			to.add(go);
 			count++;
 			number--;
 		}
@@ -241,7 +312,7 @@ public class GamePool extends ArrayList {
 			int n;
 			switch(type) {
 				case RANDOM:
-					n = random.nextInt(size());
+					n = getRandom().nextInt(size());
 					break;
 				case FROM_BEGINNING:
 					n = 0;
@@ -252,8 +323,7 @@ public class GamePool extends ArrayList {
 				default:
 					throw new IllegalArgumentException("Invalid type given to GamePool.move(...): "+type);
 			}
-			GameObject go = getGameObject(n);
-			remove(go);
+			GameObject go = take(n,type);
 			
 			int distIndex = count % dist.size();
 			GameObject goAcceptor = dist.getGameObject(distIndex);
@@ -264,17 +334,34 @@ public class GamePool extends ArrayList {
 		}
 		return count;
 	}
+	/**
+	 * Removes the object at index n.  For a RANDOM draw, the last object is moved into its place.
+	 */
+	private GameObject take(int n,int type) {
+		GameObject go = getGameObject(n);
+		int last = size()-1;
+		if (n!=last) {
+			if (type!=RANDOM) {
+				remove(n);
+				return go;
+			}
+			set(n,get(last));
+		}
+		remove(last);
+		return go;
+	}
 	/**
 	 * Mixes up the pool.  Call more than once for iterative shuffles.
 	 */
 	public void shuffle() {
 		if (size()>1) {
 			// There needs to be at least 2 objects for this to even make sense!
-			int iterations = size() + random.nextInt(size());
+			Random generator = getRandom();
+			int iterations = size() + generator.nextInt(size());
 			for (int i=0;i<iterations;i++) {
-				int n1 = random.nextInt(size());
+				int n1 = generator.nextInt(size());
 				int n2;
-				while((n2=random.nextInt(size()))==n1); // find a DIFFERENT index
+				while((n2=generator.nextInt(size()))==n1); // find a DIFFERENT index
 				
 				// Swap
 				GameObject o1 = getGameObject(n1);
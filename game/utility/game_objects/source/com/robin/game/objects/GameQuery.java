@@ -17,10 +17,22 @@
  */
 package com.robin.game.objects;
 
-import java.util.ArrayList;
+import java.util.*;
 
 public class GameQuery {
 	
+	private static final int COMPILED_CACHE_SIZE = 256;
+	
+	/**
+	 * Most recently used compiled keyVal queries, by query string
+	 */
+	private static final Map<String,KeyValQuery> compiledCache = Collections.synchronizedMap(
+			new LinkedHashMap<String,KeyValQuery>(64,0.75f,true) {
+				protected boolean removeEldestEntry(Map.Entry<String,KeyValQuery> eldest) {
+					return size()>COMPILED_CACHE_SIZE;
+				}
+			});
+	
 	private String blockName;
 	
 	public GameQuery() {
@@ -82,4 +94,17 @@ public class GameQuery {
 		}
 		return ret;
 	}
+	
+	/**
+	 * Parses a keyVal query string (like "monster,!dead") into a reusable KeyValQuery.  Recently compiled queries are
+	 * cached, so it is cheap to call this with the same string over and over.
+	 */
+	public static KeyValQuery compile(String keyVals) {
+		KeyValQuery query = compiledCache.get(keyVals);
+		if (query==null) {
+			query = new KeyValQuery(keyVals);
+			compiledCache.put(keyVals,query);
+		}
+		return query;
+	}
 }
\ No newline at end of file
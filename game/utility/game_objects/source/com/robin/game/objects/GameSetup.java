@@ -38,6 +38,8 @@ public class GameSetup extends ModifyableObject implements Serializable {
 	protected GameData parent;
 	
 	protected Hashtable pools;
+	private transient Random random; // used by all the pools while a setup is processed
+	private transient HashMap<Long,GameObject> setupObjects; // the objects being setup, by id
 	
 	public GameSetup(GameData parentData) {
 		parent = parentData;
@@ -147,12 +149,37 @@ public class GameSetup extends ModifyableObject implements Serializable {
 		}
 		setModified(true);
 	}
+	/**
+	 * Runs the commands on the objects, with a seed drawn from the game's RandomNumber stream
+	 */
 	public ArrayList processSetup(StringBuffer result,ArrayList gameObjects) {
+		return processSetup(result,gameObjects,GamePool.nextSeed());
+	}
+	/**
+	 * Runs the commands on the objects.  All the pools draw from one generator with the provided seed, so the same
+	 * seed and objects always give the same setup.
+	 */
+	public ArrayList processSetup(StringBuffer result,ArrayList gameObjects,long seed) {
+		random = new Random(seed);
+		setupObjects = new HashMap<Long,GameObject>();
+		for (Object o:gameObjects) {
+			GameObject go = (GameObject)o;
+			Long id = new Long(go.getId());
+			if (!setupObjects.containsKey(id)) {
+				setupObjects.put(id,go);
+			}
+		}
 		pools = new Hashtable();
-		pools.put(ALL,new GamePool(gameObjects));
+		pools.put(ALL,new GamePool(gameObjects,random));
 		result.append("Pool ALL was created: "+gameObjects.size()+"\n");
-		for (GameCommand command:gameCommands) {
-			result.append(command.doCommand(gameObjects));
+		try {
+			for (GameCommand command:gameCommands) {
+				result.append(command.doCommand(gameObjects));
+			}
+		}
+		finally {
+			random = null;
+			setupObjects = null;
 		}
 		result.append("---DONE---");
 		ArrayList keys = new ArrayList(pools.keySet());
@@ -166,12 +193,20 @@ public class GameSetup extends ModifyableObject implements Serializable {
 	}
 	public void createPool(String poolName) {
 		if (pools.get(poolName)==null) {
-			pools.put(poolName,new GamePool());
+			GamePool pool = new GamePool();
+			pool.setRandom(random);
+			pools.put(poolName,pool);
 		}
 	}
 	public GamePool getPool(String poolName) {
 		return (GamePool)pools.get(poolName);
 	}
+	/**
+	 * @return		The object with the id from the objects being setup, or null if not processing a setup
+	 */
+	public GameObject getSetupObject(long id) {
+		return setupObjects==null?null:setupObjects.get(new Long(id));
+	}
 	public void moveObjectsBefore(ArrayList objects,GameCommand indexObject) {
 		moveObjects(objects,indexObject,true);
 	}
@@ -266,4 +301,58 @@ public class GameSetup extends ModifyableObject implements Serializable {
 		gameCommands.clear();
 		gameCommands = expanded;
 	}
+	
+	/**
+	 * Benchmark:  runs a setup from a data file the given number of times (default 2000), each time on a fresh copy
+	 * of the data with a different seed, and reports the setups per second.  Also checks that the same seed gives
+	 * the same setup.
+	 * 
+	 * Usage:  GameSetup <data file> <setup name> [keyVals] [count]
+	 */
+	public static void main(String[] args) {
+		if (args.length<2) {
+			System.out.println("Usage:  GameSetup <data file> <setup name> [keyVals] [count]");
+			return;
+		}
+		GameData master = GameData.getSharedData(args[0]);
+		ArrayList<String> keyVals = args.length>2?GamePool.makeKeyVals(args[2]):new ArrayList<String>();
+		int count = args.length>3?Integer.parseInt(args[3]):2000;
+		if (master.findSetup(args[1])==null) {
+			System.out.println("No setup named "+args[1]+" in "+args[0]);
+			return;
+		}
+		
+		String first = getSetupLayout(master,args[1],keyVals,1L);
+		if (!first.equals(getSetupLayout(master,args[1],keyVals,1L))) {
+			System.out.println("The same seed gave a different setup!");
+		}
+		for (int i=0;i<Math.min(count,100);i++) { // warm up
+			getSetupLayout(master,args[1],keyVals,i);
+		}
+		
+		long total = 0;
+		for (int i=0;i<count;i++) {
+			GameData data = master.copy();
+			ArrayList objects = new GamePool(data.getGameObjects()).find(keyVals);
+			GameSetup setup = data.findSetup(args[1]);
+			long start = System.nanoTime();
+			setup.processSetup(new StringBuffer(),objects,i);
+			total += System.nanoTime()-start;
+		}
+		double seconds = total/1000000000.0;
+		System.out.println(count+" setups in "+seconds+"s = "+(count/seconds)+" setups/second");
+	}
+	private static String getSetupLayout(GameData master,String setupName,ArrayList<String> keyVals,long seed) {
+		GameData data = master.copy();
+		data.findSetup(setupName).processSetup(new StringBuffer(),new GamePool(data.getGameObjects()).find(keyVals),seed);
+		StringBuffer sb = new StringBuffer();
+		for (GameObject go:data.getGameObjects()) {
+			sb.append(go.getId()+":");
+			for (Object held:go.getHold()) {
+				sb.append(" "+((GameObject)held).getId());
+			}
+			sb.append("\n");
+		}
+		return sb.toString();
+	}
 }
\ No newline at end of file
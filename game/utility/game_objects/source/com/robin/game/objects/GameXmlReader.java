@@ -0,0 +1,92 @@
+/* 
+ * RealmSpeak is the Java application for playing the board game Magic Realm.
+ * Copyright (c) 2005-2015 Robin Warren
+ * E-mail: robin@dewkid.com
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the
+ * implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ *
+ * http://www.gnu.org/licenses/
+ */
+package com.robin.game.objects;
+
+import java.io.InputStream;
+
+import javax.xml.stream.*;
+
+import org.jdom.Element;
+
+/**
+ * Helpers for reading game XML with a StAX cursor, so that GameObjects can be created as their elements are parsed
+ * rather than after a JDOM Document of the whole file has been built.
+ */
+final class GameXmlReader {
+	
+	private static final XMLInputFactory factory = createFactory();
+	
+	private GameXmlReader() {
+	}
+	private static XMLInputFactory createFactory() {
+		XMLInputFactory f = XMLInputFactory.newInstance();
+		f.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES,Boolean.FALSE);
+		f.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE,Boolean.FALSE);
+		return f;
+	}
+	/**
+	 * @return		A reader positioned on the root element
+	 */
+	public static XMLStreamReader open(InputStream stream) throws XMLStreamException {
+		XMLStreamReader in;
+		synchronized(factory) {
+			in = factory.createXMLStreamReader(stream);
+		}
+		in.nextTag();
+		return in;
+	}
+	/**
+	 * Advances to the next child of the current element.
+	 * 
+	 * @return		true if the reader is now on the child's start tag, or false if it is on the parent's end tag
+	 */
+	public static boolean nextChild(XMLStreamReader in) throws XMLStreamException {
+		while(in.hasNext()) {
+			int event = in.next();
+			if (event==XMLStreamConstants.START_ELEMENT) {
+				return true;
+			}
+			if (event==XMLStreamConstants.END_ELEMENT) {
+				return false;
+			}
+		}
+		throw new XMLStreamException("Unexpected end of document");
+	}
+	/**
+	 * Skips the current element and everything in it, leaving the reader on its end tag
+	 */
+	public static void skipElement(XMLStreamReader in) throws XMLStreamException {
+		while(nextChild(in)) {
+			skipElement(in);
+		}
+	}
+	/**
+	 * Reads the current element (attributes and child elements only) into a JDOM Element, leaving the reader on
+	 * its end tag.  Only meant for the small parts of the file, like the setups.
+	 */
+	public static Element readElement(XMLStreamReader in) throws XMLStreamException {
+		Element element = new Element(in.getLocalName());
+		for (int i=0;i<in.getAttributeCount();i++) {
+			element.setAttribute(in.getAttributeLocalName(i),in.getAttributeValue(i));
+		}
+		while(nextChild(in)) {
+			element.addContent(readElement(in));
+		}
+		return element;
+	}
+}
@@ -0,0 +1,117 @@
+/* 
+ * RealmSpeak is the Java application for playing the board game Magic Realm.
+ * Copyright (c) 2005-2015 Robin Warren
+ * E-mail: robin@dewkid.com
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the
+ * implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ *
+ * http://www.gnu.org/licenses/
+ */
+package com.robin.game.objects;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Iterator;
+
+import org.jdom.Attribute;
+import org.jdom.Element;
+import org.jdom.output.Format;
+import org.jdom.output.XMLOutputter;
+
+/**
+ * Writes game XML straight to a stream, one element at a time, instead of building a JDOM tree first.  The output
+ * is byte for byte what XMLOutputter produces for the same tree with Format.getPrettyFormat(), so files written
+ * this way can still be read by anything that reads the old files (and vice versa).
+ */
+final class GameXmlWriter {
+	
+	private static final Format FORMAT = Format.getPrettyFormat();
+	
+	private Writer out;
+	private XMLOutputter escaper;
+	private String lineSeparator;
+	private String indent;
+	
+	private ArrayList<String> openElements;
+	private boolean startTagOpen; // true when the last element's start tag has not been closed with a '>' yet
+	
+	public GameXmlWriter(OutputStream stream) throws IOException {
+		out = new BufferedWriter(new OutputStreamWriter(stream,FORMAT.getEncoding()));
+		escaper = new XMLOutputter(FORMAT);
+		lineSeparator = FORMAT.getLineSeparator();
+		indent = FORMAT.getIndent();
+		openElements = new ArrayList<String>();
+		startTagOpen = false;
+	}
+	public void startElement(String name) throws IOException {
+		if (startTagOpen) {
+			out.write('>');
+		}
+		if (!openElements.isEmpty()) {
+			out.write(lineSeparator);
+			writeIndent(openElements.size());
+		}
+		out.write('<');
+		out.write(name);
+		openElements.add(name);
+		startTagOpen = true;
+	}
+	public void attribute(String name,String value) throws IOException {
+		if (!startTagOpen) {
+			throw new IllegalStateException("Attributes must be written before any content");
+		}
+		out.write(' ');
+		out.write(name);
+		out.write("=\"");
+		out.write(escaper.escapeAttributeEntities(value));
+		out.write('"');
+	}
+	public void endElement() throws IOException {
+		String name = openElements.remove(openElements.size()-1);
+		if (startTagOpen) {
+			out.write(" />");
+			startTagOpen = false;
+		}
+		else {
+			out.write(lineSeparator);
+			writeIndent(openElements.size());
+			out.write("</");
+			out.write(name);
+			out.write('>');
+		}
+	}
+	/**
+	 * Writes a (small) JDOM element and its child elements.  Text content is not written, since none of the game
+	 * elements use any.
+	 */
+	public void element(Element element) throws IOException {
+		startElement(element.getName());
+		for (Iterator i=element.getAttributes().iterator();i.hasNext();) {
+			Attribute att = (Attribute)i.next();
+			attribute(att.getName(),att.getValue());
+		}
+		for (Iterator i=element.getChildren().iterator();i.hasNext();) {
+			element((Element)i.next());
+		}
+		endElement();
+	}
+	public void flush() throws IOException {
+		if (!openElements.isEmpty()) {
+			throw new IllegalStateException("Unclosed element: "+openElements.get(openElements.size()-1));
+		}
+		out.flush();
+	}
+	private void writeIndent(int level) throws IOException {
+		for (int i=0;i<level;i++) {
+			out.write(indent);
+		}
+	}
+}
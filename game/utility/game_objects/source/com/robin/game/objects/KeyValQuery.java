@@ -0,0 +1,141 @@
+/* 
+ * RealmSpeak is the Java application for playing the board game Magic Realm.
+ * Copyright (c) 2005-2015 Robin Warren
+ * E-mail: robin@dewkid.com
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the
+ * implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ *
+ * http://www.gnu.org/licenses/
+ */
+package com.robin.game.objects;
+
+import java.util.*;
+
+/**
+ * A keyVal query (like "monster,!dead,vulnerability=H") that has been parsed once into its cleaned up terms, so it
+ * can be matched against any number of objects without being tokenized again.  Instances are immutable and can be
+ * shared freely - use GameQuery.compile(String) to get a cached instance for a query string.
+ * 
+ * Matching is the same as it has always been for hasAllKeyVals:  an object matches when it has all the positive terms
+ * and none of the negative ("!key" or "!key=val") terms.
+ */
+public final class KeyValQuery {
+	
+	final String[] positive;
+	final String[] negative; // stored without the leading '!'
+	private final String source;
+	
+	public KeyValQuery(String keyVals) {
+		this(GamePool.makeKeyVals(keyVals));
+	}
+	public KeyValQuery(Collection keyVals) {
+		ArrayList<String> pos = new ArrayList<String>();
+		ArrayList<String> neg = new ArrayList<String>();
+		for (Iterator i = keyVals.iterator(); i.hasNext();) {
+			String term = cleanTerm((String) i.next());
+			if (term!=null) {
+				if (term.startsWith("!")) {
+					neg.add(term.substring(1));
+				}
+				else {
+					pos.add(term);
+				}
+			}
+		}
+		positive = pos.toArray(new String[pos.size()]);
+		negative = neg.toArray(new String[neg.size()]);
+		source = buildSource(positive,negative);
+	}
+	private KeyValQuery(String[] positive,String[] negative) {
+		this.positive = positive;
+		this.negative = negative;
+		this.source = buildSource(positive,negative);
+	}
+	
+	/**
+	 * Keys are trimmed and lowercased, values are trimmed.  Anything with more than one '=' is ignored.
+	 */
+	private static String cleanTerm(String string) {
+		StringTokenizer tokens = new StringTokenizer(string, "=");
+		if (tokens.countTokens() == 1) {
+			return tokens.nextToken().trim().toLowerCase();
+		}
+		else if (tokens.countTokens() == 2) {
+			String key = tokens.nextToken().trim().toLowerCase();
+			String val = tokens.nextToken().trim();
+			return key + "=" + val;
+		}
+		return null;
+	}
+	
+	private static String buildSource(String[] positive,String[] negative) {
+		StringBuffer sb = new StringBuffer();
+		for (int i=0;i<positive.length;i++) {
+			if (sb.length()>0) sb.append(",");
+			sb.append(positive[i]);
+		}
+		for (int i=0;i<negative.length;i++) {
+			if (sb.length()>0) sb.append(",");
+			sb.append("!");
+			sb.append(negative[i]);
+		}
+		return sb.toString();
+	}
+	
+	public boolean matches(GameObject go) {
+		return go.hasAllKeyVals(this);
+	}
+	
+	/**
+	 * @return		A new query that requires everything this query and the other query require
+	 */
+	public KeyValQuery and(KeyValQuery other) {
+		String[] pos = new String[positive.length+other.positive.length];
+		System.arraycopy(positive,0,pos,0,positive.length);
+		System.arraycopy(other.positive,0,pos,positive.length,other.positive.length);
+		String[] neg = new String[negative.length+other.negative.length];
+		System.arraycopy(negative,0,neg,0,negative.length);
+		System.arraycopy(other.negative,0,neg,negative.length,other.negative.length);
+		return new KeyValQuery(pos,neg);
+	}
+	
+	public boolean isEmpty() {
+		return positive.length==0 && negative.length==0;
+	}
+	
+	/**
+	 * @return		The cleaned up terms, negative terms with their leading '!'
+	 */
+	public ArrayList<String> getTerms() {
+		ArrayList<String> terms = new ArrayList<String>();
+		terms.addAll(Arrays.asList(positive));
+		for (int i=0;i<negative.length;i++) {
+			terms.add("!"+negative[i]);
+		}
+		return terms;
+	}
+	
+	public boolean equals(Object o) {
+		if (o instanceof KeyValQuery) {
+			KeyValQuery other = (KeyValQuery)o;
+			return Arrays.equals(positive,other.positive) && Arrays.equals(negative,other.negative);
+		}
+		return false;
+	}
+	
+	public int hashCode() {
+		return Arrays.hashCode(positive)*31 + Arrays.hashCode(negative);
+	}
+	
+	public String toString() {
+		return source;
+	}
+}
@@ -0,0 +1,107 @@
+/* 
+ * RealmSpeak is the Java application for playing the board game Magic Realm.
+ * Copyright (c) 2005-2015 Robin Warren
+ * E-mail: robin@dewkid.com
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the
+ * implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ *
+ * http://www.gnu.org/licenses/
+ */
+package com.robin.game.objects;
+
+/**
+ * Typed slots for the int attributes of a single GameObject.  The String in the attribute block is still the real
+ * value:  each slot remembers the exact String instance it was parsed from, so any change to the attribute (even one
+ * made directly to the block) makes the slot miss and reparse.  Slots are addressed by the interned block and key
+ * symbols, so a lookup never allocates.
+ */
+final class TypedAttributeSlots {
+	
+	private static final int INITIAL_CAPACITY = 8; // must be a power of 2
+	
+	private long[] symbols;
+	private String[] sources;
+	private int[] values;
+	private int count;
+	
+	TypedAttributeSlots() {
+		symbols = new long[INITIAL_CAPACITY];
+		sources = new String[INITIAL_CAPACITY];
+		values = new int[INITIAL_CAPACITY];
+		count = 0;
+	}
+	
+	/**
+	 * @return		The int value of source, parsing it only if the slot doesn't already hold this exact String.
+	 */
+	synchronized int getInt(String blockName,String key,String source) throws NumberFormatException {
+		int blockSymbol = AttributeSymbols.symbol(blockName);
+		int keySymbol = AttributeSymbols.symbol(key);
+		if (blockSymbol==AttributeSymbols.NO_SYMBOL || keySymbol==AttributeSymbols.NO_SYMBOL) {
+			return Integer.parseInt(source);
+		}
+		long symbol = (((long)blockSymbol)<<32) | keySymbol;
+		int mask = symbols.length-1;
+		int n = hash(symbol) & mask;
+		while(sources[n]!=null) {
+			if (symbols[n]==symbol) {
+				if (sources[n]!=source) {
+					values[n] = Integer.parseInt(source);
+					sources[n] = source;
+				}
+				return values[n];
+			}
+			n = (n+1) & mask;
+		}
+		int val = Integer.parseInt(source);
+		symbols[n] = symbol;
+		sources[n] = source;
+		values[n] = val;
+		count++;
+		if (count*2>symbols.length) {
+			grow();
+		}
+		return val;
+	}
+	
+	synchronized void clear() {
+		for (int i=0;i<sources.length;i++) {
+			sources[i] = null;
+		}
+		count = 0;
+	}
+	
+	private void grow() {
+		long[] oldSymbols = symbols;
+		String[] oldSources = sources;
+		int[] oldValues = values;
+		symbols = new long[oldSymbols.length*2];
+		sources = new String[oldSources.length*2];
+		values = new int[oldValues.length*2];
+		int mask = symbols.length-1;
+		for (int i=0;i<oldSources.length;i++) {
+			if (oldSources[i]!=null) {
+				int n = hash(oldSymbols[i]) & mask;
+				while(sources[n]!=null) {
+					n = (n+1) & mask;
+				}
+				symbols[n] = oldSymbols[i];
+				sources[n] = oldSources[i];
+				values[n] = oldValues[i];
+			}
+		}
+	}
+	
+	private static int hash(long symbol) {
+		int h = (int)(symbol ^ (symbol>>>32)) * 0x9E3779B9;
+		return h ^ (h>>>16);
+	}
+}
@@ -0,0 +1,142 @@
+/* 
+ * RealmSpeak is the Java application for playing the board game Magic Realm.
+ * Copyright (c) 2005-2015 Robin Warren
+ * E-mail: robin@dewkid.com
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the
+ * implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ *
+ * http://www.gnu.org/licenses/
+ */
+package com.robin.game.objects;
+
+import java.io.*;
+import java.util.ArrayList;
+
+import org.junit.*;
+
+public class GameChangeCodecTest {
+	GameData hostData;
+	GameData clientData;
+	
+	/**
+	 * Sets up the test fixture. (Called before every test case method.)
+	 */
+	@Before
+	public void setUp() {
+		hostData = new GameData();
+		clientData = new GameData();
+		
+		GameObject wolf = hostData.createNewObject();
+		wolf.setName("Wolf");
+		wolf.setThisKeyVals("monster,vulnerability=M");
+		wolf.setAttribute("light","move_speed","4");
+		GameObject tile = hostData.createNewObject();
+		tile.setName("Borderland");
+		tile.setThisKeyVals("tile");
+		ArrayList<String> clearings = new ArrayList<String>();
+		clearings.add("1");
+		clearings.add("2");
+		tile.setAttributeList("normal","clearings",clearings);
+		tile.add(wolf);
+	}
+	
+	private byte[] write(GameChangeCodec codec,ArrayList changes) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ObjectOutputStream out = new ObjectOutputStream(bytes);
+		codec.writeChanges(out,changes);
+		out.close();
+		return bytes.toByteArray();
+	}
+	
+	private ArrayList<GameObjectChange> read(GameChangeCodec codec,byte[] bytes) throws Exception {
+		ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes));
+		return codec.readChanges(in);
+	}
+	
+	@Test
+	public void testRoundTrip() throws Exception {
+		// SETUP
+		ArrayList changes = clientData.buildChanges(hostData);
+		
+		// EXECUTE
+		ArrayList<GameObjectChange> received = read(new GameChangeCodec(),write(new GameChangeCodec(),changes));
+		for (GameObjectChange change:received) {
+			change.applyChange(clientData);
+		}
+		
+		// VERIFY
+		Assert.assertEquals(changes.size(),received.size());
+		Assert.assertEquals(0,clientData.buildChanges(hostData).size());
+		GameObject tile = clientData.getGameObjectByName("Borderland");
+		Assert.assertEquals(2,tile.getAttributeList("normal","clearings").size());
+		Assert.assertEquals(1,tile.getHoldCount());
+		Assert.assertEquals(4,clientData.getGameObjectByName("Wolf").getInt("light","move_speed"));
+	}
+	
+	@Test
+	public void testAllChangeTypes() throws Exception {
+		// SETUP
+		GameObject wolf = hostData.getGameObjectByName("Wolf");
+		GameObject tile = hostData.getGameObjectByName("Borderland");
+		ArrayList<GameObjectChange> changes = new ArrayList<GameObjectChange>();
+		GameAttributeChange attributeChange = new GameAttributeChange(wolf);
+		attributeChange.deleteAttribute("light","move_speed");
+		changes.add(attributeChange);
+		GameAttributeListChange listChange = new GameAttributeListChange(tile);
+		listChange.removeAttributeListItem("normal","clearings","2");
+		changes.add(listChange);
+		GameHoldRemoveChange holdChange = new GameHoldRemoveChange(tile);
+		holdChange.setHoldId(wolf.getId());
+		changes.add(holdChange);
+		GameAttributeBlockChange blockChange = new GameAttributeBlockChange(wolf);
+		blockChange.copyFrom(tile,"normal");
+		changes.add(blockChange);
+		GameAttributeBlockChange renameChange = new GameAttributeBlockChange(wolf);
+		renameChange.rename("light","dark");
+		changes.add(renameChange);
+		changes.add(new GameBumpVersionChange(wolf));
+		changes.add(new GameObjectDeletionChange(tile));
+		ArrayList<String> expected = new ArrayList<String>();
+		for (GameObjectChange change:changes) {
+			expected.add(change.getClass().getName()+" "+change);
+		}
+		
+		// EXECUTE
+		ArrayList<GameObjectChange> received = read(new GameChangeCodec(),write(new GameChangeCodec(),new ArrayList(changes)));
+		
+		// VERIFY
+		for (int i=0;i<changes.size();i++) {
+			GameObjectChange change = received.get(i);
+			Assert.assertEquals(expected.get(i),change.getClass().getName()+" "+change);
+			Assert.assertEquals(changes.get(i),change);
+		}
+	}
+	
+	@Test
+	public void testDictionaryShrinksRepeatedStrings() throws Exception {
+		// SETUP
+		GameChangeCodec writer = new GameChangeCodec();
+		GameChangeCodec reader = new GameChangeCodec();
+		
+		// EXECUTE
+		byte[] first = write(writer,clientData.buildChanges(hostData));
+		byte[] second = write(writer,clientData.buildChanges(hostData));
+		read(reader,first);
+		ArrayList<GameObjectChange> received = read(reader,second);
+		
+		// VERIFY
+		Assert.assertTrue(second.length<first.length);
+		for (GameObjectChange change:received) {
+			change.applyChange(clientData);
+		}
+		Assert.assertEquals(0,clientData.buildChanges(hostData).size());
+	}
+}
@@ -0,0 +1,191 @@
+/* 
+ * RealmSpeak is the Java application for playing the board game Magic Realm.
+ * Copyright (c) 2005-2015 Robin Warren
+ * E-mail: robin@dewkid.com
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the
+ * implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ *
+ * http://www.gnu.org/licenses/
+ */
+package com.robin.game.objects;
+
+import java.util.*;
+
+import org.junit.*;
+
+public class GameChangeCompactorTest {
+	GameData compacted;
+	GameData plain;
+	
+	/**
+	 * Sets up the test fixture. (Called before every test case method.)
+	 */
+	@Before
+	public void setUp() {
+		compacted = createData();
+		plain = createData();
+	}
+	
+	private static GameData createData() {
+		GameData data = new GameData();
+		for (int i=0;i<6;i++) {
+			GameObject go = data.createNewObject();
+			go.setName("Object "+i);
+			go.setThisAttribute("index",i);
+		}
+		data.getGameObject(0L).add(data.getGameObject(1L));
+		data.setTracksChanges(true);
+		return data;
+	}
+	
+	/**
+	 * Applies the changes one at a time, the way commit did before compaction
+	 */
+	private static void commitWithoutCompacting(GameData data) {
+		ArrayList<GameObjectChange> changes = new ArrayList<GameObjectChange>(data.getObjectChanges());
+		data.getObjectChanges().clear();
+		for (GameObjectChange change:changes) {
+			change.applyChange(data);
+		}
+	}
+	
+	private static void assertSameState(GameData expected,GameData actual) {
+		for (GameObject go:expected.getGameObjects()) {
+			GameObject other = actual.getGameObject(go.getId());
+			Assert.assertEquals(go.getName(),new HashSet(go.getAttributeBlockNames()),new HashSet(other.getAttributeBlockNames()));
+			for (Object blockName:go.getAttributeBlockNames()) {
+				Assert.assertEquals(go.getName(),go.getAttributeBlock((String)blockName),other.getAttributeBlock((String)blockName));
+			}
+			Assert.assertEquals(go.getName(),go.getHold(),other.getHold());
+			Assert.assertEquals(go.getName(),go.getHeldBy(),other.getHeldBy());
+		}
+	}
+	
+	@Test
+	public void testRedundantChanges() {
+		// SETUP
+		for (GameData data:new GameData[] {compacted,plain}) {
+			GameObject go = data.getGameObject(2L);
+			for (int i=0;i<10;i++) {
+				go.setThisAttribute("count",i);
+			}
+			go.addThisAttributeListItem("items","a");
+			go.addThisAttributeListItem("items","b");
+			go.removeThisAttributeListItem("items","a");
+			data.getGameObject(3L).add(data.getGameObject(4L));
+			data.getGameObject(3L).remove(data.getGameObject(4L));
+		}
+		int before = compacted.getChangeCount();
+		
+		// EXECUTE
+		int removed = compacted.compactChanges();
+		long after = compacted.getChangesAfterCompaction();
+		compacted.commit();
+		commitWithoutCompacting(plain);
+		
+		// VERIFY
+		Assert.assertTrue(removed>=10);
+		Assert.assertEquals(before-removed,after);
+		Assert.assertEquals("9",compacted.getGameObject(2L).getThisAttribute("count"));
+		Assert.assertEquals(Arrays.asList("b"),compacted.getGameObject(2L).getThisAttributeList("items"));
+		Assert.assertEquals(0,compacted.getGameObject(3L).getHoldCount());
+		assertSameState(plain,compacted);
+	}
+	
+	@Test
+	public void testRemoveKeepsBlock() {
+		// SETUP
+		for (GameData data:new GameData[] {compacted,plain}) {
+			GameObject go = data.getGameObject(2L);
+			go.setAttribute("new_block","key","val");
+			go.removeAttribute("new_block","key");
+		}
+		
+		// EXECUTE
+		compacted.commit();
+		commitWithoutCompacting(plain);
+		
+		// VERIFY
+		Assert.assertTrue(compacted.getGameObject(2L).hasAttributeBlock("new_block"));
+		assertSameState(plain,compacted);
+	}
+	
+	@Test
+	public void testRandomChanges() {
+		for (int round=0;round<20;round++) {
+			setUp();
+			Random compactedRandom = new Random(round);
+			Random plainRandom = new Random(round);
+			for (int n=0;n<200;n++) {
+				makeRandomChange(compacted,compactedRandom);
+				makeRandomChange(plain,plainRandom);
+			}
+			compacted.commit();
+			commitWithoutCompacting(plain);
+			assertSameState(plain,compacted);
+		}
+		Assert.assertTrue(compacted.getChangesAfterCompaction()<compacted.getChangesBeforeCompaction());
+	}
+	
+	private static void makeRandomChange(GameData data,Random random) {
+		GameObject go = data.getGameObject((long)random.nextInt(6));
+		String block = random.nextInt(4)==0?"other":"this";
+		String key = "key"+random.nextInt(3);
+		String value = "v"+random.nextInt(4);
+		switch(random.nextInt(9)) {
+			case 0:
+				go.setAttribute(block,key,value);
+				break;
+			case 1:
+				go.removeAttribute(block,key);
+				break;
+			case 2:
+			case 3:
+				if (!(go.getObject(block,key) instanceof String)) {
+					go.addAttributeListItem(block,key,value);
+				}
+				break;
+			case 4:
+				if (go.getObject(block,key) instanceof ArrayList) {
+					go.removeAttributeListItem(block,key,value);
+				}
+				break;
+			case 5:
+				ArrayList<String> list = new ArrayList<String>();
+				for (int i=random.nextInt(3);i>0;i--) {
+					list.add("v"+random.nextInt(4));
+				}
+				if (!(go.getObject(block,key) instanceof String)) {
+					go.setAttributeList(block,key,list);
+				}
+				break;
+			case 6:
+				GameObject other = data.getGameObject((long)random.nextInt(6));
+				if (other!=go && go.getHeldBy()==null && other.getHeldBy()==null && other.getHoldCount()==0) {
+					go.add(other);
+				}
+				break;
+			case 7:
+				if (go.getHoldCount()>0) {
+					go.remove((GameObject)go.getHold().get(random.nextInt(go.getHoldCount())));
+				}
+				break;
+			case 8:
+				if (random.nextInt(4)==0) {
+					go.removeAttributeBlock("other");
+				}
+				else {
+					go.bumpVersion();
+				}
+				break;
+		}
+	}
+}
@@ -0,0 +1,72 @@
+/* 
+ * RealmSpeak is the Java application for playing the board game Magic Realm.
+ * Copyright (c) 2005-2015 Robin Warren
+ * E-mail: robin@dewkid.com
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the
+ * implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ *
+ * http://www.gnu.org/licenses/
+ */
+package com.robin.game.objects;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+
+import org.junit.*;
+
+public class GameDataTest {
+	
+	private static class Derived {
+		GameData data; // attachments usually point back at their data
+		Derived(GameData data) {
+			this.data = data;
+		}
+	}
+	
+	@Test
+	public void testAttachments() {
+		GameData one = new GameData("one");
+		GameData two = new GameData("two");
+		Assert.assertNull(one.getAttachment(Derived.class));
+		
+		Derived derivedOne = new Derived(one);
+		Derived derivedTwo = new Derived(two);
+		Assert.assertNull(one.setAttachment(Derived.class,derivedOne));
+		two.setAttachment(Derived.class,derivedTwo);
+		two.setAttachment("other","value");
+		Assert.assertSame(derivedOne,one.getAttachment(Derived.class));
+		Assert.assertSame(derivedTwo,two.getAttachment(Derived.class));
+		Assert.assertNull(one.copy().getAttachment(Derived.class));
+		
+		Assert.assertSame(derivedOne,one.setAttachment(Derived.class,null));
+		Assert.assertNull(one.getAttachment(Derived.class));
+		
+		ArrayList<Object> removed = GameData.removeAllAttachments(Derived.class);
+		Assert.assertTrue(removed.contains(derivedTwo));
+		Assert.assertFalse(removed.contains(derivedOne));
+		Assert.assertNull(two.getAttachment(Derived.class));
+		Assert.assertEquals("value",two.getAttachment("other"));
+	}
+	
+	@Test
+	public void testAttachmentsDontKeepDataAlive() throws InterruptedException {
+		GameData data = new GameData("discarded");
+		data.createNewObject().setName("Something");
+		data.setAttachment(Derived.class,new Derived(data));
+		WeakReference<GameData> ref = new WeakReference<GameData>(data);
+		data = null;
+		for (int i=0;i<50 && ref.get()!=null;i++) {
+			System.gc();
+			Thread.sleep(10);
+		}
+		Assert.assertNull(ref.get());
+	}
+}
@@ -65,4 +65,75 @@ public class GameObjectTest {
 		Assert.assertTrue(one.allAttributesMatch(two));
 		Assert.assertFalse(one.allAttributesMatch(three));
 	}
-}
\ No newline at end of file
+	
+	@Test
+	public void testIntAttributeFollowsChanges() {
+		GameObject go = GameObject.createEmptyGameObject();
+		go.setThisAttribute("Speed",4);
+		Assert.assertEquals(4,go.getThisInt("speed"));
+		Assert.assertEquals(4,go.getThisInt("SPEED"));
+		
+		go.setThisAttribute("speed",5);
+		Assert.assertEquals(5,go.getThisInt("speed"));
+		
+		// Changes made directly to the block (under the hood) must be seen too
+		go.getThisAttributeBlock().put("speed","6");
+		Assert.assertEquals(6,go.getThisInt("speed"));
+		Assert.assertEquals(Integer.valueOf(6),go.getInteger("this","speed"));
+		
+		go.removeThisAttribute("speed");
+		Assert.assertEquals(0,go.getThisInt("speed"));
+		Assert.assertNull(go.getInteger("this","speed"));
+	}
+	
+	@Test
+	public void testKeysAreShared() {
+		GameObject one = GameObject.createEmptyGameObject();
+		GameObject two = GameObject.createEmptyGameObject();
+		one.setThisAttribute(new String("Monster"),new String("light"));
+		two.setThisAttribute(new String("monster"),new String("light"));
+		
+		Object keyOne = one.getThisAttributeBlock().orderedKeys().get(0);
+		Object keyTwo = two.getThisAttributeBlock().orderedKeys().get(0);
+		Assert.assertEquals("monster",keyOne);
+		Assert.assertSame(keyOne,keyTwo);
+		Assert.assertSame(one.getThisAttribute("monster"),two.getThisAttribute("MONSTER"));
+	}
+	
+	@Test
+	public void testCopiesShareAttributesUntilChanged() {
+		GameData master = new GameData("Test Game");
+		GameObject wolf = master.createNewObject();
+		wolf.setName("Wolf");
+		wolf.setThisAttribute("monster");
+		wolf.setAttribute("light","move_speed","4");
+		GameObject tile = master.createNewObject();
+		tile.setName("Borderland");
+		tile.add(wolf);
+		master.setReadOnly(true);
+		
+		GameData one = master.copy();
+		GameData two = master.copy();
+		Assert.assertEquals(0,master.buildChanges(one).size());
+		
+		GameObject wolfOne = one.getGameObject(wolf.getId());
+		wolfOne.setAttribute("light","move_speed","5");
+		wolfOne.getAttributeBlock("dark").put("move_speed","3"); // under the hood
+		Assert.assertEquals("5",wolfOne.getAttribute("light","move_speed"));
+		Assert.assertEquals("4",wolf.getAttribute("light","move_speed"));
+		Assert.assertEquals("4",two.getGameObject(wolf.getId()).getAttribute("light","move_speed"));
+		Assert.assertFalse(wolf.hasAttributeBlock("dark"));
+		
+		Assert.assertEquals(2,master.buildChanges(one).size());
+		Assert.assertEquals(0,master.buildChanges(two).size());
+		
+		try {
+			wolf.setAttribute("light","move_speed","6");
+			Assert.fail("Read only data was changed");
+		}
+		catch(IllegalStateException ex) {
+			// expected
+		}
+		Assert.assertEquals("4",wolf.getAttribute("light","move_speed"));
+	}
+}
@@ -0,0 +1,263 @@
+/* 
+ * RealmSpeak is the Java application for playing the board game Magic Realm.
+ * Copyright (c) 2005-2015 Robin Warren
+ * E-mail: robin@dewkid.com
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the
+ * implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ *
+ * http://www.gnu.org/licenses/
+ */
+package com.robin.game.objects;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import org.jdom.Element;
+
+import org.junit.*;
+
+public class GamePoolTest {
+	GameData gameData;
+	
+	@BeforeClass
+	public static void oneTimeSetUp() {
+		// one-time initialization code
+	}
+
+	@AfterClass
+	public static void oneTimeTearDown() {
+		// one-time cleanup code
+	}
+
+	/**
+	 * Sets up the test fixture. (Called before every test case method.)
+	 */
+	@Before
+	public void setUp() {
+		gameData = new GameData();
+	}
+
+	/**
+	 * Tears down the test fixture. (Called after every test case method.)
+	 */
+	@After
+	public void tearDown() {
+	}
+	
+	private GameObject createGameObject(String name,String keyVals) {
+		GameObject go = gameData.createNewObject();
+		go.setName(name);
+		go.setThisKeyVals(keyVals);
+		return go;
+	}
+	
+	@Test
+	public void testFind() {
+		// SETUP
+		GameObject wolf = createGameObject("Wolf","monster,vulnerability=M");
+		GameObject ogre = createGameObject("Ogre","monster,vulnerability=H");
+		GameObject knight = createGameObject("Knight","native,vulnerability=H");
+		ogre.setAttributeList("side","tags",new ArrayList<String>());
+		ogre.addAttributeListItem("side","tags","big");
+		
+		// EXECUTE
+		GamePool pool = new GamePool(gameData.getGameObjects());
+		
+		// VERIFY
+		Assert.assertEquals(2,pool.find("monster").size());
+		Assert.assertEquals(ogre,pool.findFirst("monster,!vulnerability=M"));
+		Assert.assertEquals(knight,pool.findFirst("VULNERABILITY=H,!monster"));
+		Assert.assertEquals(ogre,pool.findFirst("tags=big"));
+		Assert.assertEquals(wolf,pool.findFirst("name=Wolf"));
+		Assert.assertEquals(3,pool.find("").size());
+		Assert.assertEquals(0,pool.find("dragon").size());
+	}
+	
+	@Test
+	public void testFindFollowsChanges() {
+		// SETUP
+		GameObject wolf = createGameObject("Wolf","monster");
+		GameObject ogre = createGameObject("Ogre","monster");
+		GamePool pool = new GamePool(gameData.getGameObjects());
+		Assert.assertEquals(0,pool.find("monster,dead").size());
+		
+		// EXECUTE
+		wolf.setThisAttribute("dead");
+		ogre.setName("Giant");
+		
+		// VERIFY
+		Assert.assertEquals(wolf,pool.findFirst("monster,dead"));
+		Assert.assertEquals(ogre,pool.findFirst("name=Giant"));
+		Assert.assertNull(pool.findFirst("name=Ogre"));
+		
+		wolf.removeThisAttribute("dead");
+		Assert.assertEquals(0,pool.find("dead").size());
+	}
+	
+	@Test
+	public void testFindSeesUncommittedChanges() {
+		// SETUP
+		GameObject wolf = createGameObject("Wolf","monster");
+		GamePool pool = new GamePool(gameData.getGameObjects());
+		Assert.assertEquals(0,pool.find("dead").size());
+		gameData.setTracksChanges(true);
+		
+		// EXECUTE
+		wolf.setThisAttribute("dead");
+		
+		// VERIFY
+		Assert.assertEquals(wolf,pool.findFirst("dead"));
+		gameData.rollback();
+		Assert.assertEquals(0,pool.find("dead").size());
+		
+		wolf.setThisAttribute("dead");
+		gameData.commit();
+		Assert.assertEquals(wolf,pool.findFirst("dead"));
+	}
+	
+	@Test
+	public void testFindCopiedObjects() {
+		// SETUP
+		GameObject wolf = createGameObject("Wolf","monster");
+		GameObject copy = new GameObject(gameData);
+		copy.copyFrom(wolf);
+		copy.setThisAttribute("dead");
+		
+		// EXECUTE
+		GamePool pool = new GamePool();
+		pool.add(wolf);
+		pool.add(copy);
+		
+		// VERIFY
+		Assert.assertEquals(2,pool.find("monster").size());
+		Assert.assertEquals(copy,pool.find("dead").get(0));
+		Assert.assertEquals(1,pool.find("dead").size());
+	}
+	
+	@Test
+	public void testFindAfterHoldChanges() {
+		// SETUP
+		GameObject wolf = createGameObject("Wolf","monster");
+		GameObject cave = createGameObject("Cave","tile");
+		GamePool pool = new GamePool(gameData.getGameObjects());
+		Assert.assertEquals(1,pool.find("monster").size());
+		
+		// EXECUTE
+		cave.add(wolf);
+		wolf.setThisAttribute("dead");
+		
+		// VERIFY
+		Assert.assertEquals(wolf,pool.findFirst("monster,dead"));
+		Assert.assertEquals(cave,pool.findFirst("tile"));
+	}
+	
+	@Test
+	public void testExtractLimit() {
+		// SETUP
+		for (int i=0;i<5;i++) {
+			createGameObject("Wolf"+i,"monster");
+			createGameObject("Bat"+i,"flying");
+		}
+		GamePool pool = new GamePool(gameData.getGameObjects());
+		
+		// EXECUTE
+		ArrayList<GameObject> extracted = pool.extract("monster",2);
+		
+		// VERIFY
+		Assert.assertEquals(2,extracted.size());
+		Assert.assertEquals("Wolf0",extracted.get(0).getName());
+		Assert.assertEquals(8,pool.size());
+		Assert.assertEquals(3,pool.find("monster").size());
+		Assert.assertEquals("Bat0",pool.getGameObject(0).getName()); // the rest stay in order
+		Assert.assertEquals("Bat1",pool.getGameObject(1).getName());
+	}
+	
+	private ArrayList<String> drawNames(long seed) {
+		GamePool pool = new GamePool(gameData.getGameObjects(),new Random(seed));
+		GamePool to = new GamePool();
+		pool.move(to,5);
+		Assert.assertEquals(15,pool.size());
+		ArrayList<String> names = new ArrayList<String>();
+		for (int i=0;i<to.size();i++) {
+			names.add(to.getGameObject(i).getName());
+		}
+		return names;
+	}
+	
+	@Test
+	public void testRandomMoveIsSeeded() {
+		// SETUP
+		for (int i=0;i<20;i++) {
+			createGameObject("Chit"+i,"chit");
+		}
+		
+		// VERIFY
+		Assert.assertEquals(drawNames(7),drawNames(7));
+		Assert.assertFalse(drawNames(7).equals(drawNames(8)));
+	}
+	
+	private static Element command(String name,String... attributes) {
+		Element element = new Element(name);
+		for (int i=0;i<attributes.length;i+=2) {
+			element.setAttribute(attributes[i],attributes[i+1]);
+		}
+		return element;
+	}
+	
+	private String processSetup(GameData data,long seed) {
+		GameSetup setup = data.findSetup("Test Setup");
+		setup.processSetup(new StringBuffer(),data.getGameObjects(),seed);
+		StringBuffer sb = new StringBuffer();
+		for (GameObject go:data.getGameObjects()) {
+			sb.append(go.getName()+":");
+			for (Object held:go.getHold()) {
+				sb.append(" "+((GameObject)held).getName());
+			}
+			sb.append("\n");
+		}
+		return sb.toString();
+	}
+	
+	@Test
+	public void testSetupIsReproducible() {
+		// SETUP
+		GameObject cave = createGameObject("Cave","tile");
+		GameObject ruins = createGameObject("Ruins","tile");
+		for (int i=0;i<10;i++) {
+			createGameObject("Monster"+i,"monster");
+			createGameObject("Treasure"+i,"treasure");
+		}
+		Element element = new Element("GameSetup");
+		element.setAttribute("name","Test Setup");
+		element.addContent(command("Create","newPool","MONSTERS"));
+		element.addContent(command("Create","newPool","TREASURES"));
+		element.addContent(command("Create","newPool","TILES"));
+		element.addContent(command("Extract","from","ALL","to","MONSTERS","keyVals","monster"));
+		element.addContent(command("Extract","from","ALL","to","TREASURES","keyVals","treasure"));
+		element.addContent(command("Extract","from","ALL","to","TILES","keyVals","tile"));
+		element.addContent(command("Add","from","TREASURES","targetObjectID",String.valueOf(cave.getId()),"count","2","transferType","Random"));
+		element.addContent(command("Distribute","from","MONSTERS","to","TILES","count","6","transferType","Random"));
+		GameSetup setup = gameData.createNewSetup();
+		setup.setXML(element);
+		
+		// EXECUTE
+		String first = processSetup(gameData.copy(),1234L);
+		String second = processSetup(gameData.copy(),1234L);
+		
+		// VERIFY
+		Assert.assertEquals(first,second);
+		Assert.assertFalse(first.equals(processSetup(gameData.copy(),4321L)));
+		GameData data = gameData.copy();
+		processSetup(data,1234L);
+		Assert.assertEquals(5,data.getGameObject(cave.getId()).getHold().size());
+		Assert.assertEquals(3,data.getGameObject(ruins.getId()).getHold().size());
+	}
+}
\ No newline at end of file
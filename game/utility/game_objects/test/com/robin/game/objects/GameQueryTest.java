@@ -102,4 +102,24 @@ public class GameQueryTest {
 		Assert.assertEquals(3,query.allGameObjectsWithKey(list,"bar").size());
 		Assert.assertEquals(2,query.allGameObjectsWithKeyAndValue(list,"bar","2").size());
 	}
-}
\ No newline at end of file
+	
+	@Test
+	public void testCompiledKeyVals() {
+		// SETUP
+		GameObject wolf = createGameObject("this","monster","");
+		wolf.setThisAttribute("vulnerability","M");
+		GameObject ogre = createGameObject("this","monster","");
+		ogre.setThisAttribute("vulnerability","H");
+		
+		// EXECUTE
+		KeyValQuery query = GameQuery.compile(" Monster , !vulnerability = M ");
+		
+		// VERIFY
+		Assert.assertSame(query,GameQuery.compile(" Monster , !vulnerability = M "));
+		Assert.assertEquals("monster,!vulnerability=M",query.toString());
+		Assert.assertFalse(query.matches(wolf));
+		Assert.assertTrue(query.matches(ogre));
+		Assert.assertTrue(query.equals(new KeyValQuery(query.getTerms())));
+		Assert.assertTrue(GameQuery.compile("monster").and(GameQuery.compile("vulnerability=M")).matches(wolf));
+	}
+}
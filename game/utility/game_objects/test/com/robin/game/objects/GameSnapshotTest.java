@@ -0,0 +1,257 @@
+/* 
+ * RealmSpeak is the Java application for playing the board game Magic Realm.
+ * Copyright (c) 2005-2015 Robin Warren
+ * E-mail: robin@dewkid.com
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the
+ * implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ *
+ * http://www.gnu.org/licenses/
+ */
+package com.robin.game.objects;
+
+import java.io.*;
+import java.util.ArrayList;
+
+import org.junit.*;
+
+import com.robin.general.io.ZipUtilities;
+import com.robin.general.util.RandomNumber;
+import com.robin.general.util.RandomNumberType;
+
+public class GameSnapshotTest {
+	GameData data;
+	ArrayList<File> tempFiles;
+	
+	/**
+	 * Sets up the test fixture. (Called before every test case method.)
+	 */
+	@Before
+	public void setUp() {
+		data = new GameData("Test Game");
+		data.setGameDescription("A description");
+		data.ignoreRandomSeed = true;
+		tempFiles = new ArrayList<File>();
+		
+		GameObject wolf = data.createNewObject();
+		wolf.setName("Wolf");
+		wolf.setThisKeyVals("monster,vulnerability=M");
+		wolf.setAttribute("light","move_speed","4");
+		GameObject tile = data.createNewObject();
+		tile.setName("Borderland");
+		tile.setThisKeyVals("tile");
+		ArrayList<String> clearings = new ArrayList<String>();
+		clearings.add("1");
+		clearings.add("2");
+		tile.setAttributeList("normal","clearings",clearings);
+		tile.add(wolf);
+		
+		GameSetup setup = data.createNewSetup();
+		setup.setName("Standard");
+	}
+	
+	@After
+	public void tearDown() {
+		for (File file:tempFiles) {
+			file.delete();
+		}
+	}
+	
+	private File tempFile(String suffix) throws IOException {
+		File file = File.createTempFile("snapshot",suffix);
+		tempFiles.add(file);
+		return file;
+	}
+	
+	private byte[] xml(GameData gameData) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		gameData.saveToStream(bytes);
+		return bytes.toByteArray();
+	}
+	
+	private GameData newData() {
+		GameData gameData = new GameData();
+		gameData.ignoreRandomSeed = true;
+		gameData.reportFormatErrors = false;
+		return gameData;
+	}
+	
+	@Test
+	public void testSnapshotRoundTrip() throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		data.writeSnapshot(bytes);
+		
+		GameData read = newData();
+		read.readSnapshot(new ByteArrayInputStream(bytes.toByteArray()));
+		Assert.assertArrayEquals(xml(data),xml(read));
+		
+		GameObject tile = read.getGameObjectByName("Borderland");
+		Assert.assertTrue(tile.getHold().contains(read.getGameObjectByName("Wolf")));
+		Assert.assertEquals(1,read.getGameSetups().size());
+	}
+	
+	@Test(expected=IOException.class)
+	public void testTruncatedSnapshot() throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		data.writeSnapshot(bytes);
+		byte[] truncated = new byte[bytes.size()-4];
+		System.arraycopy(bytes.toByteArray(),0,truncated,0,truncated.length);
+		newData().readSnapshot(new ByteArrayInputStream(truncated));
+	}
+	
+	@Test
+	public void testZipFormats() throws IOException {
+		File snapshotZip = tempFile(".rsgame");
+		Assert.assertTrue(data.zipToFile(snapshotZip));
+		GameData read = newData();
+		Assert.assertTrue(read.zipFromFile(snapshotZip));
+		Assert.assertArrayEquals(xml(data),xml(read));
+		
+		File xmlZip = tempFile(".rsgame");
+		data.zipAsXml = true;
+		Assert.assertTrue(data.zipToFile(xmlZip));
+		read = newData();
+		Assert.assertTrue(read.zipFromFile(xmlZip));
+		Assert.assertArrayEquals(xml(data),xml(read));
+	}
+	
+	@Test
+	public void testZipSnapshotLater() throws IOException {
+		byte[] before = xml(data);
+		byte[] snapshot = data.takeZipSnapshot();
+		data.getGameObjectByName("Wolf").setName("Bear");
+		
+		File zipFile = tempFile(".rsgame");
+		GameData.zipSnapshot(snapshot,new FileOutputStream(zipFile));
+		GameData read = newData();
+		Assert.assertTrue(read.zipFromFile(zipFile));
+		Assert.assertArrayEquals(before,xml(read));
+		
+		data.zipAsXml = true;
+		snapshot = data.takeZipSnapshot();
+		zipFile = tempFile(".rsgame");
+		GameData.zipSnapshot(snapshot,new FileOutputStream(zipFile));
+		read = newData();
+		Assert.assertTrue(read.zipFromFile(zipFile));
+		Assert.assertArrayEquals(xml(data),xml(read));
+	}
+	
+	@Test
+	public void testOldZipFile() throws IOException {
+		// Zip files used to be written by zipping up a temp file of XML
+		File dir = tempFile(".dir");
+		dir.delete();
+		dir.mkdir();
+		tempFiles.add(0,new File(dir,"GameData_CHEATER_.xml"));
+		Assert.assertTrue(data.saveToFile(tempFiles.get(0)));
+		File oldZip = tempFile(".rsgame");
+		ZipUtilities.zip(oldZip,new File[] {tempFiles.get(0)});
+		
+		GameData read = newData();
+		Assert.assertTrue(read.zipFromFile(oldZip));
+		Assert.assertArrayEquals(xml(data),xml(read));
+	}
+	
+	private int[] roll(int count) {
+		int[] rolls = new int[count];
+		for (int i=0;i<count;i++) {
+			rolls[i] = RandomNumber.getRandom(1000);
+		}
+		return rolls;
+	}
+	
+	private void assertRandomNumberRestored(RandomNumberType type) throws IOException {
+		RandomNumber.setRandomNumberGenerator(type);
+		RandomNumber.init(1234L,0);
+		roll(500);
+		data.ignoreRandomSeed = false;
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		data.writeSnapshot(bytes);
+		int[] expected = roll(20);
+		
+		RandomNumber.setRandomNumberGenerator(RandomNumberType.System);
+		RandomNumber.init(99L,0);
+		GameData read = new GameData();
+		read.readSnapshot(new ByteArrayInputStream(bytes.toByteArray()));
+		Assert.assertEquals(type,RandomNumber.getRandomNumberGenerator());
+		Assert.assertEquals(500,RandomNumber.getCount());
+		Assert.assertArrayEquals(expected,roll(20));
+	}
+	
+	@Test
+	public void testRandomNumberRestored() throws IOException {
+		try {
+			for (RandomNumberType type:RandomNumberType.values()) {
+				assertRandomNumberRestored(type);
+			}
+		}
+		finally {
+			RandomNumber.setRandomNumberGenerator(RandomNumberType.System);
+		}
+	}
+	
+	@Test
+	public void testRandomNumberRestoredIntoThreadInstance() throws IOException {
+		RandomNumber game = RandomNumber.newInstance(RandomNumberType.SplitMix64,1234L,0);
+		RandomNumber previous = RandomNumber.setThreadInstance(game);
+		byte[] bytes;
+		int[] expected;
+		try {
+			roll(500);
+			data.ignoreRandomSeed = false;
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			data.writeSnapshot(out);
+			bytes = out.toByteArray();
+			expected = roll(20);
+		}
+		finally {
+			RandomNumber.setThreadInstance(previous);
+		}
+		
+		RandomNumber.setRandomNumberGenerator(RandomNumberType.System);
+		RandomNumber.init(99L,0);
+		int[] shared = roll(3);
+		RandomNumber.init(99L,0);
+		
+		// Loading into another game's generator leaves the shared one alone
+		RandomNumber other = RandomNumber.newInstance(RandomNumberType.System,7L,0);
+		previous = RandomNumber.setThreadInstance(other);
+		try {
+			GameData read = new GameData();
+			read.readSnapshot(new ByteArrayInputStream(bytes));
+			Assert.assertEquals(RandomNumberType.SplitMix64,RandomNumber.getRandomNumberGenerator());
+			Assert.assertEquals(500,RandomNumber.getCount());
+			Assert.assertArrayEquals(expected,roll(20));
+		}
+		finally {
+			RandomNumber.setThreadInstance(previous);
+		}
+		Assert.assertEquals(RandomNumberType.System,RandomNumber.getRandomNumberGenerator());
+		Assert.assertEquals(0,RandomNumber.getCount());
+		Assert.assertArrayEquals(shared,roll(3));
+	}
+	
+	@Test
+	public void testNewInstanceAtCount() {
+		for (RandomNumberType type:RandomNumberType.values()) {
+			RandomNumber previous = RandomNumber.setThreadInstance(RandomNumber.newInstance(type,42L,0));
+			try {
+				roll(300);
+				int[] expected = roll(20);
+				RandomNumber.setThreadInstance(RandomNumber.newInstance(type,42L,300));
+				Assert.assertEquals(300,RandomNumber.getCount());
+				Assert.assertArrayEquals(type.toString(),expected,roll(20));
+			}
+			finally {
+				RandomNumber.setThreadInstance(previous);
+			}
+		}
+	}
+}
\ No newline at end of file
@@ -0,0 +1,106 @@
+/* 
+ * RealmSpeak is the Java application for playing the board game Magic Realm.
+ * Copyright (c) 2005-2015 Robin Warren
+ * E-mail: robin@dewkid.com
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the
+ * implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ *
+ * http://www.gnu.org/licenses/
+ */
+package com.robin.game.objects;
+
+import java.io.*;
+import java.util.ArrayList;
+
+import org.jdom.input.SAXBuilder;
+import org.jdom.output.Format;
+import org.jdom.output.XMLOutputter;
+import org.junit.*;
+
+public class GameXmlStreamTest {
+	GameData data;
+	
+	/**
+	 * Sets up the test fixture. (Called before every test case method.)
+	 */
+	@Before
+	public void setUp() {
+		data = new GameData("Test Game");
+		data.setGameDescription("Escaping \"quotes\" & <tags>");
+		data.ignoreRandomSeed = true;
+		
+		GameObject wolf = data.createNewObject();
+		wolf.setName("Wolf");
+		wolf.setThisKeyVals("monster,vulnerability=M");
+		wolf.setAttribute("light","move_speed","4");
+		wolf.setAttribute("light","note","line one\nline two\ttabbed");
+		GameObject tile = data.createNewObject();
+		tile.setName("Borderland");
+		tile.setThisKeyVals("tile");
+		ArrayList<String> clearings = new ArrayList<String>();
+		clearings.add("1");
+		clearings.add("2 & 3");
+		tile.setAttributeList("normal","clearings",clearings);
+		tile.setAttribute("normal","after_list","x");
+		tile.add(wolf);
+		data.createNewObject(); // an empty one
+		
+		GameSetup setup = data.createNewSetup();
+		setup.setName("Standard");
+	}
+	
+	private byte[] stream(GameData gameData) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		gameData.saveToStream(bytes);
+		return bytes.toByteArray();
+	}
+	
+	private byte[] jdom(GameData gameData) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		new XMLOutputter(Format.getPrettyFormat()).output(gameData.getXML(),bytes);
+		return bytes.toByteArray();
+	}
+	
+	@Test
+	public void testWriterMatchesJdom() throws IOException {
+		Assert.assertArrayEquals(jdom(data),stream(data));
+	}
+	
+	@Test
+	public void testReaderMatchesJdom() throws Exception {
+		byte[] xml = stream(data);
+		
+		GameData streamed = new GameData();
+		streamed.ignoreRandomSeed = true;
+		Assert.assertTrue(streamed.loadFromStream(new ByteArrayInputStream(xml)));
+		
+		GameData built = new GameData();
+		built.ignoreRandomSeed = true;
+		built.setXML(new SAXBuilder().build(new ByteArrayInputStream(xml)).getRootElement());
+		
+		Assert.assertEquals(built.getGameDescription(),streamed.getGameDescription());
+		Assert.assertEquals(3,streamed.getGameObjects().size());
+		Assert.assertArrayEquals(stream(built),stream(streamed));
+		
+		GameObject tile = streamed.getGameObjectByName("Borderland");
+		GameObject wolf = streamed.getGameObjectByName("Wolf");
+		Assert.assertTrue(tile.getHold().contains(wolf));
+		Assert.assertEquals("line one\nline two\ttabbed",wolf.getAttribute("light","note"));
+		Assert.assertEquals(1,streamed.getGameSetups().size());
+	}
+	
+	@Test
+	public void testBadFile() {
+		GameData bad = new GameData();
+		bad.reportFormatErrors = false;
+		Assert.assertFalse(bad.loadFromStream(new ByteArrayInputStream("<game name=\"x\" description=\"\"><objects>".getBytes())));
+	}
+}
@@ -32,6 +32,7 @@ public abstract class GameClient extends GameNet {
 	private static final String THREAD_NAME = "GameClient.ThreadName";
 	
 	private static final int MILLISECONDS_SLEEP_PER_REQUEST = 50;
+	private static final int MILLISECONDS_PER_HEARTBEAT = GameNet.DEFAULT_TIMEOUT_MS/4; // when the server is pushing
 	
 	public static final String DATA_NAME = "client";
 	
@@ -42,6 +43,8 @@ public abstract class GameClient extends GameNet {
 	// Client messages
 	public static final int REQUEST_IDLE	=   0;
 	public static final int REQUEST_LOGIN	=   1;
+	public static final int REQUEST_LOGIN_CODEC	=   2;	// REQUEST_LOGIN, offering a GameChangeCodec version
+	public static final int REQUEST_PUSH	=   3;	// Asks the server to send responses as they happen, instead of on REQUEST_IDLE
 	
 	public static final int SUBMIT_LOGIN	= 100;		// When client is providing name and ip
 	public static final int SUBMIT_CHANGES	= 101;
@@ -66,22 +69,25 @@ public abstract class GameClient extends GameNet {
 	protected int port;
 	
 	protected GameData gameData;
-	protected boolean waitingSubmit = false;
-	protected boolean leave = false;
+	protected volatile boolean waitingSubmit = false;
+	protected volatile boolean leave = false;
+	private Object submitLock = new Object();
 	
 	protected boolean connected = false;
 	protected boolean dataLoaded = false;
 	
 	protected boolean hosting = false;
 	
+	protected boolean serverCanPush = false;	// true when the server understood REQUEST_LOGIN_CODEC
+	protected volatile boolean pushing = false;	// when true, a PushReader handles everything the server sends
+	
 	protected ArrayList changeListeners = null;
 	
 	public GameClient(String dataPath,String ipAddress,String clientName,String clientPass) {
 		this(dataPath,ipAddress,clientName,clientPass,GameHost.DEFAULT_PORT);
 	}
 	public GameClient(String dataPath,String ipAddress,String clientName,String clientPass,int port) {
-		GameData data = new GameData();
-		data.loadFromPath(dataPath);
+		GameData data = GameData.getSharedData(dataPath).copy();
 		init(data,ipAddress,clientName,clientPass,port);
 	}
 	public GameClient(GameData data,String ipAddress,String clientName,String clientPass,int port) {
@@ -94,6 +100,7 @@ public abstract class GameClient extends GameNet {
 		mostRecentClient = this;
 		gameData = data;
 		gameData.setDataName(DATA_NAME);
+		gameData.setAttachment(GameClient.class,this);
 		gameData.setTracksChanges(true);
 		this.ipAddress = ipAddress;
 		this.port = port;
@@ -122,7 +129,7 @@ public abstract class GameClient extends GameNet {
 	}
 	public void sendInfoDirect(String destClientName,ArrayList info,boolean force) {
 		if (force || !clientName.equals(destClientName)) { // only send if a different client!
-			requestQueue.add(new RequestObject(SUBMIT_DIRECT_INFO,new InfoObject(destClientName,info)));
+			queueRequest(new RequestObject(SUBMIT_DIRECT_INFO,new InfoObject(destClientName,info)));
 		}
 	}
 	public void broadcast(String key,String message) {
@@ -133,11 +140,12 @@ public abstract class GameClient extends GameNet {
 			String[] string = new String[2];
 			string[0] = key;
 			string[1] = message;
-			requestQueue.add(new RequestObject(SUBMIT_BROADCAST,string));
+			queueRequest(new RequestObject(SUBMIT_BROADCAST,string));
 		}
 	}
 	public void kill() {
 		leave = true;
+		wakeUp();
 		//System.out.println("Client should die soon");
 	}
 	public String getClientName() {
@@ -208,10 +216,27 @@ public abstract class GameClient extends GameNet {
 	public boolean waitingToSubmit() {
 		return waitingSubmit;
 	}
-	private RequestObject getNextInQueue() {
-		if (requestQueue.size()>0) {
-			// Get next
-			return requestQueue.remove(0);
+	private void queueRequest(RequestObject ro) {
+		synchronized(requestQueue) {
+			requestQueue.add(ro);
+			requestQueue.notifyAll();
+		}
+	}
+	private void wakeUp() {
+		synchronized(requestQueue) {
+			requestQueue.notifyAll();
+		}
+	}
+	private RequestObject getNextInQueue() throws InterruptedException {
+		synchronized(requestQueue) {
+			if (pushing && requestQueue.isEmpty() && !leave) {
+				// Nothing to poll for:  wait for a request, and send a heartbeat if none shows up
+				requestQueue.wait(MILLISECONDS_PER_HEARTBEAT);
+			}
+			if (requestQueue.size()>0) {
+				// Get next
+				return requestQueue.remove(0);
+			}
 		}
 		return IDLE_REQ_OBJ;
 	}
@@ -228,6 +253,47 @@ public abstract class GameClient extends GameNet {
 		getOutputStream().writeInt(request);
 		flush();
 	}
+	/**
+	 * Handles a response from the server that isn't simply RESPOND_IDLE (which only matters when polling)
+	 */
+	private void handleServerResponse(int response) throws Exception {
+		ArrayList list;
+		switch(response) {
+			case GameServer.RESPOND_NEED_UPDATE:
+				// Instead of loading all the objects, just load changes
+				list = readChanges();
+				logger.fine("Client received update: "+list.size()+" changes.");
+				for (Iterator i=list.iterator();i.hasNext();) {
+					GameObjectChange action = (GameObjectChange)i.next();
+					logger.finer("   "+action);
+					action.applyChange(gameData);
+				}
+				gameData.rebuildChanges(); // in case it still has some uncommitted changes!
+				logger.fine("Client received update: DONE");
+				dataLoaded = true;
+				fireStateChanged();
+				break;
+			case GameServer.RESPOND_RECEIVE_DIRECT_INFO:
+				logger.fine("Client received direct info");
+				list = readCollection();
+				receiveInfoDirect(list);
+//				getOutputStream().writeInt(ACCEPTED_DIRECT_INFO);
+//				flush();
+//				logger.fine("Client accepted direct info");
+				break;
+			case GameServer.RESPOND_BROADCAST:
+				String[] string = (String[])getInputStream().readObject();
+				receiveBroadcast(string[0],string[1]);
+				break;
+			case GameServer.RESPOND_GOODBYE:
+				leave=true;
+				wakeUp();
+				fireStateChanged();
+				JOptionPane.showMessageDialog(null,"The server was shut down.  Game over!!");
+				logger.fine("Client received goodbye from server");
+				break;
+		}
+	}
 	/**
 	 * Handles
 	 */
@@ -238,45 +304,17 @@ public abstract class GameClient extends GameNet {
 		try {
 			switch(ro.getRequest()) {
 				case REQUEST_IDLE: // this is the default, if the requestQueue is empty
+					if (pushing) {
+						// Only a heartbeat - the PushReader handles whatever comes back
+						break;
+					}
 					response = getInputStream().readInt();
-					// This is where the client is subverted by the server
-					switch(response) {
-						case GameServer.RESPOND_IDLE:
-							// IDLE and IDLE?  Sleep for a time.
-							Thread.sleep(MILLISECONDS_SLEEP_PER_REQUEST);
-							break;
-						case GameServer.RESPOND_NEED_UPDATE:
-							// Instead of loading all the objects, just load changes
-							list = readCollection();
-							logger.fine("Client received update: "+list.size()+" changes.");
-							for (Iterator i=list.iterator();i.hasNext();) {
-								GameObjectChange action = (GameObjectChange)i.next();
-								logger.finer("   "+action);
-								action.applyChange(gameData);
-							}
-							gameData.rebuildChanges(); // in case it still has some uncommitted changes!
-							logger.fine("Client received update: DONE");
-							dataLoaded = true;
-							fireStateChanged();
-							break;
-						case GameServer.RESPOND_RECEIVE_DIRECT_INFO:
-							logger.fine("Client received direct info");
-							list = readCollection();
-							receiveInfoDirect(list);
-//							getOutputStream().writeInt(ACCEPTED_DIRECT_INFO);
-//							flush();
-//							logger.fine("Client accepted direct info");
-							break;
-						case GameServer.RESPOND_BROADCAST:
-							String[] string = (String[])getInputStream().readObject();
-							receiveBroadcast(string[0],string[1]);
-							break;
-						case GameServer.RESPOND_GOODBYE:
-							leave=true;
-							fireStateChanged();
-							JOptionPane.showMessageDialog(null,"The server was shut down.  Game over!!");
-							logger.fine("Client received goodbye from server");
-							break;
+					if (response==GameServer.RESPOND_IDLE) {
+						// IDLE and IDLE?  Sleep for a time.
+						Thread.sleep(MILLISECONDS_SLEEP_PER_REQUEST);
+					}
+					else {
+						handleServerResponse(response);
 					}
 					break;
 				case SUBMIT_LOGIN:
@@ -307,9 +345,12 @@ public abstract class GameClient extends GameNet {
 					if (logger.isLoggable(Level.FINER)) {
 						for (Iterator i=list.iterator();i.hasNext();) logger.finer("--> "+i.next());
 					}
-					writeCollection(list);
+					writeChanges(list);
 //					gameData.commit();
-					waitingSubmit = false;
+					synchronized(submitLock) {
+						waitingSubmit = false;
+						submitLock.notifyAll();
+					}
 					
 					logger.fine("GameClient "+clientName+":  done");
 					break;
@@ -337,13 +378,50 @@ public abstract class GameClient extends GameNet {
 			JOptionPane.showMessageDialog(null,"The server was shut down.  Game over!!");
 		}
 	}
-	public void run() {
-		int attempts = 0;
-		while(connection==null && (attempts++)<5) { // only try 5 times
+	/**
+	 * Asks the server for the password, offering the binary change codec.  A server that predates the codec drops
+	 * the connection on the unknown request, so in that case reconnect and log in the old way (Java serialization).
+	 */
+	private String login() throws Exception {
+		try {
+			getOutputStream().writeInt(REQUEST_LOGIN_CODEC);
+			getOutputStream().writeInt(GameChangeCodec.VERSION);
+			flush();
+			String password = (String)getInputStream().readObject();
+			if (getInputStream().readInt()>0) {
+				codec = new GameChangeCodec();
+			}
+			serverCanPush = true;
+			return password;
+		}
+		catch(SocketTimeoutException ex) {
+			throw ex;
+		}
+		catch(IOException ex) {
 			if (ipAddress==null) {
-				mostRecentClient = null;
-				throw new IllegalStateException("Can't start an unconnected GameClient with a null ipAddress!!!");
+				throw ex;
 			}
+			logger.info("Server doesn't support the change codec - reconnecting");
+			try {
+				connection.close();
+			}
+			catch(IOException cex) {
+				// ignore
+			}
+			connection = null;
+			in = null;
+			out = null;
+			connect();
+			if (connection==null) {
+				throw ex;
+			}
+			send(REQUEST_LOGIN);
+			return (String)getInputStream().readObject();
+		}
+	}
+	private void connect() {
+		int attempts = 0;
+		while(connection==null && (attempts++)<5) { // only try 5 times
 			logger.info("attempt "+attempts);
 			try {
 				connection = new Socket(ipAddress,port);
@@ -359,11 +437,19 @@ public abstract class GameClient extends GameNet {
 				catch(InterruptedException iex) {
 					// this would be bad, so exit here
 					iex.printStackTrace();
-					mostRecentClient = null;
-					return; // This ends the thread
+					return;
 				}
 			}
 		}
+	}
+	public void run() {
+		if (connection==null) {
+			if (ipAddress==null) {
+				mostRecentClient = null;
+				throw new IllegalStateException("Can't start an unconnected GameClient with a null ipAddress!!!");
+			}
+			connect();
+		}
 		
 		if (connection==null) {
 			// Couldn't get a good connection - ever.
@@ -374,13 +460,15 @@ public abstract class GameClient extends GameNet {
 
 		try {
 			// Do login first
-			send(REQUEST_LOGIN);
-			String password = (String)getInputStream().readObject();
+			String password = login();
 			
 			if (clientPass.equals(password)) {
 				logger.info("GameClient "+clientName+": logged in");
 				// Send name information
 				doRequest(new RequestObject(SUBMIT_LOGIN));
+				if (serverCanPush && !leave) {
+					startPushing();
+				}
 				connected = true;
 				
 				fireStateChanged();
@@ -428,6 +516,44 @@ public abstract class GameClient extends GameNet {
 		 // This ends the thread
 		mostRecentClient = null;
 	}
+	/**
+	 * Asks the server to push everything as it happens, so there is no need to keep polling with REQUEST_IDLE.  From
+	 * here on, this thread only sends (plus a heartbeat when there's nothing to send), and a PushReader reads.
+	 * 
+	 * This costs the client a second thread for its connection, because the streams are blocking and this thread
+	 * waits on the request queue.  A client only ever has the one connection, so that's two threads per client
+	 * process.  (The server side doesn't pay the same:  see GameServer.)
+	 */
+	private void startPushing() throws Exception {
+		send(REQUEST_PUSH);
+		if (getInputStream().readInt()==GameServer.RESPOND_ACCEPTED) {
+			pushing = true;
+			new PushReader().start();
+		}
+	}
+	private class PushReader extends Thread {
+		public PushReader() {
+			super(THREAD_NAME+".Reader");
+		}
+		public void run() {
+			try {
+				while(!leave) {
+					handleServerResponse(getInputStream().readInt());
+				}
+			}
+			catch(Exception ex) {
+				if (!leave) {
+					if (!(ex instanceof IOException)) {
+						ex.printStackTrace();
+					}
+					leave = true;
+					wakeUp();
+					fireStateChanged();
+					JOptionPane.showMessageDialog(null,"The server was shut down.  Game over!!");
+				}
+			}
+		}
+	}
 	private void doRequest(RequestObject ro) throws SocketTimeoutException,Exception {
 		send(ro.getRequest());
 		handleResponse(ro);
@@ -440,15 +566,16 @@ public abstract class GameClient extends GameNet {
 			throw new RuntimeException("This client is DEAD!");
 		}
 		if (gameData.hasChanges()) {
-			ArrayList<GameObjectChange> list = gameData.popAndCommit();
+			int before = gameData.getChangeCount();
+			ArrayList<GameObjectChange> list = gameData.popAndCommit(); // compacts the changes first
 			
-			logger.fine("GameClient "+clientName+": Queueing "+list.size()+" changes...");
+			logger.fine("GameClient "+clientName+": Queueing "+list.size()+" changes (compacted from "+before+")...");
 			if (list!=null && !list.isEmpty()) {
 				if (logger.isLoggable(Level.FINER)) {
 					for (Iterator i=list.iterator();i.hasNext();) logger.finer("  "+i.next());
 				}
-				requestQueue.add(new RequestObject(SUBMIT_CHANGES,list));
-				waitingSubmit = true;
+				waitingSubmit = true; // before queueing, so the client can't clear it first
+				queueRequest(new RequestObject(SUBMIT_CHANGES,list));
 			}
 			logger.fine("GameClient "+clientName+": Done");
 		}
@@ -479,9 +606,10 @@ public abstract class GameClient extends GameNet {
 //System.out.println("submitAndWait");
 		client.submitChanges();
 		try {
-			Thread.sleep(MILLISECONDS_SLEEP_PER_REQUEST); // give it a chance...
-			while(client.waitingToSubmit()) {
-				Thread.sleep(MILLISECONDS_SLEEP_PER_REQUEST); // Without this, it hangs unnecessarily
+			synchronized(client.submitLock) {
+				while(client.waitingToSubmit() && !client.clientDead) {
+					client.submitLock.wait(MILLISECONDS_SLEEP_PER_REQUEST); // the client notifies as soon as the changes are sent
+				}
 			}
 		}
 		catch(Exception ex) {
@@ -515,6 +643,12 @@ public abstract class GameClient extends GameNet {
 			ex.printStackTrace();
 		}
 	}
+	/**
+	 * @return		The client that owns the provided data, or null if it isn't client data
+	 */
+	public static GameClient findClient(GameData data) {
+		return (GameClient)data.getAttachment(GameClient.class);
+	}
 	public static GameClient GetMostRecentClient() {
 		if (mostRecentClient!=null && mostRecentClient.clientDead) {
 			// This is bad
@@ -33,12 +33,15 @@ import com.robin.game.objects.GameObjectChange;
 public class GameHost {
 	public static final String DATA_NAME = "host";
 	
-	public static GameHost mostRecentHost = null; // FIXME Should use a Singleton pattern here!
-	
 	private static Logger logger = Logger.getLogger(GameHost.class.getName());
 
 	public static final int DEFAULT_PORT = 47474;
 	
+	/**
+	 * The join snapshot tail is never compacted before it reaches this size
+	 */
+	private static final int MIN_JOIN_TAIL_SIZE_TO_COMPACT = 1000;
+	
 	protected GameData masterData;	// loaded once, never changed - used to determine changes for new clients
 	protected GameData gameData;	// ever changing gameData
 	protected String gameTitle;
@@ -51,19 +54,18 @@ public class GameHost {
 	protected ArrayList<GameServer> servers;
 	
 	protected ArrayList gameHostListeners;
+	
+	protected ArrayList<GameObjectChange> joinBase = null;	// masterData.buildChanges(gameData), as of the last compaction
+	protected ArrayList<GameObjectChange> joinTail = new ArrayList<GameObjectChange>(); // every change applied since
+	protected int joinCompactions = 0;
 
 	public GameHost(String dataPath,String gameTitle,String password) {
-		mostRecentHost = this;
-		masterData = new GameData();
-		masterData.loadFromPath(dataPath);
-		masterData.setDataName("master");
-		gameData = new GameData();
-		gameData.loadFromPath(dataPath);
+		masterData = GameData.getSharedData(dataPath);
+		gameData = masterData.copy();
 		gameData.setDataName(DATA_NAME);
 		init(gameTitle,password);
 	}
 	public GameHost(GameData master,GameData data,String gameTitle,String password) {
-		mostRecentHost = this;
 		masterData = master;
 		gameData = data;
 		gameData.setDataName(DATA_NAME);
@@ -81,6 +83,7 @@ public class GameHost {
 	private void init(String title,String pass) {
 		this.connector = null;
 		this.gameTitle = title;
+		gameData.setAttachment(GameHost.class,this);
 		this.password = pass;
 		servers = new ArrayList<GameServer>();
 	}
@@ -162,7 +165,6 @@ public class GameHost {
 			connector = null;
 		}
 		logger.fine("Stopped listening.");
-		mostRecentHost = null;
 	}
 	public GameConnector getConnector() {
 		return connector;
@@ -200,7 +202,7 @@ public class GameHost {
 		servers.remove(server);
 	}
 	public void shutdown() {
-		for (GameServer server:servers) {
+		for (GameServer server:new ArrayList<GameServer>(servers)) { // killed servers remove themselves
 			server.kill();
 		}
 		servers.clear();
@@ -209,6 +211,13 @@ public class GameHost {
 		return servers;
 	}
 	
+	/**
+	 * @return		The host that is serving the provided data, or null if it isn't host data.  Each host is tied to its
+	 * 				own data, so any number of them can run side by side.
+	 */
+	public static GameHost findHost(GameData data) {
+		return (GameHost)data.getAttachment(GameHost.class);
+	}
 	public GameData getGameData() {
 		return gameData;
 	}
@@ -237,6 +246,15 @@ public class GameHost {
 //			gameData.rebuildChanges(); // This breaks things fairly badly!
 			logger.fine("Host apply changes: DONE.");
 			
+			if (joinBase!=null) {
+				joinTail.addAll(changes);
+				if (isJoinTailTooLong()) {
+					// Nobody has joined in a while, so let the snapshot go, rather than keep every change forever
+					joinBase = null;
+					joinTail.clear();
+				}
+			}
+			
 			// Update all servers (except the originating server) with the changes
 			for (GameServer server:servers) {
 				logger.fine("activeServer="+activeServer);
@@ -300,8 +318,35 @@ public class GameHost {
 			}
 		}
 	}
+	/**
+	 * @return		The changes a new client needs to turn masterData into the current gameData.  This is the full diff
+	 * 				as of the last compaction, followed by every change applied since then, so serving a client costs
+	 * 				about as much as the changes themselves.  The diff is only rebuilt once the tail outgrows it (and if
+	 * 				the tail outgrows it between joins, the snapshot is dropped until the next client joins).
+	 * 
+	 * The snapshot assumes gameData only changes through applyChanges, which holds because loading a game always
+	 * makes a new GameHost.
+	 */
 	public synchronized ArrayList getMasterToGameChanges() {
-		return masterData.buildChanges(gameData);
+		if (joinBase==null || isJoinTailTooLong()) {
+			joinBase = masterData.buildChanges(gameData);
+			joinTail.clear();
+			joinCompactions++;
+			logger.fine("Join snapshot rebuilt: "+joinBase.size()+" changes.");
+		}
+		ArrayList changes = new ArrayList(joinBase.size()+joinTail.size());
+		changes.addAll(joinBase);
+		changes.addAll(joinTail);
+		return changes;
+	}
+	private boolean isJoinTailTooLong() {
+		return joinTail.size()>Math.max(MIN_JOIN_TAIL_SIZE_TO_COMPACT,joinBase.size());
+	}
+	public synchronized int getJoinSnapshotSize() {
+		return joinBase==null?0:joinBase.size()+joinTail.size();
+	}
+	public synchronized int getJoinCompactions() {
+		return joinCompactions;
 	}
 	public void _testBuildChanges() {
 		ArrayList changes = getMasterToGameChanges();
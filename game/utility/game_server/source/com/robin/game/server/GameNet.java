@@ -21,6 +21,8 @@ import java.io.*;
 import java.net.Socket;
 import java.util.ArrayList;
 
+import com.robin.game.objects.GameChangeCodec;
+
 public abstract class GameNet extends Thread {
 	
 	public static int DEFAULT_TIMEOUT_MS = 10000; // a 10 second timeout should be good enough
@@ -29,6 +31,12 @@ public abstract class GameNet extends Thread {
 	protected ObjectOutputStream out = null;
 	protected ObjectInputStream in = null;
 	
+	/**
+	 * The binary codec for GameObjectChanges, if both ends agreed on one at login.  When null, changes are sent
+	 * with plain Java serialization.
+	 */
+	protected GameChangeCodec codec = null;
+	
 	protected ObjectOutputStream getOutputStream() throws IOException {
 		if (out==null) {
 			out = new ObjectOutputStream(connection.getOutputStream());
@@ -60,4 +68,25 @@ public abstract class GameNet extends Thread {
 		}
 		return list;
 	}
+	/**
+	 * Like writeCollection, but for a list of GameObjectChanges, which go through the codec when there is one.
+	 */
+	protected void writeChanges(ArrayList changes) throws IOException {
+		if (codec==null) {
+			writeCollection(changes);
+			return;
+		}
+		codec.writeChanges(getOutputStream(),changes);
+		changes.clear();
+		flush();
+	}
+	protected ArrayList readChanges() throws IOException,ClassNotFoundException {
+		if (codec==null) {
+			return readCollection();
+		}
+		return codec.readChanges(getInputStream());
+	}
+	public boolean isUsingChangeCodec() {
+		return codec!=null;
+	}
 }
\ No newline at end of file
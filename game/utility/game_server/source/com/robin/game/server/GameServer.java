@@ -22,8 +22,13 @@ import java.net.Socket;
 import java.net.SocketTimeoutException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 import java.util.logging.Logger;
 
+import com.robin.game.objects.GameChangeCodec;
+
 public class GameServer extends GameNet {
 	private static final String THREAD_NAME = "GameServer.ThreadName";
 	
@@ -32,7 +37,23 @@ public class GameServer extends GameNet {
 	public static long cum = 0; // cum??  :)
 	public long id = cum++;
 	
-	private boolean goodbye = false;
+	private volatile boolean goodbye = false;
+	
+	/**
+	 * Once the client asks for REQUEST_PUSH, responses are written as soon as they are queued, by one of the shared
+	 * push threads, while this thread goes on reading the client requests.  All connections share PUSH_THREADS
+	 * threads, so pushing doesn't add a thread per connection.  The push threads never time out, because a piped
+	 * NetFreeSocket breaks when the thread that last wrote to it dies.
+	 * 
+	 * The streams are blocking, so a client that stops reading holds a push thread until this thread's read times
+	 * out (the client heartbeat stops too) and the connection is closed.
+	 */
+	private static final int PUSH_THREADS = Math.max(2,Runtime.getRuntime().availableProcessors());
+	private static ExecutorService pushExecutor = null;
+	
+	private volatile boolean pushing = false;
+	private boolean pushScheduled = false; // true while a push thread is (or is about to be) writing for this server
+	private boolean heartbeatDue = false;
 	
 	// Server responses
 	public static final int RESPOND_NEED_UPDATE			= 1;
@@ -68,11 +89,12 @@ public class GameServer extends GameNet {
 		broadcasts = new ArrayList(50);
 		setName(THREAD_NAME);
 	}
-	public void broadcast(String key,String message) {
+	public synchronized void broadcast(String key,String message) {
 		String[] string = new String[2];
 		string[0] = key;
 		string[1] = message;
 		broadcasts.add(string);
+		schedulePush();
 	}
 	public String toString() {
 		return "GameServer["+id+"]";
@@ -80,22 +102,22 @@ public class GameServer extends GameNet {
 	private boolean isBroadcast() {
 		return !broadcasts.isEmpty();
 	}
-	private String[] getNextBroadcast() {
+	private synchronized String[] getNextBroadcast() {
 		if (isBroadcast()) {
 			return (String[])broadcasts.remove(0);
 		}
 		return null;
 	}
-	private void doBroadcast() throws IOException {
-		String[] string = getNextBroadcast();
+	private void doBroadcast(String[] string) throws IOException {
 		getOutputStream().writeInt(RESPOND_BROADCAST);
 		getOutputStream().writeObject(string);
 		flush();
 		// no feedback needed
 	}
-	public void addInfoDirect(InfoObject io) {
+	public synchronized void addInfoDirect(InfoObject io) {
 		infoDirects.add(io);
 		directSentAndReceived = false;
+		schedulePush();
 	}
 	private boolean isInfoDirect() {
 		return !infoDirects.isEmpty();
@@ -103,14 +125,13 @@ public class GameServer extends GameNet {
 	public boolean isInfoDirectSentAndReceived() {
 		return directSentAndReceived;
 	}
-	private InfoObject getNextInfoDirect() {
+	private synchronized InfoObject getNextInfoDirect() {
 		if (!infoDirects.isEmpty()) {
 			return (InfoObject)infoDirects.remove(0);
 		}
 		return null;
 	}
-	public void doInfoDirect() throws IOException {
-		InfoObject io = getNextInfoDirect();
+	private void doInfoDirect(InfoObject io) throws IOException {
 		getOutputStream().writeInt(RESPOND_RECEIVE_DIRECT_INFO);
 		writeCollection(io.getInfo());
 //		getInputStream().readInt(); // waits until this int is available...
@@ -124,11 +145,80 @@ public class GameServer extends GameNet {
 		return false;
 	}
 	public void addObjectChanges(Collection inChanges) {
+		ArrayList masterToGame = null;
 		if (objectChanges==null) {
 			// If objectChanges is null, then we haven't grabbed the master-to-game changes.  Do that now!
-			objectChanges = new ArrayList(host.getMasterToGameChanges());
+			masterToGame = host.getMasterToGameChanges();
+		}
+		synchronized(this) {
+			if (objectChanges==null) {
+				objectChanges = new ArrayList(masterToGame==null?host.getMasterToGameChanges():masterToGame);
+			}
+			objectChanges.addAll(inChanges);
+			schedulePush();
+		}
+	}
+	/**
+	 * @return		true if there is something that needs to be sent to the client
+	 */
+	private synchronized boolean hasPendingResponse() {
+		return objectChanges==null || !objectChanges.isEmpty() || isInfoDirect() || isBroadcast() || shuttingDown || heartbeatDue;
+	}
+	/**
+	 * Writes the next queued response:  changes first, then direct info, then broadcasts, and finally a goodbye once
+	 * the server is shutting down.
+	 * 
+	 * @return		true if a response was written
+	 */
+	private boolean writeNextResponse() throws IOException {
+		if (objectChanges==null) {
+			// If objectChanges is null, then we haven't grabbed the master-to-game changes.  Do that now!  (Outside the
+			// lock, since the host calls addObjectChanges while holding its own)
+			ArrayList masterToGame = host.getMasterToGameChanges();
+			synchronized(this) {
+				if (objectChanges==null) {
+					objectChanges = new ArrayList(masterToGame);
+				}
+			}
+		}
+		ArrayList toSend = null;
+		InfoObject io = null;
+		String[] string = null;
+		synchronized(this) {
+			heartbeatDue = false;
+			if (!objectChanges.isEmpty()) {
+				// Using removeAll creates the possibility that there is a comodification error, so
+				// to prevent that, swap in a new list instead
+				toSend = objectChanges;
+				objectChanges = new ArrayList();
+			}
+			else if (isInfoDirect()) {
+				io = getNextInfoDirect();
+			}
+			else if (isBroadcast()) {
+				string = getNextBroadcast();
+			}
+			else if (!shuttingDown) {
+				return false;
+			}
 		}
-		objectChanges.addAll(inChanges);
+		if (toSend!=null) {
+			getOutputStream().writeInt(RESPOND_NEED_UPDATE);
+			logger.fine("Server for "+clientName+" sending update with "+toSend.size()+" changes.");
+			writeChanges(toSend);
+		}
+		else if (io!=null) {
+			doInfoDirect(io);
+		}
+		else if (string!=null) {
+			doBroadcast(string);
+		}
+		else {
+			getOutputStream().writeInt(RESPOND_GOODBYE);
+			goodbye = true;
+		}
+		flush();
+		return true;
 	}
 	public String getClientName() {
 		return clientName;
@@ -147,6 +237,14 @@ public class GameServer extends GameNet {
 				getOutputStream().writeObject(host.getPassword());
 				flush();
 				break;
+			case GameClient.REQUEST_LOGIN_CODEC:
+				// Same as REQUEST_LOGIN, but the client is offering to use the binary change codec
+				int version = GameChangeCodec.negotiateVersion(getInputStream().readInt());
+				codec = version>0?new GameChangeCodec():null;
+				getOutputStream().writeObject(host.getPassword());
+				getOutputStream().writeInt(version);
+				flush();
+				break;
 			case GameClient.SUBMIT_LOGIN:
 				// expecting a name and an ip
 				clientName = (String)getInputStream().readObject();
@@ -165,45 +263,36 @@ public class GameServer extends GameNet {
 				broadcast("host","New player joins: "+clientName);
 				break;
 			case GameClient.REQUEST_IDLE:
-				// opportunity for the server to tell the client something
-				
-				if (objectChanges==null || !objectChanges.isEmpty()) {
-					getOutputStream().writeInt(RESPOND_NEED_UPDATE);
-					if (objectChanges==null) {
-						// If objectChanges is null, then we haven't grabbed the master-to-game changes.  Do that now!
-						objectChanges = new ArrayList(host.getMasterToGameChanges());
+				if (pushing) {
+					// Only a heartbeat:  answer it from a push thread, so the client knows we are still here
+					synchronized(this) {
+						heartbeatDue = true;
+						schedulePush();
 					}
-					logger.fine("Server for "+clientName+" sending update with "+objectChanges.size()+" changes.");
-					ArrayList toSend = new ArrayList();
-					while(!objectChanges.isEmpty()) {
-						toSend.add(objectChanges.remove(0));
-					}
-					// Using removeAll creates the possibility that there is a comodification error, so
-					// to prevent that, I'll do it a different way
-//					objectChanges.removeAll(toSend);
-					writeCollection(toSend);
-				}
-				else if (isInfoDirect()) {
-					doInfoDirect();
+					break;
 				}
-				else if (isBroadcast()) {
-					doBroadcast();
-				}
-				else if (shuttingDown) {
-					getOutputStream().writeInt(RESPOND_GOODBYE);
-					goodbye = true;
-				}
-				else {
+				
+				// opportunity for the server to tell the client something
+				if (!writeNextResponse()) {
 					getOutputStream().writeInt(RESPOND_IDLE);
+					flush();
 				}
+				break;
+			case GameClient.REQUEST_PUSH:
+				getOutputStream().writeInt(RESPOND_ACCEPTED);
 				flush();
+				synchronized(this) {
+					// From here on, only the push threads write
+					pushing = true;
+					schedulePush();
+				}
 				break;
 			case GameClient.SUBMIT_GOODBYE:
 				logger.fine("Server for "+clientName+" received GOODBYE.");
 				goodbye = true;
 				break;
 			case GameClient.SUBMIT_CHANGES:
-				ArrayList list = readCollection();
+				ArrayList list = readChanges();
 				logger.fine("Server for "+clientName+" received "+list.size()+" changes.");
 				host.applyChanges(this,list);
 //				if (host.applyChanges(this,list)) { // don't send a response anymore
@@ -232,8 +321,69 @@ public class GameServer extends GameNet {
 				break;
 		}
 	}
-	public void kill() {
+	public synchronized void kill() {
 		shuttingDown = true;
+		schedulePush();
+	}
+	private static synchronized ExecutorService getPushExecutor() {
+		if (pushExecutor==null) {
+			pushExecutor = Executors.newFixedThreadPool(PUSH_THREADS,new ThreadFactory() {
+				private int count = 0;
+				public Thread newThread(Runnable r) {
+					Thread thread = new Thread(r,THREAD_NAME+".Push"+(count++));
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+		return pushExecutor;
+	}
+	/**
+	 * Has a push thread write whatever is queued, unless one already is (or the client isn't being pushed to)
+	 */
+	private synchronized void schedulePush() {
+		if (pushing && !pushScheduled && !goodbye) {
+			pushScheduled = true;
+			getPushExecutor().execute(new Runnable() {
+				public void run() {
+					pushResponses();
+				}
+			});
+		}
+	}
+	/**
+	 * Writes responses until there are none left, on a push thread.  Once the goodbye is written, this server's
+	 * thread ends with the client's next request (which is its own goodbye).  If the client is lost, the connection
+	 * is closed, which ends this server's thread right away.
+	 */
+	private void pushResponses() {
+		try {
+			while(true) {
+				boolean heartbeat;
+				synchronized(this) {
+					if (goodbye || !hasPendingResponse()) {
+						pushScheduled = false;
+						return;
+					}
+					heartbeat = heartbeatDue;
+				}
+				if (!writeNextResponse() && heartbeat) {
+					getOutputStream().writeInt(RESPOND_IDLE);
+					flush();
+				}
+			}
+		}
+		catch(IOException ex) {
+			logger.info("Server for "+clientName+" lost the client!  Shutting down.");
+			synchronized(this) {
+				goodbye = true;
+				pushScheduled = false;
+			}
+			closeConnection();
+		}
+	}
+	private void closeConnection() {
+		if (connection!=null) try{ connection.close(); }catch(IOException ex){ };
 	}
 	public void run() {
 		try {
@@ -251,15 +401,23 @@ public class GameServer extends GameNet {
 		}
 		catch(IOException ex) {
 			// Oops!  Client disconnected abnormally!  Need to tell host.
-			logger.info("Server for "+clientName+" lost the client!  Shutting down.");
+			if (goodbye) {
+				logger.info("Server for "+clientName+" shutting down normally.");
+			}
+			else {
+				logger.info("Server for "+clientName+" lost the client!  Shutting down.");
+			}
 		}
 		catch(Exception ex) {
 			ex.printStackTrace();
 			logger.info("Server for "+clientName+" lost the client with an exception!  Shutting down.");
 		}
+		synchronized(this) {
+			goodbye = true; // no more pushes
+		}
 		if (in!=null) try{ in.close(); }catch(IOException ex){ };
 		if (out!=null) try{ out.close(); }catch(IOException ex){ };
-		if (connection!=null) try{ connection.close(); }catch(IOException ex){ };
+		closeConnection();
 		host.removeServer(this);
 	}
 	public void setClientHostName(String clientHostName) {
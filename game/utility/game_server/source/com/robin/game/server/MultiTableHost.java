@@ -0,0 +1,227 @@
+/* 
+ * RealmSpeak is the Java application for playing the board game Magic Realm.
+ * Copyright (c) 2005-2015 Robin Warren
+ * E-mail: robin@dewkid.com
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the
+ * implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ *
+ * http://www.gnu.org/licenses/
+ */
+package com.robin.game.server;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.channels.*;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.logging.Logger;
+
+/**
+ * Hosts many games ("tables") from one process.  Each table is an ordinary GameHost, with its own data and its own
+ * port, so the clients don't know the difference.  Rather than a GameConnector thread per table, one thread accepts
+ * the connections for every table.  Each client connection still gets a GameServer thread of its own, which reads the
+ * client's requests, and the responses pushed to the clients are written by a small pool shared by every connection.
+ * So capping the connections keeps the thread count at no more than 1+maxConnections (plus the shared push threads),
+ * however many games are running.
+ */
+public class MultiTableHost extends Thread {
+	private static final String THREAD_NAME = "MultiTableHost.ThreadName";
+	
+	private static Logger logger = Logger.getLogger(MultiTableHost.class.getName());
+	
+	private int maxTables;
+	private int maxConnections;
+	
+	private Selector selector;
+	private LinkedHashMap<GameHost,ServerSocketChannel> tables = new LinkedHashMap<GameHost,ServerSocketChannel>();
+	private ArrayList<GameHost> pending = new ArrayList<GameHost>(); // tables waiting to be registered with the selector
+	private int refused = 0;
+	
+	private volatile boolean alive = true;
+	
+	public MultiTableHost(int maxTables,int maxConnections) throws IOException {
+		this.maxTables = maxTables;
+		this.maxConnections = maxConnections;
+		selector = Selector.open();
+		setName(THREAD_NAME);
+	}
+	
+	/**
+	 * Starts serving the table on the given port
+	 * 
+	 * @throws IllegalStateException		If there are already maxTables tables
+	 */
+	public void addTable(GameHost host,int port) throws IOException {
+		synchronized(this) {
+			if (tables.containsKey(host)) {
+				throw new IllegalArgumentException("Already hosting "+host.getGameTitle());
+			}
+			if (tables.size()>=maxTables) {
+				throw new IllegalStateException("Can't host more than "+maxTables+" tables");
+			}
+			ServerSocketChannel channel = ServerSocketChannel.open();
+			try {
+				channel.socket().setReuseAddress(true);
+				channel.socket().bind(new InetSocketAddress(port));
+				channel.configureBlocking(false);
+			}
+			catch(IOException ex) {
+				channel.close();
+				throw ex;
+			}
+			tables.put(host,channel);
+			pending.add(host);
+		}
+		selector.wakeup(); // registers the table
+		logger.info("Hosting "+host.getGameTitle()+" on port "+port);
+	}
+	
+	/**
+	 * Stops serving the table, and disconnects all of its clients
+	 */
+	public void removeTable(GameHost host) {
+		ServerSocketChannel channel;
+		synchronized(this) {
+			channel = tables.remove(host);
+			pending.remove(host);
+		}
+		if (channel!=null) {
+			try {
+				channel.close();
+			}
+			catch(IOException ex) {
+				ex.printStackTrace();
+			}
+			host.shutdown();
+			logger.info("Stopped hosting "+host.getGameTitle());
+		}
+	}
+	
+	public synchronized ArrayList<GameHost> getTables() {
+		return new ArrayList<GameHost>(tables.keySet());
+	}
+	
+	/**
+	 * @return		The port the table is served on, or -1 if it isn't one of ours
+	 */
+	public synchronized int getPort(GameHost host) {
+		ServerSocketChannel channel = tables.get(host);
+		return channel==null?-1:channel.socket().getLocalPort();
+	}
+	
+	/**
+	 * @return		The number of clients connected over all the tables
+	 */
+	public int getConnectionCount() {
+		int count = 0;
+		for (GameHost host:getTables()) {
+			count += host.getServers().size();
+		}
+		return count;
+	}
+	
+	/**
+	 * @return		The number of connections that were turned away, because maxConnections were already connected
+	 */
+	public synchronized int getRefusedCount() {
+		return refused;
+	}
+	
+	public int getMaxTables() {
+		return maxTables;
+	}
+	public int getMaxConnections() {
+		return maxConnections;
+	}
+	
+	/**
+	 * Removes every table, and ends the thread
+	 */
+	public void shutdown() {
+		alive = false;
+		selector.wakeup();
+		for (GameHost host:getTables()) {
+			removeTable(host);
+		}
+	}
+	
+	private void registerPending() throws ClosedChannelException {
+		synchronized(this) {
+			for (GameHost host:pending) {
+				tables.get(host).register(selector,SelectionKey.OP_ACCEPT,host);
+			}
+			pending.clear();
+		}
+	}
+	
+	private void accept(SelectionKey key) throws IOException {
+		SocketChannel channel = ((ServerSocketChannel)key.channel()).accept();
+		if (channel==null) {
+			return;
+		}
+		GameHost host = (GameHost)key.attachment();
+		if (getConnectionCount()>=maxConnections) {
+			synchronized(this) {
+				refused++;
+			}
+			logger.info("Refusing a connection to "+host.getGameTitle()+":  already serving "+maxConnections+" clients.");
+			channel.close();
+			return;
+		}
+		channel.configureBlocking(true); // GameServer uses plain blocking streams
+		Socket connection = channel.socket();
+		try {
+			connection.setSoTimeout(GameNet.DEFAULT_TIMEOUT_MS);
+			connection.setTcpNoDelay(true);
+			host.addConnection(connection);
+		}
+		catch(SocketException ex) {
+			System.err.println("Unable to accept connection from "+connection.getInetAddress()+".  Stack trace follows:");
+			ex.printStackTrace();
+			channel.close();
+		}
+	}
+	
+	public void run() {
+		try {
+			while(alive) {
+				registerPending();
+				selector.select();
+				for (Iterator<SelectionKey> i=selector.selectedKeys().iterator();i.hasNext();) {
+					SelectionKey key = i.next();
+					i.remove();
+					if (key.isValid() && key.isAcceptable()) {
+						try {
+							accept(key);
+						}
+						catch(IOException ex) {
+							ex.printStackTrace();
+						}
+					}
+				}
+			}
+		}
+		catch(Exception ex) {
+			ex.printStackTrace();
+		}
+		finally {
+			try {
+				selector.close();
+			}
+			catch(IOException ex) {
+				ex.printStackTrace();
+			}
+		}
+	}
+}
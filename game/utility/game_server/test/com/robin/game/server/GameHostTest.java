@@ -0,0 +1,143 @@
+/* 
+ * RealmSpeak is the Java application for playing the board game Magic Realm.
+ * Copyright (c) 2005-2015 Robin Warren
+ * E-mail: robin@dewkid.com
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the
+ * implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ *
+ * http://www.gnu.org/licenses/
+ */
+package com.robin.game.server;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import org.junit.*;
+
+import com.robin.game.objects.GameData;
+import com.robin.game.objects.GameObject;
+import com.robin.game.objects.GameObjectChange;
+
+public class GameHostTest {
+	
+	private GameData masterData;
+	private GameData hostData;
+	private GameHost host;
+	private Random random;
+	private ArrayList<GameObjectChange> live = new ArrayList<GameObjectChange>(); // every change sent to the clients
+	
+	@Before
+	public void setUp() {
+		masterData = new GameData();
+		for (int i=0;i<30;i++) {
+			GameObject go = masterData.createNewObject();
+			go.setName("Object "+i);
+			go.setThisAttribute("start",i);
+		}
+		hostData = masterData.copy();
+		hostData.setTracksChanges(true);
+		host = new GameHost(masterData,hostData,"test","test");
+		random = new Random(12345L);
+	}
+	
+	/**
+	 * Makes random changes to the host data, and sends them out the same way the host does:  through applyChanges,
+	 * then rolled back so they aren't applied twice.
+	 */
+	private void changeHostData(int count) {
+		ArrayList<GameObject> objects = new ArrayList<GameObject>(hostData.getGameObjects());
+		for (int i=0;i<count;i++) {
+			GameObject go = objects.get(random.nextInt(objects.size()));
+			switch(random.nextInt(4)) {
+				case 0:
+					go.setThisAttribute("a"+random.nextInt(5),random.nextInt(100));
+					break;
+				case 1:
+					go.removeThisAttribute("a"+random.nextInt(5));
+					break;
+				case 2:
+					// (never empty, since buildChanges doesn't carry an empty list, though live changes do)
+					ArrayList<String> list = new ArrayList<String>();
+					for (int n=1+random.nextInt(4);n>0;n--) {
+						list.add(String.valueOf(random.nextInt(10)));
+					}
+					go.setThisAttributeList("list",list);
+					break;
+				case 3:
+					// Objects 0-4 hold things, and never get held themselves
+					GameObject holder = objects.get(random.nextInt(5));
+					GameObject held = objects.get(5+random.nextInt(objects.size()-5));
+					if (held.getHeldBy()!=null) {
+						held.getHeldBy().remove(held);
+					}
+					holder.add(held);
+					break;
+			}
+			if (random.nextInt(10)==0 || i==count-1) {
+				live.addAll(hostData.getObjectChanges());
+				Assert.assertTrue(host.applyChanges(null,hostData.getObjectChanges()));
+				hostData.rollback();
+			}
+		}
+	}
+	
+	/**
+	 * @return		A client's data, as it is after joining with the given changes
+	 */
+	private GameData join(ArrayList changes) {
+		GameData data = masterData.copy();
+		for (Object o:changes) {
+			((GameObjectChange)o).applyChange(data);
+		}
+		return data;
+	}
+	
+	private static void assertSameData(GameData expected,GameData actual) {
+		Assert.assertEquals(expected.getGameObjects().size(),actual.getGameObjects().size());
+		Assert.assertTrue(actual.buildChanges(expected).isEmpty());
+		Assert.assertTrue(expected.buildChanges(actual).isEmpty());
+	}
+	
+	@Test
+	public void testLateJoinerGetsSameData() {
+		changeHostData(200);
+		GameData first = join(host.getMasterToGameChanges());
+		assertSameData(join(masterData.buildChanges(hostData)),first);
+		
+		// The second client gets the snapshot from the first join, plus the changes since
+		live.clear();
+		changeHostData(300);
+		int compactions = host.getJoinCompactions();
+		GameData late = join(host.getMasterToGameChanges());
+		Assert.assertEquals(compactions,host.getJoinCompactions());
+		assertSameData(join(masterData.buildChanges(hostData)),late);
+		
+		// which is the same as the first client, after getting the same changes live
+		for (GameObjectChange change:live) {
+			change.applyChange(first);
+		}
+		assertSameData(late,first);
+	}
+	
+	@Test
+	public void testTailDoesNotGrowWithoutJoins() {
+		changeHostData(50);
+		join(host.getMasterToGameChanges());
+		Assert.assertTrue(host.getJoinSnapshotSize()>0);
+		
+		// Nobody joins, so the snapshot is dropped once the tail outgrows it, instead of holding every change
+		changeHostData(5000);
+		Assert.assertEquals(0,host.getJoinSnapshotSize());
+		
+		GameData late = join(host.getMasterToGameChanges());
+		assertSameData(join(masterData.buildChanges(hostData)),late);
+	}
+}
@@ -0,0 +1,110 @@
+/* 
+ * RealmSpeak is the Java application for playing the board game Magic Realm.
+ * Copyright (c) 2005-2015 Robin Warren
+ * E-mail: robin@dewkid.com
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the
+ * implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ *
+ * http://www.gnu.org/licenses/
+ */
+package com.robin.game.server;
+
+import java.util.ArrayList;
+
+import org.junit.*;
+
+import com.robin.game.objects.GameAttributeChange;
+import com.robin.game.objects.GameData;
+import com.robin.game.objects.GameObject;
+
+public class GameServerTest {
+	
+	private static final int CLIENTS = 8;
+	
+	private GameData masterData;
+	private GameData hostData;
+	private GameHost host;
+	private ArrayList<GameClient> clients = new ArrayList<GameClient>();
+	
+	@Before
+	public void setUp() {
+		masterData = new GameData();
+		GameObject wolf = masterData.createNewObject();
+		wolf.setName("Wolf");
+		hostData = masterData.copy();
+		hostData.getGameObject(0).setThisAttribute("hp","5"); // so joining clients have something to load
+		host = new GameHost(masterData,hostData,"test","pw");
+	}
+	
+	@After
+	public void tearDown() throws InterruptedException {
+		for (GameClient client:clients) {
+			client.kill();
+		}
+		for (int i=0;i<100 && !host.getServers().isEmpty();i++) {
+			Thread.sleep(50);
+		}
+	}
+	
+	private GameClient connect(String name) {
+		GameClient client = new GameClient(masterData.copy(),null,name,"pw",0) {
+			public void receiveInfoDirect(ArrayList info) {
+			}
+			public void receiveBroadcast(String key,String message) {
+			}
+		};
+		host.connectClient(client);
+		client.start();
+		clients.add(client);
+		return client;
+	}
+	
+	private static int countThreads(String name) {
+		int count = 0;
+		for (Thread thread:Thread.getAllStackTraces().keySet()) {
+			if (thread.isAlive() && thread.getName().startsWith(name)) {
+				count++;
+			}
+		}
+		return count;
+	}
+	
+	@Test
+	public void testPushWithoutAThreadPerConnection() throws InterruptedException {
+		for (int i=0;i<CLIENTS;i++) {
+			connect("Player "+i);
+		}
+		for (GameClient client:clients) {
+			for (int i=0;i<200 && !client.isDataLoaded();i++) {
+				Thread.sleep(50);
+			}
+			Assert.assertTrue(client.isDataLoaded());
+		}
+		
+		// A change made on the host reaches every client without being polled for
+		GameAttributeChange change = new GameAttributeChange(hostData.getGameObject(0));
+		change.setAttribute("this","hp","7");
+		ArrayList changes = new ArrayList();
+		changes.add(change);
+		host.applyChanges(null,changes);
+		for (GameClient client:clients) {
+			for (int i=0;i<200 && !"7".equals(client.getGameData().getGameObject(0).getThisAttribute("hp"));i++) {
+				Thread.sleep(10);
+			}
+			Assert.assertEquals("7",client.getGameData().getGameObject(0).getThisAttribute("hp"));
+		}
+		
+		// One thread per connection reads, and a shared pool writes
+		Assert.assertEquals(CLIENTS,host.getServers().size());
+		Assert.assertEquals(0,countThreads("GameServer.ThreadName.Reader"));
+		Assert.assertTrue(countThreads("GameServer.ThreadName.Push")<=Math.max(2,Runtime.getRuntime().availableProcessors()));
+	}
+}
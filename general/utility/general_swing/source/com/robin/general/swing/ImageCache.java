@@ -21,10 +21,14 @@ import java.awt.*;
 import java.awt.geom.AffineTransform;
 import java.awt.image.BufferedImage;
 import java.io.File;
-import java.util.Hashtable;
+import java.util.*;
 
 import javax.swing.*;
 
+/**
+ * Two tier cache of icons:  base images are decoded once and kept for good, while the scaled, tinted and rotated
+ * variants made from them go into an LRU that is bounded by an (approximate) memory budget.
+ */
 public class ImageCache {
 	private static class ImagePath {
 		private String folder;
@@ -45,29 +49,143 @@ public class ImageCache {
 		new ImageCache.ImagePath("images",".png"),
 	};
 	
-	private static Hashtable cache = new Hashtable();
+	public static final long DEFAULT_VARIANT_BUDGET = 64L*1024L*1024L; // bytes
+	
+	private static final HashMap<String,ImageIcon> cache = new HashMap<String,ImageIcon>(); // base images
+	private static final LinkedHashMap<String,ImageIcon> variantCache = new LinkedHashMap<String,ImageIcon>(256,0.75f,true); // in LRU order
+	private static long variantBudget = DEFAULT_VARIANT_BUDGET;
+	private static long variantBytes = 0;
+	
+	private static long baseHits = 0;
+	private static long baseMisses = 0;
+	private static long variantHits = 0;
+	private static long variantMisses = 0;
+	private static long variantEvictions = 0;
 	
 	/**
 	 * This method is a sneaky way to trick the cache into believing the icon has already been fetched.
 	 */
-	public static void _placeImage(String name,ImageIcon icon) {
+	public static synchronized void _placeImage(String name,ImageIcon icon) {
 		cache.put(name,icon);
+		// Anything made from the old image is no longer valid
+		String prefix = name+":";
+		for (Iterator<Map.Entry<String,ImageIcon>> i=variantCache.entrySet().iterator();i.hasNext();) {
+			Map.Entry<String,ImageIcon> entry = i.next();
+			if (entry.getKey().startsWith(prefix)) {
+				variantBytes -= getByteSize(entry.getValue());
+				i.remove();
+			}
+		}
 	}
 	
-	public static void resetCache() {
+	public static synchronized void resetCache() {
 		cache.clear();
-		cache = new Hashtable();
+		variantCache.clear();
+		variantBytes = 0;
+	}
+	/**
+	 * Sets the approximate number of bytes the scaled, tinted and rotated icons may use before the least recently
+	 * used ones are dropped.
+	 */
+	public static synchronized void setVariantBudget(long bytes) {
+		variantBudget = bytes;
+		trimVariants();
+	}
+	public static synchronized long getVariantBudget() {
+		return variantBudget;
+	}
+	public static synchronized long getVariantBytes() {
+		return variantBytes;
+	}
+	public static synchronized int getBaseCount() {
+		return cache.size();
+	}
+	public static synchronized int getVariantCount() {
+		return variantCache.size();
+	}
+	public static synchronized long getBaseHits() {
+		return baseHits;
+	}
+	public static synchronized long getBaseMisses() {
+		return baseMisses;
+	}
+	public static synchronized long getVariantHits() {
+		return variantHits;
+	}
+	public static synchronized long getVariantMisses() {
+		return variantMisses;
+	}
+	public static synchronized long getVariantEvictions() {
+		return variantEvictions;
+	}
+	public static synchronized void resetStatistics() {
+		baseHits = 0;
+		baseMisses = 0;
+		variantHits = 0;
+		variantMisses = 0;
+		variantEvictions = 0;
+	}
+	public static synchronized String getStatistics() {
+		return "ImageCache:  base "+cache.size()+" icons ("+baseHits+" hits, "+baseMisses+" misses), variants "
+				+variantCache.size()+" icons using "+(variantBytes>>10)+"K of "+(variantBudget>>10)+"K ("
+				+variantHits+" hits, "+variantMisses+" misses, "+variantEvictions+" evictions)";
+	}
+	private static synchronized ImageIcon getCachedVariant(String key) {
+		ImageIcon ii = variantCache.get(key);
+		if (ii==null) {
+			variantMisses++;
+		}
+		else {
+			variantHits++;
+		}
+		return ii;
+	}
+	private static synchronized void putVariant(String key,ImageIcon ii) {
+		ImageIcon old = variantCache.put(key,ii);
+		if (old!=null) {
+			variantBytes -= getByteSize(old);
+		}
+		variantBytes += getByteSize(ii);
+		trimVariants();
+	}
+	private static void trimVariants() {
+		for (Iterator<ImageIcon> i=variantCache.values().iterator();i.hasNext() && variantBytes>variantBudget;) {
+			variantBytes -= getByteSize(i.next());
+			i.remove();
+			variantEvictions++;
+		}
+	}
+	private static long getByteSize(ImageIcon ii) {
+		return 4L*Math.max(0,ii.getIconWidth())*Math.max(0,ii.getIconHeight());
+	}
+	private static synchronized ImageIcon getCachedBase(String name) {
+		ImageIcon ii = cache.get(name);
+		if (ii==null) {
+			baseMisses++;
+		}
+		else {
+			baseHits++;
+		}
+		return ii;
+	}
+	private static synchronized ImageIcon putBase(String name,ImageIcon ii) {
+		ImageIcon existing = cache.get(name);
+		if (existing!=null) { // another thread got there first
+			return existing;
+		}
+		cache.put(name,ii);
+		return ii;
 	}
 	public static ImageIcon getIcon(String name) { // why does this fail with custom characters?  (RealmSpeak)
 		ImageIcon ii = null;
 		if (name!=null) {
-			ii = (ImageIcon)cache.get(name);
+			ii = getCachedBase(name);
 			if (ii==null) {
 				String iconPath = null;
 				for (ImagePath ip:validPaths) {
 					iconPath = ip.getPath(name);
 					ii = IconFactory.findIcon(iconPath);
-					if (ii!=null) return ii;
+					if (ii!=null) return putBase(name,ii);
 				}
 				File file = new File("./"+iconPath);
 				System.err.println("Unable to locate image: "+name);
@@ -90,7 +208,7 @@ public class ImageCache {
 	public static ImageIcon getIcon(String name,Color tint,float percent) {
 		if (name!=null) {
 			String key = name+":c"+tint.toString()+":"+percent;
-			ImageIcon ii = (ImageIcon)cache.get(key);
+			ImageIcon ii = getCachedVariant(key);
 			if (ii==null) {
 				ii = getIcon(name);
 				BufferedImage bi = new BufferedImage(ii.getIconWidth(),ii.getIconHeight(),BufferedImage.TYPE_4BYTE_ABGR);
@@ -100,7 +218,7 @@ public class ImageCache {
 				g.setColor(tint);
 				g.fillRect(0,0,ii.getIconWidth(),ii.getIconHeight());
 				ii = new ImageIcon(bi);
-				cache.put(key,ii);
+				putVariant(key,ii);
 			}
 			return ii;
 		}
@@ -109,12 +227,12 @@ public class ImageCache {
 	public static ImageIcon getIcon(String name,int width,int height) {
 		if (name!=null) {
 			String key = name+":"+width+","+height;
-			ImageIcon ii = (ImageIcon)cache.get(key);
+			ImageIcon ii = getCachedVariant(key);
 			if (ii==null) {
 				ii = getIcon(name);
 				Image i = ii.getImage().getScaledInstance(width,height,Image.SCALE_SMOOTH);
 				ii = new ImageIcon(i,key);
-				cache.put(key,ii);
+				putVariant(key,ii);
 			}
 			return ii;
 		}
@@ -128,14 +246,14 @@ public class ImageCache {
 			}
 			else {
 				String key = name+":"+percent;
-				ImageIcon ii = (ImageIcon)cache.get(key);
+				ImageIcon ii = getCachedVariant(key);
 				if (ii==null) {
 					ii = getIcon(name);
 					int w = (ii.getIconWidth()*percent)/100;
 					int h = (ii.getIconHeight()*percent)/100;
 					Image i = ii.getImage().getScaledInstance(w,h,Image.SCALE_SMOOTH);
 					ii = new ImageIcon(i,key);
-					cache.put(key,ii);
+					putVariant(key,ii);
 				}
 				return ii;
 			}
@@ -147,6 +265,11 @@ public class ImageCache {
 		ImageIcon rotated = null;
 		
 		if (degrees!=0) {
+			String key = name+":"+percent+":r"+degrees;
+			rotated = getCachedVariant(key);
+			if (rotated!=null) {
+				return rotated;
+			}
 			BufferedImage bi = new BufferedImage(normal.getIconWidth(),normal.getIconHeight(),BufferedImage.TYPE_4BYTE_ABGR);
 			Graphics2D g = (Graphics2D)bi.getGraphics();
 			double cx = ((double)normal.getIconWidth())/2.0;
@@ -154,6 +277,7 @@ public class ImageCache {
 			AffineTransform rotation = AffineTransform.getRotateInstance(Math.toRadians((double)degrees),cx,cy);
 			g.drawImage(normal.getImage(),rotation,null);
 			rotated = new ImageIcon(bi);
+			putVariant(key,rotated);
 		}
 		else {
 			rotated = normal;
@@ -22,24 +22,28 @@ import java.util.StringTokenizer;
 
 public class RandomNumber {
 	
+	private RandomNumberType type;
 	private Randomable rg;
 	private long seed;
 	private long count;
 
 	private RandomNumber() {
-		this(System.nanoTime(), 0);
+		this(currentRandomNumberType, System.nanoTime(), 0);
 	}
 
-	private RandomNumber(long seed, long count) {
+	private RandomNumber(RandomNumberType type, long seed, long count) {
+		restore(type, seed, count);
+	}
+	
+	private synchronized void restore(RandomNumberType type, long seed, long count) {
+		this.type = type;
 		this.seed = seed;
 		this.count = count;
 		rg = getRandomable(seed);
-		for (int i = 0; i < count; i++) {
-			rg.nextInt();
-		}
+		rg.skip(count);
 	}
 
-	private int rand(int val) {
+	private synchronized int rand(int val) {
 		if (val <= 0)
 			return 0;
 		count++;
@@ -47,9 +51,10 @@ public class RandomNumber {
 	}
 	
 	private Randomable getRandomable(long seed) {
-		switch(currentRandomNumberType) {
+		switch(type) {
 			case R250_521:			return new R250_521(seed);
 			case MersenneTwister:	return new MersenneTwister(seed);
+			case SplitMix64:		return new SplitMix64(seed);
 		}
 		return new JavaRandom(seed);
 	}
@@ -63,19 +68,34 @@ public class RandomNumber {
 			soleInstance = null;
 		}
 	}
+	/**
+	 * @return		The type of the generator the calling thread rolls with
+	 */
 	public static RandomNumberType getRandomNumberGenerator() {
-		return currentRandomNumberType;
+		RandomNumber instance = threadInstance.get();
+		return instance==null ? currentRandomNumberType : instance.type;
 	}
 	
-	public static RandomNumber soleInstance = null;
+	private static volatile RandomNumber soleInstance = null;
+	private static final ThreadLocal<RandomNumber> threadInstance = new ThreadLocal<RandomNumber>();
 	public static RandomNumber getSoleInstance() {
-		if (soleInstance == null) {
-			soleInstance = new RandomNumber();
+		RandomNumber instance = threadInstance.get();
+		if (instance != null) {
+			return instance;
+		}
+		instance = soleInstance;
+		if (instance == null) {
+			synchronized(RandomNumber.class) {
+				if (soleInstance == null) {
+					soleInstance = new RandomNumber();
+				}
+				instance = soleInstance;
+			}
 		}
-		return soleInstance;
+		return instance;
 	}
 	public static boolean hasBeenInitialized() {
-		return soleInstance!=null;
+		return threadInstance.get()!=null || soleInstance!=null;
 	}
 
 	public static int getRandom(int val) {
@@ -146,14 +166,86 @@ public class RandomNumber {
 	}
 
 	public static long getCount() {
-		return getSoleInstance().count;
+		RandomNumber instance = getSoleInstance();
+		synchronized(instance) {
+			return instance.count;
+		}
 	}
 
+	/**
+	 * Restores the generator to where it was after count rolls.  The old generator types have to replay all the
+	 * rolls to get there, but SplitMix64 jumps straight to it.
+	 */
 	public static void init(long seed, long count) {
-		soleInstance = new RandomNumber(seed, count);
+		init(getRandomNumberGenerator(), seed, count);
+	}
+
+	/**
+	 * Restores the generator the calling thread rolls with, so a game that has its own generator (see
+	 * setThreadInstance) picks up where its save left off without touching the shared one.  Otherwise the shared
+	 * generator is replaced, and becomes the indicated type.
+	 */
+	public static void init(RandomNumberType rt, long seed, long count) {
+		RandomNumber instance = threadInstance.get();
+		if (instance!=null) {
+			instance.restore(rt, seed, count);
+			return;
+		}
+		setRandomNumberGenerator(rt);
+		soleInstance = new RandomNumber(rt, seed, count);
 		//(new Exception()).printStackTrace(); // UNCOMMENT THIS LINE WHEN THINGS DONT SEEM RANDOM ANYMORE...  THEN YOU'LL SEE WTF!
 	}
 
+	/**
+	 * Gives the calling thread its own generator, so that simulations can run side by side without sharing (or
+	 * disturbing) the game's rolls.  Every roll made on this thread uses it until clearThreadInstance is called.
+	 */
+	public static void initThreadInstance(long seed) {
+		threadInstance.set(new RandomNumber(currentRandomNumberType, seed, 0));
+	}
+
+	public static void clearThreadInstance() {
+		threadInstance.remove();
+	}
+
+	/**
+	 * @return		A new generator of the current type, that isn't used by anything until it is handed to
+	 * 				setThreadInstance.  Lets a game keep its own generator, whichever thread happens to be working on it.
+	 */
+	public static RandomNumber newInstance(long seed) {
+		return newInstance(seed, 0);
+	}
+
+	/**
+	 * @return		A new generator of the current type, already moved ahead count rolls
+	 */
+	public static RandomNumber newInstance(long seed, long count) {
+		return newInstance(currentRandomNumberType, seed, count);
+	}
+
+	/**
+	 * @return		A new generator of the indicated type, already moved ahead count rolls (instantly, for SplitMix64)
+	 */
+	public static RandomNumber newInstance(RandomNumberType rt, long seed, long count) {
+		return new RandomNumber(rt, seed, count);
+	}
+
+	/**
+	 * Makes every roll on the calling thread use the provided generator (or the shared one, if null).
+	 * 
+	 * @return		The thread's previous generator, so it can be put back afterwards
+	 */
+	public static RandomNumber setThreadInstance(RandomNumber instance) {
+		RandomNumber previous = threadInstance.get();
+		if (instance==null) {
+			threadInstance.remove();
+		}
+		else {
+			threadInstance.set(instance);
+		}
+		return previous;
+	}
+
 	/* Testing only */
 	public static void main(String[] args) {
 		setRandomNumberGenerator(RandomNumberType.R250_521);
@@ -174,6 +266,11 @@ public class RandomNumber {
 	private interface Randomable {
 		public int nextInt(int mod);
 		public int nextInt();
+		
+		/**
+		 * Moves ahead as if nextInt() had been called count times
+		 */
+		public void skip(long count);
 	}
 	
 	private final class JavaRandom implements Randomable {
@@ -187,6 +284,11 @@ public class RandomNumber {
 		public int nextInt() {
 			return random.nextInt();
 		}
+		public void skip(long count) {
+			for (long i = 0; i < count; i++) {
+				random.nextInt();
+			}
+		}
 	}
 	
 	// http://www.qbrundage.com/michaelb/pubs/essays/random_number_generation.html
@@ -230,6 +332,11 @@ public class RandomNumber {
 		public int nextInt(int mod) {
 			return Math.abs(nextInt())%mod;
 		}
+		public void skip(long count) {
+			for (long i = 0; i < count; i++) {
+				nextInt();
+			}
+		}
 
 		public int nextInt() {
 			int i1 = r250_index;
@@ -270,6 +377,11 @@ public class RandomNumber {
 		public int nextInt(int mod) {
 			return Math.abs(nextInt())%mod;
 		}
+		public void skip(long count) {
+			for (long i = 0; i < count; i++) {
+				nextInt();
+			}
+		}
 		public int nextInt() {
 			if (mt_index == 624) {
 				mt_index = 0;
@@ -290,4 +402,36 @@ public class RandomNumber {
 			return mt_buffer[mt_index++];
 		}
 	}
+
+	/**
+	 * A counter based generator (SplitMix64, from Steele, Lea and Flood's SplittableRandom).  Roll n is just a hash
+	 * of the seed and n, so skipping ahead to any roll takes no time at all.  Each call uses exactly one roll, and
+	 * nextInt(mod) scales the high bits (instead of rejecting), which is what makes count enough to restore it.
+	 */
+	private final class SplitMix64 implements Randomable {
+		private long seed;
+		private long counter;
+
+		public SplitMix64(long seed) {
+			this.seed = seed;
+			counter = 0;
+		}
+
+		public int nextInt(int mod) {
+			return (int)(((next()>>>32)*mod)>>>32);
+		}
+		public int nextInt() {
+			return (int)(next()>>>32);
+		}
+		public void skip(long count) {
+			counter += count;
+		}
+		private long next() {
+			counter++;
+			long z = seed + counter*0x9E3779B97F4A7C15L;
+			z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+			z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+			return z ^ (z >>> 31);
+		}
+	}
 }
\ No newline at end of file
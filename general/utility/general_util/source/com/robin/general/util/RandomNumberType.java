@@ -21,4 +21,5 @@ public enum RandomNumberType {
 		System,
 		R250_521,
 		MersenneTwister,
+		SplitMix64,
 }
\ No newline at end of file
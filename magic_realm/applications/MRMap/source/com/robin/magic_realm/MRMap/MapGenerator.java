@@ -0,0 +1,532 @@
+/* 
+ * RealmSpeak is the Java application for playing the board game Magic Realm.
+ * Copyright (c) 2005-2015 Robin Warren
+ * E-mail: robin@dewkid.com
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the
+ * implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ *
+ * http://www.gnu.org/licenses/
+ */
+package com.robin.magic_realm.MRMap;
+
+import java.awt.Point;
+import java.util.*;
+import java.util.concurrent.*;
+
+import com.robin.game.objects.GameData;
+import com.robin.general.util.RandomNumber;
+import com.robin.magic_realm.components.utility.Constants;
+import com.robin.magic_realm.components.utility.RealmLoader;
+import com.robin.magic_realm.components.wrapper.HostPrefWrapper;
+import com.robin.magic_realm.map.Tile;
+
+/**
+ * Builds random maps from the tiles in a GameData.  Each candidate map gets its own Random, seeded from the
+ * generator seed and the candidate index, so the same seed always gives the same maps no matter how many
+ * threads are used.  Candidates are built on a ForkJoinPool using copies of the tiles, and only the map that
+ * is finally chosen is written back to the GameObjects.
+ *
+ * When the placement runs into a dead end, the builder backs up and tries the next option for the most recent
+ * tiles, rather than starting over.  A fresh start only happens if the backtracking limit is used up.
+ *
+ * The rule that a new tile's clearings lead back to the Borderland is checked against an AnchorMap, which works out
+ * once for each state of the map which clearings are connected, instead of searching the map again for every
+ * clearing of every placement that is tried.
+ */
+public class MapGenerator {
+	
+	/**
+	 * The number of alternate placements tried at any one step before backing up another step
+	 */
+	public static final int MAX_ALTERNATES = 6;
+	
+	/**
+	 * The number of backtracks allowed before giving up on the current attempt and starting over
+	 */
+	public static final int MAX_BACKTRACKS = 200;
+	
+	/**
+	 * The number of candidate maps built (and rated) in each batch.  This is fixed, rather than one map per thread,
+	 * so the map that is chosen depends only on the seed, and not on the machine.  The threads only decide how
+	 * quickly the batch gets built.
+	 */
+	public static final int BATCH_SIZE = 8;
+	
+	private GameData data;
+	private ArrayList<Tile> tiles;
+	private long seed;
+	private int parallelism;
+	private int nextIndex = 0;
+	
+	public MapGenerator(GameData data,Collection keyVals,long seed) {
+		this(data,keyVals,seed,Runtime.getRuntime().availableProcessors());
+	}
+	public MapGenerator(GameData data,Collection keyVals,long seed,int parallelism) {
+		this.data = data;
+		this.tiles = new ArrayList<Tile>();
+		for (Object o:MapBuilder.startTileList(data,keyVals)) {
+			tiles.add((Tile)o);
+		}
+		MapBuilder.findBorderland(tiles); // fail early if it's missing
+		this.seed = seed;
+		this.parallelism = Math.max(1,parallelism);
+	}
+	public long getSeed() {
+		return seed;
+	}
+	public int getParallelism() {
+		return parallelism;
+	}
+	
+	/**
+	 * @return		A seed drawn from RandomNumber, so that a game started from a known seed builds the same maps
+	 */
+	public static long nextSeed() {
+		return (((long)RandomNumber.getRandom(Integer.MAX_VALUE))<<31)^RandomNumber.getRandom(Integer.MAX_VALUE);
+	}
+	
+	/**
+	 * Builds the candidate map for the given index on the calling thread.  The result depends only on the
+	 * generator seed and the index.
+	 */
+	public MapCandidate buildCandidate(int index) {
+		return buildCandidate(index,null);
+	}
+	private MapCandidate buildCandidate(int index,MapProgressReportable reporter) {
+		Random random = new Random(mix(seed+index));
+		MapCandidate candidate = new MapCandidate(index);
+		while(!candidate.build(random,reporter));
+		return candidate;
+	}
+	
+	/**
+	 * Builds count candidate maps, starting at firstIndex, using the generator's ForkJoinPool.  The candidates are
+	 * returned in index order.
+	 */
+	public ArrayList<MapCandidate> buildCandidates(final int firstIndex,int count,MapProgressReportable reporter) {
+		ArrayList<MapCandidate> candidates = new ArrayList<MapCandidate>();
+		if (parallelism==1) {
+			for (int i=0;i<count;i++) {
+				candidates.add(buildCandidate(firstIndex+i));
+				if (reporter!=null) {
+					reporter.setProgress(i+1,count);
+				}
+			}
+			return candidates;
+		}
+		ForkJoinPool pool = new ForkJoinPool(parallelism);
+		try {
+			ArrayList<ForkJoinTask<MapCandidate>> tasks = new ArrayList<ForkJoinTask<MapCandidate>>();
+			for (int i=0;i<count;i++) {
+				final int index = firstIndex+i;
+				tasks.add(pool.submit(new Callable<MapCandidate>() {
+					public MapCandidate call() {
+						return buildCandidate(index);
+					}
+				}));
+			}
+			for (int i=0;i<count;i++) {
+				candidates.add(tasks.get(i).join());
+				if (reporter!=null) {
+					reporter.setProgress(i+1,count);
+				}
+			}
+		}
+		finally {
+			pool.shutdown();
+		}
+		return candidates;
+	}
+	
+	/**
+	 * Builds the first candidate map, and writes it to the GameData.  The reporter (if any) is updated as each
+	 * tile is placed.
+	 */
+	public MapCandidate buildMap(MapProgressReportable reporter) {
+		MapCandidate candidate = buildCandidate(0,reporter);
+		candidate.writeToGameData();
+		return candidate;
+	}
+	
+	/**
+	 * Builds BATCH_SIZE candidate maps at a time, rating each one with MapRating, until a map rated at least
+	 * minRating is found.  The best rated map of the last batch (lowest index on a tie) is written to the GameData.
+	 * Each call carries on from the candidates built by the previous one.
+	 * 
+	 * @return		The chosen map, with its rating set
+	 */
+	public MapCandidate buildBestMap(int minRating,MapProgressReportable reporter) {
+		return buildBestMap(BATCH_SIZE,minRating,reporter);
+	}
+	
+	/**
+	 * Same as buildBestMap(minRating,reporter), but with count maps in each batch.  To get the same map from the same
+	 * seed everywhere, the count has to be the same everywhere too.
+	 * 
+	 * @return		The chosen map, with its rating set
+	 */
+	public MapCandidate buildBestMap(int count,int minRating,MapProgressReportable reporter) {
+		count = Math.max(1,count);
+		MapCandidate best = null;
+		while(best==null || best.getRating()<minRating) {
+			best = null;
+			ArrayList<MapCandidate> candidates = buildCandidates(nextIndex,count,reporter);
+			nextIndex += count;
+			for (MapCandidate candidate:candidates) {
+				// Rating needs the tile components, so it is done here, one map at a time
+				candidate.writeToGameData();
+				candidate.rating = MapRating.getMapRating(data);
+				if (best==null || candidate.rating>best.rating) {
+					best = candidate;
+				}
+			}
+		}
+		best.writeToGameData();
+		return best;
+	}
+	
+	/**
+	 * Spreads the bits of nearby seeds (SplitMix64 finalizer)
+	 */
+	private static long mix(long z) {
+		z = (z^(z>>>30))*0xbf58476d1ce4e5b9L;
+		z = (z^(z>>>27))*0x94d049bb133111ebL;
+		return z^(z>>>31);
+	}
+	
+	/**
+	 * One built map:  working copies of the tiles, each with its position and rotation.
+	 */
+	public class MapCandidate {
+		private int index;
+		private ArrayList<Tile> placed;
+		private int rating = -1;
+		private int backtracks = 0;
+		private int restarts = 0;
+		
+		private MapCandidate(int index) {
+			this.index = index;
+		}
+		public int getIndex() {
+			return index;
+		}
+		/**
+		 * @return		The MapRating of the map, or -1 if it hasn't been rated
+		 */
+		public int getRating() {
+			return rating;
+		}
+		public int getBacktracks() {
+			return backtracks;
+		}
+		public int getRestarts() {
+			return restarts;
+		}
+		public void writeToGameData() {
+			for (Tile tile:placed) {
+				tile.writeToGameObject();
+			}
+		}
+		
+		/**
+		 * @return		true if all the tiles were placed, or false if the backtrack limit was used up
+		 */
+		private boolean build(Random random,MapProgressReportable reporter) {
+			ArrayList<Tile> working = new ArrayList<Tile>();
+			for (Tile tile:tiles) {
+				working.add(new Tile(tile));
+			}
+			
+			// Start the Borderland tile at position 0,0 with a random rotation
+			Hashtable mapGrid = new Hashtable();
+			Tile borderland = MapBuilder.findBorderland(working);
+			borderland.setMapPosition(new Point(0,0));
+			borderland.setRotation(random.nextInt(6));
+			mapGrid.put(borderland.getMapPosition(),borderland);
+			AnchorMap anchors = new AnchorMap(mapGrid,borderland);
+			
+			ArrayList<Step> steps = new ArrayList<Step>();
+			int allowed = MAX_BACKTRACKS;
+			while(mapGrid.size()<working.size()) {
+				if (reporter!=null) {
+					reporter.setProgress(mapGrid.size(),working.size());
+				}
+				ArrayList<TileMappingPossibility> options = findOptions(mapGrid,anchors,working,random);
+				if (options.isEmpty()) {
+					// Dead end:  back up to the most recent step that still has an untried option
+					Step step = null;
+					while(!steps.isEmpty()) {
+						step = steps.get(steps.size()-1);
+						remove(mapGrid,anchors,step.getPlaced());
+						if (step.hasNext()) break;
+						steps.remove(steps.size()-1);
+						step = null;
+					}
+					if (step==null || allowed--==0) {
+						restarts++;
+						return false;
+					}
+					backtracks++;
+					place(mapGrid,anchors,step.next());
+				}
+				else {
+					Step step = new Step(options);
+					steps.add(step);
+					place(mapGrid,anchors,step.next());
+				}
+			}
+			placed = new ArrayList<Tile>(mapGrid.values());
+			return true;
+		}
+	}
+	
+	/**
+	 * All the placements for the unmapped tiles, ordered the way they should be tried:  first a random tile (so
+	 * that every tile has the same chance, regardless of how many ways it fits), then a random placement for that
+	 * tile.  Only the first MAX_ALTERNATES placements are kept.
+	 */
+	private static ArrayList<TileMappingPossibility> findOptions(Hashtable mapGrid,AnchorMap anchors,ArrayList<Tile> working,Random random) {
+		ArrayList availableMapPositions = Tile.findAvailableMapPositions(mapGrid);
+		ArrayList<ArrayList<TileMappingPossibility>> allTileResults = new ArrayList<ArrayList<TileMappingPossibility>>();
+		for (Tile tile:working) {
+			if (!mapGrid.contains(tile)) {
+				ArrayList<TileMappingPossibility> tileResults = new ArrayList<TileMappingPossibility>();
+				for (Iterator a=availableMapPositions.iterator();a.hasNext();) {
+					Point pos = (Point)a.next();
+					for (int rot=0;rot<6;rot++) {
+						if (isMappingPossibility(mapGrid,anchors,tile,pos,rot)) {
+							tileResults.add(new TileMappingPossibility(tile,pos,rot));
+						}
+					}
+				}
+				if (tileResults.size()>0) {
+					allTileResults.add(tileResults);
+				}
+			}
+		}
+		ArrayList<TileMappingPossibility> options = new ArrayList<TileMappingPossibility>();
+		while(!allTileResults.isEmpty() && options.size()<MAX_ALTERNATES) {
+			ArrayList<TileMappingPossibility> tileResults = allTileResults.remove(random.nextInt(allTileResults.size()));
+			options.add(tileResults.get(random.nextInt(tileResults.size())));
+		}
+		return options;
+	}
+	/**
+	 * The same test as Tile.isMappingPossibility:  the paths on the edges have to line up with the neighbours, and
+	 * every clearing of a 6-clearing tile (or at least one clearing of any other tile) has to lead back to the
+	 * Borderland.
+	 */
+	private static boolean isMappingPossibility(Hashtable mapGrid,AnchorMap anchors,Tile tile,Point pos,int rot) {
+		tile.setMapPosition(pos);
+		tile.setRotation(rot);
+		for (int edge=0;edge<6;edge++) {
+			Tile adjTile = (Tile)mapGrid.get(Tile.getAdjacentPosition(pos,edge));
+			if (adjTile!=null && tile.getPathState(edge)!=adjTile.getPathState((edge+3)%6)) {
+				return false;
+			}
+		}
+		boolean allConnect = tile.getClearingCount()==6;
+		for (int i=0;i<6;i++) {
+			boolean connects = anchors.connects(tile,"clearing_"+(i+1));
+			if (connects && !allConnect) {
+				return true;
+			}
+			if (!connects && allConnect) {
+				return false;
+			}
+		}
+		return allConnect;
+	}
+	private static void place(Hashtable mapGrid,AnchorMap anchors,TileMappingPossibility tmp) {
+		Tile tile = tmp.getTile();
+		tile.setRotation(tmp.getRotation());
+		tile.setMapPosition(tmp.getPosition());
+		mapGrid.put(tmp.getPosition(),tile);
+		anchors.changed();
+	}
+	private static void remove(Hashtable mapGrid,AnchorMap anchors,TileMappingPossibility tmp) {
+		Tile tile = tmp.getTile();
+		mapGrid.remove(tmp.getPosition());
+		tile.setMapPosition(null);
+		anchors.changed();
+	}
+	
+	/**
+	 * Which clearings (and tile edges) on the map lead back to the Borderland.  It is worked out the first time it
+	 * is needed after the map changes, and then shared by every placement tried against that map.  Each map being
+	 * built has its own, since it holds on to that map's tiles.
+	 */
+	private static class AnchorMap {
+		private static final String[] NODES = {
+			"clearing_1","clearing_2","clearing_3","clearing_4","clearing_5","clearing_6",
+			"S","SW","NW","N","NE","SE"};
+		
+		private Hashtable mapGrid;
+		private Tile anchor;
+		private HashMap<Tile,HashSet<String>> connected = null; // null until worked out for the current map
+		
+		public AnchorMap(Hashtable mapGrid,Tile anchor) {
+			this.mapGrid = mapGrid;
+			this.anchor = anchor;
+		}
+		public void changed() {
+			connected = null;
+		}
+		
+		/**
+		 * @return		true if the clearing of a tile that isn't on the map (but has its position and rotation set)
+		 * 				leads back to the Borderland.  Like Tile.connectsToTilename, the paths can't come back in to
+		 * 				the tile once they leave it, since it isn't on the map yet.
+		 */
+		public boolean connects(Tile tile,String clearing) {
+			if (tile.getConnected(clearing)==null) {
+				return false;
+			}
+			HashSet<String> touched = new HashSet<String>();
+			ArrayList<String> stack = new ArrayList<String>();
+			touched.add(clearing);
+			stack.add(clearing);
+			while(!stack.isEmpty()) {
+				String key = stack.remove(stack.size()-1);
+				if (tile.isEdge(key)) {
+					Tile adjTile = getAdjacentTile(tile,key);
+					if (adjTile!=null && isConnected(adjTile,getAdjacentEdge(tile,key,adjTile))) {
+						return true;
+					}
+				}
+				Collection c = tile.getConnected(key);
+				if (c!=null) {
+					for (Object o:c) {
+						String next = (String)o;
+						if (touched.add(next)) {
+							stack.add(next);
+						}
+					}
+				}
+			}
+			return false;
+		}
+		
+		private boolean isConnected(Tile tile,String key) {
+			if (connected==null) {
+				connected = new HashMap<Tile,HashSet<String>>();
+				findConnected();
+			}
+			HashSet<String> keys = connected.get(tile);
+			return keys!=null && keys.contains(key);
+		}
+		
+		/**
+		 * Follows every path from the Borderland, marking each clearing and edge it reaches
+		 */
+		private void findConnected() {
+			ArrayList<Tile> tileStack = new ArrayList<Tile>();
+			ArrayList<String> keyStack = new ArrayList<String>();
+			for (String key:NODES) {
+				if (anchor.getConnected(key)!=null) {
+					touch(anchor,key,tileStack,keyStack);
+				}
+			}
+			while(!tileStack.isEmpty()) {
+				Tile tile = tileStack.remove(tileStack.size()-1);
+				String key = keyStack.remove(keyStack.size()-1);
+				if (tile.isEdge(key)) {
+					Tile adjTile = getAdjacentTile(tile,key);
+					if (adjTile!=null) {
+						touch(adjTile,getAdjacentEdge(tile,key,adjTile),tileStack,keyStack);
+					}
+				}
+				Collection c = tile.getConnected(key);
+				if (c!=null) {
+					for (Object o:c) {
+						touch(tile,(String)o,tileStack,keyStack);
+					}
+				}
+			}
+		}
+		private void touch(Tile tile,String key,ArrayList<Tile> tileStack,ArrayList<String> keyStack) {
+			HashSet<String> keys = connected.get(tile);
+			if (keys==null) {
+				keys = new HashSet<String>();
+				connected.put(tile,keys);
+			}
+			if (keys.add(key)) {
+				tileStack.add(tile);
+				keyStack.add(key);
+			}
+		}
+		private Tile getAdjacentTile(Tile tile,String edge) {
+			return (Tile)mapGrid.get(Tile.getAdjacentPosition(tile.getMapPosition(),tile.getRealEdgeNumber(edge)));
+		}
+		/**
+		 * @return		The (unrotated) name of the adjacent tile's edge that touches the edge of the tile
+		 */
+		private static String getAdjacentEdge(Tile tile,String edge,Tile adjTile) {
+			int adjTileRelativeEdge = (tile.getRealEdgeNumber(edge)+3)%6-adjTile.getRotation();
+			while(adjTileRelativeEdge<0) adjTileRelativeEdge+=6;
+			return Tile.getEdgeName(adjTileRelativeEdge);
+		}
+	}
+	
+	private static class Step {
+		private ArrayList<TileMappingPossibility> options;
+		private int next = 0;
+		public Step(ArrayList<TileMappingPossibility> options) {
+			this.options = options;
+		}
+		public boolean hasNext() {
+			return next<options.size();
+		}
+		public TileMappingPossibility next() {
+			return options.get(next++);
+		}
+		public TileMappingPossibility getPlaced() {
+			return options.get(next-1);
+		}
+	}
+	
+	/**
+	 * Benchmark:  builds the given number of maps (default 40) with one thread and then with all processors, and
+	 * reports the maps per second for each.
+	 */
+	public static void main(String[] args) {
+		int count = args.length>0?Integer.parseInt(args[0]):40;
+		long seed = args.length>1?Long.parseLong(args[1]):1L;
+		RealmLoader loader = new RealmLoader();
+		GameData data = loader.getData();
+		HostPrefWrapper hostPrefs = new HostPrefWrapper(data.createNewObject());
+		hostPrefs.setHostName("Benchmark");
+		hostPrefs.setGameKeyVals(Constants.ORIGINAL_GAME);
+		ArrayList<String> keyVals = new ArrayList<String>();
+		keyVals.add(Constants.ORIGINAL_GAME);
+		
+		int[] threads = {1,Runtime.getRuntime().availableProcessors()};
+		for (int n=0;n<threads.length;n++) {
+			MapGenerator generator = new MapGenerator(data,keyVals,seed,threads[n]);
+			generator.buildCandidates(0,Math.min(count,4),null); // warm up
+			long start = System.nanoTime();
+			ArrayList<MapCandidate> candidates = generator.buildCandidates(0,count,null);
+			double seconds = (System.nanoTime()-start)/1000000000.0;
+			int backtracks = 0;
+			int restarts = 0;
+			for (MapCandidate candidate:candidates) {
+				backtracks += candidate.getBacktracks();
+				restarts += candidate.getRestarts();
+			}
+			System.out.println(threads[n]+" thread(s): "+count+" maps in "+seconds+"s = "+(count/seconds)+" maps/second ("+backtracks+" backtracks, "+restarts+" restarts)");
+		}
+		
+		long start = System.nanoTime();
+		MapCandidate best = new MapGenerator(data,keyVals,seed).buildBestMap(count,0,null);
+		double seconds = (System.nanoTime()-start)/1000000000.0;
+		System.out.println("Best of "+count+" rated: map #"+best.getIndex()+" with rating "+best.getRating()+" in "+seconds+"s");
+	}
+}
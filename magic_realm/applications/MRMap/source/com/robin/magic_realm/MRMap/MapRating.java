@@ -18,9 +18,11 @@
 package com.robin.magic_realm.MRMap;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 
 import com.robin.game.objects.*;
 import com.robin.magic_realm.components.*;
+import com.robin.magic_realm.components.utility.ClearingGraph;
 import com.robin.magic_realm.components.utility.ClearingUtility;
 import com.robin.magic_realm.components.utility.RealmObjectMaster;
 
@@ -37,42 +39,25 @@ public class MapRating {
 		ArrayList<GameObject> tiles = RealmObjectMaster.getRealmObjectMaster(data).getTileObjects();
 		GamePool pool = new GamePool(tiles);
 		ArrayList<GameObject> valleyTiles = pool.find("tile,tile_type=V");
+		ClearingGraph graph = ClearingGraph.getClearingGraph(data);
 		int rating = Integer.MAX_VALUE;
 		for (GameObject go:valleyTiles) {
-			rating = Math.min(rating,getTileRating(go));
+			rating = Math.min(rating,getTileRating(graph,go));
 		}
 		
 		return rating;
 	}
-	private static int getTileRating(GameObject go) {
+	private static int getTileRating(ClearingGraph graph,GameObject go) {
 		TileComponent tile = (TileComponent)RealmComponent.getRealmComponent(go);
 		int clearingNum = ClearingUtility.recommendedClearing(go);
-		ArrayList<ClearingDetail> search = new ArrayList<ClearingDetail>();
-		search.add(tile.getClearing(clearingNum)); // seed clearing
 		
 		// First, find ALL connected clearings to the start point
-		ArrayList<ClearingDetail> found = new ArrayList<ClearingDetail>();
-		while(!search.isEmpty()) {
-			ArrayList<ClearingDetail> next = new ArrayList<ClearingDetail>();
-			for (ClearingDetail clearing:search) {
-				for (PathDetail path:clearing.getAllConnectedPaths()) {
-					if (path.isHidden() || path.isSecret()) continue;
-					ClearingDetail otherEnd = path.findConnection(clearing);
-					if (otherEnd==null || otherEnd.isCave() || otherEnd.isEdge() || found.contains(otherEnd)) continue;
-					
-					found.add(otherEnd);
-					next.add(otherEnd);
-				}
-			}
-			search = next;
-		}
+		ArrayList<ClearingDetail> found = graph.getReachableClearings(tile.getClearing(clearingNum),ClearingGraph.HIDDEN|ClearingGraph.SECRET|ClearingGraph.CAVE);
 		
 		// Now, count the number of individual tiles involved
-		ArrayList<TileComponent> connectedTiles = new ArrayList<TileComponent>();
+		HashSet<TileComponent> connectedTiles = new HashSet<TileComponent>();
 		for (ClearingDetail clearing:found) {
-			if (!connectedTiles.contains(clearing.getParent())) {
-				connectedTiles.add(clearing.getParent());
-			}
+			connectedTiles.add(clearing.getParent());
 		}
 //System.out.println(go.getName()+":  "+found.size()+" clearings, and "+connectedTiles.size()+" tiles");
 		return connectedTiles.size()-1;		// don't count the original tile
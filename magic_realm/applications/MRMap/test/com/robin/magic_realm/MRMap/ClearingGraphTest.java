@@ -0,0 +1,188 @@
+/* 
+ * RealmSpeak is the Java application for playing the board game Magic Realm.
+ * Copyright (c) 2005-2015 Robin Warren
+ * E-mail: robin@dewkid.com
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the
+ * implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ *
+ * http://www.gnu.org/licenses/
+ */
+package com.robin.magic_realm.MRMap;
+
+import java.util.*;
+
+import org.junit.*;
+
+import com.robin.game.objects.GameData;
+import com.robin.game.objects.GameObject;
+import com.robin.magic_realm.components.*;
+import com.robin.magic_realm.components.utility.*;
+import com.robin.magic_realm.components.wrapper.HostPrefWrapper;
+import com.robin.magic_realm.map.Tile;
+
+public class ClearingGraphTest {
+	
+	private GameData data;
+	private ArrayList<String> keyVals;
+	private Random random;
+	
+	@Before
+	public void setUp() {
+		RealmLoader loader = new RealmLoader();
+		data = loader.getData();
+		HostPrefWrapper hostPrefs = new HostPrefWrapper(data.createNewObject());
+		hostPrefs.setHostName("Test");
+		hostPrefs.setGameKeyVals(Constants.ORIGINAL_GAME);
+		keyVals = new ArrayList<String>();
+		keyVals.add(Constants.ORIGINAL_GAME);
+		random = new Random(12345L);
+	}
+	
+	@After
+	public void tearDown() {
+		RealmUtility.resetGame();
+	}
+	
+	private void buildMap(long seed) {
+		new MapGenerator(data,keyVals,seed,1).buildMap(null);
+		ClearingUtility.initAdjacentTiles(data);
+	}
+	
+	private ArrayList<ClearingDetail> getClearings() {
+		ArrayList<ClearingDetail> list = new ArrayList<ClearingDetail>();
+		for (GameObject go:RealmObjectMaster.getRealmObjectMaster(data).getTileObjects()) {
+			for (ClearingDetail clearing:((TileComponent)RealmComponent.getRealmComponent(go)).getClearings()) {
+				if (!clearing.isEdge()) {
+					list.add(clearing);
+				}
+			}
+		}
+		return list;
+	}
+	
+	/**
+	 * The search ClearingUtility.calculateClearingCount did before ClearingGraph, with a null check added
+	 */
+	private static int originalClearingCount(ClearingDetail from,ClearingDetail to) {
+		int val = 0;
+		ArrayList all = new ArrayList();
+		ArrayList list = new ArrayList();
+		list.add(from);
+		int count = 0;
+		while(!list.isEmpty()) {
+			count++;
+			ArrayList found = new ArrayList();
+			for (Iterator i=list.iterator();i.hasNext();) {
+				ClearingDetail clearing = (ClearingDetail)i.next();
+				if (!all.contains(clearing)) {
+					all.add(clearing);
+					Collection c = clearing.getConnectedPaths();
+					if (c==null) continue; // (only paths to the map edge - callers never started from one of these)
+					for (Iterator n=c.iterator();n.hasNext();) {
+						PathDetail path = (PathDetail)n.next();
+						ClearingDetail connectedClearing = path.findConnection(clearing);
+						if (connectedClearing!=null) {
+							if (connectedClearing.equals(to)) {
+								if (val==0 || count<val) {
+									val = count;
+									if (val==1) {
+										break;
+									}
+								}
+							}
+							else {
+								found.add(connectedClearing);
+							}
+						}
+					}
+				}
+			}
+			list = found;
+		}
+		return val;
+	}
+	
+	/**
+	 * The search MapRating did before ClearingGraph
+	 */
+	private static ArrayList<ClearingDetail> originalConnectedClearings(ClearingDetail start) {
+		ArrayList<ClearingDetail> search = new ArrayList<ClearingDetail>();
+		search.add(start);
+		ArrayList<ClearingDetail> found = new ArrayList<ClearingDetail>();
+		while(!search.isEmpty()) {
+			ArrayList<ClearingDetail> next = new ArrayList<ClearingDetail>();
+			for (ClearingDetail clearing:search) {
+				for (PathDetail path:clearing.getAllConnectedPaths()) {
+					if (path.isHidden() || path.isSecret()) continue;
+					ClearingDetail otherEnd = path.findConnection(clearing);
+					if (otherEnd==null || otherEnd.isCave() || otherEnd.isEdge() || found.contains(otherEnd)) continue;
+					
+					found.add(otherEnd);
+					next.add(otherEnd);
+				}
+			}
+			search = next;
+		}
+		return found;
+	}
+	
+	private void assertSameAsOriginal(ClearingGraph graph) {
+		ArrayList<ClearingDetail> clearings = getClearings();
+		Assert.assertEquals(clearings.size(),graph.getClearingCount());
+		for (ClearingDetail clearing:clearings) {
+			ArrayList<ClearingDetail> expected = originalConnectedClearings(clearing);
+			ArrayList<ClearingDetail> actual = graph.getReachableClearings(clearing,ClearingGraph.HIDDEN|ClearingGraph.SECRET|ClearingGraph.CAVE);
+			Assert.assertEquals(clearing.toString(),expected.size(),actual.size());
+			Assert.assertTrue(clearing.toString(),actual.containsAll(expected));
+		}
+		for (int i=0;i<1000;i++) {
+			ClearingDetail from = clearings.get(random.nextInt(clearings.size()));
+			ClearingDetail to = clearings.get(random.nextInt(clearings.size()));
+			if (from!=to) {
+				int distance = graph.getDistance(from,to,0);
+				Assert.assertEquals(from+" to "+to,originalClearingCount(from,to),distance==ClearingGraph.UNREACHABLE?0:distance);
+			}
+		}
+	}
+	
+	@Test
+	public void testSameAsOriginalSearch() {
+		buildMap(1L);
+		ClearingGraph graph = ClearingGraph.getClearingGraph(data);
+		assertSameAsOriginal(graph);
+		Assert.assertSame(graph,ClearingGraph.getClearingGraph(data));
+		
+		// A new map moves and rotates every tile
+		buildMap(2L);
+		ClearingGraph rebuilt = ClearingGraph.getClearingGraph(data);
+		Assert.assertNotSame(graph,rebuilt);
+		assertSameAsOriginal(rebuilt);
+	}
+	
+	@Test
+	public void testRebuiltWhenOnlyAdjacencyChanges() {
+		buildMap(1L);
+		ClearingGraph graph = ClearingGraph.getClearingGraph(data);
+		TileComponent tile = (TileComponent)RealmComponent.getRealmComponent(data.getGameObjectByName("Crag"));
+		ClearingDetail crag = tile.getClearings().get(0);
+		int reachable = graph.getReachableClearings(crag,0).size();
+		
+		// Take the tile off the map:  no tile is flipped or rotated, so only the adjacent tiles say the layout changed
+		tile.getGameObject().removeAttribute(Tile.MAP_GRID,Tile.MAP_POSITION);
+		ClearingUtility.initAdjacentTiles(data);
+		tile.clearAdjacentTiles();
+		
+		ClearingGraph rebuilt = ClearingGraph.getClearingGraph(data);
+		Assert.assertNotSame(graph,rebuilt);
+		Assert.assertTrue(rebuilt.getReachableClearings(crag,0).size()<reachable);
+		assertSameAsOriginal(rebuilt);
+	}
+}
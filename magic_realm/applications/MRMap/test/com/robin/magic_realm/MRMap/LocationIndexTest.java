@@ -0,0 +1,195 @@
+/* 
+ * RealmSpeak is the Java application for playing the board game Magic Realm.
+ * Copyright (c) 2005-2015 Robin Warren
+ * E-mail: robin@dewkid.com
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the
+ * implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ *
+ * http://www.gnu.org/licenses/
+ */
+package com.robin.magic_realm.MRMap;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import org.junit.*;
+
+import com.robin.game.objects.GameData;
+import com.robin.game.objects.GameObject;
+import com.robin.game.objects.GamePool;
+import com.robin.magic_realm.components.ClearingDetail;
+import com.robin.magic_realm.components.RealmComponent;
+import com.robin.magic_realm.components.TileComponent;
+import com.robin.magic_realm.components.attribute.TileLocation;
+import com.robin.magic_realm.components.utility.*;
+import com.robin.magic_realm.components.wrapper.HostPrefWrapper;
+
+public class LocationIndexTest {
+	
+	private GameData data;
+	private ArrayList<String> keyVals;
+	private Random random;
+	private ArrayList<TileComponent> tiles;
+	private ArrayList<GameObject> monsters;
+	private ArrayList<GameObject> items;
+	private LocationIndex index;
+	
+	@Before
+	public void setUp() {
+		RealmLoader loader = new RealmLoader();
+		data = loader.getData();
+		HostPrefWrapper hostPrefs = new HostPrefWrapper(data.createNewObject());
+		hostPrefs.setHostName("Test");
+		hostPrefs.setGameKeyVals(Constants.ORIGINAL_GAME);
+		keyVals = new ArrayList<String>();
+		keyVals.add(Constants.ORIGINAL_GAME);
+		random = new Random(12345L);
+		
+		buildMap(1L);
+		tiles = new ArrayList<TileComponent>();
+		for (GameObject go:RealmObjectMaster.getRealmObjectMaster(data).getTileObjects()) {
+			tiles.add((TileComponent)RealmComponent.getRealmComponent(go));
+		}
+		GamePool pool = new GamePool(data.getGameObjects());
+		monsters = pool.find(Constants.ORIGINAL_GAME+",monster,!"+RealmComponent.MONSTER_PART); // parts stay with their monsters
+		items = pool.find(Constants.ORIGINAL_GAME+",item");
+		index = LocationIndex.getLocationIndex(data);
+	}
+	
+	@After
+	public void tearDown() {
+		RealmUtility.resetGame();
+	}
+	
+	private void buildMap(long seed) {
+		new MapGenerator(data,keyVals,seed,1).buildMap(null);
+		ClearingUtility.initAdjacentTiles(data);
+	}
+	
+	/**
+	 * Puts the monster in a random clearing, or somewhere on a random tile
+	 */
+	private void placeMonster(GameObject monster) {
+		if (monster.getHeldBy()!=null) {
+			monster.getHeldBy().remove(monster);
+		}
+		TileComponent tile = tiles.get(random.nextInt(tiles.size()));
+		tile.getGameObject().add(monster);
+		ArrayList<ClearingDetail> clearings = tile.getClearings();
+		int roll = random.nextInt(clearings.size()+1);
+		if (roll==clearings.size()) {
+			monster.removeThisAttribute("clearing");
+		}
+		else {
+			monster.setThisAttribute("clearing",clearings.get(roll).getNum());
+		}
+	}
+	
+	/**
+	 * Gives the item to a random monster, or takes it off the board
+	 */
+	private void placeItem(GameObject item) {
+		if (item.getHeldBy()!=null) {
+			item.getHeldBy().remove(item);
+		}
+		if (random.nextInt(4)>0) {
+			monsters.get(random.nextInt(monsters.size())).add(item);
+		}
+	}
+	
+	private void moveThings(int count) {
+		for (int i=0;i<count;i++) {
+			if (random.nextBoolean()) {
+				placeMonster(monsters.get(random.nextInt(monsters.size())));
+			}
+			else {
+				placeItem(items.get(random.nextInt(items.size())));
+			}
+		}
+	}
+	
+	/**
+	 * Looks everything up twice (so the second lookup comes from the index), and compares it all with the search
+	 */
+	private void assertSameAsSearch() {
+		for (int n=0;n<2;n++) {
+			ArrayList<GameObject> objects = new ArrayList<GameObject>(monsters);
+			objects.addAll(items);
+			for (GameObject go:objects) {
+				TileLocation expected = ClearingUtility.findTileLocation(go,null);
+				TileLocation actual = index.getTileLocation(go);
+				if (expected==null) {
+					Assert.assertNull(go.getName(),actual);
+				}
+				else {
+					Assert.assertEquals(go.getName(),expected,actual);
+					Assert.assertSame(go.getName(),expected.tile,actual.tile);
+					Assert.assertSame(go.getName(),expected.clearing,actual.clearing); // the right side of the tile
+				}
+			}
+			for (TileComponent tile:tiles) {
+				for (ClearingDetail clearing:tile.getClearings()) {
+					ArrayList<RealmComponent> expected = tile.findRealmComponentsAt(clearing.getNum(),null);
+					Assert.assertEquals(clearing.toString(),expected,index.getRealmComponentsAt(tile,clearing.getNum()));
+					for (RealmComponent rc:expected) {
+						TileLocation tl = index.getTileLocation(rc.getGameObject());
+						Assert.assertSame(tile,tl.tile);
+						Assert.assertEquals(clearing.getNum(),tl.clearing.getNum());
+					}
+				}
+			}
+		}
+	}
+	
+	@Test
+	public void testSameAsSearch() {
+		Assert.assertTrue(monsters.size()>0);
+		Assert.assertTrue(items.size()>0);
+		for (GameObject monster:monsters) {
+			placeMonster(monster);
+		}
+		for (GameObject item:items) {
+			placeItem(item);
+		}
+		assertSameAsSearch();
+		long hits = index.getHits();
+		Assert.assertTrue(hits>0);
+		
+		for (int i=0;i<20;i++) {
+			moveThings(1+random.nextInt(10));
+			assertSameAsSearch();
+		}
+		Assert.assertTrue(index.getHits()>hits);
+	}
+	
+	@Test
+	public void testTilesMoveAndFlip() {
+		for (GameObject monster:monsters) {
+			placeMonster(monster);
+		}
+		for (GameObject item:items) {
+			placeItem(item);
+		}
+		assertSameAsSearch();
+		
+		// A new map moves and rotates the tiles under everything
+		buildMap(2L);
+		assertSameAsSearch();
+		
+		// Flipping a tile swaps its clearings for the ones on the other side
+		for (int i=0;i<5;i++) {
+			tiles.get(random.nextInt(tiles.size())).flip();
+			assertSameAsSearch();
+			moveThings(5);
+			assertSameAsSearch();
+		}
+	}
+}
@@ -0,0 +1,82 @@
+/* 
+ * RealmSpeak is the Java application for playing the board game Magic Realm.
+ * Copyright (c) 2005-2015 Robin Warren
+ * E-mail: robin@dewkid.com
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the
+ * implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ *
+ * http://www.gnu.org/licenses/
+ */
+package com.robin.magic_realm.MRMap;
+
+import java.util.ArrayList;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.robin.game.objects.GameData;
+import com.robin.game.objects.GameObject;
+import com.robin.game.objects.GamePool;
+import com.robin.magic_realm.MRMap.MapGenerator.MapCandidate;
+import com.robin.magic_realm.components.utility.Constants;
+import com.robin.magic_realm.components.utility.RealmLoader;
+import com.robin.magic_realm.components.wrapper.HostPrefWrapper;
+import com.robin.magic_realm.map.Tile;
+
+public class MapGeneratorTest {
+	
+	private GameData data;
+	private ArrayList<String> keyVals;
+	
+	@Before
+	public void setUp() {
+		RealmLoader loader = new RealmLoader();
+		data = loader.getData();
+		HostPrefWrapper hostPrefs = new HostPrefWrapper(data.createNewObject());
+		hostPrefs.setHostName("Test");
+		hostPrefs.setGameKeyVals(Constants.ORIGINAL_GAME);
+		keyVals = new ArrayList<String>();
+		keyVals.add(Constants.ORIGINAL_GAME);
+	}
+	
+	/**
+	 * @return		The position and rotation of every tile, as written to the GameData
+	 */
+	private String getMap() {
+		StringBuilder sb = new StringBuilder();
+		for (Object o:new GamePool(data.getGameObjects()).extract(keyVals)) {
+			GameObject go = (GameObject)o;
+			if (go.hasKey("tile")) {
+				sb.append(go.getName());
+				sb.append("@");
+				sb.append(go.getAttribute(Tile.MAP_GRID,Tile.MAP_POSITION));
+				sb.append("/");
+				sb.append(go.getAttribute(Tile.MAP_GRID,Tile.MAP_ROTATION));
+				sb.append(";");
+			}
+		}
+		return sb.toString();
+	}
+	
+	@Test
+	public void testSameMapForAnyThreadCount() {
+		MapCandidate serial = new MapGenerator(data,keyVals,12345L,1).buildBestMap(0,null);
+		String serialMap = getMap();
+		MapCandidate parallel = new MapGenerator(data,keyVals,12345L,4).buildBestMap(0,null);
+		String parallelMap = getMap();
+		
+		Assert.assertEquals(serial.getIndex(),parallel.getIndex());
+		Assert.assertEquals(serial.getRating(),parallel.getRating());
+		Assert.assertEquals(serialMap,parallelMap);
+		Assert.assertTrue(serialMap.length()>0);
+	}
+}
@@ -73,7 +73,7 @@ public class BattleHtmlGenerator extends HtmlGenerator {
 	private String battleLog;
 	private String roundLog;
 	
-	public BattleHtmlGenerator(GameData data, String detailLog, boolean highQuality,BattleModel battleModel,int actionState,RealmComponent activeParticipant) {
+	public BattleHtmlGenerator(GameData data, RealmLogJournal detailLog, boolean highQuality,BattleModel battleModel,int actionState,RealmComponent activeParticipant) {
 		super(data,highQuality);
 		this.actionState = actionState;
 		this.battleModel = battleModel;
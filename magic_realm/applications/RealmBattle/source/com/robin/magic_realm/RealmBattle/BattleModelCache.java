@@ -0,0 +1,215 @@
+/* 
+ * RealmSpeak is the Java application for playing the board game Magic Realm.
+ * Copyright (c) 2005-2015 Robin Warren
+ * E-mail: robin@dewkid.com
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the
+ * implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ *
+ * http://www.gnu.org/licenses/
+ */
+package com.robin.magic_realm.RealmBattle;
+
+import java.util.*;
+
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
+
+import com.robin.game.objects.GameData;
+import com.robin.game.objects.GameObject;
+import com.robin.magic_realm.components.RealmComponent;
+import com.robin.magic_realm.components.TileComponent;
+import com.robin.magic_realm.components.attribute.TileLocation;
+import com.robin.magic_realm.components.utility.ClearingUtility;
+
+/**
+ * Keeps the BattleModel for each clearing, so that every step of the evening doesn't have to build it again.
+ * 
+ * A BattleModel only depends on who is in the clearing, and who owns them (the groups are fixed once built, and
+ * everything else is read from the GameObjects as it is needed).  The cache listens to the GameData, and marks a
+ * clearing's model as stale when the tile, anything on the tile, or one of the participants is modified.  A stale
+ * model is checked against the current combatants and owners before use, and only rebuilt if they have actually
+ * changed, so the steady stream of combat attribute changes during a round doesn't throw the models away.
+ */
+public class BattleModelCache implements ChangeListener {
+	
+	private GameData data;
+	private HashMap<String,CachedModel> models; // tile id:clearing -> model
+	private HashMap<Long,HashSet<String>> dependents; // object id -> keys of the models that depend on it
+	private long modificationCount = 0;
+	
+	private long hits = 0;
+	private long misses = 0;
+	
+	private static class CachedModel {
+		TileComponent tile;
+		BattleModel model;
+		ArrayList<RealmComponent> combatants;
+		ArrayList<String> ownerIds;
+		boolean stale;
+		CachedModel(TileComponent tile,BattleModel model,ArrayList<RealmComponent> combatants,ArrayList<String> ownerIds) {
+			this.tile = tile;
+			this.model = model;
+			this.combatants = combatants;
+			this.ownerIds = ownerIds;
+			this.stale = false;
+		}
+		boolean matches(ArrayList<RealmComponent> otherCombatants,ArrayList<String> otherOwnerIds) {
+			if (combatants.size()!=otherCombatants.size() || !ownerIds.equals(otherOwnerIds)) {
+				return false;
+			}
+			for (int i=0;i<combatants.size();i++) {
+				if (combatants.get(i)!=otherCombatants.get(i)) {
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+	
+	private BattleModelCache(GameData data) {
+		this.data = data;
+		models = new HashMap<String,CachedModel>();
+		dependents = new HashMap<Long,HashSet<String>>();
+		data.addObjectChangeListener(this);
+	}
+	
+	public static synchronized BattleModelCache getBattleModelCache(GameData data) {
+		BattleModelCache cache = (BattleModelCache)data.getAttachment(BattleModelCache.class);
+		if (cache==null) {
+			cache = new BattleModelCache(data);
+			data.setAttachment(BattleModelCache.class,cache);
+		}
+		return cache;
+	}
+	
+	/**
+	 * Forgets the models for one GameData (done at the start of each evening)
+	 */
+	public static synchronized void reset(GameData data) {
+		BattleModelCache cache = (BattleModelCache)data.setAttachment(BattleModelCache.class,null);
+		if (cache!=null) {
+			data.removeObjectChangeListener(cache);
+		}
+	}
+	
+	public static synchronized void resetAll() {
+		for (Object cache:GameData.removeAllAttachments(BattleModelCache.class)) {
+			((BattleModelCache)cache).data.removeObjectChangeListener((BattleModelCache)cache);
+		}
+	}
+	
+	public synchronized void stateChanged(ChangeEvent ev) {
+		Long id = new Long(((GameObject)ev.getSource()).getId());
+		modificationCount++;
+		HashSet<String> keys = dependents.remove(id);
+		if (keys!=null) {
+			for (String key:keys) {
+				CachedModel cached = models.get(key);
+				if (cached!=null) {
+					cached.stale = true;
+				}
+			}
+		}
+	}
+	
+	/**
+	 * @return		The BattleModel for the clearing.  Locations that aren't in a clearing aren't cached.
+	 */
+	public BattleModel getBattleModel(TileLocation tl) {
+		if (!tl.isInClearing()) {
+			return RealmBattle.createBattleModel(tl,data,ClearingUtility.getCombatantsInClearing(tl));
+		}
+		String key = tl.tile.getGameObject().getId()+":"+tl.clearing.getNum();
+		CachedModel cached;
+		long count;
+		synchronized(this) {
+			cached = models.get(key);
+			if (cached!=null && cached.tile!=tl.tile) { // a different TileComponent means the components were reset
+				cached = null;
+			}
+			if (cached!=null && !cached.stale) {
+				hits++;
+				return cached.model;
+			}
+			count = modificationCount;
+		}
+		
+		// Check (or build) without holding the lock, since it can end up waiting on the GameData
+		ArrayList<RealmComponent> combatants = new ArrayList<RealmComponent>(ClearingUtility.getCombatantsInClearing(tl));
+		ArrayList<String> ownerIds = getOwnerIds(combatants);
+		ArrayList<GameObject> sources = getSources(tl,combatants);
+		if (cached!=null && cached.matches(combatants,ownerIds)) {
+			synchronized(this) {
+				hits++;
+				if (count==modificationCount) {
+					cached.stale = false;
+					addDependents(key,sources);
+				}
+			}
+			return cached.model;
+		}
+		BattleModel model = RealmBattle.createBattleModel(tl.copy(),data,combatants);
+		synchronized(this) {
+			misses++;
+			if (count==modificationCount) { // otherwise something changed while building, so it may already be stale
+				models.put(key,new CachedModel(tl.tile,model,combatants,ownerIds));
+				addDependents(key,sources);
+			}
+		}
+		return model;
+	}
+	
+	private static ArrayList<String> getOwnerIds(ArrayList<RealmComponent> combatants) {
+		ArrayList<String> ownerIds = new ArrayList<String>();
+		for (RealmComponent rc:combatants) {
+			ownerIds.add(rc.getOwnerId());
+		}
+		return ownerIds;
+	}
+	
+	/**
+	 * @return		The objects that can change who is in the clearing:  the tile, everything on it, and the combatants
+	 */
+	private static ArrayList<GameObject> getSources(TileLocation tl,ArrayList<RealmComponent> combatants) {
+		ArrayList<GameObject> sources = new ArrayList<GameObject>();
+		GameObject tile = tl.tile.getGameObject();
+		sources.add(tile);
+		sources.addAll(tile.getHold());
+		for (RealmComponent rc:combatants) {
+			sources.add(rc.getGameObject());
+		}
+		return sources;
+	}
+	private void addDependents(String key,ArrayList<GameObject> sources) {
+		for (GameObject go:sources) {
+			addDependent(key,go);
+		}
+	}
+	private void addDependent(String key,GameObject go) {
+		Long id = new Long(go.getId());
+		HashSet<String> keys = dependents.get(id);
+		if (keys==null) {
+			keys = new HashSet<String>();
+			dependents.put(id,keys);
+		}
+		keys.add(key);
+	}
+	
+	public synchronized long getHits() {
+		return hits;
+	}
+	public synchronized long getMisses() {
+		return misses;
+	}
+	public synchronized int size() {
+		return models.size();
+	}
+}
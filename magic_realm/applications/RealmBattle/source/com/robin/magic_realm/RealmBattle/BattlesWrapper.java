@@ -23,7 +23,6 @@ import java.util.Iterator;
 import com.robin.game.objects.GameData;
 import com.robin.game.objects.GameObject;
 import com.robin.game.objects.GameObjectWrapper;
-import com.robin.game.server.GameClient;
 import com.robin.magic_realm.components.*;
 import com.robin.magic_realm.components.attribute.TileLocation;
 import com.robin.magic_realm.components.utility.*;
@@ -83,35 +82,33 @@ public class BattlesWrapper extends GameObjectWrapper {
 			TileLocation tl = TileLocation.parseTileLocation(data,tlKey);
 			BattleModel model = RealmBattle.buildBattleModel(tl,data);
 			
-			if (GameClient.GetMostRecentClient()!=null) {
-				GameClient.GetMostRecentClient().broadcast(RealmLogging.BATTLE,"Battle resolving at "+tl+":");
-				int count = 1;
-				for (Iterator i=model.getAllBattleGroups(true).iterator();i.hasNext();) {
-					GameClient.GetMostRecentClient().broadcast(RealmLogging.BATTLE,"GROUP "+(count++));
-					BattleGroup group = (BattleGroup)i.next();
-					RealmComponent owner = group.getOwningCharacter();
-					for (Iterator n=group.getBattleParticipants().iterator();n.hasNext();) {
-						RealmComponent rc = (RealmComponent)n.next();
-						String message = rc.getGameObject().getName();
-						if (owner!=null && owner!=rc) {
-							message = message+" ("+owner.getGameObject().getName()+")";
-						}
-						GameClient.GetMostRecentClient().broadcast(RealmLogging.BATTLE,"  "+message);
-						
-						// Make sure everyone is starting out light-side up, and with NO predefined targets!
-						if (rc.isChit() && !rc.isCharacter()) {
-							ChitComponent chit = (ChitComponent)rc;
-							chit.setLightSideUp();
-						}
-						rc.clearTarget();
-						
-						// Flip monster weapons light side up
-						if (rc.isMonster()) {
-							MonsterChitComponent monster = (MonsterChitComponent)rc;
-							MonsterPartChitComponent weapon = monster.getWeapon();
-							if (weapon!=null && weapon.isDarkSideUp()) {
-								weapon.setLightSideUp();
-							}
+			RealmLogging.logMessage(RealmLogging.BATTLE,"Battle resolving at "+tl+":");
+			int count = 1;
+			for (Iterator i=model.getAllBattleGroups(true).iterator();i.hasNext();) {
+				RealmLogging.logMessage(RealmLogging.BATTLE,"GROUP "+(count++));
+				BattleGroup group = (BattleGroup)i.next();
+				RealmComponent owner = group.getOwningCharacter();
+				for (Iterator n=group.getBattleParticipants().iterator();n.hasNext();) {
+					RealmComponent rc = (RealmComponent)n.next();
+					String message = rc.getGameObject().getName();
+					if (owner!=null && owner!=rc) {
+						message = message+" ("+owner.getGameObject().getName()+")";
+					}
+					RealmLogging.logMessage(RealmLogging.BATTLE,"  "+message);
+					
+					// Make sure everyone is starting out light-side up, and with NO predefined targets!
+					if (rc.isChit() && !rc.isCharacter()) {
+						ChitComponent chit = (ChitComponent)rc;
+						chit.setLightSideUp();
+					}
+					rc.clearTarget();
+					
+					// Flip monster weapons light side up
+					if (rc.isMonster()) {
+						MonsterChitComponent monster = (MonsterChitComponent)rc;
+						MonsterPartChitComponent weapon = monster.getWeapon();
+						if (weapon!=null && weapon.isDarkSideUp()) {
+							weapon.setLightSideUp();
 						}
 					}
 				}
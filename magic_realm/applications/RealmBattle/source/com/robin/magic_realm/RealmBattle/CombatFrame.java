@@ -921,7 +921,7 @@ public class CombatFrame extends JFrame {
 						String initialFolderName = "RSCombat_M"+theGame.getMonth()+"D"+theGame.getDay()+"_Round_"+getCurrentRound();
 						String folderName = JOptionPane.showInputDialog("Folder Name:",initialFolderName);
 						if (folderName!=null) {
-							BattleHtmlGenerator generator = new BattleHtmlGenerator(gameData,RealmLogWindow.getSingleton().getHtmlString(),true,currentBattleModel,actionState,activeParticipant);
+							BattleHtmlGenerator generator = new BattleHtmlGenerator(gameData,RealmLogWindow.getSingleton().getJournal(),true,currentBattleModel,actionState,activeParticipant);
 							generator.setCombatSheets(getAllCombatSheets());
 							String path = dest.getAbsolutePath()+File.separator+folderName;
 							generator.saveHtml(path);
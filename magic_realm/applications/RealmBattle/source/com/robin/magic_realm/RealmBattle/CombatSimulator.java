@@ -0,0 +1,332 @@
+/* 
+ * RealmSpeak is the Java application for playing the board game Magic Realm.
+ * Copyright (c) 2005-2015 Robin Warren
+ * E-mail: robin@dewkid.com
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the
+ * implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ *
+ * http://www.gnu.org/licenses/
+ */
+package com.robin.magic_realm.RealmBattle;
+
+import java.io.File;
+import java.util.*;
+import java.util.concurrent.*;
+
+import com.robin.game.objects.GameData;
+import com.robin.game.objects.GameObject;
+import com.robin.general.util.HashLists;
+import com.robin.general.util.RandomNumber;
+import com.robin.magic_realm.components.RealmComponent;
+import com.robin.magic_realm.components.attribute.TileLocation;
+import com.robin.magic_realm.components.utility.Constants;
+import com.robin.magic_realm.components.utility.RealmLogging;
+import com.robin.magic_realm.components.wrapper.*;
+
+/**
+ * Resolves combat in one clearing with no UI.  The same RealmBattle steps the host uses are run, and wherever a
+ * character would be shown the CombatFrame, a CombatChoices script is asked to make the character's choices instead.
+ * 
+ * Each simulation runs on its own copy of the snapshot, with its own seeded RandomNumber and its own log, so any
+ * number of them can run side by side.  The snapshot itself is never changed.
+ */
+public class CombatSimulator {
+	
+	/**
+	 * The most combat actions a simulation is allowed before it is stopped (in case the script never lets it end)
+	 */
+	public static final int MAX_ACTIONS = 5000;
+	
+	/**
+	 * Makes the choices for a character in headless combat.
+	 */
+	public interface CombatChoices {
+		/**
+		 * Called whenever the character would be shown the CombatFrame in the given action state (including
+		 * COMBAT_PREBATTLE and COMBAT_FATIGUE).  Make the choices on the GameObjects, the same way CombatFrame does
+		 * (targets, attack and maneuver chits, fatigue), and simply return.  The simulator moves the character on to
+		 * the next state afterwards.
+		 */
+		public void makeChoices(BattleModel model,CharacterWrapper character,int actionState);
+	}
+	
+	/**
+	 * Makes no choices at all:  every character simply presses Done.
+	 */
+	public static final CombatChoices NO_CHOICES = new CombatChoices() {
+		public void makeChoices(BattleModel model,CharacterWrapper character,int actionState) {
+		}
+	};
+	
+	private GameData snapshot;
+	private String locationKey;
+	private int parallelism;
+	private boolean keepLogs = false;
+	
+	/**
+	 * A simulator for a battle saved by the BattleBuilder
+	 */
+	public CombatSimulator(GameData snapshot) {
+		this(snapshot,TileLocation.parseTileLocation(snapshot,BattleBuilder.getBattleClearingReferenceObject(snapshot).getThisAttribute("battleClearing")));
+	}
+	public CombatSimulator(GameData snapshot,TileLocation location) {
+		this.snapshot = snapshot;
+		this.locationKey = location.asKey();
+		
+		// These are created on demand, and remember the id of the object they made, so make sure they are part of the
+		// snapshot rather than being made separately (with different ids) in each copy
+		GameWrapper.findGame(snapshot);
+		SpellMasterWrapper.getSpellMaster(snapshot);
+		this.parallelism = Runtime.getRuntime().availableProcessors();
+	}
+	public void setParallelism(int val) {
+		parallelism = Math.max(1,val);
+	}
+	public int getParallelism() {
+		return parallelism;
+	}
+	/**
+	 * @param val		true if each SimulationResult should keep the combat log
+	 */
+	public void setKeepLogs(boolean val) {
+		keepLogs = val;
+	}
+	
+	/**
+	 * Runs one simulation on a copy of the snapshot, on the calling thread.  The same seed and choices always give
+	 * the same result.
+	 */
+	public SimulationResult simulate(long seed,CombatChoices choices) {
+		GameData data;
+		synchronized(snapshot) {
+			data = snapshot.copy();
+		}
+		ArrayList<String[]> log = new ArrayList<String[]>();
+		RandomNumber.initThreadInstance(seed);
+		RealmLogging.setThreadLog(log);
+		try {
+			SimulationResult result = resolve(data,TileLocation.parseTileLocation(data,locationKey),choices,MAX_ACTIONS);
+			result.seed = seed;
+			if (keepLogs) {
+				result.log = log;
+			}
+			return result;
+		}
+		finally {
+			RealmLogging.setThreadLog(null);
+			RandomNumber.clearThreadInstance();
+			BattleModelCache.reset(data);
+			CharacterStateCache.reset(data);
+			RealmComponent.reset(data);
+		}
+	}
+	
+	/**
+	 * Runs count independent simulations on a ForkJoinPool.  Simulation i is seeded from seed and i, so the results
+	 * (returned in order) don't depend on the number of threads.  The choices are shared by every simulation, so they
+	 * must not keep any state of their own.
+	 */
+	public ArrayList<SimulationResult> simulate(int count,final long seed,final CombatChoices choices) {
+		ArrayList<SimulationResult> results = new ArrayList<SimulationResult>();
+		if (parallelism==1) {
+			for (int i=0;i<count;i++) {
+				results.add(simulate(mix(seed+i),choices));
+			}
+			return results;
+		}
+		ForkJoinPool pool = new ForkJoinPool(parallelism);
+		try {
+			ArrayList<ForkJoinTask<SimulationResult>> tasks = new ArrayList<ForkJoinTask<SimulationResult>>();
+			for (int i=0;i<count;i++) {
+				final long simSeed = mix(seed+i);
+				tasks.add(pool.submit(new Callable<SimulationResult>() {
+					public SimulationResult call() {
+						return simulate(simSeed,choices);
+					}
+				}));
+			}
+			for (ForkJoinTask<SimulationResult> task:tasks) {
+				results.add(task.join());
+			}
+		}
+		finally {
+			pool.shutdown();
+		}
+		return results;
+	}
+	
+	/**
+	 * Resolves combat in the clearing on the data itself, using whatever RandomNumber and log the calling thread has.
+	 * Only this clearing is resolved, whether or not initCombatOrder would have started a fight there.
+	 */
+	public static SimulationResult resolve(GameData data,TileLocation location,CombatChoices choices,int maxActions) {
+		SimulationResult result = new SimulationResult();
+		BattleModel model = RealmBattle.buildBattleModel(location,data);
+		for (RealmComponent rc:model.getAllBattleParticipants(true)) {
+			result.participants.add(getParticipantKey(rc.getGameObject()));
+		}
+		
+		RealmBattle.resetCombat(data);
+		SpellMasterWrapper.getSpellMaster(data).energizePermanentSpells(null,GameWrapper.findGame(data));
+		BattlesWrapper battles = RealmBattle.getBattles(data);
+		battles.clearBattles();
+		battles.addBattleLocation(location,data);
+		battles.initNextBattleLocation(data);
+		
+		while(result.actions<maxActions && RealmBattle.nextCombatAction(null,data)) {
+			result.actions++;
+			TileLocation current = RealmBattle.getCurrentCombatLocation(data);
+			if (current==null) {
+				break;
+			}
+			HashLists lists = RealmBattle.findCharacterStates(current,data);
+			ArrayList states = new ArrayList(lists.keySet());
+			Collections.sort(states);
+			int actionState = ((Integer)states.get(0)).intValue();
+			if (actionState>=Constants.COMBAT_WAIT) {
+				break; // nobody to act, which shouldn't happen when nextCombatAction returns true
+			}
+			model = RealmBattle.buildBattleModel(current,data);
+			ArrayList list = lists.getList(states.get(0));
+			if (actionState!=Constants.COMBAT_RESOLVING) {
+				// Only one character acts at a time, except for RESOLVING, where everyone sees the results together
+				list = new ArrayList(list.subList(0,1));
+			}
+			for (Iterator i=list.iterator();i.hasNext();) {
+				CharacterWrapper character = (CharacterWrapper)i.next();
+				choices.makeChoices(model,character,actionState);
+				character.setCombatStatus(RealmBattle.getNextWaitState(actionState));
+			}
+			if (actionState==Constants.COMBAT_RESOLVING) {
+				result.rounds++;
+			}
+		}
+		result.finished = RealmBattle.getCurrentCombatLocation(data)==null;
+		for (GameObject go:data.getGameObjects()) {
+			String key = getParticipantKey(go);
+			if (go.hasThisAttribute(Constants.DEAD) && result.participants.contains(key)) {
+				result.dead.add(key);
+			}
+		}
+		return result;
+	}
+	
+	/**
+	 * @return		The name and id of the object, which is how participants are identified in a SimulationResult (names
+	 * 				alone aren't unique, and the copies share ids)
+	 */
+	public static String getParticipantKey(GameObject go) {
+		return go.getName()+" ["+go.getId()+"]";
+	}
+	
+	/**
+	 * @return		How many times each participant died across the results
+	 */
+	public static HashMap<String,Integer> countDeaths(Collection<SimulationResult> results) {
+		HashMap<String,Integer> deaths = new HashMap<String,Integer>();
+		for (SimulationResult result:results) {
+			for (String name:result.participants) {
+				Integer n = deaths.get(name);
+				deaths.put(name,(n==null?0:n.intValue())+(result.dead.contains(name)?1:0));
+			}
+		}
+		return deaths;
+	}
+	
+	private static long mix(long z) {
+		z = (z^(z>>>30))*0xbf58476d1ce4e5b9L;
+		z = (z^(z>>>27))*0x94d049bb133111ebL;
+		return z^(z>>>31);
+	}
+	
+	/**
+	 * The outcome of one simulated combat.
+	 */
+	public static class SimulationResult {
+		private long seed;
+		private int actions = 0;
+		private int rounds = 0;
+		private boolean finished = false;
+		private ArrayList<String> participants = new ArrayList<String>();
+		private HashSet<String> dead = new HashSet<String>();
+		private ArrayList<String[]> log = null;
+		
+		public long getSeed() {
+			return seed;
+		}
+		public int getActions() {
+			return actions;
+		}
+		public int getRounds() {
+			return rounds;
+		}
+		/**
+		 * @return		true if combat ended before MAX_ACTIONS
+		 */
+		public boolean isFinished() {
+			return finished;
+		}
+		public ArrayList<String> getParticipants() {
+			return participants;
+		}
+		/**
+		 * @param key		See getParticipantKey
+		 */
+		public boolean isDead(String key) {
+			return dead.contains(key);
+		}
+		public Set<String> getDead() {
+			return dead;
+		}
+		/**
+		 * @return		The combat log as key,message pairs, or null if logs weren't kept
+		 */
+		public ArrayList<String[]> getLog() {
+			return log;
+		}
+		public String toString() {
+			return "Seed "+seed+": "+rounds+" round"+(rounds==1?"":"s")+", dead="+dead+(finished?"":" (unfinished)");
+		}
+	}
+	
+	/**
+	 * Balance testing:  runs a saved battle (made with the BattleBuilder) the given number of times (default 1000),
+	 * with no choices made, and reports how often each participant died.
+	 */
+	public static void main(String[] args) {
+		if (args.length==0) {
+			System.out.println("Usage: CombatSimulator <battle file> [count] [seed]");
+			return;
+		}
+		GameData data = new GameData();
+		if (!data.zipFromFile(new File(args[0]))) {
+			System.out.println("Unable to load "+args[0]);
+			return;
+		}
+		int count = args.length>1?Integer.parseInt(args[1]):1000;
+		long seed = args.length>2?Long.parseLong(args[2]):1L;
+		CombatSimulator simulator = new CombatSimulator(data);
+		long start = System.nanoTime();
+		ArrayList<SimulationResult> results = simulator.simulate(count,seed,NO_CHOICES);
+		double seconds = (System.nanoTime()-start)/1000000000.0;
+		int rounds = 0;
+		for (SimulationResult result:results) {
+			rounds += result.getRounds();
+		}
+		System.out.println(count+" combats in "+seconds+"s ("+(count/seconds)+"/second), "+((double)rounds/count)+" rounds on average");
+		HashMap<String,Integer> deaths = countDeaths(results);
+		ArrayList<String> names = new ArrayList<String>(deaths.keySet());
+		Collections.sort(names);
+		for (String name:names) {
+			System.out.println("  "+name+" died "+(100.0*deaths.get(name)/count)+"%");
+		}
+	}
+}
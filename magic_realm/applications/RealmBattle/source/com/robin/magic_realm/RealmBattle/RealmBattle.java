@@ -43,6 +43,7 @@ public class RealmBattle {
 	 */
 	public static void resetCombat(GameData data) {
 		logger.fine("-------");
+		BattleModelCache.reset(data);
 		RealmComponent.resetTargetIndex(data);
 		GamePool pool = new GamePool(RealmObjectMaster.getRealmObjectMaster(data).getPlayerCharacterObjects());
 		Collection characterGameObjects = pool.find(CharacterWrapper.getKeyVals());
@@ -562,15 +563,21 @@ public class RealmBattle {
 	private static final String UNCONTROLLED = "UNCONTROLLED";
 	
 	/**
-	 * Seems dumb to have to build the BattleModel over and over, but this is the only way I can persist these
-	 * things.  I suppose if the speed isn't affected, then I shouldn't be too concerned about optimizing this.
+	 * Returns the BattleModel for the location.  Models are kept by BattleModelCache, and only rebuilt when the
+	 * combatants in the clearing (or who owns them) change.
 	 * 
 	 * @param tl			Builds a BattleModel for the specified location
 	 * @param data			The GameData
 	 */
 	public static BattleModel buildBattleModel(TileLocation tl,GameData data) {
+		return BattleModelCache.getBattleModelCache(data).getBattleModel(tl);
+	}
+	
+	/**
+	 * Builds a new BattleModel from the combatants, grouped by owner.
+	 */
+	static BattleModel createBattleModel(TileLocation tl,GameData data,Collection c) {
 		HashLists lists = new HashLists();
-		Collection c = ClearingUtility.getCombatantsInClearing(tl);
 		
 		// Hash all combatants by ownerid - uncontrolled denizens will be owned by UNCONTROLLED
 		for (Iterator i=c.iterator();i.hasNext();) {
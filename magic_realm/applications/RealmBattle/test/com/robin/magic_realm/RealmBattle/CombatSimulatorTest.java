@@ -0,0 +1,187 @@
+/* 
+ * RealmSpeak is the Java application for playing the board game Magic Realm.
+ * Copyright (c) 2005-2015 Robin Warren
+ * E-mail: robin@dewkid.com
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the
+ * implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ *
+ * http://www.gnu.org/licenses/
+ */
+package com.robin.magic_realm.RealmBattle;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.robin.game.objects.GameData;
+import com.robin.game.objects.GameObject;
+import com.robin.game.objects.GamePool;
+import com.robin.magic_realm.RealmBattle.CombatSimulator.SimulationResult;
+import com.robin.magic_realm.components.ChitComponent;
+import com.robin.magic_realm.components.ClearingDetail;
+import com.robin.magic_realm.components.RealmComponent;
+import com.robin.magic_realm.components.TileComponent;
+import com.robin.magic_realm.components.attribute.TileLocation;
+import com.robin.magic_realm.components.utility.Constants;
+import com.robin.magic_realm.components.utility.RealmLoader;
+import com.robin.magic_realm.components.utility.RealmLogging;
+import com.robin.magic_realm.components.wrapper.CharacterWrapper;
+import com.robin.magic_realm.components.wrapper.HostPrefWrapper;
+
+public class CombatSimulatorTest {
+	
+	private GameData data;
+	private HostPrefWrapper hostPrefs;
+	private ClearingDetail clearing;
+	private ArrayList<CharacterWrapper> characters = new ArrayList<CharacterWrapper>();
+	private ArrayList<GameObject> trolls = new ArrayList<GameObject>();
+	
+	/**
+	 * Puts three level 4 characters in a Crag clearing with two trolls, the same way the BattleBuilder would.  With
+	 * more than one character, the target selection order (and so the outcome) depends on the dice.
+	 */
+	@Before
+	public void setUp() {
+		RealmLoader loader = new RealmLoader();
+		data = loader.getData();
+		hostPrefs = new HostPrefWrapper(data.createNewObject());
+		hostPrefs.setHostName("Test");
+		hostPrefs.setGameKeyVals(Constants.ORIGINAL_GAME);
+		
+		TileComponent tile = (TileComponent)RealmComponent.getRealmComponent(data.getGameObjectByName("Crag"));
+		clearing = tile.getClearing(2);
+		addCharacter("Amazon");
+		addCharacter("Swordsman");
+		addCharacter("Dwarf");
+		
+		for (GameObject go:new GamePool(data.getGameObjects()).find("monster,!part")) {
+			if (trolls.size()<2 && go.getHeldBy()==null && go.getName().contains("Troll")) {
+				clearing.add(go,null);
+				trolls.add(go);
+			}
+		}
+		BattleBuilder.getBattleClearingReferenceObject(data).setThisAttribute("battleClearing",new TileLocation(clearing).asKey());
+	}
+	
+	private void addCharacter(String name) {
+		GameObject go = new GamePool(data.getGameObjects()).find("character,name="+name).get(0);
+		clearing.add(go,null);
+		CharacterWrapper character = new CharacterWrapper(go);
+		character.setPlayerName("test"+name);
+		character.setPlayerPassword("");
+		character.setPlayerEmail("");
+		character.setCharacterLevel(4);
+		character.updateLevelAttributes(hostPrefs);
+		character.initChits();
+		character.fetchStartingInventory(null,data,false);
+		character.clearRelationships(hostPrefs);
+		character.initRelationships(hostPrefs);
+		characters.add(character);
+	}
+	
+	private static void assertSameOutcome(SimulationResult expected,SimulationResult actual) {
+		Assert.assertEquals(expected.getSeed(),actual.getSeed());
+		Assert.assertEquals(expected.getActions(),actual.getActions());
+		Assert.assertEquals(expected.getRounds(),actual.getRounds());
+		Assert.assertEquals(expected.isFinished(),actual.isFinished());
+		Assert.assertEquals(expected.getParticipants(),actual.getParticipants());
+		Assert.assertEquals(expected.getDead(),actual.getDead());
+		Assert.assertEquals(getLog(expected),getLog(actual));
+	}
+	
+	private static String getLog(SimulationResult result) {
+		StringBuilder sb = new StringBuilder();
+		for (String[] line:result.getLog()) {
+			sb.append(line[0]);
+			sb.append(" - ");
+			sb.append(line[1]);
+			sb.append("\n");
+		}
+		return sb.toString();
+	}
+	
+	@Test
+	public void testSameSeedSameOutcome() {
+		CombatSimulator simulator = new CombatSimulator(data);
+		simulator.setKeepLogs(true);
+		SimulationResult first = simulator.simulate(7L,CombatSimulator.NO_CHOICES);
+		SimulationResult second = simulator.simulate(7L,CombatSimulator.NO_CHOICES);
+		Assert.assertEquals(5,first.getParticipants().size());
+		Assert.assertTrue(first.getRounds()>0);
+		assertSameOutcome(first,second);
+		
+		// The snapshot itself is never changed
+		for (CharacterWrapper character:characters) {
+			Assert.assertFalse(character.getGameObject().hasThisAttribute(Constants.DEAD));
+		}
+	}
+	
+	@Test
+	public void testBatchMatchesSerial() {
+		CombatSimulator simulator = new CombatSimulator(data);
+		simulator.setKeepLogs(true);
+		simulator.setParallelism(1);
+		ArrayList<SimulationResult> serial = simulator.simulate(20,3L,CombatSimulator.NO_CHOICES);
+		simulator.setParallelism(4);
+		ArrayList<SimulationResult> parallel = simulator.simulate(20,3L,CombatSimulator.NO_CHOICES);
+		
+		Assert.assertEquals(20,serial.size());
+		Assert.assertEquals(20,parallel.size());
+		HashSet<String> logs = new HashSet<String>();
+		for (int i=0;i<serial.size();i++) {
+			assertSameOutcome(serial.get(i),parallel.get(i));
+			
+			// Each one is the same as running its seed on its own
+			assertSameOutcome(serial.get(i),simulator.simulate(serial.get(i).getSeed(),CombatSimulator.NO_CHOICES));
+			logs.add(getLog(serial.get(i)));
+		}
+		Assert.assertTrue(logs.size()>1); // different seeds really do roll differently
+	}
+	
+	@Test
+	public void testBattleStartsLightSideUpWithNoTargets() {
+		ChitComponent darkTroll = (ChitComponent)RealmComponent.getRealmComponent(trolls.get(0));
+		darkTroll.setDarkSideUp();
+		RealmComponent targetingTroll = RealmComponent.getRealmComponent(trolls.get(1));
+		targetingTroll.setTarget(RealmComponent.getRealmComponent(characters.get(0).getGameObject()));
+		
+		// Look at the copy the first time anyone is asked to make a choice, which is after the battle was started
+		final ArrayList<String> found = new ArrayList<String>();
+		CombatSimulator.CombatChoices choices = new CombatSimulator.CombatChoices() {
+			public void makeChoices(BattleModel model,CharacterWrapper character,int actionState) {
+				if (found.isEmpty()) {
+					GameData copy = character.getGameObject().getGameData();
+					ChitComponent dark = (ChitComponent)RealmComponent.getRealmComponent(copy.getGameObject(trolls.get(0).getId()));
+					RealmComponent targeting = RealmComponent.getRealmComponent(copy.getGameObject(trolls.get(1).getId()));
+					found.add(dark.isDarkSideUp()?"dark":"light");
+					found.add(String.valueOf(targeting.getTarget()));
+				}
+			}
+		};
+		CombatSimulator simulator = new CombatSimulator(data);
+		simulator.setKeepLogs(true);
+		SimulationResult result = simulator.simulate(7L,choices);
+		Assert.assertEquals("light",found.get(0));
+		Assert.assertEquals("null",found.get(1));
+		
+		// The battle groups are logged too
+		String[] first = result.getLog().get(0);
+		Assert.assertEquals(RealmLogging.BATTLE,first[0]);
+		Assert.assertTrue(first[1].startsWith("Battle resolving at "));
+		
+		// The snapshot keeps what it had
+		Assert.assertTrue(darkTroll.isDarkSideUp());
+		Assert.assertNotNull(targetingTroll.getTarget());
+	}
+}
@@ -491,13 +491,7 @@ public class QuestBuilderFrame extends JFrame {
 
 	private void viewDeck() {
 		System.setProperty("questFolder", lastQuestFilePath.getAbsolutePath());
-		ArrayList<Quest> quests = QuestLoader.loadAllQuestsFromQuestFolder();
-		ArrayList<Quest> questCards = new ArrayList<Quest>();
-		for (Quest quest : quests) {
-			if (quest.getBoolean(QuestConstants.WORKS_WITH_QTR)) {
-				questCards.add(quest);
-			}
-		}
+		ArrayList<Quest> questCards = QuestLibrary.getQuestLibrary().getQuests(QuestConstants.WORKS_WITH_QTR);
 		QuestDeckViewer viewer = new QuestDeckViewer(this, questCards);
 		viewer.setLocationRelativeTo(this);
 		viewer.setVisible(true);
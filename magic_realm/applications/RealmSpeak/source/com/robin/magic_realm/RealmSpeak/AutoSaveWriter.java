@@ -0,0 +1,263 @@
+/* 
+ * RealmSpeak is the Java application for playing the board game Magic Realm.
+ * Copyright (c) 2005-2015 Robin Warren
+ * E-mail: robin@dewkid.com
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the
+ * implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ *
+ * http://www.gnu.org/licenses/
+ */
+package com.robin.magic_realm.RealmSpeak;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.robin.game.objects.GameData;
+import com.robin.magic_realm.components.swing.RealmLogWindow;
+import com.robin.magic_realm.components.utility.RealmLogJournal;
+
+/**
+ * Writes autosaves on a background thread, so the host doesn't have to wait on compression and disk access.  The
+ * caller's thread only takes an in-memory snapshot (GameData.takeZipSnapshot and a journal snapshot of the log).  The writer
+ * compresses that once, and writes the same bytes to every target file.  Each file is written to a temp file and
+ * then renamed into place, so a crash partway through never leaves a broken autosave.  With generations set, the
+ * file being replaced is kept as name.1.rsgame, name.2.rsgame, and so on, with the oldest dropped.
+ * 
+ * A save that is still waiting to be written is dropped when a newer save covers all of its files.  A save that
+ * fails is logged and counted, and the writer carries on with the rest of the queue.
+ */
+public class AutoSaveWriter {
+	
+	private static Logger logger = Logger.getLogger(AutoSaveWriter.class.getName());
+	
+	private int generations;
+	
+	private LinkedList<SaveJob> queue = new LinkedList<SaveJob>();
+	private Thread writer = null;
+	private int saveCount = 0;
+	private int skipCount = 0;
+	private int failCount = 0;
+	
+	public AutoSaveWriter(int generations) {
+		this.generations = generations;
+	}
+	public int getGenerations() {
+		return generations;
+	}
+	/**
+	 * Takes a snapshot of the data and queues it to be written to each of the targets.  The log (if not null) is
+	 * written alongside each target, where RealmLogWindow.load expects to find it.  This has to be called on the
+	 * thread that changes the data, but returns as soon as the snapshot is taken.
+	 */
+	public void save(GameData data,RealmLogJournal.Snapshot log,File... targets) {
+		SaveJob job = new SaveJob(data.takeZipSnapshot(),log,targets);
+		synchronized(this) {
+			for (Iterator<SaveJob> i=queue.iterator();i.hasNext();) {
+				SaveJob queued = i.next();
+				if (job.covers(queued)) {
+					i.remove();
+					skipCount++;
+				}
+			}
+			queue.add(job);
+			if (writer==null) {
+				writer = new Thread("AutoSaveWriter") {
+					public void run() {
+						writeQueue();
+					}
+				};
+				writer.start(); // not a daemon, so a save in progress will finish even if the game window is closed
+			}
+		}
+	}
+	/**
+	 * Blocks until every queued save has been written.
+	 */
+	public synchronized void waitForSaves() {
+		while(writer!=null) {
+			try {
+				wait();
+			}
+			catch(InterruptedException ex) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+		}
+	}
+	public synchronized boolean isWriting() {
+		return writer!=null;
+	}
+	/**
+	 * @return		The number of saves written
+	 */
+	public synchronized int getSaveCount() {
+		return saveCount;
+	}
+	/**
+	 * @return		The number of saves dropped because a newer save replaced them before they were written
+	 */
+	public synchronized int getSkipCount() {
+		return skipCount;
+	}
+	/**
+	 * @return		The number of saves that couldn't be written
+	 */
+	public synchronized int getFailCount() {
+		return failCount;
+	}
+	private void writeQueue() {
+		try {
+			while(true) {
+				SaveJob job;
+				synchronized(this) {
+					job = queue.poll();
+					if (job==null) {
+						writer = null; // in the same lock as the poll, so a save can't slip in and be left behind
+						notifyAll();
+						return;
+					}
+				}
+				long start = System.currentTimeMillis();
+				boolean written = false;
+				try {
+					write(job);
+					written = true;
+				}
+				catch(IOException ex) {
+					ex.printStackTrace();
+				}
+				catch(RuntimeException ex) {
+					logger.log(Level.WARNING,"Autosave to "+Arrays.toString(job.targets)+" failed",ex);
+				}
+				synchronized(this) {
+					if (written) {
+						saveCount++;
+					}
+					else {
+						failCount++;
+					}
+				}
+				logger.fine("Autosave "+(written?"written":"failed")+" to "+job.targets.length+" file(s) in "+(System.currentTimeMillis()-start)+" ms");
+			}
+		}
+		finally {
+			// Even if the thread dies, don't leave waitForSaves hanging (the next save will start a new writer)
+			synchronized(this) {
+				if (writer==Thread.currentThread()) {
+					writer = null;
+					notifyAll();
+				}
+			}
+		}
+	}
+	private void write(SaveJob job) throws IOException {
+		ByteArrayOutputStream zip = new ByteArrayOutputStream(job.snapshot.length>>2);
+		GameData.zipSnapshot(job.snapshot,zip);
+		byte[] zipBytes = zip.toByteArray();
+		byte[] logBytes = null;
+		if (job.log!=null) {
+			ByteArrayOutputStream log = new ByteArrayOutputStream();
+			job.log.write(log);
+			logBytes = log.toByteArray();
+		}
+		for (File target:job.targets) {
+			rotate(target);
+			writeFile(target,zipBytes);
+			if (logBytes!=null) {
+				writeFile(RealmLogWindow.getLogFile(target),logBytes);
+			}
+		}
+	}
+	/**
+	 * Shifts the older generations of the target up by one, and copies the target in as the first.
+	 */
+	private void rotate(File target) throws IOException {
+		if (generations<=0 || !target.exists()) {
+			return;
+		}
+		for (int n=generations-1;n>=1;n--) {
+			File older = getGeneration(target,n);
+			if (older.exists()) {
+				File newer = getGeneration(target,n+1);
+				move(older,newer);
+				File olderLog = RealmLogWindow.getLogFile(older);
+				if (olderLog.exists()) {
+					move(olderLog,RealmLogWindow.getLogFile(newer));
+				}
+			}
+		}
+		File first = getGeneration(target,1);
+		copy(target,first);
+		File log = RealmLogWindow.getLogFile(target);
+		if (log.exists()) {
+			copy(log,RealmLogWindow.getLogFile(first));
+		}
+	}
+	/**
+	 * @return		The file that generation n of the target is kept in (autosave.rsgame becomes autosave.n.rsgame)
+	 */
+	public static File getGeneration(File target,int n) {
+		String name = target.getName();
+		int dot = name.lastIndexOf('.');
+		String genName = dot<0?(name+"."+n):(name.substring(0,dot)+"."+n+name.substring(dot));
+		return new File(target.getParentFile(),genName);
+	}
+	private static void copy(File from,File to) throws IOException {
+		File temp = getTempFile(to);
+		Files.copy(from.toPath(),temp.toPath(),StandardCopyOption.REPLACE_EXISTING);
+		move(temp,to);
+	}
+	private static void writeFile(File file,byte[] bytes) throws IOException {
+		File temp = getTempFile(file);
+		FileOutputStream out = new FileOutputStream(temp);
+		try {
+			out.write(bytes);
+			out.getFD().sync();
+		}
+		finally {
+			out.close();
+		}
+		move(temp,file);
+	}
+	private static File getTempFile(File file) {
+		return new File(file.getAbsoluteFile().getParentFile(),file.getName()+".tmp");
+	}
+	private static void move(File from,File to) throws IOException {
+		try {
+			Files.move(from.toPath(),to.toPath(),StandardCopyOption.ATOMIC_MOVE,StandardCopyOption.REPLACE_EXISTING);
+		}
+		catch(AtomicMoveNotSupportedException ex) {
+			Files.move(from.toPath(),to.toPath(),StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+	
+	private static class SaveJob {
+		byte[] snapshot;
+		RealmLogJournal.Snapshot log;
+		File[] targets;
+		SaveJob(byte[] snapshot,RealmLogJournal.Snapshot log,File[] targets) {
+			this.snapshot = snapshot;
+			this.log = log;
+			this.targets = targets;
+		}
+		boolean covers(SaveJob other) {
+			if (log==null && other.log!=null) {
+				return false;
+			}
+			return Arrays.asList(targets).containsAll(Arrays.asList(other.targets));
+		}
+	}
+}
@@ -1751,6 +1751,9 @@ public class RealmSpeakFrame extends JFrame {
 			else if (hostPrefs.hasPref(Constants.RANDOM_MERSENNE_TWISTER)) {
 				RandomNumber.setRandomNumberGenerator(RandomNumberType.MersenneTwister);
 			}
+			else if (hostPrefs.hasPref(Constants.RANDOM_SPLITMIX64)) {
+				RandomNumber.setRandomNumberGenerator(RandomNumberType.SplitMix64);
+			}
 			else {
 				RandomNumber.setRandomNumberGenerator(RandomNumberType.System);
 			}
@@ -1937,6 +1940,7 @@ public class RealmSpeakFrame extends JFrame {
 			saveFramePreferences();
 			HallOfFame.save();
 			DebugUtility.shutDown();
+			RealmHostPanel.waitForAutoSave();
 			System.exit(0);
 		}
 	}
@@ -326,18 +326,16 @@ public class RealmSpeakInit {
 				if (lastRating>=0) {
 					lr = " (Last Map Rating = "+lastRating+")";
 				}
-				frame.showStatus("Attempt #"+mapAttempt+":  Building map ... "+current+" out of "+total+lr);
+				frame.showStatus("Attempt #"+mapAttempt+":  Building maps ... "+current+" out of "+total+lr);
 			}
 		};
 		int minRating = hostPrefs.getMinimumMapRating();
 		int rating = -1;
+		// Each attempt builds a batch of maps (spread over the processors), and keeps the best rated one
+		MapGenerator generator = new MapGenerator(data,keyVals,MapGenerator.nextSeed());
 		while(rating<minRating) {
 			mapAttempt++;
-			while(!MapBuilder.autoBuildMap(data,keyVals,reporter)) {
-				mapAttempt++;
-			}
-			
-			rating = MapRating.getMapRating(data);
+			rating = generator.buildBestMap(0,reporter).getRating();
 			//System.out.println("Map Rating = "+rating);
 			lastRating = rating;
 		}
@@ -349,37 +347,29 @@ public class RealmSpeakInit {
 	}
 	private void prepQuestDeck() {
 		QuestDeck deck = QuestDeck.findDeck(data);
-		for(Quest template:QuestLoader.loadAllQuestsFromQuestFolder()) {
-			if (template.getBoolean(QuestConstants.WORKS_WITH_QTR)) {
-				int count = template.getInt(QuestConstants.CARD_COUNT);
-				if (count>0) {
-					// Add the template to the data object and init deck
-					Quest quest = template.copyQuestToGameData(data);
-					if (quest.isAllPlay()) {
-						deck.addAllPlayCard(quest); // count is ignored for all play cards
-					}
-					else {
-						deck.addCards(quest,count);
-					}
+		for(Quest template:QuestLibrary.getQuestLibrary().getQuests(QuestConstants.WORKS_WITH_QTR)) {
+			int count = template.getInt(QuestConstants.CARD_COUNT);
+			if (count>0) {
+				// Add the template to the data object and init deck
+				Quest quest = template.copyQuestToGameData(data);
+				if (quest.isAllPlay()) {
+					deck.addAllPlayCard(quest); // count is ignored for all play cards
+				}
+				else {
+					deck.addCards(quest,count);
 				}
 			}
 		}
 		deck.shuffle();
 	}
 	private void prepBookOfQuests() {
-		for(Quest template:QuestLoader.loadAllQuestsFromQuestFolder()) {
-			if (template.getBoolean(QuestConstants.WORKS_WITH_BOQ)) {
-				template.copyQuestToGameData(data);
-			}
+		for(Quest template:QuestLibrary.getQuestLibrary().getQuests(QuestConstants.WORKS_WITH_BOQ)) {
+			template.copyQuestToGameData(data);
 		}
 	}
 	private void prepGuildQuests() {
-		for(Quest template:QuestLoader.loadAllQuestsFromQuestFolder()) {
-			if (template.getBoolean(QuestConstants.FOR_FIGHTERS_GUILD)
-					|| template.getBoolean(QuestConstants.FOR_MAGIC_GUILD)
-					|| template.getBoolean(QuestConstants.FOR_THIEVES_GUILD)) {
-				template.copyQuestToGameData(data);
-			}
+		for(Quest template:QuestLibrary.getQuestLibrary().getQuests(QuestConstants.FOR_FIGHTERS_GUILD,QuestConstants.FOR_MAGIC_GUILD,QuestConstants.FOR_THIEVES_GUILD)) {
+			template.copyQuestToGameData(data);
 		}
 	}
 	private void doItemSpellCasting() {
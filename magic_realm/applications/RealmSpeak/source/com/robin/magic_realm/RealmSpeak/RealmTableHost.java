@@ -0,0 +1,159 @@
+/* 
+ * RealmSpeak is the Java application for playing the board game Magic Realm.
+ * Copyright (c) 2005-2015 Robin Warren
+ * E-mail: robin@dewkid.com
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the
+ * implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ *
+ * http://www.gnu.org/licenses/
+ */
+package com.robin.magic_realm.RealmSpeak;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+
+import com.robin.game.objects.GameData;
+import com.robin.game.server.GameHost;
+import com.robin.game.server.MultiTableHost;
+import com.robin.general.io.FileUtilities;
+import com.robin.magic_realm.components.utility.RealmGameContext;
+import com.robin.magic_realm.components.utility.RealmLoader;
+import com.robin.magic_realm.components.wrapper.HostPrefWrapper;
+
+/**
+ * A headless host for any number of saved games at once, each on its own port.  The games share the parsed master
+ * data, and one MultiTableHost accepts the connections for all of them.  Whoever connects with a table's host name
+ * takes the host's seat, exactly as if the game was hosted from RealmSpeak.  Each table is moved along by its own
+ * RealmHostEngine, working in the game's RealmGameContext, so every game rolls its own dice (picking up where the
+ * save left off) and keeps its own log.  The autosaves go next to the save file, as name_autosave.rsgame and
+ * name_autosave_birdsong.rsgame.
+ * 
+ * Usage:  RealmTableHost <firstPort> <maxConnections> <saveFile.rsgame> [<saveFile.rsgame> ...]
+ */
+public class RealmTableHost {
+	
+	private static final int AUTOSAVE_GENERATIONS = 3;
+	
+	private MultiTableHost tableHost;
+	private AutoSaveWriter autoSaveWriter;
+	private ArrayList<RealmHostEngine> engines = new ArrayList<RealmHostEngine>();
+	private int nextPort;
+	
+	public RealmTableHost(int firstPort,int maxTables,int maxConnections) throws IOException {
+		this.nextPort = firstPort;
+		autoSaveWriter = new AutoSaveWriter(AUTOSAVE_GENERATIONS);
+		tableHost = new MultiTableHost(maxTables,maxConnections);
+		tableHost.start();
+	}
+	
+	public MultiTableHost getTableHost() {
+		return tableHost;
+	}
+	
+	/**
+	 * Loads the saved game, and starts serving it on the next port
+	 * 
+	 * @return		The host for the game, or null if the file couldn't be loaded
+	 */
+	public GameHost addTable(final File saveFile) throws IOException {
+		final GameData data = new GameData();
+		final RealmGameContext context = RealmGameContext.getContext(data);
+		final boolean[] loaded = new boolean[1];
+		context.run(new Runnable() {
+			public void run() {
+				// Loading in the context restores the saved dice into the game's own generator
+				loaded[0] = data.zipFromFile(saveFile);
+			}
+		});
+		if (!loaded[0]) {
+			System.err.println("Unable to load "+saveFile.getPath());
+			RealmGameContext.reset(data);
+			return null;
+		}
+		final HostPrefWrapper hostPrefs = HostPrefWrapper.findHostPrefs(data);
+		if (hostPrefs==null) {
+			System.err.println(saveFile.getPath()+" is not a RealmSpeak game");
+			RealmGameContext.reset(data);
+			return null;
+		}
+		final GameHost[] host = new GameHost[1];
+		context.run(new Runnable() {
+			public void run() {
+				data.setTracksChanges(true);
+				host[0] = new GameHost(GameData.getSharedData(RealmLoader.DATA_PATH),data,hostPrefs.getGameTitle(),hostPrefs.getGamePass());
+				host[0].setHostName(hostPrefs.getHostName());
+			}
+		});
+		RealmHostEngine engine = new RealmHostEngine(host[0],context,context.getJournal(),autoSaveWriter,
+				getAutoSaveFile(saveFile,"_autosave"),getAutoSaveFile(saveFile,"_autosave_birdsong"));
+		host[0].addGameHostListener(engine);
+		tableHost.addTable(host[0],nextPort++);
+		synchronized(engines) {
+			engines.add(engine);
+		}
+		return host[0];
+	}
+	
+	private static File getAutoSaveFile(File saveFile,String suffix) {
+		String path = FileUtilities.getFilePathString(saveFile.getAbsoluteFile(),true,false);
+		return new File(path+suffix+".rsgame");
+	}
+	
+	/**
+	 * @return		The engine moving the table's game along, or null if it isn't one of ours
+	 */
+	public RealmHostEngine getEngine(GameHost host) {
+		synchronized(engines) {
+			for (RealmHostEngine engine:engines) {
+				if (engine.getHost()==host) {
+					return engine;
+				}
+			}
+		}
+		return null;
+	}
+	
+	/**
+	 * Disconnects every table, waits for the autosaves to be written, and then closes the games' contexts
+	 */
+	public void shutdown() {
+		tableHost.shutdown();
+		autoSaveWriter.waitForSaves();
+		synchronized(engines) {
+			for (RealmHostEngine engine:engines) {
+				RealmGameContext.reset(engine.getHost().getGameData());
+			}
+			engines.clear();
+		}
+	}
+	
+	public static void main(String[] args) {
+		if (args.length<3) {
+			System.out.println("Usage:  RealmTableHost <firstPort> <maxConnections> <saveFile.rsgame> [<saveFile.rsgame> ...]");
+			return;
+		}
+		try {
+			int firstPort = Integer.parseInt(args[0]);
+			int maxConnections = Integer.parseInt(args[1]);
+			RealmTableHost host = new RealmTableHost(firstPort,args.length-2,maxConnections);
+			for (int i=2;i<args.length;i++) {
+				GameHost table = host.addTable(new File(args[i]));
+				if (table!=null) {
+					System.out.println(table.getGameTitle()+" is on port "+host.getTableHost().getPort(table));
+				}
+			}
+		}
+		catch(Exception ex) {
+			ex.printStackTrace();
+		}
+	}
+}
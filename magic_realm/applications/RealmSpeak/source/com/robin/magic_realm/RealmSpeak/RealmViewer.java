@@ -201,7 +201,7 @@ public class RealmViewer extends JFrame {
 			hostPrefs.setGameKeyVals(Constants.ORIGINAL_GAME);
 			ArrayList keyVals = new ArrayList();
 			keyVals.add(Constants.ORIGINAL_GAME);
-			while(!MapBuilder.autoBuildMap(data,keyVals));
+			MapBuilder.autoBuildMap(data,keyVals);
 			
 			if (showMap) {
 				JFrame mapFrame = new JFrame("map");
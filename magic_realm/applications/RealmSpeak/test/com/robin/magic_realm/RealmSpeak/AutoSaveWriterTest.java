@@ -0,0 +1,117 @@
+/* 
+ * RealmSpeak is the Java application for playing the board game Magic Realm.
+ * Copyright (c) 2005-2015 Robin Warren
+ * E-mail: robin@dewkid.com
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the
+ * implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ *
+ * http://www.gnu.org/licenses/
+ */
+package com.robin.magic_realm.RealmSpeak;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+
+import org.junit.*;
+
+import com.robin.game.objects.GameData;
+import com.robin.game.objects.GameObject;
+import com.robin.magic_realm.components.swing.RealmLogWindow;
+import com.robin.magic_realm.components.utility.RealmLogJournal;
+
+public class AutoSaveWriterTest {
+	
+	private File dir;
+	private GameData data;
+	private GameObject object;
+	
+	@Before
+	public void setUp() throws IOException {
+		dir = File.createTempFile("AutoSaveWriterTest",".dir");
+		dir.delete();
+		dir.mkdir();
+		data = new GameData();
+		data.ignoreRandomSeed = true;
+		object = data.createNewObject();
+		object.setName("Save 1");
+	}
+	
+	@After
+	public void tearDown() {
+		for (File file:dir.listFiles()) {
+			file.delete();
+		}
+		dir.delete();
+	}
+	
+	private String readName(File file) {
+		GameData read = new GameData();
+		read.ignoreRandomSeed = true;
+		Assert.assertTrue(file.getName(),read.zipFromFile(file));
+		return read.getGameObject(object.getId()).getName();
+	}
+	
+	private int readLogSize(File file) throws IOException {
+		RealmLogJournal journal = new RealmLogJournal();
+		journal.load(new FileInputStream(RealmLogWindow.getLogFile(file)));
+		return journal.size();
+	}
+	
+	@Test
+	public void testRotation() throws IOException {
+		File target = new File(dir,"autosave.rsgame");
+		AutoSaveWriter writer = new AutoSaveWriter(2);
+		RealmLogJournal log = new RealmLogJournal();
+		for (int i=1;i<=4;i++) {
+			object.setName("Save "+i);
+			log.append("host","Save "+i);
+			writer.save(data,log.snapshot(),target);
+			writer.waitForSaves();
+		}
+		
+		Assert.assertEquals(4,writer.getSaveCount());
+		Assert.assertEquals(0,writer.getFailCount());
+		Assert.assertEquals("Save 4",readName(target));
+		Assert.assertEquals("Save 3",readName(AutoSaveWriter.getGeneration(target,1)));
+		Assert.assertEquals("Save 2",readName(AutoSaveWriter.getGeneration(target,2)));
+		Assert.assertFalse(AutoSaveWriter.getGeneration(target,3).exists());
+		
+		// The logs move along with their saves
+		Assert.assertEquals(4,readLogSize(target));
+		Assert.assertEquals(3,readLogSize(AutoSaveWriter.getGeneration(target,1)));
+		Assert.assertEquals(2,readLogSize(AutoSaveWriter.getGeneration(target,2)));
+	}
+	
+	@Test(timeout=30000)
+	public void testFailedSaveKeepsDraining() {
+		File target = new File(dir,"autosave.rsgame");
+		AutoSaveWriter writer = new AutoSaveWriter(0);
+		writer.save(data,null,(File)null); // throws a RuntimeException on the writer thread
+		writer.save(data,null,new File(new File(dir,"missing"),"autosave.rsgame")); // throws an IOException
+		writer.save(data,null,target);
+		writer.waitForSaves();
+		
+		Assert.assertFalse(writer.isWriting());
+		Assert.assertEquals(1,writer.getSaveCount());
+		Assert.assertEquals(2,writer.getFailCount());
+		Assert.assertEquals("Save 1",readName(target));
+		
+		// and the writer still works afterwards
+		object.setName("Save 2");
+		writer.save(data,null,(File)null);
+		writer.waitForSaves();
+		writer.save(data,null,target);
+		writer.waitForSaves();
+		Assert.assertEquals(2,writer.getSaveCount());
+		Assert.assertEquals("Save 2",readName(target));
+	}
+}
@@ -0,0 +1,160 @@
+/* 
+ * RealmSpeak is the Java application for playing the board game Magic Realm.
+ * Copyright (c) 2005-2015 Robin Warren
+ * E-mail: robin@dewkid.com
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the
+ * implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ *
+ * http://www.gnu.org/licenses/
+ */
+package com.robin.magic_realm.RealmSpeak;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.ServerSocket;
+
+import org.junit.*;
+
+import com.robin.game.objects.GameData;
+import com.robin.game.objects.GameObject;
+import com.robin.game.objects.GamePool;
+import com.robin.game.server.GameClient;
+import com.robin.game.server.GameHost;
+import com.robin.magic_realm.components.ChitComponent;
+import com.robin.magic_realm.components.ClearingDetail;
+import com.robin.magic_realm.components.RealmComponent;
+import com.robin.magic_realm.components.TileComponent;
+import com.robin.magic_realm.components.utility.Constants;
+import com.robin.magic_realm.components.utility.RealmGameContext;
+import com.robin.magic_realm.components.utility.RealmLoader;
+import com.robin.magic_realm.components.utility.RealmLogJournal;
+import com.robin.magic_realm.components.utility.RealmUtility;
+import com.robin.magic_realm.components.wrapper.CharacterWrapper;
+import com.robin.magic_realm.components.wrapper.GameWrapper;
+import com.robin.magic_realm.components.wrapper.HostPrefWrapper;
+
+public class RealmTableHostTest {
+	
+	private File dir;
+	private RealmTableHost tableHost;
+	private GameObject darkTroll;
+	private GameObject targetingTroll;
+	
+	@Before
+	public void setUp() throws IOException {
+		dir = File.createTempFile("RealmTableHostTest",".dir");
+		dir.delete();
+		dir.mkdir();
+		ServerSocket socket = new ServerSocket(0);
+		int port = socket.getLocalPort();
+		socket.close();
+		tableHost = new RealmTableHost(port,2,2);
+	}
+	
+	@After
+	public void tearDown() {
+		tableHost.shutdown();
+		RealmUtility.resetGame();
+		for (File file:dir.listFiles()) {
+			file.delete();
+		}
+		dir.delete();
+	}
+	
+	/**
+	 * Saves a game where the Amazon is in a Crag clearing with two trolls:  one dark side up, and one that already
+	 * has the Amazon as its target.
+	 */
+	private File saveBattle(String name) {
+		darkTroll = null;
+		targetingTroll = null;
+		GameData data = new RealmLoader().getData();
+		HostPrefWrapper hostPrefs = new HostPrefWrapper(data.createNewObject());
+		hostPrefs.setHostName("Test");
+		hostPrefs.setGameTitle(name);
+		hostPrefs.setGameKeyVals(Constants.ORIGINAL_GAME);
+		hostPrefs.setEnableBattles(true);
+		hostPrefs.setAutosaveEnabled(false);
+		GameWrapper.findGame(data);
+		
+		ClearingDetail clearing = ((TileComponent)RealmComponent.getRealmComponent(data.getGameObjectByName("Crag"))).getClearing(2);
+		GamePool pool = new GamePool(data.getGameObjects());
+		GameObject amazon = pool.find("character,name=Amazon").get(0);
+		clearing.add(amazon,null);
+		CharacterWrapper character = new CharacterWrapper(amazon);
+		character.setPlayerName("test");
+		character.setPlayerPassword("");
+		character.setPlayerEmail("");
+		character.setCharacterLevel(4);
+		character.updateLevelAttributes(hostPrefs);
+		character.initChits();
+		character.fetchStartingInventory(null,data,false);
+		character.clearRelationships(hostPrefs);
+		character.initRelationships(hostPrefs);
+		
+		for (GameObject go:pool.find("monster,!part")) {
+			if (go.getHeldBy()==null && go.getName().contains("Troll")) {
+				clearing.add(go,null);
+				if (darkTroll==null) {
+					darkTroll = go;
+					((ChitComponent)RealmComponent.getRealmComponent(go)).setDarkSideUp();
+				}
+				else {
+					targetingTroll = go;
+					RealmComponent.getRealmComponent(go).setTarget(RealmComponent.getRealmComponent(amazon));
+					break;
+				}
+			}
+		}
+		
+		File file = new File(dir,name+".rsgame");
+		Assert.assertTrue(data.zipToFile(file));
+		RealmUtility.resetGame();
+		return file;
+	}
+	
+	@Test
+	public void testBattlesStartOnHeadlessTable() throws IOException {
+		Assert.assertNull(GameClient.GetMostRecentClient());
+		GameHost host = tableHost.addTable(saveBattle("Table"));
+		final RealmHostEngine engine = tableHost.getEngine(host);
+		engine.getContext().run(new Runnable() {
+			public void run() {
+				engine.initBattles();
+			}
+		});
+		
+		GameData data = host.getGameData();
+		Assert.assertTrue(((ChitComponent)RealmComponent.getRealmComponent(data.getGameObject(darkTroll.getId()))).isLightSideUp());
+		Assert.assertNull(RealmComponent.getRealmComponent(data.getGameObject(targetingTroll.getId())).getTarget());
+		
+		// The battle groups go to the table's own log
+		RealmLogJournal journal = engine.getContext().getJournal();
+		boolean logged = false;
+		for (int i=0;i<journal.size();i++) {
+			logged |= journal.getLine(i)[1].startsWith("Battle resolving at ");
+		}
+		Assert.assertTrue(logged);
+	}
+	
+	@Test
+	public void testAdjacencyIsPerTable() throws IOException {
+		GameData data1 = tableHost.addTable(saveBattle("Table1")).getGameData();
+		GameData data2 = tableHost.addTable(saveBattle("Table2")).getGameData();
+		int version1 = RealmGameContext.getContext(data1).getAdjacencyVersion();
+		int version2 = RealmGameContext.getContext(data2).getAdjacencyVersion();
+		
+		TileComponent crag = (TileComponent)RealmComponent.getRealmComponent(data1.getGameObjectByName("Crag"));
+		crag.putAdjacentTile("0",(TileComponent)RealmComponent.getRealmComponent(data1.getGameObjectByName("Cavern")));
+		Assert.assertTrue(RealmGameContext.getContext(data1).getAdjacencyVersion()!=version1);
+		Assert.assertEquals(version2,RealmGameContext.getContext(data2).getAdjacencyVersion());
+	}
+}
@@ -53,8 +53,6 @@ public abstract class RealmComponent extends JComponent implements Comparable {
 	
 	public static final String REALMCOMPONENT_BLOCK = "_RCB_";
 
-	private static Hashtable dataComponentHash = null;
-	
 	public static final String REALMCOMPONENT_MASTER = "RealmComponent Master Object";
 	public static final String TARGET_COUNTER = "tc"; // used to increment the target index
 
@@ -844,8 +842,7 @@ public abstract class RealmComponent extends JComponent implements Comparable {
 			comp = new MinorCharacterChitComponent(obj);
 		}
 		if (comp != null && cache) {
-			Hashtable componentHash = getComponentHash(obj);
-			componentHash.put(new Long(obj.getId()), comp);
+			comp = RealmComponentRegistry.getRegistry(obj.getGameData()).add(obj.getId(),comp);
 		}
 		return comp;
 	}
@@ -854,48 +851,17 @@ public abstract class RealmComponent extends JComponent implements Comparable {
 		return createRealmComponent(go,false);
 	}
 
-	private static Hashtable getComponentHash(GameObject go) {
-		return getComponentHash(go.getGameData());
-	}
-	
 	public static void resetTargetIndex(GameData data) {
-		Hashtable componentHash = getComponentHash(data);
-		GameObject master = (GameObject)componentHash.get(REALMCOMPONENT_MASTER);
+		GameObject master = RealmComponentRegistry.getRegistry(data).getMaster();
 		master.setThisAttribute(TARGET_COUNTER,0);
 	}
 
 	private static int nextTargetIndex(GameData data) {
-		Hashtable componentHash = getComponentHash(data);
-		GameObject master = (GameObject)componentHash.get(REALMCOMPONENT_MASTER);
+		GameObject master = RealmComponentRegistry.getRegistry(data).getMaster();
 		int val = master.getThisInt(TARGET_COUNTER)+1;
 		master.setThisAttribute(TARGET_COUNTER,val);
 		return val;
 	}
-	/**
-	 * @return			The Hashtable for the corresponding data object.  This is necessary to keep client and
-	 * 					host data separated when handling these objects!
-	 */
-	private static Hashtable getComponentHash(GameData data) {
-		if (dataComponentHash == null) {
-			dataComponentHash = new Hashtable();
-		}
-		Long dataid = new Long(data.getDataId());
-		Hashtable componentHash = (Hashtable) dataComponentHash.get(dataid);
-		if (componentHash == null) {
-			componentHash = new Hashtable();
-			dataComponentHash.put(dataid, componentHash);
-			
-			// Make sure there is a master object to handle things like a target index counter
-			GameObject master = data.getGameObjectByName(REALMCOMPONENT_MASTER);
-			if (master==null) { // this shouldn't happen more than once per game!!
-				master = data.createNewObject();
-				master.setName(REALMCOMPONENT_MASTER);
-				master.setThisAttribute(TARGET_COUNTER,"0");
-			}
-			componentHash.put(REALMCOMPONENT_MASTER,master);
-		}
-		return componentHash;
-	}
 
 	public static ArrayList getRealmComponents(Collection objects) {
 		ArrayList list = new ArrayList();
@@ -919,11 +885,7 @@ public abstract class RealmComponent extends JComponent implements Comparable {
 		if (obj.getGameData()==null) { // useful for returning an object for a game template
 			return getRealmComponentNoHash(obj);
 		}
-		RealmComponent comp = null;
-		Hashtable componentHash = getComponentHash(obj);
-		if (componentHash != null) {
-			comp = (RealmComponent) componentHash.get(new Long(obj.getId()));
-		}
+		RealmComponent comp = RealmComponentRegistry.getRegistry(obj.getGameData()).get(obj.getId());
 		if (comp == null) {
 			comp = createRealmComponent(obj,true);
 		}
@@ -954,8 +916,7 @@ public abstract class RealmComponent extends JComponent implements Comparable {
 	 * @return		RealmComponent or null if not found.
 	 */
 	public static RealmComponent getRealmComponentFromId(GameData dataSource, String stringId) {
-		Hashtable componentHash = getComponentHash(dataSource);
-		if (stringId != null && componentHash != null) {
+		if (stringId != null) {
 			try {
 				Long id = Long.valueOf(stringId);
 				GameObject go = (GameObject) dataSource.getGameObject(id);
@@ -1054,11 +1015,20 @@ public abstract class RealmComponent extends JComponent implements Comparable {
 		gameObject.removeThisAttribute(Constants.DROPPED_BY);
 	}
 	
-	public static void reset() {
-		if (dataComponentHash!=null) {
-			dataComponentHash.clear();
-			dataComponentHash = null;
-		}
+	/**
+	 * Drops the components (and the caches that hold them) for one GameData, when it is no longer needed.
+	 */
+	public static synchronized void reset(GameData data) {
+		RealmComponentRegistry.reset(data);
+		LocationIndex.reset(data);
+		ClearingGraph.reset(data);
+		RealmObjectMaster.reset(data);
+		DieRollBuilder.reset(data);
+	}
+	public static synchronized void reset() {
+		RealmComponentRegistry.resetAll();
+		LocationIndex.resetAll(); // these hold on to components
+		ClearingGraph.resetAll();
 	}
 	public boolean affectedByKey(String key) {
 		return getGameObject().hasThisAttribute(key)
@@ -0,0 +1,212 @@
+/* 
+ * RealmSpeak is the Java application for playing the board game Magic Realm.
+ * Copyright (c) 2005-2015 Robin Warren
+ * E-mail: robin@dewkid.com
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the
+ * implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ *
+ * http://www.gnu.org/licenses/
+ */
+package com.robin.magic_realm.components;
+
+import com.robin.game.objects.GameData;
+import com.robin.game.objects.GameObject;
+
+/**
+ * The RealmComponents of one GameData, by object id.
+ * 
+ * The registry is attached to its GameData (see GameData.getAttachment), so it goes away with the data instead of
+ * piling up in a static table, and each GameData (host, client, copies for simulation) gets its own components.  The
+ * ids are spread over a fixed number of stripes, each an open addressed long -> RealmComponent table with its own
+ * lock, so the client, host and Swing threads don't all wait on one monitor, and lookups don't box the id.
+ */
+public class RealmComponentRegistry {
+	
+	private static final int STRIPES = 16; // power of two
+	private static final int INITIAL_CAPACITY = 64; // per stripe, power of two
+	
+	private GameData data;
+	private Stripe[] stripes;
+	private GameObject master;
+	
+	private static class Stripe {
+		private long[] ids = new long[INITIAL_CAPACITY];
+		private RealmComponent[] components = new RealmComponent[INITIAL_CAPACITY]; // null means the slot is empty
+		private int size = 0;
+		private long hits = 0;
+		private long misses = 0;
+		
+		synchronized RealmComponent get(long id,int hash) {
+			int mask = ids.length-1;
+			for (int n=hash&mask;components[n]!=null;n=(n+1)&mask) {
+				if (ids[n]==id) {
+					hits++;
+					return components[n];
+				}
+			}
+			misses++;
+			return null;
+		}
+		synchronized RealmComponent putIfAbsent(long id,int hash,RealmComponent rc) {
+			int mask = ids.length-1;
+			int n = hash&mask;
+			for (;components[n]!=null;n=(n+1)&mask) {
+				if (ids[n]==id) {
+					return components[n];
+				}
+			}
+			ids[n] = id;
+			components[n] = rc;
+			size++;
+			if (size*4>=ids.length*3) {
+				grow();
+			}
+			return null;
+		}
+		private void grow() {
+			long[] oldIds = ids;
+			RealmComponent[] oldComponents = components;
+			ids = new long[oldIds.length*2];
+			components = new RealmComponent[oldIds.length*2];
+			int mask = ids.length-1;
+			for (int i=0;i<oldIds.length;i++) {
+				if (oldComponents[i]!=null) {
+					int n = (hash(oldIds[i])>>>4)&mask;
+					while (components[n]!=null) {
+						n = (n+1)&mask;
+					}
+					ids[n] = oldIds[i];
+					components[n] = oldComponents[i];
+				}
+			}
+		}
+	}
+	
+	private RealmComponentRegistry(GameData data) {
+		this.data = data;
+		stripes = new Stripe[STRIPES];
+		for (int i=0;i<STRIPES;i++) {
+			stripes[i] = new Stripe();
+		}
+		
+		// Make sure there is a master object to handle things like a target index counter
+		master = data.getGameObjectByName(RealmComponent.REALMCOMPONENT_MASTER);
+		if (master==null) { // this shouldn't happen more than once per game!!
+			master = data.createNewObject();
+			master.setName(RealmComponent.REALMCOMPONENT_MASTER);
+			master.setThisAttribute(RealmComponent.TARGET_COUNTER,"0");
+		}
+	}
+	
+	/**
+	 * @return		The registry for the data, which is created the first time it is needed
+	 */
+	public static RealmComponentRegistry getRegistry(GameData data) {
+		RealmComponentRegistry registry = findRegistry(data);
+		if (registry==null) {
+			synchronized(RealmComponentRegistry.class) {
+				registry = findRegistry(data);
+				if (registry==null) {
+					registry = new RealmComponentRegistry(data);
+					data.setAttachment(RealmComponentRegistry.class,registry);
+				}
+			}
+		}
+		return registry;
+	}
+	
+	/**
+	 * @return		The registry for the data, or null if there isn't one yet
+	 */
+	public static RealmComponentRegistry findRegistry(GameData data) {
+		return (RealmComponentRegistry)data.getAttachment(RealmComponentRegistry.class);
+	}
+	
+	/**
+	 * Drops the registry for one GameData
+	 */
+	public static synchronized void reset(GameData data) {
+		data.setAttachment(RealmComponentRegistry.class,null);
+	}
+	
+	/**
+	 * Drops the registries of every GameData
+	 */
+	public static synchronized void resetAll() {
+		GameData.removeAllAttachments(RealmComponentRegistry.class);
+	}
+	
+	private static int hash(long id) {
+		long h = id*0x9E3779B97F4A7C15L;
+		return (int)(h^(h>>>32));
+	}
+	
+	/**
+	 * @return		The component for the object id, or null if there isn't one yet
+	 */
+	public RealmComponent get(long id) {
+		int hash = hash(id);
+		return stripes[hash&(STRIPES-1)].get(id,hash>>>4);
+	}
+	
+	/**
+	 * Adds the component, unless another thread beat us to it
+	 * 
+	 * @return		The component that is registered for the id afterwards
+	 */
+	public RealmComponent add(long id,RealmComponent rc) {
+		int hash = hash(id);
+		RealmComponent existing = stripes[hash&(STRIPES-1)].putIfAbsent(id,hash>>>4,rc);
+		return existing==null?rc:existing;
+	}
+	
+	public GameData getGameData() {
+		return data;
+	}
+	
+	/**
+	 * @return		The object that keeps things like the target index counter
+	 */
+	public GameObject getMaster() {
+		return master;
+	}
+	
+	public int size() {
+		int size = 0;
+		for (Stripe stripe:stripes) {
+			synchronized(stripe) {
+				size += stripe.size;
+			}
+		}
+		return size;
+	}
+	public long getHits() {
+		long hits = 0;
+		for (Stripe stripe:stripes) {
+			synchronized(stripe) {
+				hits += stripe.hits;
+			}
+		}
+		return hits;
+	}
+	public long getMisses() {
+		long misses = 0;
+		for (Stripe stripe:stripes) {
+			synchronized(stripe) {
+				misses += stripe.misses;
+			}
+		}
+		return misses;
+	}
+	public String toString() {
+		return "RealmComponentRegistry["+data.getDataId()+"] size="+size()+" hits="+getHits()+" misses="+getMisses();
+	}
+}
@@ -986,8 +986,24 @@ public class TileComponent extends ChitComponent {
 	 * Returns a collection of all RealmComponents in this clearing. It does not directly return objects contained by other objects, except for RedSpecialChitComponent and TWT Sites
 	 */
 	public ArrayList<RealmComponent> getRealmComponentsAt(int clearing) {
+		if (gameObject.getGameData() == null) {
+			return findRealmComponentsAt(clearing, null);
+		}
+		return LocationIndex.getLocationIndex(gameObject.getGameData()).getRealmComponentsAt(this, clearing);
+	}
+
+	/**
+	 * Searches the tile for the RealmComponents in the clearing.  Use getRealmComponentsAt instead, which remembers the answer.
+	 * 
+	 * @param sources		If not null, every GameObject the answer depends on is added to this list
+	 */
+	public ArrayList<RealmComponent> findRealmComponentsAt(int clearing, Collection<GameObject> sources) {
 		ArrayList<RealmComponent> found = new ArrayList<RealmComponent>();
 		ArrayList hold = new ArrayList(gameObject.getHold());
+		if (sources != null) {
+			sources.add(gameObject);
+			sources.addAll(hold);
+		}
 		for (Iterator i = hold.iterator(); i.hasNext();) {
 			GameObject obj = (GameObject) i.next();
 			if (!obj.hasThisAttribute("otherClearing")) { // ignore components that are partway
@@ -995,6 +1011,9 @@ public class TileComponent extends ChitComponent {
 				String clearingNum = obj.getThisAttribute("clearing");
 				if (goc instanceof RedSpecialChitComponent) {
 					ArrayList innerHold = new ArrayList(obj.getHold());
+					if (sources != null) {
+						sources.addAll(innerHold);
+					}
 					for (Iterator n = innerHold.iterator(); n.hasNext();) {
 						GameObject chit = (GameObject) n.next();
 						String innerClearingNum = chit.getThisAttribute("clearing");
@@ -1141,9 +1160,11 @@ public class TileComponent extends ChitComponent {
 
 	public void clearAdjacentTiles() {
 		edgeTiles.clear();
+		RealmGameContext.getContext(gameObject.getGameData()).adjacencyChanged();
 	}
 	public void putAdjacentTile(String rotatedEdge, TileComponent c) {
 		edgeTiles.put(rotatedEdge, c);
+		RealmGameContext.getContext(gameObject.getGameData()).adjacencyChanged();
 	}
 
 	public TileComponent getAdjacentTile(String rotatedEdge) {
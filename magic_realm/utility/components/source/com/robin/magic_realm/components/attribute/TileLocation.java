@@ -52,6 +52,17 @@ public class TileLocation {
 		clearing = c;
 		this.flying = flying;
 	}
+	/**
+	 * @return		A new TileLocation with the same tile, clearing, flying state and other side, which can be changed
+	 * 				without affecting this one.
+	 */
+	public TileLocation copy() {
+		TileLocation tl = new TileLocation(tile,clearing,flying);
+		if (other!=null) {
+			tl.setOther(new TileLocation(other.tile,other.clearing,other.flying));
+		}
+		return tl;
+	}
 	public boolean contains(TileComponent t) {
 		return tile.equals(t) || (other!=null && other.tile.equals(t));
 	}
@@ -678,12 +678,14 @@ public class Quest extends GameObjectWrapper {
 		if (reqParams.dayKey == null) {
 			reqParams.dayKey = character.getCurrentDayKey();
 		}
+		QuestEventIndex index = QuestEventIndex.getQuestEventIndex(getGameData());
+		long start = System.nanoTime();
 		boolean rewards = false;
 		for (QuestStep step : steps) {
 			QuestStepState stepState = step.getState();
 			if (stepState == QuestStepState.Ready) {
 				logger.fine("TESTING " + getGameObject().getName() + " step " + step.getId() + ": " + step.getGameObject().getName());
-				if (step.fulfillsRequirements(parentFrame, character, reqParams)) {
+				if (fulfillsRequirements(index, parentFrame, character, step, reqParams)) {
 					logger.fine("SUCCESS");
 					logger.fine("");
 					step.preemptSteps(steps, reqParams.dayKey);
@@ -694,6 +696,9 @@ public class Quest extends GameObjectWrapper {
 					Quest.currentQuest = null;
 					QuestStep.currentStep = null;
 					rewards = true;
+					if (index != null) {
+						index.rewarded(this);
+					}
 				}
 				else {
 					// Mark any steps dependent on fail as READY
@@ -706,6 +711,9 @@ public class Quest extends GameObjectWrapper {
 				}
 			}
 		}
+		if (index != null) {
+			index.addTime(this, System.nanoTime() - start);
+		}
 		if (rewards) {
 			updateStepStates(reqParams.dayKey);
 			if (reqParams != null) {
@@ -718,6 +726,26 @@ public class Quest extends GameObjectWrapper {
 		return false;
 	}
 
+	/**
+	 * Tests the step, unless the QuestEventIndex knows that nothing it depends on has happened since it last failed.
+	 */
+	private boolean fulfillsRequirements(QuestEventIndex index, JFrame parentFrame, CharacterWrapper character, QuestStep step, QuestRequirementParams reqParams) {
+		if (index == null) {
+			return step.fulfillsRequirements(parentFrame, character, reqParams);
+		}
+		QuestEventIndex.StepTest test = index.startTest(character, this, step, reqParams);
+		if (test.isUnchanged()) {
+			logger.fine("UNCHANGED");
+			if (QuestEventIndex.isVerify() && step.fulfillsRequirements(parentFrame, character, reqParams)) {
+				throw new IllegalStateException("Skipped step " + step.getGameObject().getName() + " of " + getGameObject().getName() + " is fulfilled");
+			}
+			return false;
+		}
+		boolean fulfilled = step.fulfillsRequirements(parentFrame, character, reqParams);
+		index.finishTest(test, fulfilled);
+		return fulfilled;
+	}
+
 	public Quest copyQuestToGameData(GameData gameData) {
 		// Duplicate all the objects in the quest
 		ArrayList<GameObject> allQuestObjects = getGameObject().getAllContainedGameObjects();
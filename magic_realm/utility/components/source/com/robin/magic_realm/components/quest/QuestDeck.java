@@ -24,6 +24,7 @@ import javax.swing.JFrame;
 
 import com.robin.game.objects.*;
 import com.robin.general.util.RandomNumber;
+import com.robin.magic_realm.components.utility.RealmGameContext;
 import com.robin.magic_realm.components.wrapper.CharacterWrapper;
 
 public class QuestDeck extends GameObjectWrapper {
@@ -160,18 +161,19 @@ public class QuestDeck extends GameObjectWrapper {
 	}
 	
 	///////////////////////////////////////////////
-	public static Long DECK_ID = null;
 	public static QuestDeck findDeck(GameData data) {
-		if (DECK_ID==null) {
+		RealmGameContext context = RealmGameContext.getContext(data);
+		Long id = context.getObjectId(QuestDeck.class);
+		if (id==null) {
 			GamePool pool = new GamePool(data.getGameObjects());
 			GameObject go = pool.findFirst(QUEST_DECK_KEY);
 			if (go!=null) {
-				DECK_ID = go.getId();
+				context.setObjectId(QuestDeck.class,go.getId());
 				return new QuestDeck(go);
 			}
 		}
 		else {
-			return new QuestDeck(data.getGameObject(DECK_ID));
+			return new QuestDeck(data.getGameObject(id));
 		}
 		
 		// None found?  Better make one.
@@ -180,7 +182,7 @@ public class QuestDeck extends GameObjectWrapper {
 		go.setThisAttribute(QUEST_DECK_KEY);
 		
 		QuestDeck deck = new QuestDeck(go);
-		DECK_ID = new Long(go.getId());
+		context.setObjectId(QuestDeck.class,new Long(go.getId()));
 		
 		return deck;
 	}
@@ -0,0 +1,604 @@
+/* 
+ * RealmSpeak is the Java application for playing the board game Magic Realm.
+ * Copyright (c) 2005-2015 Robin Warren
+ * E-mail: robin@dewkid.com
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the
+ * implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ *
+ * http://www.gnu.org/licenses/
+ */
+package com.robin.magic_realm.components.quest;
+
+import java.util.*;
+
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
+
+import com.robin.game.objects.GameData;
+import com.robin.game.objects.GameObject;
+import com.robin.magic_realm.components.attribute.TileLocation;
+import com.robin.magic_realm.components.quest.requirement.QuestRequirement;
+import com.robin.magic_realm.components.quest.requirement.QuestRequirementParams;
+import com.robin.magic_realm.components.utility.Constants;
+import com.robin.magic_realm.components.wrapper.CharacterWrapper;
+
+/**
+ * Keeps quest steps from being tested over and over when nothing they depend on has happened.  A character with a
+ * hand full of quest cards has every Ready step tested after every search, trade, move and phase, and almost all of
+ * them fail the same way each time.
+ * 
+ * Every requirement declares the QuestEventTypes it depends on.  When a step fails, it is subscribed to the
+ * game events of its requirements, and the call events (what was in the QuestRequirementParams) are noted.  The game
+ * events are fingerprinted from the character (where it is and what is there, what it has, its kills, and so on),
+ * and whenever a fingerprint changes, the steps subscribed to that event are dropped, so that they are tested again.
+ * A failed step is also tested again when its quest or step state changes, when its start time changes, when the
+ * call events differ, or after any step of its quest gives rewards.  Steps with an Any requirement are always
+ * tested.
+ * 
+ * The fingerprints are values (not versions), so an uncommitted change that is rolled back does no harm.  They are
+ * only recomputed after something in the data changes, which the index finds out by listening to the GameData.
+ * Changes to quest steps and requirements are ignored, since testing a step writes to them.
+ * 
+ * The number of step tests, skips and the time spent testing are kept for every quest.  Set verify to test the
+ * skipped steps anyway, and fail if any of them would have been fulfilled (for tests), or turn the index off
+ * altogether with setEnabled(false).
+ */
+public class QuestEventIndex implements ChangeListener {
+	
+	private static volatile boolean enabled = true;
+	private static volatile boolean verify = false;
+	
+	private GameData data;
+	private HashMap<Long,StepSnapshot> snapshots; // step id -> how it was when it last failed
+	private HashMap<Long,CharacterEvents> characterEvents; // character id -> fingerprints and subscriptions
+	private HashMap<Long,QuestStats> stats; // quest id -> stats
+	private HashSet<Long> questObjectIds; // steps and requirements, which are written to while testing
+	private HashMap<Long,QuestHolder> quests; // quest id -> quest
+	private long modificationCount = 0;
+	
+	private long tests = 0;
+	private long skips = 0;
+	
+	/**
+	 * How a step was when it last failed
+	 */
+	private static class StepSnapshot {
+		String state;
+		EnumMap<QuestEventType,String> callEvents;
+	}
+	
+	/**
+	 * A Quest, and the objects it was built from
+	 */
+	private static class QuestHolder {
+		Quest quest;
+		ArrayList<GameObject> structure;
+	}
+	
+	/**
+	 * The last fingerprint of each game event for one character, and the steps waiting on them
+	 */
+	private static class CharacterEvents {
+		EnumMap<QuestEventType,String> fingerprints = new EnumMap<QuestEventType,String>(QuestEventType.class);
+		EnumMap<QuestEventType,Long> counts = new EnumMap<QuestEventType,Long>(QuestEventType.class); // modificationCount of each fingerprint
+		EnumMap<QuestEventType,HashSet<Long>> subscribers = new EnumMap<QuestEventType,HashSet<Long>>(QuestEventType.class);
+	}
+	
+	/**
+	 * One test of a step, from startTest to finishTest
+	 */
+	public static class StepTest {
+		private CharacterWrapper character;
+		private Quest quest;
+		private QuestStep step;
+		private EnumSet<QuestEventType> events;
+		private EnumMap<QuestEventType,String> gameEvents = new EnumMap<QuestEventType,String>(QuestEventType.class);
+		private EnumMap<QuestEventType,String> callEvents = new EnumMap<QuestEventType,String>(QuestEventType.class);
+		private boolean unchanged;
+		
+		private StepTest(CharacterWrapper character,Quest quest,QuestStep step) {
+			this.character = character;
+			this.quest = quest;
+			this.step = step;
+		}
+		/**
+		 * @return		true if nothing the step depends on has happened since it last failed, so it would fail again
+		 */
+		public boolean isUnchanged() {
+			return unchanged;
+		}
+	}
+	
+	/**
+	 * The test counts and time of one quest
+	 */
+	public static class QuestStats {
+		private String questName;
+		private long tests;
+		private long skips;
+		private long nanos;
+		
+		private QuestStats(String questName) {
+			this.questName = questName;
+		}
+		private QuestStats(QuestStats other) {
+			questName = other.questName;
+			tests = other.tests;
+			skips = other.skips;
+			nanos = other.nanos;
+		}
+		public String getQuestName() {
+			return questName;
+		}
+		/**
+		 * @return		The number of step tests
+		 */
+		public long getTests() {
+			return tests;
+		}
+		/**
+		 * @return		The number of step tests that were skipped because nothing had happened
+		 */
+		public long getSkips() {
+			return skips;
+		}
+		/**
+		 * @return		The time spent testing the steps of the quest
+		 */
+		public long getNanos() {
+			return nanos;
+		}
+		public String toString() {
+			return questName+": "+tests+" tests, "+skips+" skipped, "+(nanos/1000)+"us";
+		}
+	}
+	
+	private QuestEventIndex(GameData data) {
+		this.data = data;
+		snapshots = new HashMap<Long,StepSnapshot>();
+		characterEvents = new HashMap<Long,CharacterEvents>();
+		stats = new HashMap<Long,QuestStats>();
+		questObjectIds = new HashSet<Long>();
+		quests = new HashMap<Long,QuestHolder>();
+		data.addObjectChangeListener(this);
+	}
+	
+	/**
+	 * @return		The index for the data, or null if it is turned off
+	 */
+	static QuestEventIndex getQuestEventIndex(GameData data) {
+		if (!isEnabled() || data==null) {
+			return null;
+		}
+		QuestEventIndex index = (QuestEventIndex)data.getAttachment(QuestEventIndex.class);
+		if (index==null) {
+			synchronized(QuestEventIndex.class) {
+				index = (QuestEventIndex)data.getAttachment(QuestEventIndex.class);
+				if (index==null) {
+					index = new QuestEventIndex(data);
+					data.setAttachment(QuestEventIndex.class,index);
+				}
+			}
+		}
+		return index;
+	}
+	
+	/**
+	 * Forgets the steps and stats for one GameData
+	 */
+	public static synchronized void reset(GameData data) {
+		QuestEventIndex index = (QuestEventIndex)data.setAttachment(QuestEventIndex.class,null);
+		if (index!=null) {
+			data.removeObjectChangeListener(index);
+		}
+	}
+	
+	public static synchronized void resetAll() {
+		for (Object index:GameData.removeAllAttachments(QuestEventIndex.class)) {
+			((QuestEventIndex)index).data.removeObjectChangeListener((QuestEventIndex)index);
+		}
+	}
+	
+	public static synchronized void setEnabled(boolean val) {
+		enabled = val;
+		if (!enabled) {
+			resetAll();
+		}
+	}
+	public static boolean isEnabled() {
+		return enabled;
+	}
+	public static void setVerify(boolean val) {
+		verify = val;
+	}
+	public static boolean isVerify() {
+		return verify;
+	}
+	
+	public synchronized void stateChanged(ChangeEvent ev) {
+		if (!questObjectIds.contains(new Long(((GameObject)ev.getSource()).getId()))) {
+			modificationCount++;
+		}
+	}
+	
+	/**
+	 * @return		All the quests of the character.  Building a Quest builds all its steps, requirements and rewards,
+	 * 				so the Quest of each quest object is kept for as long as the quest and its steps hold the same
+	 * 				objects.  Everything else is read from the objects anyway.
+	 */
+	public static ArrayList<Quest> getAllQuests(CharacterWrapper character) {
+		QuestEventIndex index = getQuestEventIndex(character.getGameObject().getGameData());
+		if (index==null) {
+			return character.getAllQuests();
+		}
+		ArrayList<Quest> list = new ArrayList<Quest>();
+		for (GameObject go:character.getAllQuestObjects()) {
+			list.add(index.getCachedQuest(go));
+		}
+		return list;
+	}
+	
+	/**
+	 * @return		A Quest wrapper for the quest object, reused while the quest's objects are the same
+	 */
+	static Quest getQuest(GameObject go) {
+		QuestEventIndex index = getQuestEventIndex(go.getGameData());
+		return index==null?new Quest(go):index.getCachedQuest(go);
+	}
+	
+	private Quest getCachedQuest(GameObject go) {
+		Long id = new Long(go.getId());
+		ArrayList<GameObject> structure = getStructure(go);
+		QuestHolder holder;
+		synchronized(this) {
+			holder = quests.get(id);
+		}
+		if (holder!=null && holder.structure.equals(structure)) {
+			return holder.quest;
+		}
+		holder = new QuestHolder();
+		holder.quest = new Quest(go);
+		holder.structure = structure;
+		synchronized(this) {
+			quests.put(id,holder);
+		}
+		return holder.quest;
+	}
+	
+	/**
+	 * @return		The objects held by the quest, each followed by what it holds (requirements and rewards of steps)
+	 */
+	private static ArrayList<GameObject> getStructure(GameObject go) {
+		ArrayList<GameObject> structure = new ArrayList<GameObject>();
+		for (Object o:go.getHold()) {
+			GameObject held = (GameObject)o;
+			structure.add(held);
+			for (Object o2:held.getHold()) {
+				structure.add((GameObject)o2);
+			}
+			structure.add(null);
+		}
+		return structure;
+	}
+	
+	/**
+	 * Finds out whether anything the step depends on has happened since it last failed.  Unless it is unchanged,
+	 * the step should be tested, and the result passed to finishTest.
+	 */
+	StepTest startTest(CharacterWrapper character,Quest quest,QuestStep step,QuestRequirementParams reqParams) {
+		StepTest test = new StepTest(character,quest,step);
+		test.events = step.getEvents();
+		if (!test.events.contains(QuestEventType.Any) && !step.getRequirements().isEmpty()) {
+			ArrayList<Long> ids = new ArrayList<Long>();
+			ids.add(new Long(step.getGameObject().getId()));
+			for (QuestRequirement req:step.getRequirements()) {
+				ids.add(new Long(req.getGameObject().getId()));
+			}
+			synchronized(this) {
+				questObjectIds.addAll(ids);
+			}
+			
+			// Bring the fingerprints up to date first, since that drops the steps waiting on anything that changed
+			for (QuestEventType event:test.events) {
+				if (event.isCallEvent()) {
+					test.callEvents.put(event,getCallFingerprint(event,reqParams));
+				}
+				else {
+					test.gameEvents.put(event,getGameFingerprint(character,event));
+				}
+			}
+			String state = getStepState(test);
+			synchronized(this) {
+				StepSnapshot snapshot = snapshots.get(new Long(step.getGameObject().getId()));
+				test.unchanged = snapshot!=null && snapshot.state.equals(state) && snapshot.callEvents.equals(test.callEvents);
+			}
+		}
+		synchronized(this) {
+			QuestStats questStats = getStats(quest);
+			if (test.unchanged) {
+				skips++;
+				questStats.skips++;
+			}
+			else {
+				tests++;
+				questStats.tests++;
+			}
+		}
+		return test;
+	}
+	
+	/**
+	 * Remembers how a tested step was, if it failed
+	 */
+	void finishTest(StepTest test,boolean fulfilled) {
+		Long stepId = new Long(test.step.getGameObject().getId());
+		if (fulfilled || test.events.contains(QuestEventType.Any) || test.step.getRequirements().isEmpty()) {
+			synchronized(this) {
+				snapshots.remove(stepId);
+			}
+			return;
+		}
+		StepSnapshot snapshot = new StepSnapshot();
+		snapshot.state = getStepState(test); // after the test, since failing an And step can reset its start time
+		snapshot.callEvents = test.callEvents;
+		synchronized(this) {
+			CharacterEvents ce = getCharacterEvents(test.character);
+			for (QuestEventType event:test.gameEvents.keySet()) {
+				if (!test.gameEvents.get(event).equals(ce.fingerprints.get(event))) {
+					// Something changed while testing, so it had better be tested again
+					snapshots.remove(stepId);
+					return;
+				}
+			}
+			snapshots.put(stepId,snapshot);
+			for (QuestEventType event:test.gameEvents.keySet()) {
+				HashSet<Long> stepIds = ce.subscribers.get(event);
+				if (stepIds==null) {
+					stepIds = new HashSet<Long>();
+					ce.subscribers.put(event,stepIds);
+				}
+				stepIds.add(stepId);
+			}
+		}
+	}
+	
+	/**
+	 * Forgets the steps of a quest that has just given rewards, since rewards can change just about anything
+	 */
+	synchronized void rewarded(Quest quest) {
+		for (QuestStep step:quest.getSteps()) {
+			snapshots.remove(new Long(step.getGameObject().getId()));
+		}
+		modificationCount++;
+	}
+	
+	synchronized void addTime(Quest quest,long nanos) {
+		getStats(quest).nanos += nanos;
+	}
+	
+	private QuestStats getStats(Quest quest) {
+		Long id = new Long(quest.getGameObject().getId());
+		QuestStats questStats = stats.get(id);
+		if (questStats==null) {
+			questStats = new QuestStats(quest.getName());
+			stats.put(id,questStats);
+		}
+		return questStats;
+	}
+	
+	private CharacterEvents getCharacterEvents(CharacterWrapper character) {
+		Long id = new Long(character.getGameObject().getId());
+		CharacterEvents ce = characterEvents.get(id);
+		if (ce==null) {
+			ce = new CharacterEvents();
+			characterEvents.put(id,ce);
+		}
+		return ce;
+	}
+	
+	/**
+	 * @return		The current fingerprint of a game event, after dropping the steps waiting on it if it changed
+	 */
+	private String getGameFingerprint(CharacterWrapper character,QuestEventType event) {
+		long count;
+		synchronized(this) {
+			CharacterEvents ce = getCharacterEvents(character);
+			Long fingerprintCount = ce.counts.get(event);
+			if (fingerprintCount!=null && fingerprintCount.longValue()==modificationCount) {
+				return ce.fingerprints.get(event);
+			}
+			count = modificationCount;
+		}
+		
+		// Build without holding the lock, since it can end up waiting on the GameData
+		String fingerprint = buildGameFingerprint(character,event);
+		synchronized(this) {
+			CharacterEvents ce = getCharacterEvents(character);
+			if (!fingerprint.equals(ce.fingerprints.get(event))) {
+				HashSet<Long> stepIds = ce.subscribers.remove(event);
+				if (stepIds!=null) {
+					for (Long stepId:stepIds) {
+						snapshots.remove(stepId);
+					}
+				}
+				ce.fingerprints.put(event,fingerprint);
+			}
+			ce.counts.put(event,new Long(count));
+		}
+		return fingerprint;
+	}
+	
+	private static String buildGameFingerprint(CharacterWrapper character,QuestEventType event) {
+		StringBuilder sb = new StringBuilder();
+		switch(event) {
+			case LocationChange:
+				TileLocation tl = character.getCurrentLocation();
+				sb.append(tl);
+				if (tl!=null && tl.tile!=null) {
+					// Everything that can show up in the clearing (or tile) components of the location
+					GameObject tile = tl.tile.getGameObject();
+					sb.append(tile.getThisAttribute(Constants.FACING_KEY));
+					for (Object o1:tile.getHold()) {
+						GameObject go = (GameObject)o1;
+						appendPlacement(sb,go);
+						for (Object o2:go.getHold()) {
+							appendPlacement(sb,(GameObject)o2);
+						}
+					}
+				}
+				sb.append('|').append(character.getMoveHistory());
+				sb.append('|').append(character.getMoveHistoryDayKeys());
+				break;
+			case InventoryChange:
+				for (GameObject go:character.getInventory()) {
+					sb.append(go.getId());
+					sb.append(go.hasThisAttribute(Constants.ACTIVATED)?'A':',');
+				}
+				sb.append('|').append(character.getActiveInventory());
+				sb.append('|').append(character.getMinorCharacters());
+				break;
+			case Kill:
+				ArrayList dayKeys = character.getAllDayKeys();
+				if (dayKeys!=null) {
+					for (Object o:dayKeys) {
+						String dayKey = (String)o;
+						sb.append(dayKey);
+						sb.append(character.getGameObject().getAttributeList(CharacterWrapper.KILL_BLOCK,dayKey));
+						sb.append(character.getGameObject().getAttributeList(CharacterWrapper.KILL_BLOCK,dayKey+"S"));
+					}
+				}
+				break;
+			case Discovery:
+				sb.append(character.getAllDiscoveryKeys());
+				break;
+			case AttributeChange:
+				sb.append(character.getFame()).append(',');
+				sb.append(character.getNotoriety()).append(',');
+				sb.append(character.getGold()).append(',');
+				sb.append(character.getRecordedSpellCount()).append(',');
+				sb.append(character.hasCurse(Constants.DISGUST)).append(',');
+				sb.append(character.hasCurse(Constants.ASHES));
+				for (GameObject go:character.getAllQuestObjects()) { // completed quests of the same kind can raise the target value
+					sb.append(',').append(go.getAttribute(Quest.QUEST_BLOCK,Quest.STATE));
+				}
+				break;
+			default:
+				throw new IllegalArgumentException("Not a game event: "+event);
+		}
+		return sb.toString();
+	}
+	
+	private static void appendPlacement(StringBuilder sb,GameObject go) {
+		sb.append(go.getId());
+		sb.append(',').append(go.getThisAttribute("clearing"));
+		sb.append(',').append(go.getThisAttribute("otherClearing"));
+		sb.append(',').append(go.getThisAttribute(Constants.FACING_KEY));
+		sb.append(';');
+	}
+	
+	private static String getCallFingerprint(QuestEventType event,QuestRequirementParams reqParams) {
+		StringBuilder sb = new StringBuilder();
+		switch(event) {
+			case TimePassed:
+				sb.append(reqParams.dayKey);
+				break;
+			case GamePhase:
+				sb.append(reqParams.timeOfCall);
+				break;
+			case Trade:
+				if (reqParams.actionType==CharacterActionType.Trading) { // otherwise, no trade requirement is fulfilled
+					sb.append(reqParams.actionName);
+					sb.append(',').append(reqParams.targetOfSearch);
+					sb.append(',').append(reqParams.objectList);
+				}
+				break;
+			case SearchResult:
+				sb.append(reqParams.actionName);
+				sb.append(',').append(reqParams.actionType);
+				sb.append(',').append(reqParams.searchType);
+				sb.append(',').append(reqParams.searchHadAnEffect);
+				sb.append(',').append(reqParams.targetOfSearch);
+				sb.append(',').append(reqParams.objectList);
+				break;
+			case Action:
+				sb.append(reqParams.timeOfCall);
+				sb.append(',').append(reqParams.actionName);
+				sb.append(',').append(reqParams.actionType);
+				sb.append(',').append(reqParams.dieResult);
+				sb.append(',').append(reqParams.searchType);
+				sb.append(',').append(reqParams.searchHadAnEffect);
+				sb.append(',').append(reqParams.targetOfSearch);
+				sb.append(',').append(reqParams.objectList);
+				sb.append(',').append(reqParams.burnedColor);
+				break;
+			default:
+				throw new IllegalArgumentException("Not a call event: "+event);
+		}
+		return sb.toString();
+	}
+	
+	/**
+	 * @return		The state of the quest and step that every requirement can depend on
+	 */
+	private static String getStepState(StepTest test) {
+		StringBuilder sb = new StringBuilder();
+		sb.append(test.quest.getState());
+		sb.append(',').append(test.step.getState());
+		sb.append(',').append(test.step.getQuestStartTime());
+		sb.append(',').append(test.step.getQuestStepStartTime());
+		if (test.step.getReqType()==QuestStepType.And) {
+			sb.append(',').append(test.character.getCurrentDayKey()); // a failed And step restarts on the current day
+		}
+		return sb.toString();
+	}
+	
+	public synchronized long getTests() {
+		return tests;
+	}
+	public synchronized long getSkips() {
+		return skips;
+	}
+	/**
+	 * @return		The number of failed steps that are waiting on an event
+	 */
+	public synchronized int size() {
+		return snapshots.size();
+	}
+	/**
+	 * @return		The stats of the quest, or null if none of its steps have been tested
+	 */
+	public synchronized QuestStats getQuestStats(Quest quest) {
+		QuestStats questStats = stats.get(new Long(quest.getGameObject().getId()));
+		return questStats==null?null:new QuestStats(questStats);
+	}
+	/**
+	 * @return		The stats of every quest that has been tested, slowest first
+	 */
+	public synchronized ArrayList<QuestStats> getAllQuestStats() {
+		ArrayList<QuestStats> list = new ArrayList<QuestStats>();
+		for (QuestStats questStats:stats.values()) {
+			list.add(new QuestStats(questStats));
+		}
+		Collections.sort(list,new Comparator<QuestStats>() {
+			public int compare(QuestStats s1,QuestStats s2) {
+				return s1.nanos==s2.nanos?0:(s1.nanos>s2.nanos?-1:1);
+			}
+		});
+		return list;
+	}
+	
+	/**
+	 * @return		The index for the data, if there is one (for tests and benchmarks)
+	 */
+	public static QuestEventIndex findQuestEventIndex(GameData data) {
+		return (QuestEventIndex)data.getAttachment(QuestEventIndex.class);
+	}
+}
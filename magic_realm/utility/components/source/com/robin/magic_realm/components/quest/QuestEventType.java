@@ -0,0 +1,48 @@
+/* 
+ * RealmSpeak is the Java application for playing the board game Magic Realm.
+ * Copyright (c) 2005-2015 Robin Warren
+ * E-mail: robin@dewkid.com
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the
+ * implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ *
+ * http://www.gnu.org/licenses/
+ */
+package com.robin.magic_realm.components.quest;
+
+/**
+ * The things that can change the result of a quest requirement.  Each requirement declares the events it depends
+ * on, so that a step only needs to be tested again when one of them has happened since its last test.
+ */
+public enum QuestEventType {
+	Any, // could depend on anything at all, so it is always tested
+	
+	// Game events, found by looking at the character
+	LocationChange, // where the character is, what is there, and the path taken
+	InventoryChange, // what the character has (and has active), including minor characters
+	Kill, // the kills recorded by the character
+	Discovery, // the discoveries recorded by the character
+	AttributeChange, // fame, notoriety, gold, recorded spells, curses, and the state of the character's quests
+	
+	// Call events, found in the QuestRequirementParams of the call
+	TimePassed, // the day of the call
+	GamePhase, // the time of the call
+	SearchResult, // the search (or loot) result that triggered the call
+	Trade, // the trade that triggered the call
+	Action, // any other detail of the action that triggered the call
+	;
+	
+	/**
+	 * @return		true if the event is described by the QuestRequirementParams of the call, rather than the game
+	 */
+	public boolean isCallEvent() {
+		return ordinal()>=TimePassed.ordinal();
+	}
+}
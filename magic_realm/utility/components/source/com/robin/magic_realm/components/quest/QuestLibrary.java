@@ -0,0 +1,318 @@
+/* 
+ * RealmSpeak is the Java application for playing the board game Magic Realm.
+ * Copyright (c) 2005-2015 Robin Warren
+ * E-mail: robin@dewkid.com
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the
+ * implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ *
+ * http://www.gnu.org/licenses/
+ */
+package com.robin.magic_realm.components.quest;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.*;
+
+import com.robin.game.objects.GameData;
+import com.robin.game.objects.GameObject;
+
+/**
+ * The quests (.rsqst files) in a quest folder.  Each file is read once, and kept as a read only template, so that
+ * hosting a game, or refreshing the builder and tester, doesn't unzip and parse the whole folder again.  The folder
+ * is checked on every request, and only the files that are new or have changed (by modified time and length) are
+ * read again, in parallel.  Deleted files are dropped.
+ * 
+ * The templates are never handed out:  every quest returned is on its own copy of the template data (GameData.copy,
+ * so this is cheap), and can be changed or saved freely.  The quests are indexed by name and by rule (the boolean
+ * QuestConstants, like WORKS_WITH_QTR), and are always returned in folder order.
+ */
+public class QuestLibrary {
+	
+	private static final HashMap<String,QuestLibrary> libraries = new HashMap<String,QuestLibrary>();
+	
+	/**
+	 * @return		The library for the current quest folder (the questFolder property, or ./quests/ by default)
+	 */
+	public static QuestLibrary getQuestLibrary() {
+		String questFolderPath = "./quests/"; // default
+		if (System.getProperty("questFolder") != null) {
+			questFolderPath = System.getProperty("questFolder") + File.separator;
+		}
+		return getQuestLibrary(questFolderPath);
+	}
+	
+	public static QuestLibrary getQuestLibrary(String folderPath) {
+		File folder = new File(folderPath);
+		String key;
+		try {
+			key = folder.getCanonicalPath();
+		}
+		catch(IOException ex) {
+			key = folder.getAbsolutePath();
+		}
+		synchronized(libraries) {
+			QuestLibrary library = libraries.get(key);
+			if (library==null) {
+				library = new QuestLibrary(folder);
+				libraries.put(key,library);
+			}
+			return library;
+		}
+	}
+	
+	/**
+	 * Forgets all the libraries, so that every quest file is read again
+	 */
+	public static void resetAll() {
+		synchronized(libraries) {
+			libraries.clear();
+		}
+	}
+	
+	private static class QuestFile {
+		private File file;
+		private long lastModified;
+		private long length;
+		private Quest template; // null if the file couldn't be read, or isn't a valid quest
+		
+		private QuestFile(File file) {
+			this.file = file;
+			lastModified = file.lastModified();
+			length = file.length();
+		}
+		private boolean isCurrent(File current) {
+			return lastModified==current.lastModified() && length==current.length();
+		}
+	}
+	
+	private File folder;
+	private HashMap<String,QuestFile> files; // by path
+	private ArrayList<QuestFile> quests; // valid quests, in folder order
+	private HashMap<String,QuestFile> questsByName;
+	private HashMap<String,ArrayList<QuestFile>> questsByRule; // filled per rule, as they are asked for
+	private int readCount = 0;
+	
+	private QuestLibrary(File folder) {
+		this.folder = folder;
+		files = new HashMap<String,QuestFile>();
+		quests = new ArrayList<QuestFile>();
+		questsByName = new HashMap<String,QuestFile>();
+		questsByRule = new HashMap<String,ArrayList<QuestFile>>();
+	}
+	
+	/**
+	 * @return		All the valid quests in the folder
+	 */
+	public ArrayList<Quest> getQuests() {
+		synchronized(this) {
+			refresh();
+			return copyQuests(quests);
+		}
+	}
+	
+	/**
+	 * @return		The quests that have any of the rules (boolean QuestConstants, like WORKS_WITH_BOQ)
+	 */
+	public ArrayList<Quest> getQuests(String... rules) {
+		synchronized(this) {
+			refresh();
+			if (rules.length==1) {
+				return copyQuests(getRuleIndex(rules[0]));
+			}
+			HashSet<QuestFile> found = new HashSet<QuestFile>();
+			for (String rule:rules) {
+				found.addAll(getRuleIndex(rule));
+			}
+			ArrayList<QuestFile> list = new ArrayList<QuestFile>();
+			for (QuestFile qf:quests) {
+				if (found.contains(qf)) {
+					list.add(qf);
+				}
+			}
+			return copyQuests(list);
+		}
+	}
+	
+	/**
+	 * @return		The first quest in the folder with the name, or null if there is none
+	 */
+	public Quest getQuest(String name) {
+		synchronized(this) {
+			refresh();
+			QuestFile qf = questsByName.get(name);
+			return qf==null?null:copyQuest(qf);
+		}
+	}
+	
+	public ArrayList<String> getQuestNames() {
+		synchronized(this) {
+			refresh();
+			ArrayList<String> names = new ArrayList<String>();
+			for (QuestFile qf:quests) {
+				names.add(qf.template.getName());
+			}
+			return names;
+		}
+	}
+	
+	/**
+	 * @return		The number of times a quest file was read (for testing, mainly)
+	 */
+	public synchronized int getReadCount() {
+		return readCount;
+	}
+	
+	/**
+	 * Checks the folder, and reads the files that are new or have changed since they were last read.  This is done
+	 * by every request, so there is no need to call it directly.
+	 */
+	public synchronized void refresh() {
+		File[] listed = folder.isDirectory()?folder.listFiles():null;
+		ArrayList<File> questFiles = new ArrayList<File>();
+		if (listed!=null) {
+			for (File file:listed) {
+				if (file.getAbsolutePath().endsWith("."+QuestConstants.DEFAULT_EXTENSION) && file.isFile()) {
+					questFiles.add(file);
+				}
+			}
+		}
+		
+		boolean changed = questFiles.size()!=files.size();
+		HashMap<String,QuestFile> current = new HashMap<String,QuestFile>();
+		ArrayList<QuestFile> toRead = new ArrayList<QuestFile>();
+		for (File file:questFiles) {
+			String path = file.getAbsolutePath();
+			QuestFile qf = files.get(path);
+			if (qf==null || !qf.isCurrent(file)) {
+				qf = new QuestFile(file);
+				toRead.add(qf);
+				changed = true;
+			}
+			current.put(path,qf);
+		}
+		if (!changed) {
+			return;
+		}
+		readQuests(toRead);
+		
+		files = current;
+		quests.clear();
+		questsByName.clear();
+		questsByRule.clear();
+		for (File file:questFiles) {
+			QuestFile qf = files.get(file.getAbsolutePath());
+			if (qf.template!=null) {
+				quests.add(qf);
+				String name = qf.template.getName();
+				if (!questsByName.containsKey(name)) {
+					questsByName.put(name,qf);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Reads the files in parallel (a thread per processor)
+	 */
+	private void readQuests(ArrayList<QuestFile> toRead) {
+		readCount += toRead.size();
+		int threads = Math.min(toRead.size(),Runtime.getRuntime().availableProcessors());
+		if (threads<=1) {
+			for (QuestFile qf:toRead) {
+				qf.template = readQuest(qf.file);
+			}
+			return;
+		}
+		ExecutorService executor = Executors.newFixedThreadPool(threads,new ThreadFactory() {
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r,"QuestLibrary");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		try {
+			ArrayList<Future<Quest>> results = new ArrayList<Future<Quest>>();
+			for (final QuestFile qf:toRead) {
+				results.add(executor.submit(new Callable<Quest>() {
+					public Quest call() {
+						return readQuest(qf.file);
+					}
+				}));
+			}
+			for (int i=0;i<toRead.size();i++) {
+				toRead.get(i).template = getResult(results.get(i),toRead.get(i).file);
+			}
+		}
+		finally {
+			executor.shutdown();
+		}
+	}
+	
+	private static Quest getResult(Future<Quest> result,File file) {
+		try {
+			return result.get();
+		}
+		catch(InterruptedException ex) {
+			Thread.currentThread().interrupt();
+		}
+		catch(ExecutionException ex) {
+			System.out.println("Problem loading quest: "+file+" "+ex.getCause());
+		}
+		return null;
+	}
+	
+	private static Quest readQuest(File file) {
+		GameData data = new GameData();
+		data.ignoreRandomSeed = true;
+		if (data.zipFromFile(file) && !data.getGameObjects().isEmpty()) {
+			Quest quest = new Quest((GameObject) data.getGameObjects().iterator().next());
+			if (quest.isValid()) {
+				quest.autoRepair(); // Just in case
+				data.setModified(false);
+				data.setReadOnly(true);
+				return quest;
+			}
+		}
+		return null;
+	}
+	
+	private ArrayList<QuestFile> getRuleIndex(String rule) {
+		ArrayList<QuestFile> list = questsByRule.get(rule);
+		if (list==null) {
+			list = new ArrayList<QuestFile>();
+			for (QuestFile qf:quests) {
+				if (qf.template.getBoolean(rule)) {
+					list.add(qf);
+				}
+			}
+			questsByRule.put(rule,list);
+		}
+		return list;
+	}
+	
+	private static ArrayList<Quest> copyQuests(ArrayList<QuestFile> list) {
+		ArrayList<Quest> copies = new ArrayList<Quest>();
+		for (QuestFile qf:list) {
+			copies.add(copyQuest(qf));
+		}
+		return copies;
+	}
+	
+	private static Quest copyQuest(QuestFile qf) {
+		GameData data = qf.template.getGameData().copy();
+		data.ignoreRandomSeed = true;
+		data.setModified(false);
+		Quest quest = new Quest(data.getGameObject(qf.template.getGameObject().getId()));
+		quest.filepath = qf.file.getAbsolutePath(); // This is just here so that the builder can save a quest it just loaded for viewDeck() - not guaranteed!
+		return quest;
+	}
+}
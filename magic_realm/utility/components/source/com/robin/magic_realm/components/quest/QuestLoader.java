@@ -17,7 +17,6 @@
  */
 package com.robin.magic_realm.components.quest;
 
-import java.io.File;
 import java.util.ArrayList;
 
 import com.robin.game.objects.*;
@@ -44,10 +43,10 @@ public class QuestLoader {
 		ArrayList query = new ArrayList();
 		query.add(RealmComponent.QUEST);
 		query.add("!"+Quest.STATE);
-		ArrayList<GameObject> allUnassingedQuests = pool.find(query);
+		ArrayList<GameObject> allUnassingedQuests = pool.find(query); // answered by the attribute index
 		ArrayList<Quest> quests = new ArrayList<Quest>();
 		for (GameObject go : allUnassingedQuests) {
-			Quest quest = new Quest(go);
+			Quest quest = QuestEventIndex.getQuest(go);
 			if (quest.canChooseQuest(character, hostPrefs)) {
 				quests.add(quest);
 			}
@@ -55,51 +54,17 @@ public class QuestLoader {
 		return quests;
 	}
 	
-	private static String getQuestFolderPath() {
-		String questFolderPath = "./quests/"; // default
-		if (System.getProperty("questFolder") != null) {
-			questFolderPath = System.getProperty("questFolder") + File.separator;
-		}
-		return questFolderPath;
-	}
-	
+	/**
+	 * @return		The quest from the quest folder (see QuestLibrary), or null if there is none with the name
+	 */
 	public static Quest loadQuestByName(String name) {
-		for(Quest quest:loadAllQuestsFromQuestFolder()) {
-			if (quest.getName().equals(name)) return quest;
-		}
-		return null;
+		return QuestLibrary.getQuestLibrary().getQuest(name);
 	}
 
+	/**
+	 * @return		All the quests in the quest folder (see QuestLibrary).  Each quest is on its own GameData.
+	 */
 	public static ArrayList<Quest> loadAllQuestsFromQuestFolder() {
-		ArrayList<Quest> quests = new ArrayList<Quest>();
-		File questFolder = new File(getQuestFolderPath());
-		// System.out.println(customFolder.getAbsolutePath());
-		if (questFolder.isDirectory() && questFolder.exists()) {
-			File[] questFile = questFolder.listFiles();
-			for (int i = 0; i < questFile.length; i++) {
-				if (questFile[i].getAbsolutePath().endsWith(".rsqst")) {
-					Quest quest = loadQuest(questFile[i].getAbsolutePath());
-					if (quest!=null) {
-						quest.autoRepair(); // Just in case
-						quests.add(quest);
-					}
-				}
-			}
-		}
-		return quests;
-	}
-
-	private static Quest loadQuest(String filePath) {
-		GameData data = new GameData();
-		data.ignoreRandomSeed = true;
-		File file = new File(filePath);
-		if (data.zipFromFile(file)) {
-			Quest quest = new Quest((GameObject) data.getGameObjects().iterator().next());
-			if (quest.isValid()) {
-				quest.filepath = filePath; // This is just here so that the builder can save a quest it just loaded for viewDeck() - not guaranteed!
-				return quest;
-			}
-		}
-		return null;
+		return QuestLibrary.getQuestLibrary().getQuests();
 	}
 }
\ No newline at end of file
@@ -333,6 +333,17 @@ public class QuestStep extends GameObjectWrapper {
 		return className;
 	}
 
+	/**
+	 * @return		All the events that the requirements of this step depend on
+	 */
+	public EnumSet<QuestEventType> getEvents() {
+		EnumSet<QuestEventType> events = EnumSet.noneOf(QuestEventType.class);
+		for (QuestRequirement req : getRequirements()) {
+			events.addAll(req.getEvents());
+		}
+		return events;
+	}
+
 	public boolean fulfillsRequirements(JFrame frame, CharacterWrapper character, QuestRequirementParams reqParams) {
 		ArrayList<QuestRequirement> reqs = getRequirements();
 		if (reqs.isEmpty()) return true; // no requirements means auto-success
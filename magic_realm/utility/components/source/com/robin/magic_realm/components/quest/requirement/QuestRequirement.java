@@ -17,6 +17,7 @@
  */
 package com.robin.magic_realm.components.quest.requirement;
 
+import java.util.EnumSet;
 import java.util.Hashtable;
 
 import javax.swing.JFrame;
@@ -138,6 +139,15 @@ public abstract class QuestRequirement extends AbstractQuestObject {
 		// override if IDs need to be updated!
 	}
 
+	/**
+	 * Override this method if the result only depends on specific events, so that the step isn't tested again until
+	 * one of them happens.  This implementation returns Any, which tests the requirement every time.  Requirements
+	 * with side effects (other than the auto journal) should stay that way.
+	 */
+	public EnumSet<QuestEventType> getEvents() {
+		return EnumSet.of(QuestEventType.Any);
+	}
+
 	public boolean isAutoJournal() {
 		return getBoolean(AUTO_JOURNAL);
 	}
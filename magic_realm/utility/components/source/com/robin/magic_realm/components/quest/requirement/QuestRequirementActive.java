@@ -17,11 +17,13 @@
  */
 package com.robin.magic_realm.components.quest.requirement;
 
+import java.util.EnumSet;
 import java.util.logging.Logger;
 
 import javax.swing.JFrame;
 
 import com.robin.game.objects.GameObject;
+import com.robin.magic_realm.components.quest.QuestEventType;
 import com.robin.magic_realm.components.quest.QuestState;
 import com.robin.magic_realm.components.wrapper.CharacterWrapper;
 
@@ -44,6 +46,10 @@ public class QuestRequirementActive extends QuestRequirement {
 		return "Only when quest is active.";
 	}
 
+	public EnumSet<QuestEventType> getEvents() {
+		return EnumSet.noneOf(QuestEventType.class); // the quest state is always compared, so there is nothing else to wait for
+	}
+
 	public RequirementType getRequirementType() {
 		return RequirementType.Active;
 	}
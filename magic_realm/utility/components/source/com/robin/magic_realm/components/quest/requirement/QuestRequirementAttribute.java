@@ -18,6 +18,7 @@
 package com.robin.magic_realm.components.quest.requirement;
 
 import java.util.ArrayList;
+import java.util.EnumSet;
 import java.util.logging.Logger;
 import java.util.regex.Pattern;
 
@@ -249,6 +250,10 @@ public class QuestRequirementAttribute extends QuestRequirement {
 		return val;
 	}
 
+	public EnumSet<QuestEventType> getEvents() {
+		return EnumSet.of(QuestEventType.AttributeChange,QuestEventType.InventoryChange,QuestEventType.Kill);
+	}
+
 	public RequirementType getRequirementType() {
 		return RequirementType.Attribute;
 	}
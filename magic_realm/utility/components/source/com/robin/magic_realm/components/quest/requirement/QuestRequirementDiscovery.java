@@ -18,11 +18,13 @@
 package com.robin.magic_realm.components.quest.requirement;
 
 import java.util.ArrayList;
+import java.util.EnumSet;
 import java.util.logging.Logger;
 
 import javax.swing.JFrame;
 
 import com.robin.game.objects.GameObject;
+import com.robin.magic_realm.components.quest.QuestEventType;
 import com.robin.magic_realm.components.wrapper.CharacterWrapper;
 
 public class QuestRequirementDiscovery extends QuestRequirement {
@@ -54,6 +56,10 @@ public class QuestRequirementDiscovery extends QuestRequirement {
 		return sb.toString();
 	}
 
+	public EnumSet<QuestEventType> getEvents() {
+		return EnumSet.of(QuestEventType.Discovery);
+	}
+
 	public RequirementType getRequirementType() {
 		return RequirementType.Discovery;
 	}
@@ -17,12 +17,14 @@
  */
 package com.robin.magic_realm.components.quest.requirement;
 
+import java.util.EnumSet;
 import java.util.logging.Logger;
 
 import javax.swing.JFrame;
 
 import com.robin.game.objects.GameObject;
 import com.robin.magic_realm.components.quest.GamePhaseType;
+import com.robin.magic_realm.components.quest.QuestEventType;
 import com.robin.magic_realm.components.wrapper.CharacterWrapper;
 
 public class QuestRequirementGamePhase extends QuestRequirement {
@@ -51,6 +53,10 @@ public class QuestRequirementGamePhase extends QuestRequirement {
 		return "Only at "+getGamePhaseType();
 	}
 
+	public EnumSet<QuestEventType> getEvents() {
+		return EnumSet.of(QuestEventType.GamePhase);
+	}
+
 	public RequirementType getRequirementType() {
 		return RequirementType.GamePhase;
 	}
@@ -18,12 +18,14 @@
 package com.robin.magic_realm.components.quest.requirement;
 
 import java.util.ArrayList;
+import java.util.EnumSet;
 import java.util.logging.Logger;
 
 import javax.swing.JFrame;
 
 import com.robin.game.objects.GameObject;
 import com.robin.magic_realm.components.quest.CharacterActionType;
+import com.robin.magic_realm.components.quest.QuestEventType;
 import com.robin.magic_realm.components.quest.TreasureType;
 import com.robin.magic_realm.components.utility.Constants;
 import com.robin.magic_realm.components.wrapper.CharacterWrapper;
@@ -89,6 +91,10 @@ public class QuestRequirementInventory extends QuestRequirementLoot {
 
 	}
 
+	public EnumSet<QuestEventType> getEvents() {
+		return EnumSet.of(QuestEventType.InventoryChange,QuestEventType.Action);
+	}
+
 	public RequirementType getRequirementType() {
 		return RequirementType.Inventory;
 	}
@@ -18,6 +18,7 @@
 package com.robin.magic_realm.components.quest.requirement;
 
 import java.util.ArrayList;
+import java.util.EnumSet;
 import java.util.logging.Logger;
 import java.util.regex.Pattern;
 
@@ -26,6 +27,7 @@ import javax.swing.JFrame;
 import com.robin.game.objects.GameObject;
 import com.robin.game.objects.GamePool;
 import com.robin.magic_realm.components.quest.QuestConstants;
+import com.robin.magic_realm.components.quest.QuestEventType;
 import com.robin.magic_realm.components.quest.QuestStep;
 import com.robin.magic_realm.components.utility.Constants;
 import com.robin.magic_realm.components.wrapper.CharacterWrapper;
@@ -124,6 +126,13 @@ public class QuestRequirementKill extends QuestRequirement {
 		return sb.toString();
 	}
 
+	public EnumSet<QuestEventType> getEvents() {
+		if (getValue()==QuestConstants.ALL_VALUE) {
+			return super.getEvents(); // looks at every creature in the game
+		}
+		return EnumSet.of(QuestEventType.Kill);
+	}
+
 	public RequirementType getRequirementType() {
 		return RequirementType.Kill;
 	}
@@ -17,12 +17,14 @@
  */
 package com.robin.magic_realm.components.quest.requirement;
 
+import java.util.EnumSet;
 import java.util.logging.Logger;
 import java.util.regex.Pattern;
 
 import javax.swing.JFrame;
 
 import com.robin.game.objects.GameObject;
+import com.robin.magic_realm.components.quest.QuestEventType;
 import com.robin.magic_realm.components.quest.SearchResultType;
 import com.robin.magic_realm.components.wrapper.CharacterWrapper;
 
@@ -66,6 +68,11 @@ public class QuestRequirementLearnAwaken extends QuestRequirement {
 		return true;
 	}
 
+	@Override
+	public EnumSet<QuestEventType> getEvents() {
+		return EnumSet.of(QuestEventType.SearchResult);
+	}
+
 	@Override
 	public RequirementType getRequirementType() {
 		return RequirementType.LearnAwaken;
@@ -17,6 +17,7 @@
  */
 package com.robin.magic_realm.components.quest.requirement;
 
+import java.util.EnumSet;
 import java.util.Hashtable;
 import java.util.logging.Logger;
 
@@ -24,6 +25,7 @@ import javax.swing.JFrame;
 
 import com.robin.game.objects.GameObject;
 import com.robin.magic_realm.components.attribute.TileLocation;
+import com.robin.magic_realm.components.quest.QuestEventType;
 import com.robin.magic_realm.components.quest.QuestLocation;
 import com.robin.magic_realm.components.wrapper.CharacterWrapper;
 
@@ -56,6 +58,10 @@ public class QuestRequirementLocation extends QuestRequirement {
 		return loc!=null && tag.equals(loc.getName());
 	}
 	
+	public EnumSet<QuestEventType> getEvents() {
+		return EnumSet.of(QuestEventType.LocationChange,QuestEventType.InventoryChange); // the address can be a piece the character is carrying
+	}
+
 	public RequirementType getRequirementType() {
 		return RequirementType.OccupyLocation;
 	}
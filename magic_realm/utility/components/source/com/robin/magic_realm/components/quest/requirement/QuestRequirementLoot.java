@@ -18,6 +18,7 @@
 package com.robin.magic_realm.components.quest.requirement;
 
 import java.util.ArrayList;
+import java.util.EnumSet;
 import java.util.logging.Logger;
 import java.util.regex.Pattern;
 
@@ -25,6 +26,7 @@ import javax.swing.JFrame;
 
 import com.robin.game.objects.GameObject;
 import com.robin.game.objects.GamePool;
+import com.robin.magic_realm.components.quest.QuestEventType;
 import com.robin.magic_realm.components.quest.TreasureType;
 import com.robin.magic_realm.components.wrapper.CharacterWrapper;
 
@@ -111,6 +113,10 @@ public class QuestRequirementLoot extends QuestRequirement {
 		return matches;
 	}
 	
+	public EnumSet<QuestEventType> getEvents() {
+		return EnumSet.of(QuestEventType.SearchResult);
+	}
+
 	public RequirementType getRequirementType() {
 		return RequirementType.Loot;
 	}
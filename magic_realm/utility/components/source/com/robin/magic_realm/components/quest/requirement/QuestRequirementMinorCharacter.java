@@ -17,11 +17,13 @@
  */
 package com.robin.magic_realm.components.quest.requirement;
 
+import java.util.EnumSet;
 import java.util.logging.Logger;
 
 import javax.swing.JFrame;
 
 import com.robin.game.objects.GameObject;
+import com.robin.magic_realm.components.quest.QuestEventType;
 import com.robin.magic_realm.components.wrapper.CharacterWrapper;
 
 public class QuestRequirementMinorCharacter extends QuestRequirement {
@@ -45,6 +47,11 @@ public class QuestRequirementMinorCharacter extends QuestRequirement {
 		return false;
 	}
 
+	@Override
+	public EnumSet<QuestEventType> getEvents() {
+		return EnumSet.of(QuestEventType.InventoryChange);
+	}
+
 	@Override
 	public RequirementType getRequirementType() {
 		return RequirementType.MinorCharacter;
@@ -18,6 +18,7 @@
 package com.robin.magic_realm.components.quest.requirement;
 
 import java.util.ArrayList;
+import java.util.EnumSet;
 import java.util.logging.Logger;
 
 import javax.swing.JFrame;
@@ -25,6 +26,7 @@ import javax.swing.JFrame;
 import com.robin.game.objects.GameObject;
 import com.robin.magic_realm.components.RealmComponent;
 import com.robin.magic_realm.components.attribute.TileLocation;
+import com.robin.magic_realm.components.quest.QuestEventType;
 import com.robin.magic_realm.components.wrapper.CharacterWrapper;
 
 public class QuestRequirementNoDenizens extends QuestRequirement {
@@ -67,6 +69,11 @@ public class QuestRequirementNoDenizens extends QuestRequirement {
 		return true;
 	}
 
+	@Override
+	public EnumSet<QuestEventType> getEvents() {
+		return EnumSet.of(QuestEventType.LocationChange);
+	}
+
 	@Override
 	public RequirementType getRequirementType() {
 		return RequirementType.NoDenizens;
@@ -18,11 +18,13 @@
 package com.robin.magic_realm.components.quest.requirement;
 
 import java.util.ArrayList;
+import java.util.EnumSet;
 import java.util.logging.Logger;
 
 import javax.swing.JFrame;
 
 import com.robin.game.objects.GameObject;
+import com.robin.magic_realm.components.quest.QuestEventType;
 import com.robin.magic_realm.components.quest.TargetValueType;
 import com.robin.magic_realm.components.wrapper.CharacterWrapper;
 import com.robin.magic_realm.components.wrapper.DayKey;
@@ -116,6 +118,11 @@ public class QuestRequirementPath extends QuestRequirement {
 		return true;
 	}
 
+	@Override
+	public EnumSet<QuestEventType> getEvents() {
+		return EnumSet.of(QuestEventType.LocationChange);
+	}
+
 	@Override
 	public RequirementType getRequirementType() {
 		return RequirementType.Path;
@@ -18,6 +18,7 @@
 package com.robin.magic_realm.components.quest.requirement;
 
 import java.util.ArrayList;
+import java.util.EnumSet;
 import java.util.Hashtable;
 import java.util.logging.Logger;
 import java.util.regex.Pattern;
@@ -135,6 +136,10 @@ public class QuestRequirementSearchResult extends QuestRequirement {
 		sb.append(".");
 		return sb.toString();
 	}
+	public EnumSet<QuestEventType> getEvents() {
+		return EnumSet.of(QuestEventType.SearchResult,QuestEventType.LocationChange,QuestEventType.InventoryChange);
+	}
+
 	public RequirementType getRequirementType() {
 		return RequirementType.SearchResult;
 	}
@@ -17,11 +17,13 @@
  */
 package com.robin.magic_realm.components.quest.requirement;
 
+import java.util.EnumSet;
 import java.util.logging.Logger;
 
 import javax.swing.JFrame;
 
 import com.robin.game.objects.GameObject;
+import com.robin.magic_realm.components.quest.QuestEventType;
 import com.robin.magic_realm.components.quest.QuestStep;
 import com.robin.magic_realm.components.wrapper.CharacterWrapper;
 import com.robin.magic_realm.components.wrapper.DayKey;
@@ -63,6 +65,10 @@ public class QuestRequirementTimePassed extends QuestRequirement {
 		return sb.toString();
 	}
 
+	public EnumSet<QuestEventType> getEvents() {
+		return EnumSet.of(QuestEventType.TimePassed);
+	}
+
 	public RequirementType getRequirementType() {
 		return RequirementType.TimePassed;
 	}
@@ -17,6 +17,7 @@
  */
 package com.robin.magic_realm.components.quest.requirement;
 
+import java.util.EnumSet;
 import java.util.logging.Logger;
 import java.util.regex.Pattern;
 
@@ -24,6 +25,7 @@ import javax.swing.JFrame;
 
 import com.robin.game.objects.GameObject;
 import com.robin.magic_realm.components.quest.CharacterActionType;
+import com.robin.magic_realm.components.quest.QuestEventType;
 import com.robin.magic_realm.components.quest.TradeType;
 import com.robin.magic_realm.components.wrapper.CharacterWrapper;
 
@@ -90,6 +92,10 @@ public class QuestRequirementTrade extends QuestRequirement {
 		return sb.toString();
 	}
 
+	public EnumSet<QuestEventType> getEvents() {
+		return EnumSet.of(QuestEventType.Trade);
+	}
+
 	public RequirementType getRequirementType() {
 		return RequirementType.Trade;
 	}
@@ -21,7 +21,7 @@ import java.util.ArrayList;
 
 import javax.swing.JFrame;
 
-import com.robin.game.objects.GameObject;
+import com.robin.game.objects.*;
 import com.robin.magic_realm.components.*;
 import com.robin.magic_realm.components.swing.RealmComponentOptionChooser;
 import com.robin.magic_realm.components.utility.Constants;
@@ -70,10 +70,10 @@ public class Blacksmith extends Store {
 			reasonStoreNotAvailable = cannotAfford?"You cannot afford to repair any armor!":"You have no armor to repair!";
 		}
 	}
-	private static String HELMET_QUERY = "armor,icon_type=helmet";
-	private static String SHIELD_QUERY = "armor,icon_type=shield";
-	private static String BREASTPLATE_QUERY = "armor,icon_type=breastplate";
-	private static String ARMOR_QUERY = "armor,icon_type=suitofarmor";
+	private static final KeyValQuery HELMET_QUERY = GameQuery.compile("armor,icon_type=helmet");
+	private static final KeyValQuery SHIELD_QUERY = GameQuery.compile("armor,icon_type=shield");
+	private static final KeyValQuery BREASTPLATE_QUERY = GameQuery.compile("armor,icon_type=breastplate");
+	private static final KeyValQuery ARMOR_QUERY = GameQuery.compile("armor,icon_type=suitofarmor");
 	public String doService(JFrame frame) {
 		RealmComponentOptionChooser chooser = new RealmComponentOptionChooser(frame,"Which Service?",true);
 		for(ArmorChitComponent armor:repairableArmor) {
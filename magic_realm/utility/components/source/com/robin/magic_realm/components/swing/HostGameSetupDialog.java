@@ -957,7 +957,7 @@ public class HostGameSetupDialog extends AggressiveDialog {
 		String[] requiresGrudges = {Constants.OPT_GRUDGES};
 		String[] cannotIncludeExtGrudges = {Constants.TE_EXTENDED_GRUDGES};
 		
-		String[] exclusiveRandomGen = {Constants.RANDOM_R250_521,Constants.RANDOM_MERSENNE_TWISTER};
+		String[] exclusiveRandomGen = {Constants.RANDOM_R250_521,Constants.RANDOM_MERSENNE_TWISTER,Constants.RANDOM_SPLITMIX64};
 		
 		newOptionPane.setTabHtmlDescription(OPTIONAL_RULES_TAB,"<html><body><font face=\"Helvetica, Arial, sans-serif\">Optional Rules</font></body></html>");
 		
@@ -1038,6 +1038,7 @@ public class HostGameSetupDialog extends AggressiveDialog {
 		newOptionPane.setTabHtmlDescription(RANDOM_GEN_TAB,"<html><body><font face=\"Helvetica, Arial, sans-serif\">Random Number Generator Preference - For more details see:</font><br>http://www.qbrundage.com/michaelb/pubs/essays/random_number_generation.html</body></html>");
 		newOptionPane.addOption(RANDOM_GEN_TAB,new GameOption(Constants.RANDOM_R250_521,"Use R250/521 - A very fast shift-register sequence random number generator, invented by Kirkpatrick and Stoll in 1981.",false,exclusiveRandomGen,null));
 		newOptionPane.addOption(RANDOM_GEN_TAB,new GameOption(Constants.RANDOM_MERSENNE_TWISTER,"Use Mersenne Twister - A twisted GFSR(624,397) invented by Matsumora and Nishimura in 1996.",false,exclusiveRandomGen,null));
+		newOptionPane.addOption(RANDOM_GEN_TAB,new GameOption(Constants.RANDOM_SPLITMIX64,"Use SplitMix64 - A counter based generator (Steele, Lea and Flood, 2014), which makes loading long games faster.",false,exclusiveRandomGen,null));
 		
 		return newOptionPane;
 	}
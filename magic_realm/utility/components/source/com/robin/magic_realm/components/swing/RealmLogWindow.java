@@ -22,17 +22,18 @@ import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.io.*;
 import java.util.ArrayList;
-import java.util.zip.DeflaterOutputStream;
-import java.util.zip.InflaterInputStream;
+import java.util.LinkedList;
 
 import javax.swing.*;
 import javax.swing.text.*;
 
 import com.robin.general.io.FileUtilities;
+import com.robin.magic_realm.components.utility.RealmLogJournal;
 import com.robin.magic_realm.components.utility.RealmLogging;
 
 public class RealmLogWindow extends JFrame {
 	public static final String INDENT_BLOCK = "    ";
+	public static final int MAX_DISPLAYED_LINES = 2000; // older lines are dropped from the window, but stay in the journal
 	
 	private static RealmLogWindow singleton = null;
 	public static RealmLogWindow getSingleton() {
@@ -45,6 +46,7 @@ public class RealmLogWindow extends JFrame {
 		if (singleton!=null) {
 			singleton.setVisible(false);
 			singleton.dispose();
+			singleton.journal.close();
 			singleton = null;
 		}
 	}
@@ -56,17 +58,18 @@ public class RealmLogWindow extends JFrame {
 
 	private JTextPane textPane;
 	private StyledDocument doc;
-	private ArrayList<String[]> list;
+	private RealmLogJournal journal;
+	private LinkedList<Integer> displayedLengths = new LinkedList<Integer>();
 	
 	private int indent = 0;
 
 	private RealmLogWindow() {
 		initComponents();
-		list = new ArrayList<String[]>();
+		journal = new RealmLogJournal();
 	}
 	public String toString() {
 		StringBuilder sb = new StringBuilder();
-		for (String[] line:list) {
+		for (String[] line:getStringArrayList()) {
 			sb.append(line[0]);
 			sb.append(" - ");
 			sb.append(line[1]);
@@ -74,26 +77,35 @@ public class RealmLogWindow extends JFrame {
 		}
 		return sb.toString();
 	}
-	private String getSaveFilePathFromFile(File rsGameFile) {
+	private static String getSaveFilePathFromFile(File rsGameFile) {
 		String path = FileUtilities.getFilePathString(rsGameFile,true,false);
 		return path+".rslog";
 	}
+	/**
+	 * @return		The log file that save and load use alongside the provided game file
+	 */
+	public static File getLogFile(File rsGameFile) {
+		return new File(getSaveFilePathFromFile(rsGameFile));
+	}
+	public RealmLogJournal getJournal() {
+		return journal;
+	}
+	/**
+	 * @return		A copy of every line in the log, read back from the journal where needed
+	 */
 	public ArrayList<String[]> getStringArrayList() {
-		return list;
+		return journal.getLines(0,journal.size());
+	}
+	/**
+	 * @return		A copy of the log that can be saved later (on another thread), while the log keeps growing
+	 */
+	public RealmLogJournal.Snapshot getLogSnapshot() {
+		return journal.snapshot();
 	}
 	public boolean save(File rsGameFile) {
 		String saveFilePath = getSaveFilePathFromFile(rsGameFile);
 		try {
-			FileOutputStream fileStream = new FileOutputStream(saveFilePath);
-			DeflaterOutputStream deflater = new DeflaterOutputStream(fileStream);
-			PrintStream stream = new PrintStream(deflater);
-			ArrayList<String[]> safeList = new ArrayList<String[]>(list);
-			stream.println(safeList.size());
-			for (String[] line:safeList) {
-				stream.println(line[0]);
-				stream.println(line[1]);
-			}
-			stream.close();
+			getLogSnapshot().write(new FileOutputStream(saveFilePath));
 			return true;
 		}
 		catch(IOException ex) {
@@ -105,18 +117,12 @@ public class RealmLogWindow extends JFrame {
 		clearLog();
 		String saveFilePath = getSaveFilePathFromFile(rsGameFile);
 		try {
-			FileInputStream fileStream = new FileInputStream(saveFilePath);
-			InflaterInputStream inflater = new InflaterInputStream(fileStream);
-			BufferedReader reader = new BufferedReader(new InputStreamReader(inflater));
-			int lines = Integer.valueOf(reader.readLine());
-			String key;
-			String message;
-			for (int i=0;i<lines;i++) {
-				key = reader.readLine();
-				message = reader.readLine();
-				addMessage(key,message);
+			journal.load(new FileInputStream(saveFilePath));
+			int size = journal.size();
+			for (String[] line:journal.getLines(Math.max(0,size-MAX_DISPLAYED_LINES),size)) {
+				display(line);
 			}
-			reader.close();
+			scrollToEnd();
 			return true;
 		}
 		catch(Exception ex) {
@@ -126,60 +132,14 @@ public class RealmLogWindow extends JFrame {
 		}
 	}
 	public String getHtmlString() {
-		StringBuffer sb = new StringBuffer();
-		for (String[] line:list) {
-			sb.append(getHtml(line));
-		}
-		return sb.toString();
+		return journal.getHtml(0,journal.size());
 	}
 	
 	public void clearLog() {
 		textPane.setText("");
 		doc = textPane.getStyledDocument();
-		list.clear();
-	}
-	
-	private String getStyleName(String key) {
-		if ("host".equals(key)) {
-			return "bold";
-		}
-		else if (RealmLogging.BATTLE.equals(key)) {
-			return "redbold";
-		}
-		return "blue";
-	}
-	private String getAliasName(String key) {
-		if ("host".equals(key)) {
-			return "RealmSpeak";
-		}
-		else if (RealmLogging.BATTLE.equals(key)) {
-			return "RealmBattle";
-		}
-		return key;
-	}
-
-	private String getHtml(String[] line) {
-		StringBuffer sb = new StringBuffer("\n<br>");
-		String style = getStyleName(line[0]);
-		String alias = getAliasName(line[0]);
-		if ("bold".equals(style)) {
-			sb.append("<b>");
-			sb.append(alias);
-			sb.append("</b>");
-		}
-		else if ("redbold".equals(style)) {
-			sb.append("<font color=\"red\"><b>");
-			sb.append(alias);
-			sb.append("</b></font>");
-		}
-		else {
-			sb.append("<font color=\"blue\">");
-			sb.append(alias);
-			sb.append("</font>");
-		}
-		sb.append(" - ");
-		sb.append(line[1]);
-		return sb.toString();
+		displayedLengths.clear();
+		journal.clear();
 	}
 	
 	public void addMessage(String key, String message) {
@@ -195,17 +155,25 @@ public class RealmLogWindow extends JFrame {
 			String[] line = new String[2];
 			line[0] = key;
 			line[1] = getIndent() + message;
-			list.add(line);
-			try {
-					doc.insertString(doc.getLength(),getAliasName(key),doc.getStyle(getStyleName(key)));
-					doc.insertString(doc.getLength(), " - " + line[1] + "\n", doc.getStyle("regular"));
-		
-					scrollToEnd();
-			}
-			catch (BadLocationException e) {
-				e.printStackTrace();
+			journal.append(line[0],line[1]);
+			display(line);
+			scrollToEnd();
+		}
+	}
+	private void display(String[] line) {
+		String alias = RealmLogJournal.getAliasName(line[0]);
+		String text = " - " + line[1] + "\n";
+		try {
+			doc.insertString(doc.getLength(),alias,doc.getStyle(RealmLogJournal.getStyleName(line[0])));
+			doc.insertString(doc.getLength(),text,doc.getStyle("regular"));
+			displayedLengths.add(alias.length()+text.length());
+			while(displayedLengths.size()>MAX_DISPLAYED_LINES) {
+				doc.remove(0,displayedLengths.removeFirst());
 			}
 		}
+		catch (BadLocationException e) {
+			e.printStackTrace();
+		}
 	}
 	private String getIndent() {
 		if (indent>0) {
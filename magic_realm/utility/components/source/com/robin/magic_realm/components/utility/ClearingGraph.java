@@ -0,0 +1,282 @@
+/* 
+ * RealmSpeak is the Java application for playing the board game Magic Realm.
+ * Copyright (c) 2005-2015 Robin Warren
+ * E-mail: robin@dewkid.com
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the
+ * implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ *
+ * http://www.gnu.org/licenses/
+ */
+package com.robin.magic_realm.components.utility;
+
+import java.util.*;
+
+import com.robin.game.objects.GameData;
+import com.robin.game.objects.GameObject;
+import com.robin.magic_realm.components.*;
+
+/**
+ * An immutable snapshot of how the clearings on the map connect, with each clearing given an int index.  Every
+ * path becomes an edge, tagged with the classes (hidden, secret, leads into a cave, leads into a mountain) that
+ * callers may want to leave out, and distances are worked out once per set of excluded classes and then kept.
+ * 
+ * Use getClearingGraph(GameData) to get the graph for the current layout.  A new graph is only built when the
+ * layout changes:  a tile is flipped, rotated, added or moved (which changes the adjacent tiles).  Path discovery
+ * doesn't change the map itself, so callers that care about it exclude HIDDEN and/or SECRET as needed.
+ */
+public class ClearingGraph {
+	
+	public static final int HIDDEN = 1;
+	public static final int SECRET = 2;
+	public static final int CAVE = 4;		// the edge leads into a cave clearing
+	public static final int MOUNTAIN = 8;	// the edge leads into a mountain clearing
+	
+	public static final int UNREACHABLE = -1;
+	
+	
+	private ArrayList<GameObject> tileObjects;
+	private int tileCount;
+	private TileComponent[] tiles;
+	private RealmGameContext context;
+	private long layout;
+	
+	private ClearingDetail[] clearings;
+	private HashMap<Long,int[]> tileClearingIndex; // tile id -> clearing num -> index
+	private int[][] neighbors;
+	private int[][] edgeClasses;
+	private HashMap<Integer,int[][]> distances; // excluded classes -> (lazily filled) rows of distances
+	
+	private ClearingGraph(ArrayList<GameObject> tileObjects,TileComponent[] tiles,RealmGameContext context,long layout) {
+		this.tileObjects = tileObjects;
+		this.tileCount = tileObjects.size();
+		this.tiles = tiles;
+		this.context = context;
+		this.layout = layout;
+		build();
+		distances = new HashMap<Integer,int[][]>();
+	}
+	
+	/**
+	 * @return		The graph for the current map layout
+	 */
+	public static synchronized ClearingGraph getClearingGraph(GameData data) {
+		ArrayList<GameObject> tileObjects = RealmObjectMaster.getRealmObjectMaster(data).getTileObjects();
+		RealmGameContext context = RealmGameContext.getContext(data);
+		ClearingGraph graph = (ClearingGraph)data.getAttachment(ClearingGraph.class);
+		if (graph!=null && graph.tileObjects==tileObjects && graph.tileCount==tileObjects.size()
+				&& graph.context==context && graph.layout==getLayout(context,graph.tiles)) {
+			return graph;
+		}
+		TileComponent[] tiles = getTiles(tileObjects);
+		graph = new ClearingGraph(tileObjects,tiles,context,getLayout(context,tiles));
+		data.setAttachment(ClearingGraph.class,graph);
+		return graph;
+	}
+	
+	public static synchronized void reset(GameData data) {
+		data.setAttachment(ClearingGraph.class,null);
+	}
+	
+	public static synchronized void resetAll() {
+		GameData.removeAllAttachments(ClearingGraph.class);
+	}
+	
+	private static TileComponent[] getTiles(ArrayList<GameObject> tileObjects) {
+		TileComponent[] tiles = new TileComponent[tileObjects.size()];
+		for (int i=0;i<tiles.length;i++) {
+			tiles[i] = (TileComponent)RealmComponent.getRealmComponent(tileObjects.get(i));
+		}
+		return tiles;
+	}
+	
+	/**
+	 * @return		A number that changes when any tile is flipped or rotated, or when the game's adjacent tiles change
+	 */
+	private static long getLayout(RealmGameContext context,TileComponent[] tiles) {
+		long layout = context.getAdjacencyVersion();
+		for (TileComponent tile:tiles) {
+			layout = layout*31 + tile.getFacingIndex();
+			layout = layout*31 + tile.getRotation();
+		}
+		return layout;
+	}
+	
+	private void build() {
+		ArrayList<ClearingDetail> list = new ArrayList<ClearingDetail>();
+		tileClearingIndex = new HashMap<Long,int[]>();
+		for (TileComponent tile:tiles) {
+			int maxNum = 0;
+			ArrayList<ClearingDetail> tileClearings = tile.getClearings();
+			for (ClearingDetail clearing:tileClearings) {
+				maxNum = Math.max(maxNum,clearing.getNum());
+			}
+			int[] index = new int[maxNum+1];
+			Arrays.fill(index,-1);
+			for (ClearingDetail clearing:tileClearings) {
+				if (!clearing.isEdge()) {
+					index[clearing.getNum()] = list.size();
+					list.add(clearing);
+				}
+			}
+			tileClearingIndex.put(new Long(tile.getGameObject().getId()),index);
+		}
+		clearings = list.toArray(new ClearingDetail[list.size()]);
+		
+		neighbors = new int[clearings.length][];
+		edgeClasses = new int[clearings.length][];
+		ArrayList<Integer> found = new ArrayList<Integer>();
+		ArrayList<Integer> foundClasses = new ArrayList<Integer>();
+		for (int i=0;i<clearings.length;i++) {
+			found.clear();
+			foundClasses.clear();
+			ArrayList<PathDetail> paths = clearings[i].getConnectedPaths();
+			if (paths!=null) {
+				for (PathDetail path:paths) {
+					ClearingDetail other = path.findConnection(clearings[i]);
+					int n = other==null?-1:indexOf(other);
+					if (n>=0) {
+						int classes = 0;
+						if (path.isHidden()) classes |= HIDDEN;
+						if (path.isSecret()) classes |= SECRET;
+						if (other.isCave()) classes |= CAVE;
+						if (other.isMountain()) classes |= MOUNTAIN;
+						found.add(n);
+						foundClasses.add(classes);
+					}
+				}
+			}
+			neighbors[i] = new int[found.size()];
+			edgeClasses[i] = new int[found.size()];
+			for (int n=0;n<neighbors[i].length;n++) {
+				neighbors[i][n] = found.get(n);
+				edgeClasses[i][n] = foundClasses.get(n);
+			}
+		}
+	}
+	
+	public int getClearingCount() {
+		return clearings.length;
+	}
+	public ClearingDetail getClearing(int index) {
+		return clearings[index];
+	}
+	/**
+	 * @return		The index of the clearing, or -1 if it isn't part of this graph
+	 */
+	public int indexOf(ClearingDetail clearing) {
+		if (clearing==null) return -1;
+		int[] index = tileClearingIndex.get(new Long(clearing.getParent().getGameObject().getId()));
+		int num = clearing.getNum();
+		if (index==null || num<0 || num>=index.length) return -1;
+		return index[num];
+	}
+	/**
+	 * @return		The indexes of the clearings connected to the clearing at index, one entry per path
+	 */
+	public int[] getNeighbors(int index) {
+		return neighbors[index].clone();
+	}
+	/**
+	 * @return		The classes (HIDDEN, SECRET, CAVE, MOUNTAIN) of each path in getNeighbors(index)
+	 */
+	public int[] getEdgeClasses(int index) {
+		return edgeClasses[index].clone();
+	}
+	
+	/**
+	 * @param exclude		Path classes that can't be used (0 to use every path)
+	 * 
+	 * @return				The number of moves from one clearing to the other (0 if they are the same), or UNREACHABLE
+	 */
+	public int getDistance(ClearingDetail from,ClearingDetail to,int exclude) {
+		int a = indexOf(from);
+		int b = indexOf(to);
+		if (a<0 || b<0) {
+			return UNREACHABLE;
+		}
+		return getDistances(a,exclude)[b];
+	}
+	
+	/**
+	 * @return		All the clearings within range moves of the clearing (including the clearing itself)
+	 */
+	public ArrayList<ClearingDetail> getClearingsWithin(ClearingDetail from,int range,int exclude) {
+		ArrayList<ClearingDetail> list = new ArrayList<ClearingDetail>();
+		int a = indexOf(from);
+		if (a>=0) {
+			int[] row = getDistances(a,exclude);
+			for (int i=0;i<row.length;i++) {
+				if (row[i]!=UNREACHABLE && row[i]<=range) {
+					list.add(clearings[i]);
+				}
+			}
+		}
+		return list;
+	}
+	
+	/**
+	 * @return		All the clearings that can be reached by moving at least once from the clearing.  The clearing
+	 * 				itself is only included if you can get back to it.
+	 */
+	public ArrayList<ClearingDetail> getReachableClearings(ClearingDetail from,int exclude) {
+		ArrayList<ClearingDetail> list = new ArrayList<ClearingDetail>();
+		int a = indexOf(from);
+		if (a>=0) {
+			boolean[] found = new boolean[clearings.length];
+			int[] queue = new int[clearings.length+1];
+			int head = 0;
+			int tail = 0;
+			queue[tail++] = a;
+			while(head<tail) {
+				int c = queue[head++];
+				for (int n=0;n<neighbors[c].length;n++) {
+					int o = neighbors[c][n];
+					if ((edgeClasses[c][n]&exclude)==0 && !found[o]) {
+						found[o] = true;
+						list.add(clearings[o]);
+						queue[tail++] = o;
+					}
+				}
+			}
+		}
+		return list;
+	}
+	
+	private synchronized int[] getDistances(int from,int exclude) {
+		Integer key = Integer.valueOf(exclude);
+		int[][] rows = distances.get(key);
+		if (rows==null) {
+			rows = new int[clearings.length][];
+			distances.put(key,rows);
+		}
+		if (rows[from]==null) {
+			int[] row = new int[clearings.length];
+			Arrays.fill(row,UNREACHABLE);
+			int[] queue = new int[clearings.length];
+			int head = 0;
+			int tail = 0;
+			row[from] = 0;
+			queue[tail++] = from;
+			while(head<tail) {
+				int c = queue[head++];
+				for (int n=0;n<neighbors[c].length;n++) {
+					int o = neighbors[c][n];
+					if ((edgeClasses[c][n]&exclude)==0 && row[o]==UNREACHABLE) {
+						row[o] = row[c]+1;
+						queue[tail++] = o;
+					}
+				}
+			}
+			rows[from] = row;
+		}
+		return rows[from];
+	}
+}
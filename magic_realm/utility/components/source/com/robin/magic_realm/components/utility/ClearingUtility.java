@@ -361,11 +361,27 @@ public class ClearingUtility {
 	}
 
 	public static TileLocation getTileLocation(GameObject go) {
+		GameData data = go.getGameData();
+		if (data==null) {
+			return findTileLocation(go,null);
+		}
+		return LocationIndex.getLocationIndex(data).getTileLocation(go);
+	}
+
+	/**
+	 * Works out the location by walking up the hold chain.  Use getTileLocation instead, which remembers the answer.
+	 * 
+	 * @param sources		If not null, every GameObject the answer depends on is added to this list
+	 */
+	public static TileLocation findTileLocation(GameObject go,Collection<GameObject> sources) {
 		boolean flying = go.hasThisAttribute("isflying");
 		TileComponent tile = null;
 		RealmComponent parent = null;
 		
 		ArrayList<GameObject> searched = new ArrayList<GameObject>();
+		if (sources!=null) {
+			sources.add(go);
+		}
 		
 		// Find the top level parent, that isn't a tile
 		while(parent==null && go.getHeldBy()!=null) {
@@ -374,6 +390,9 @@ public class ClearingUtility {
 			if (temp==go) {
 				throw new IllegalStateException("GameObject is held by itself! "+go+" --> "+temp);
 			}
+			if (sources!=null) {
+				sources.add(temp);
+			}
 			RealmComponent tempRc = RealmComponent.getRealmComponent(temp);
 			if (tempRc==null) {
 				// Bumped into a gameobject that isn't a component (like a native dwelling) - return null
@@ -402,6 +421,9 @@ public class ClearingUtility {
 					if (!searched.contains(test)) {
 						// Haven't searched this before, so this is good (prevents infinite loops)
 						temp = test;
+						if (sources!=null) {
+							sources.add(temp);
+						}
 					}
 				}
 			}
@@ -419,6 +441,9 @@ public class ClearingUtility {
 			// Added this next section on 2/15/2006 to accomodate partway readings
 			if (parent.getGameObject().hasThisAttribute("otherTile")) {
 				TileComponent otherTile = RealmUtility.findTileForCode(parent.getGameObject().getGameData(),parent.getGameObject().getThisAttribute("otherTile"));
+				if (sources!=null) {
+					sources.add(otherTile.getGameObject());
+				}
 				String otherNumString = parent.getGameObject().getThisAttribute("otherClearing");
 				if (otherNumString==null) {
 					tl.setOther(new TileLocation(otherTile));
@@ -436,41 +461,9 @@ public class ClearingUtility {
 
 	public static int calculateClearingCount(TileLocation tl1,TileLocation tl2) {
 		int val = 0;
-		if (tl1!=null && tl2!=null && !tl1.equals(tl2)) {
-			ArrayList all = new ArrayList();
-			ArrayList list = new ArrayList();
-			list.add(tl1.clearing);
-			int count = 0;
-			while(!list.isEmpty()) {
-				count++;
-				ArrayList found = new ArrayList();
-				for (Iterator i=list.iterator();i.hasNext();) {
-					ClearingDetail clearing = (ClearingDetail)i.next();
-					if (!all.contains(clearing)) {
-						all.add(clearing);
-						Collection c = clearing.getConnectedPaths();
-						for (Iterator n=c.iterator();n.hasNext();) {
-							PathDetail path = (PathDetail)n.next();
-							ClearingDetail connectedClearing = path.findConnection(clearing);
-							if (connectedClearing!=null) {
-								if (connectedClearing.equals(tl2.clearing)) {
-									// found one!
-									if (val==0 || count<val) {
-										val = count;
-										if (val==1) { // it doesn't get any better than this, so stop searching
-											break;
-										}
-									}
-								}
-								else {
-									found.add(connectedClearing);
-								}
-							}
-						}
-					}
-				}
-				list = found;
-			}
+		if (tl1!=null && tl2!=null && !tl1.equals(tl2) && tl1.clearing!=null && tl2.clearing!=null) {
+			GameData data = tl1.clearing.getParent().getGameObject().getGameData();
+			val = Math.max(0,ClearingGraph.getClearingGraph(data).getDistance(tl1.clearing,tl2.clearing,0));
 		}
 		return val;
 	}
@@ -486,6 +486,7 @@ public class Constants {
 	// Random Number Generators
 	public static final String RANDOM_R250_521 = "RndR250_521";
 	public static final String RANDOM_MERSENNE_TWISTER = "RndMt";
+	public static final String RANDOM_SPLITMIX64 = "RndSm64";
 	
 	// Quests
 	public static final String QST_BOOK_OF_QUESTS = "BookOfQuests";
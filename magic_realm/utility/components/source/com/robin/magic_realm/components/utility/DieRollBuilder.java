@@ -21,6 +21,7 @@ import java.util.*;
 
 import javax.swing.JFrame;
 
+import com.robin.game.objects.GameData;
 import com.robin.game.objects.GameObject;
 import com.robin.general.swing.DieRoller;
 import com.robin.general.util.StringUtilities;
@@ -31,26 +32,33 @@ import com.robin.magic_realm.components.wrapper.SpellWrapper;
 
 public class DieRollBuilder {
 	
-	private static Hashtable<Long,DieRollBuilder> builderHash = null;
 	public static DieRollBuilder getDieRollBuilder(JFrame parent,CharacterWrapper character) {
 		return getDieRollBuilder(parent,character,0);
 	}
-	public static DieRollBuilder getDieRollBuilder(JFrame parent,CharacterWrapper character,int redDie) {
+	public static synchronized DieRollBuilder getDieRollBuilder(JFrame parent,CharacterWrapper character,int redDie) {
+		// The builders belong to the GameData (copies of the data share object ids)
+		GameObject go = character.getGameObject();
+		GameData data = go.getGameData();
+		HashMap<Long,DieRollBuilder> builderHash = (HashMap<Long,DieRollBuilder>)data.getAttachment(DieRollBuilder.class);
 		if (builderHash==null) {
-			builderHash = new Hashtable<Long,DieRollBuilder>();
+			builderHash = new HashMap<Long,DieRollBuilder>();
+			data.setAttachment(DieRollBuilder.class,builderHash);
 		}
-		DieRollBuilder drb = builderHash.get(character.getGameObject().getId());
+		Long key = new Long(go.getId());
+		DieRollBuilder drb = builderHash.get(key);
 		if (drb == null) {
 			drb = new DieRollBuilder(parent,character,redDie);
-			builderHash.put(character.getGameObject().getId(),drb);
+			builderHash.put(key,drb);
 		}
 		drb.parent = parent;
 		drb.redDie = redDie;
 		return drb;
 	}
-	public static void reset() {
-		if (builderHash!=null) builderHash.clear();
-		builderHash = null;
+	public static synchronized void reset(GameData data) {
+		data.setAttachment(DieRollBuilder.class,null);
+	}
+	public static synchronized void reset() {
+		GameData.removeAllAttachments(DieRollBuilder.class);
 	}
 	
 	private JFrame parent;
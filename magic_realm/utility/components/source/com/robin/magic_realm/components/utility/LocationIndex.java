@@ -0,0 +1,202 @@
+/* 
+ * RealmSpeak is the Java application for playing the board game Magic Realm.
+ * Copyright (c) 2005-2015 Robin Warren
+ * E-mail: robin@dewkid.com
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the
+ * implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ *
+ * http://www.gnu.org/licenses/
+ */
+package com.robin.magic_realm.components.utility;
+
+import java.util.*;
+
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
+
+import com.robin.game.objects.GameData;
+import com.robin.game.objects.GameObject;
+import com.robin.magic_realm.components.RealmComponent;
+import com.robin.magic_realm.components.TileComponent;
+import com.robin.magic_realm.components.attribute.TileLocation;
+
+/**
+ * Remembers where things are, so that ClearingUtility.getTileLocation and TileComponent.getRealmComponentsAt don't
+ * have to walk the hold chains (and build RealmComponents and SpellWrappers along the way) every time they are
+ * called.
+ * 
+ * Every cached answer remembers the GameObjects it was worked out from (the object itself, everything it is held by,
+ * spells it passed through, the tiles, and for a clearing, everything on the tile).  The index listens to the
+ * GameData for modified objects, and drops any answer that depends on one of them, so a move (hold change) or a
+ * change to clearing/otherTile is picked up on the next query.
+ */
+public class LocationIndex implements ChangeListener {
+	
+	
+	private GameData data;
+	private HashMap<Long,CachedLocation> locations;
+	private HashMap<String,ArrayList<RealmComponent>> occupants; // tile id:clearing -> components
+	private HashMap<Long,HashSet<Object>> dependents; // object id -> keys of the answers that depend on it
+	private long modificationCount;
+	
+	private long hits = 0;
+	private long misses = 0;
+	
+	private static class CachedLocation {
+		GameObject go;
+		TileLocation location;
+		CachedLocation(GameObject go,TileLocation location) {
+			this.go = go;
+			this.location = location;
+		}
+	}
+	
+	private LocationIndex(GameData data) {
+		this.data = data;
+		locations = new HashMap<Long,CachedLocation>();
+		occupants = new HashMap<String,ArrayList<RealmComponent>>();
+		dependents = new HashMap<Long,HashSet<Object>>();
+		modificationCount = 0;
+		data.addObjectChangeListener(this);
+	}
+	
+	public static LocationIndex getLocationIndex(GameData data) {
+		LocationIndex index = (LocationIndex)data.getAttachment(LocationIndex.class);
+		if (index==null) {
+			synchronized(LocationIndex.class) {
+				index = (LocationIndex)data.getAttachment(LocationIndex.class);
+				if (index==null) {
+					index = new LocationIndex(data);
+					data.setAttachment(LocationIndex.class,index);
+				}
+			}
+		}
+		return index;
+	}
+	
+	/**
+	 * Forgets everything about one GameData
+	 */
+	public static synchronized void reset(GameData data) {
+		LocationIndex index = (LocationIndex)data.setAttachment(LocationIndex.class,null);
+		if (index!=null) {
+			data.removeObjectChangeListener(index);
+		}
+	}
+	
+	/**
+	 * Forgets everything.  This needs to happen whenever the RealmComponents are reset, since the answers hold on
+	 * to them.
+	 */
+	public static synchronized void resetAll() {
+		for (Object index:GameData.removeAllAttachments(LocationIndex.class)) {
+			((LocationIndex)index).data.removeObjectChangeListener((LocationIndex)index);
+		}
+	}
+	
+	public void stateChanged(ChangeEvent ev) {
+		Long id = new Long(((GameObject)ev.getSource()).getId());
+		synchronized(this) {
+			modificationCount++;
+			locations.remove(id);
+			HashSet<Object> keys = dependents.remove(id);
+			if (keys!=null) {
+				for (Object key:keys) {
+					if (key instanceof Long) {
+						locations.remove(key);
+					}
+					else {
+						occupants.remove(key);
+					}
+				}
+			}
+		}
+	}
+	
+	/**
+	 * @return		The TileLocation of the object, or null if it is not on the board.  The TileLocation is a new
+	 * 				instance every time, so the caller is free to change it.
+	 */
+	public TileLocation getTileLocation(GameObject go) {
+		Long id = new Long(go.getId());
+		long count;
+		synchronized(this) {
+			CachedLocation cached = locations.get(id);
+			if (cached!=null && cached.go==go) {
+				hits++;
+				return cached.location==null?null:cached.location.copy();
+			}
+			misses++;
+			count = modificationCount;
+		}
+		// Work it out without holding the lock, since it can end up waiting on the GameData
+		ArrayList<GameObject> sources = new ArrayList<GameObject>();
+		TileLocation tl = ClearingUtility.findTileLocation(go,sources);
+		if (data.validate(go)) { // copies share ids with the real objects, so never cache those
+			store(count,id,new CachedLocation(go,tl==null?null:tl.copy()),sources);
+		}
+		return tl;
+	}
+	
+	/**
+	 * @return		A new list of the RealmComponents in the clearing (see TileComponent.getRealmComponentsAt)
+	 */
+	public ArrayList<RealmComponent> getRealmComponentsAt(TileComponent tile,int clearing) {
+		String key = tile.getGameObject().getId()+":"+clearing;
+		long count;
+		synchronized(this) {
+			ArrayList<RealmComponent> cached = occupants.get(key);
+			if (cached!=null) {
+				hits++;
+				return new ArrayList<RealmComponent>(cached);
+			}
+			misses++;
+			count = modificationCount;
+		}
+		ArrayList<GameObject> sources = new ArrayList<GameObject>();
+		ArrayList<RealmComponent> found = tile.findRealmComponentsAt(clearing,sources);
+		if (data.validate(tile.getGameObject())) {
+			store(count,key,new ArrayList<RealmComponent>(found),sources);
+		}
+		return found;
+	}
+	
+	private synchronized void store(long count,Object key,Object answer,ArrayList<GameObject> sources) {
+		if (count!=modificationCount) {
+			return; // something changed while the answer was being worked out, so it may already be stale
+		}
+		if (key instanceof Long) {
+			locations.put((Long)key,(CachedLocation)answer);
+		}
+		else {
+			occupants.put((String)key,(ArrayList<RealmComponent>)answer);
+		}
+		for (GameObject source:sources) {
+			Long id = new Long(source.getId());
+			HashSet<Object> keys = dependents.get(id);
+			if (keys==null) {
+				keys = new HashSet<Object>();
+				dependents.put(id,keys);
+			}
+			keys.add(key);
+		}
+	}
+	
+	public synchronized long getHits() {
+		return hits;
+	}
+	public synchronized long getMisses() {
+		return misses;
+	}
+	public synchronized int size() {
+		return locations.size()+occupants.size();
+	}
+}
@@ -62,7 +62,6 @@ public class RealmCalendar {
 	public static final String WEATHER_STORM = "storm";
 	public static final String WEATHER_SPECIAL = "special";
 	
-	private static RealmCalendar currentCalendar = null;
 	
 	private Hashtable<Integer,GameObject> seasonsHash;
 	private GameWrapper game;
@@ -386,17 +385,17 @@ public class RealmCalendar {
 		return day==7 || day==14 || day==21 || day==28;
 	}
 	public static RealmCalendar getCalendar(GameData data) {
-		if (currentCalendar==null) {
+		RealmGameContext context = RealmGameContext.getContext(data);
+		RealmCalendar calendar = context.getCalendar();
+		if (calendar==null) {
 			GameWrapper game = GameWrapper.findGame(data);
 			HostPrefWrapper hostPrefs = HostPrefWrapper.findHostPrefs(data);
 			if (hostPrefs!=null) {
-				currentCalendar = new RealmCalendar(data,game,hostPrefs);
+				calendar = new RealmCalendar(data,game,hostPrefs);
+				context.setCalendar(calendar);
 			}
 		}
-		return currentCalendar;
-	}
-	public static void reset() {
-		currentCalendar = null;
+		return calendar;
 	}
 	public static ArrayList findSeasons(GameData data) {
 		GamePool pool = new GamePool(data.getGameObjects());
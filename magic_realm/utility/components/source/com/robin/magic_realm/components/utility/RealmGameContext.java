@@ -0,0 +1,201 @@
+/* 
+ * RealmSpeak is the Java application for playing the board game Magic Realm.
+ * Copyright (c) 2005-2015 Robin Warren
+ * E-mail: robin@dewkid.com
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the
+ * implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ *
+ * http://www.gnu.org/licenses/
+ */
+package com.robin.magic_realm.components.utility;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.robin.game.objects.GameData;
+import com.robin.general.util.RandomNumber;
+
+/**
+ * The state that belongs to one game, rather than to the whole process:  the ids of the well known objects (game,
+ * host prefs, spell master, etc), the calendar, the dice and the log.  It is attached to the game's GameData, so
+ * several games (host and client data, or many tables on one host) can live in the same JVM without stepping on each
+ * other, and everything goes away with the data.
+ * 
+ * Code that works on a game without a client of its own (like a table on a multi table host) should do it through
+ * run, so that the dice and the log on that thread are the game's own.
+ */
+public class RealmGameContext {
+	
+	private static final ThreadLocal<RealmGameContext> current = new ThreadLocal<RealmGameContext>();
+	
+	private GameData data;
+	private ConcurrentHashMap<Class<?>,Long> objectIds = new ConcurrentHashMap<Class<?>,Long>();
+	private volatile RealmCalendar calendar = null;
+	private RandomNumber randomNumber = null;
+	private RealmLogJournal journal = null;
+	private AtomicInteger adjacencyVersion = new AtomicInteger();
+	
+	private RealmGameContext(GameData data) {
+		this.data = data;
+	}
+	
+	/**
+	 * @return		The context for the data, which is created the first time it is needed
+	 */
+	public static RealmGameContext getContext(GameData data) {
+		RealmGameContext context = findContext(data);
+		if (context==null) {
+			synchronized(RealmGameContext.class) {
+				context = findContext(data);
+				if (context==null) {
+					context = new RealmGameContext(data);
+					data.setAttachment(RealmGameContext.class,context);
+				}
+			}
+		}
+		return context;
+	}
+	
+	/**
+	 * @return		The context for the data, or null if there isn't one yet
+	 */
+	public static RealmGameContext findContext(GameData data) {
+		return (RealmGameContext)data.getAttachment(RealmGameContext.class);
+	}
+	
+	/**
+	 * @return		The context that the calling thread is working in (see run), or null if none
+	 */
+	public static RealmGameContext getCurrent() {
+		return current.get();
+	}
+	
+	/**
+	 * Drops (and closes) the context for one GameData
+	 */
+	public static synchronized void reset(GameData data) {
+		RealmGameContext context = (RealmGameContext)data.setAttachment(RealmGameContext.class,null);
+		if (context!=null) {
+			context.close();
+		}
+	}
+	
+	/**
+	 * Drops (and closes) the contexts of every GameData
+	 */
+	public static synchronized void resetAll() {
+		for (Object context:GameData.removeAllAttachments(RealmGameContext.class)) {
+			((RealmGameContext)context).close();
+		}
+	}
+	
+	public GameData getGameData() {
+		return data;
+	}
+	
+	/**
+	 * @param wrapperClass		The wrapper class that the id was found for (GameWrapper.class, etc)
+	 * 
+	 * @return					The id of the object, or null if it hasn't been found yet
+	 */
+	public Long getObjectId(Class<?> wrapperClass) {
+		return objectIds.get(wrapperClass);
+	}
+	
+	/**
+	 * Remembers (or forgets, if id is null) the id of a well known object
+	 */
+	public void setObjectId(Class<?> wrapperClass,Long id) {
+		if (id==null) {
+			objectIds.remove(wrapperClass);
+		}
+		else {
+			objectIds.put(wrapperClass,id);
+		}
+	}
+	
+	public RealmCalendar getCalendar() {
+		return calendar;
+	}
+	public void setCalendar(RealmCalendar calendar) {
+		this.calendar = calendar;
+	}
+	
+	/**
+	 * @return		The game's own dice, which are only rolled on threads working through run.  Loading the game's data
+	 * 				through run restores them to the saved seed and count (see RandomNumber.init).
+	 */
+	public synchronized RandomNumber getRandomNumber() {
+		if (randomNumber==null) {
+			randomNumber = RandomNumber.newInstance(System.nanoTime());
+		}
+		return randomNumber;
+	}
+	public synchronized void setRandomNumber(RandomNumber randomNumber) {
+		this.randomNumber = randomNumber;
+	}
+	
+	/**
+	 * @return		A number that changes whenever the adjacent tiles of any of the game's tiles change
+	 */
+	public int getAdjacencyVersion() {
+		return adjacencyVersion.get();
+	}
+	public void adjacencyChanged() {
+		adjacencyVersion.incrementAndGet();
+	}
+	
+	/**
+	 * @return		The log for the game, when it is logged through run
+	 */
+	public synchronized RealmLogJournal getJournal() {
+		if (journal==null) {
+			journal = new RealmLogJournal();
+		}
+		return journal;
+	}
+	
+	/**
+	 * Lets go of the game's log (and its temp file).  The context shouldn't be used after this.
+	 */
+	public synchronized void close() {
+		if (journal!=null) {
+			journal.close();
+			journal = null;
+		}
+	}
+	
+	/**
+	 * Does the work on the calling thread with this game's dice and log, then puts back whatever the thread was using
+	 * before.
+	 */
+	public void run(Runnable work) {
+		RealmGameContext previous = current.get();
+		RandomNumber previousRandomNumber = RandomNumber.setThreadInstance(getRandomNumber());
+		current.set(this);
+		try {
+			work.run();
+		}
+		finally {
+			RandomNumber.setThreadInstance(previousRandomNumber);
+			if (previous==null) {
+				current.remove();
+			}
+			else {
+				current.set(previous);
+			}
+		}
+	}
+	
+	public String toString() {
+		return "RealmGameContext["+data.getDataName()+"]";
+	}
+}
@@ -26,15 +26,12 @@ public class RealmLoader {
 
 	public static final String DATA_PATH = "data/MagicRealmData.xml";
 
-	private GameData master; // needed to determine changes
+	private GameData master; // needed to determine changes (shared, and read only)
 	private GameData data;
 
 	public RealmLoader() {
-		master = new GameData();
-		master.loadFromPath(DATA_PATH);
-
-		data = new GameData();
-		data.loadFromPath(DATA_PATH);
+		master = GameData.getSharedData(DATA_PATH); // only parsed the first time
+		data = master.copy();
 	}
 	
 	public void cleanupData(String keyVals) {
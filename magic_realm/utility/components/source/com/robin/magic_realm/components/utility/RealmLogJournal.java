@@ -0,0 +1,545 @@
+/* 
+ * RealmSpeak is the Java application for playing the board game Magic Realm.
+ * Copyright (c) 2005-2015 Robin Warren
+ * E-mail: robin@dewkid.com
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the
+ * implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ *
+ * http://www.gnu.org/licenses/
+ */
+package com.robin.magic_realm.components.utility;
+
+import java.io.*;
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.*;
+
+/**
+ * The detail log, kept as an append-only journal.  Messages are collected into blocks of BLOCK_SIZE, and each full
+ * block is compressed once and appended to a temp file, so only the newest (unfinished) block and a few recently
+ * read blocks are held in memory.  Older messages are read back from the file when needed.
+ * 
+ * As messages are added, an index is kept of where each day, each battle, and each combat round begins, so that
+ * RealmLogParser can go straight to a battle instead of searching the whole log.
+ * 
+ * Saved logs (see Snapshot) are the compressed blocks copied as-is, plus the index, so saving doesn't compress the
+ * whole log again.  Logs saved in the old format (one deflated stream) can still be loaded.
+ * 
+ * The temp file is emptied whenever the log is cleared or loaded, and deleted by close.
+ */
+public class RealmLogJournal {
+	
+	public static final int BLOCK_SIZE = 1024;
+	private static final int CACHED_BLOCKS = 4;
+	
+	private static final int JOURNAL_MAGIC = 0x52534c4a; // "RSLJ"
+	private static final int JOURNAL_VERSION = 1;
+	
+	private static final Pattern DAY_PATTERN = Pattern.compile("Month (\\d+), Day (\\d+)");
+	private static final Pattern BATTLE_PATTERN = Pattern.compile("Evening of month (\\d+), day (\\d+), in clearing (.*)");
+	private static final Pattern ROUND_PATTERN = Pattern.compile(".*Combat Round (\\d+)");
+	
+	private File journalFile;
+	private RandomAccessFile journal; // null if a temp file couldn't be made (or was closed), in which case blocks stay in memory
+	private long journalLength = 0;
+	private WeakHashMap<Snapshot,Boolean> pending = new WeakHashMap<Snapshot,Boolean>(); // snapshots that might still read the file
+	
+	private ArrayList<Block> blocks = new ArrayList<Block>();
+	private ArrayList<String[]> tail = new ArrayList<String[]>();
+	private int size = 0;
+	
+	private HashMap<String,Integer> index = new HashMap<String,Integer>();
+	private int currentBattle = -1;
+	
+	private LinkedHashMap<Block,ArrayList<String[]>> cache = new LinkedHashMap<Block,ArrayList<String[]>>(CACHED_BLOCKS*2,0.75f,true) {
+		protected boolean removeEldestEntry(Map.Entry<Block,ArrayList<String[]>> eldest) {
+			return size()>CACHED_BLOCKS;
+		}
+	};
+	
+	public RealmLogJournal() {
+		try {
+			journalFile = File.createTempFile("realmlog",".rsjournal");
+			journalFile.deleteOnExit();
+			journal = new RandomAccessFile(journalFile,"rw");
+		}
+		catch(IOException ex) {
+			ex.printStackTrace();
+			journal = null;
+		}
+	}
+	public synchronized int size() {
+		return size;
+	}
+	/**
+	 * Adds a message (key and text) to the end of the log
+	 */
+	public synchronized void append(String key,String message) {
+		String[] line = new String[] {key,message};
+		indexLine(size,line);
+		tail.add(line);
+		size++;
+		if (tail.size()>=BLOCK_SIZE) {
+			try {
+				seal(compress(tail),tail.size());
+				tail = new ArrayList<String[]>();
+			}
+			catch(IOException ex) {
+				ex.printStackTrace(); // keep the messages in memory, and try again when the next one comes in
+			}
+		}
+	}
+	/**
+	 * Empties the log, and the journal file with it.  A Snapshot that hasn't been written yet gets its own copy of
+	 * its blocks first, so it can still be saved.
+	 */
+	public synchronized void clear() {
+		detachSnapshots();
+		if (journal!=null) {
+			try {
+				journal.setLength(0);
+			}
+			catch(IOException ex) {
+				ex.printStackTrace(); // the old blocks just stay in the file until it is closed
+			}
+		}
+		journalLength = 0;
+		blocks = new ArrayList<Block>();
+		tail = new ArrayList<String[]>();
+		size = 0;
+		index.clear();
+		currentBattle = -1;
+		cache.clear();
+	}
+	/**
+	 * Empties the log, and deletes the journal file.  Call this when the log won't be used any more.  (If it is used
+	 * anyway, it keeps everything in memory.)
+	 */
+	public synchronized void close() {
+		clear();
+		if (journal!=null) {
+			try {
+				journal.close();
+			}
+			catch(IOException ex) {
+				ex.printStackTrace();
+			}
+			journal = null;
+			journalFile.delete();
+		}
+	}
+	/**
+	 * @return		The length of the journal file, or -1 if there isn't one
+	 */
+	synchronized long getFileLength() throws IOException {
+		return journal==null?-1:journal.length();
+	}
+	/**
+	 * Gives every snapshot that might still be written its own copy of the blocks it needs from the file
+	 */
+	private void detachSnapshots() {
+		for (Snapshot snapshot:pending.keySet()) {
+			for (Block block:snapshot.blocks) {
+				if (block.bytes==null) {
+					try {
+						block.bytes = readBlock(block);
+					}
+					catch(IOException ex) {
+						ex.printStackTrace(); // the snapshot will fail when it is written
+					}
+				}
+			}
+		}
+		pending.clear();
+	}
+	private synchronized void written(Snapshot snapshot) {
+		pending.remove(snapshot);
+	}
+	public synchronized String[] getLine(int n) {
+		if (n<0 || n>=size) {
+			throw new IndexOutOfBoundsException("Line "+n+" of "+size);
+		}
+		int tailStart = size-tail.size();
+		if (n>=tailStart) {
+			return tail.get(n-tailStart);
+		}
+		Block block = findBlock(n);
+		return readLines(block).get(n-block.first);
+	}
+	/**
+	 * @return		Lines from (inclusive) to to (exclusive)
+	 */
+	public synchronized ArrayList<String[]> getLines(int from,int to) {
+		ArrayList<String[]> lines = new ArrayList<String[]>(Math.max(0,to-from));
+		if (from>=to) {
+			return lines;
+		}
+		if (from<0 || to>size) {
+			throw new IndexOutOfBoundsException("Lines "+from+" to "+to+" of "+size);
+		}
+		int tailStart = size-tail.size();
+		int n = from;
+		while(n<to && n<tailStart) { // whole blocks at a time, so each one is only read once
+			Block block = findBlock(n);
+			List<String[]> blockLines = readLines(block);
+			int end = Math.min(to,block.first+block.count);
+			lines.addAll(blockLines.subList(n-block.first,end-block.first));
+			n = end;
+		}
+		if (n<to) {
+			lines.addAll(tail.subList(n-tailStart,to-tailStart));
+		}
+		return lines;
+	}
+	/**
+	 * @return		The lines from (inclusive) to to (exclusive) as html, the same way RealmLogWindow.getHtmlString does
+	 */
+	public synchronized String getHtml(int from,int to) {
+		StringBuilder sb = new StringBuilder();
+		for (String[] line:getLines(from,to)) {
+			sb.append(getHtml(line));
+		}
+		return sb.toString();
+	}
+	/**
+	 * @return		The line number of the "Month m, Day d" line, or -1 if there isn't one
+	 */
+	public synchronized int getDayStart(int month,int day) {
+		return getIndex("day:"+month+":"+day);
+	}
+	/**
+	 * @param location		The clearing, as TileLocation.toString() names it, or null for the first battle of the evening
+	 * 
+	 * @return		The line number of the "Evening of month m, day d, in clearing" line, or -1 if there isn't one
+	 */
+	public synchronized int getBattleStart(int month,int day,String location) {
+		return getIndex("battle:"+month+":"+day+(location==null?"":(":"+location)));
+	}
+	/**
+	 * @return		The line number of the "Combat Round" line, in the battle that starts at battleStart, or -1 if
+	 * 				there isn't one
+	 */
+	public synchronized int getRoundStart(int battleStart,int round) {
+		return getIndex("round:"+battleStart+":"+round);
+	}
+	private int getIndex(String key) {
+		Integer n = index.get(key);
+		return n==null?-1:n.intValue();
+	}
+	private void indexLine(int n,String[] line) {
+		String text = line[1].trim();
+		if (text.startsWith("Month ")) {
+			Matcher m = DAY_PATTERN.matcher(text);
+			if (m.matches()) {
+				addIndex("day:"+m.group(1)+":"+m.group(2),n);
+			}
+		}
+		else if (text.startsWith("Evening of month ")) {
+			Matcher m = BATTLE_PATTERN.matcher(text);
+			if (m.matches()) {
+				addIndex("battle:"+m.group(1)+":"+m.group(2),n);
+				addIndex("battle:"+m.group(1)+":"+m.group(2)+":"+m.group(3),n);
+				currentBattle = n;
+			}
+		}
+		else if (currentBattle>=0 && text.indexOf("Combat Round ")>=0) {
+			Matcher m = ROUND_PATTERN.matcher(text);
+			if (m.matches()) {
+				addIndex("round:"+currentBattle+":"+m.group(1),n);
+			}
+		}
+	}
+	private void addIndex(String key,int n) {
+		if (!index.containsKey(key)) { // the first one wins, same as searching from the top
+			index.put(key,Integer.valueOf(n));
+		}
+	}
+	private Block findBlock(int n) {
+		int lo = 0;
+		int hi = blocks.size()-1;
+		while(lo<hi) {
+			int mid = (lo+hi+1)>>>1;
+			if (blocks.get(mid).first<=n) {
+				lo = mid;
+			}
+			else {
+				hi = mid-1;
+			}
+		}
+		return blocks.get(lo);
+	}
+	private ArrayList<String[]> readLines(Block block) {
+		ArrayList<String[]> lines = cache.get(block);
+		if (lines==null) {
+			try {
+				lines = decompress(readBlock(block),block.count);
+			}
+			catch(IOException ex) {
+				throw new IllegalStateException("Unable to read the log journal",ex);
+			}
+			cache.put(block,lines);
+		}
+		return lines;
+	}
+	private synchronized byte[] readBlock(Block block) throws IOException {
+		if (block.bytes!=null) {
+			return block.bytes;
+		}
+		byte[] bytes = new byte[block.length];
+		journal.seek(block.offset);
+		journal.readFully(bytes);
+		return bytes;
+	}
+	private void seal(byte[] bytes,int count) throws IOException {
+		Block block = new Block(size-count,count,bytes.length);
+		if (journal==null) {
+			block.bytes = bytes;
+		}
+		else {
+			journal.seek(journalLength);
+			journal.write(bytes);
+			block.offset = journalLength;
+			journalLength += bytes.length;
+		}
+		blocks.add(block);
+	}
+	private static byte[] compress(List<String[]> lines) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new DeflaterOutputStream(bytes)));
+		for (String[] line:lines) {
+			writeString(out,line[0]);
+			writeString(out,line[1]);
+		}
+		out.close();
+		return bytes.toByteArray();
+	}
+	private static ArrayList<String[]> decompress(byte[] bytes,int count) throws IOException {
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new InflaterInputStream(new ByteArrayInputStream(bytes))));
+		ArrayList<String[]> lines = new ArrayList<String[]>(count);
+		for (int i=0;i<count;i++) {
+			lines.add(new String[] {readString(in),readString(in)});
+		}
+		return lines;
+	}
+	private static byte[] compressIndex(HashMap<String,Integer> index,int currentBattle) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new DeflaterOutputStream(bytes)));
+		out.writeInt(index.size());
+		for (Map.Entry<String,Integer> entry:index.entrySet()) {
+			writeString(out,entry.getKey());
+			out.writeInt(entry.getValue().intValue());
+		}
+		out.writeInt(currentBattle);
+		out.close();
+		return bytes.toByteArray();
+	}
+	private static void writeString(DataOutput out,String val) throws IOException {
+		byte[] bytes = val.getBytes("UTF-8");
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+	private static String readString(DataInput in) throws IOException {
+		byte[] bytes = new byte[in.readInt()];
+		in.readFully(bytes);
+		return new String(bytes,"UTF-8");
+	}
+	
+	/**
+	 * @return		A copy of the log as it is now, which can be saved on another thread while the log keeps growing
+	 */
+	public synchronized Snapshot snapshot() {
+		Snapshot snapshot = new Snapshot(this,new ArrayList<Block>(blocks),new ArrayList<String[]>(tail),new HashMap<String,Integer>(index));
+		if (!snapshot.blocks.isEmpty()) {
+			pending.put(snapshot,Boolean.TRUE);
+		}
+		return snapshot;
+	}
+	/**
+	 * Replaces the log with the one saved in the stream, which may be in the journal format or the old format.  The
+	 * stream is closed.
+	 */
+	public synchronized void load(InputStream stream) throws IOException {
+		clear();
+		BufferedInputStream buffered = new BufferedInputStream(stream);
+		try {
+			buffered.mark(4);
+			DataInputStream in = new DataInputStream(buffered);
+			int magic = in.readInt();
+			buffered.reset();
+			if (magic==JOURNAL_MAGIC) {
+				readJournal(in);
+			}
+			else {
+				readOldFormat(buffered);
+			}
+		}
+		catch(IOException ex) {
+			clear();
+			throw ex;
+		}
+		finally {
+			buffered.close();
+		}
+	}
+	private void readOldFormat(InputStream stream) throws IOException {
+		BufferedReader reader = new BufferedReader(new InputStreamReader(new InflaterInputStream(stream)));
+		int lines = Integer.valueOf(reader.readLine());
+		for (int i=0;i<lines;i++) {
+			String key = reader.readLine();
+			String message = reader.readLine();
+			append(key,message);
+		}
+	}
+	private void readJournal(DataInputStream in) throws IOException {
+		in.readInt(); // magic
+		int version = in.readInt();
+		if (version>JOURNAL_VERSION) {
+			throw new IOException("Unsupported log version "+version);
+		}
+		int blockCount = in.readInt();
+		for (int b=0;b<blockCount;b++) {
+			int count = in.readInt();
+			byte[] bytes = new byte[in.readInt()];
+			in.readFully(bytes);
+			size += count;
+			if (count<BLOCK_SIZE && b==blockCount-1) {
+				tail = decompress(bytes,count); // the unfinished block goes back in memory, so it can keep filling up
+			}
+			else {
+				seal(bytes,count);
+			}
+		}
+		byte[] bytes = new byte[in.readInt()];
+		in.readFully(bytes);
+		DataInputStream indexIn = new DataInputStream(new BufferedInputStream(new InflaterInputStream(new ByteArrayInputStream(bytes))));
+		int indexSize = indexIn.readInt();
+		for (int i=0;i<indexSize;i++) {
+			String key = readString(indexIn);
+			index.put(key,Integer.valueOf(indexIn.readInt()));
+		}
+		currentBattle = indexIn.readInt();
+		if (in.readInt()!=JOURNAL_MAGIC) {
+			throw new IOException("Log is truncated");
+		}
+	}
+	
+	public static String getStyleName(String key) {
+		if ("host".equals(key)) {
+			return "bold";
+		}
+		else if (RealmLogging.BATTLE.equals(key)) {
+			return "redbold";
+		}
+		return "blue";
+	}
+	public static String getAliasName(String key) {
+		if ("host".equals(key)) {
+			return "RealmSpeak";
+		}
+		else if (RealmLogging.BATTLE.equals(key)) {
+			return "RealmBattle";
+		}
+		return key;
+	}
+	public static String getHtml(String[] line) {
+		StringBuffer sb = new StringBuffer("\n<br>");
+		String style = getStyleName(line[0]);
+		String alias = getAliasName(line[0]);
+		if ("bold".equals(style)) {
+			sb.append("<b>");
+			sb.append(alias);
+			sb.append("</b>");
+		}
+		else if ("redbold".equals(style)) {
+			sb.append("<font color=\"red\"><b>");
+			sb.append(alias);
+			sb.append("</b></font>");
+		}
+		else {
+			sb.append("<font color=\"blue\">");
+			sb.append(alias);
+			sb.append("</font>");
+		}
+		sb.append(" - ");
+		sb.append(line[1]);
+		return sb.toString();
+	}
+	
+	private static class Block {
+		int first;
+		int count;
+		int length;
+		long offset;
+		byte[] bytes; // only when there is no journal file
+		Block(int first,int count,int length) {
+			this.first = first;
+			this.count = count;
+			this.length = length;
+		}
+	}
+	
+	/**
+	 * The log at one moment, ready to be saved.  Full blocks are written exactly as they were compressed, so only
+	 * the unfinished block is compressed here.
+	 */
+	public static class Snapshot {
+		private RealmLogJournal journal;
+		private ArrayList<Block> blocks;
+		private ArrayList<String[]> tail;
+		private HashMap<String,Integer> index;
+		private int currentBattle;
+		private Snapshot(RealmLogJournal journal,ArrayList<Block> blocks,ArrayList<String[]> tail,HashMap<String,Integer> index) {
+			this.journal = journal;
+			this.blocks = blocks;
+			this.tail = tail;
+			this.index = index;
+			this.currentBattle = journal.currentBattle;
+		}
+		public int size() {
+			int size = tail.size();
+			for (Block block:blocks) {
+				size += block.count;
+			}
+			return size;
+		}
+		/**
+		 * Writes the log in the format RealmLogJournal.load reads.  The stream is closed.
+		 */
+		public void write(OutputStream stream) throws IOException {
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream));
+			try {
+				out.writeInt(JOURNAL_MAGIC);
+				out.writeInt(JOURNAL_VERSION);
+				out.writeInt(blocks.size()+(tail.isEmpty()?0:1));
+				for (Block block:blocks) {
+					out.writeInt(block.count);
+					out.writeInt(block.length);
+					out.write(journal.readBlock(block));
+				}
+				if (!tail.isEmpty()) {
+					byte[] bytes = compress(tail);
+					out.writeInt(tail.size());
+					out.writeInt(bytes.length);
+					out.write(bytes);
+				}
+				byte[] bytes = compressIndex(index,currentBattle);
+				out.writeInt(bytes.length);
+				out.write(bytes);
+				out.writeInt(JOURNAL_MAGIC);
+			}
+			finally {
+				out.close();
+				journal.written(this);
+			}
+		}
+	}
+}
@@ -17,23 +17,33 @@
  */
 package com.robin.magic_realm.components.utility;
 
-import java.util.ArrayList;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-
-import com.robin.general.util.StringUtilities;
 import com.robin.magic_realm.components.attribute.TileLocation;
 
+/**
+ * Pulls the log for a day or a battle out of the detail log, using the journal's index to find where it starts.
+ */
 public class RealmLogParser {
-	private ArrayList<String> lines;
-	public RealmLogParser(String detailLog) {
-		lines = StringUtilities.stringToCollection(detailLog,"\n");
+	private RealmLogJournal journal;
+	public RealmLogParser(RealmLogJournal journal) {
+		this.journal = journal;
 	}
 	public String getLogFor(int month,int day) {
 //<br><b>RealmSpeak</b> - ========================================
 //<br><b>RealmSpeak</b> - Month 1, Day 5
 //<br><b>RealmSpeak</b> - ========================================
-		return "";
+		int dayStart = journal.getDayStart(month,day);
+		if (dayStart<0) {
+			return "";
+		}
+		int dayEnd = journal.size();
+		int nextDay = journal.getDayStart(month,day+1);
+		if (nextDay<0) {
+			nextDay = journal.getDayStart(month+1,1);
+		}
+		if (nextDay>dayStart) {
+			dayEnd = nextDay-1; // stop before the separator line above the next day
+		}
+		return getHtml(Math.max(0,dayStart-1),dayEnd);
 	}
 	public String getBattleLogFor(int month,int day) {
 		return getBattleLogFor(month,day,null,0);
@@ -42,16 +52,20 @@ public class RealmLogParser {
 		return getBattleLogFor(month,day,tl,0);
 	}
 	public String getBattleLogFor(int month,int day,TileLocation tl,int round) {
-		String battleStartPattern = "<br>[\\w\\W]* - Evening of month "+month+", day "+day+", in clearing ";
-		if (tl!=null) {
-			battleStartPattern += tl.tile.getGameObject().getName()+" "+tl.clearing.getNum()+"$";
+		String location = tl==null?null:(tl.tile.getGameObject().getName()+" "+tl.clearing.getNum());
+		int battleStart = journal.getBattleStart(month,day,location);
+		if (battleStart<0) {
+			return "";
 		}
-		int logStart = getLineNumberFor(battleStartPattern)-1;
+		int logStart = battleStart;
 		if (round>0) {
-			int roundStart = getLineNumberFor("<br>[\\w\\W]*Combat Round "+round+"$",logStart)-1;
-			return StringUtilities.collectionToString(lines.subList(roundStart,lines.size()-1),"\n");
+			logStart = journal.getRoundStart(battleStart,round);
+			if (logStart<0) {
+				return "";
+			}
 		}
-		return StringUtilities.collectionToString(lines.subList(logStart,lines.size()-1),"\n");
+		// Start at the separator line above, and leave off the newest line, as the log always has
+		return getHtml(Math.max(0,logStart-1),journal.size()-1);
 //<br><font color="red"><b>RealmBattle</b></font> - =======================
 //<br><font color="red"><b>RealmBattle</b></font> - Evening of month 1, day 5, in clearing Borderland 3
 //<br><font color="red"><b>RealmBattle</b></font> - -----------------------
@@ -61,20 +75,9 @@ public class RealmLogParser {
 //<br><font color="red"><b>RealmBattle</b></font> - -----------------------
 //<br><font color="red"><b>RealmBattle</b></font> - --  Combat Round 2
 //<br><font color="red"><b>RealmBattle</b></font> - -----------------------
-//		throw new NotImplementedException();
-	}
-	private int getLineNumberFor(String pattern) {
-		return getLineNumberFor(pattern,0);
 	}
-	private int getLineNumberFor(String pattern,int lineStart) {
-		Pattern p = Pattern.compile(pattern);
-		for (int i=lineStart;i<lines.size();i++) {
-			String line = lines.get(i).trim();
-			Matcher m = p.matcher(line);
-			if (m.matches()) {
-				return i;
-			}
-		}
-		return -1;
+	private String getHtml(int from,int to) {
+		String html = journal.getHtml(from,to);
+		return html.startsWith("\n")?html.substring(1):html;
 	}
 }
\ No newline at end of file
@@ -17,6 +17,8 @@
  */
 package com.robin.magic_realm.components.utility;
 
+import java.util.ArrayList;
+
 import com.robin.game.server.GameClient;
 import com.robin.magic_realm.components.swing.RealmLogWindow;
 
@@ -28,8 +30,32 @@ public class RealmLogging {
 	public static final String LOG_INDENT_INCREMENT = "increment";
 	
 	
+	private static final ThreadLocal<ArrayList<String[]>> threadLog = new ThreadLocal<ArrayList<String[]>>();
+	
+	/**
+	 * Sends everything logged on the calling thread to the list (as key,message pairs), rather than to the game
+	 * client or log window.  Used for headless combat, where there is nobody to show it to.
+	 */
+	public static void setThreadLog(ArrayList<String[]> log) {
+		if (log==null) {
+			threadLog.remove();
+		}
+		else {
+			threadLog.set(log);
+		}
+	}
+	
 	public static void logMessage(String key,String message) {
-		if (GameClient.GetMostRecentClient()!=null) {
+		ArrayList<String[]> log = threadLog.get();
+		RealmGameContext context;
+		if (log!=null) {
+			log.add(new String[] {key,message});
+		}
+		else if ((context=RealmGameContext.getCurrent())!=null) {
+			// A game without a client of its own (multi table host) keeps its own log
+			context.getJournal().append(key,message);
+		}
+		else if (GameClient.GetMostRecentClient()!=null) {
 			GameClient.broadcastClient(key,message);
 		}
 		else {
@@ -18,13 +18,13 @@
 package com.robin.magic_realm.components.utility;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.Iterator;
 
 import com.robin.game.objects.GameData;
 import com.robin.game.objects.GameObject;
 import com.robin.game.objects.GamePool;
-import com.robin.general.util.StringUtilities;
+import com.robin.game.objects.GameQuery;
+import com.robin.game.objects.KeyValQuery;
 import com.robin.magic_realm.components.RealmComponent;
 import com.robin.magic_realm.components.wrapper.HostPrefWrapper;
 
@@ -35,8 +35,6 @@ import com.robin.magic_realm.components.wrapper.HostPrefWrapper;
  */
 public class RealmObjectMaster {
 	
-	private static HashMap map = null;
-	
 	private GameData data = null;
 	private HostPrefWrapper hostPrefs = null;
 	private int gameObjectCountForPlayers = -1;
@@ -50,29 +48,34 @@ public class RealmObjectMaster {
 		this.hostPrefs = HostPrefWrapper.findHostPrefs(data);
 	}
 	
-	public static void resetAll() {
-		if (map!=null) {
-			map.clear();
-			map = null;
-		}
+	public static synchronized void reset(GameData data) {
+		data.setAttachment(RealmObjectMaster.class,null);
+	}
+	
+	public static synchronized void resetAll() {
+		GameData.removeAllAttachments(RealmObjectMaster.class);
 	}
 	
 	public ArrayList<GameObject> findObjects(String baseQuery,ArrayList keyVals,boolean asComponents) {
-		String query = StringUtilities.collectionToString(keyVals,",");
+		KeyValQuery query = new KeyValQuery(keyVals);
 		if (baseQuery!=null && baseQuery.length()>0) {
-			if (query.length()>0) {
-				query += ",";
-			}
-			query += baseQuery;
+			query = query.and(GameQuery.compile(baseQuery));
 		}
 		return findObjects(query,asComponents);
 	}
 	
 	public ArrayList<GameObject> findObjects(String keyVals,boolean asComponents) {
-		keyVals = hostPrefs.getGameKeyVals()+","+keyVals;
-//System.out.println("findObjects for "+keyVals);
+		return findObjects(GameQuery.compile(keyVals),asComponents);
+	}
+	
+	public ArrayList<GameObject> findObjects(KeyValQuery query,boolean asComponents) {
+		String gameKeyVals = hostPrefs.getGameKeyVals();
+		if (gameKeyVals!=null) {
+			query = GameQuery.compile(gameKeyVals).and(query);
+		}
+//System.out.println("findObjects for "+query);
 		GamePool pool = new GamePool(data.getGameObjects());
-		ArrayList<GameObject> objects = pool.find(keyVals);
+		ArrayList<GameObject> objects = pool.find(query);
 		if (asComponents) {
 			ArrayList list = new ArrayList();
 			for (Iterator i=objects.iterator();i.hasNext();) {
@@ -147,14 +150,15 @@ public class RealmObjectMaster {
 	 * @return		The relevant RealmObjectMaster associated with the provided GameData
 	 */
 	public static RealmObjectMaster getRealmObjectMaster(GameData data) {
-		if (map==null) {
-			map = new HashMap();
-		}
-		Long id = new Long(data.getDataId());
-		RealmObjectMaster rom = (RealmObjectMaster)map.get(id);
+		RealmObjectMaster rom = (RealmObjectMaster)data.getAttachment(RealmObjectMaster.class);
 		if (rom==null) {
-			rom = new RealmObjectMaster(data);
-			map.put(id,rom);
+			synchronized(RealmObjectMaster.class) {
+				rom = (RealmObjectMaster)data.getAttachment(RealmObjectMaster.class);
+				if (rom==null) {
+					rom = new RealmObjectMaster(data);
+					data.setAttachment(RealmObjectMaster.class,rom);
+				}
+			}
 		}
 		return rom;
 	}
@@ -33,7 +33,7 @@ import com.robin.general.swing.IconFactory;
 import com.robin.general.util.*;
 import com.robin.magic_realm.components.*;
 import com.robin.magic_realm.components.attribute.*;
-import com.robin.magic_realm.components.quest.QuestDeck;
+import com.robin.magic_realm.components.quest.QuestEventIndex;
 import com.robin.magic_realm.components.swing.*;
 import com.robin.magic_realm.components.wrapper.*;
 
@@ -44,17 +44,14 @@ public class RealmUtility {
 	 * beginning or end of a game.  Mainly clearing out optimization fields.
 	 */
 	public static void resetGame() {
-		RealmCalendar.reset();
 		HallOfFame.save();
-		HostPrefWrapper.HOST_PREF_ID = null;
-		GameWrapper.GAME_ID = null;
+		RealmGameContext.resetAll();
 		RealmObjectMaster.resetAll();
 		Badge.clearBadgeCache();
-		SpellMasterWrapper.MASTER_ID = null;
-		SummaryEventWrapper.SEW_ID = null;
-		QuestDeck.DECK_ID = null;
 		DieRollBuilder.reset();
 		RealmComponent.reset();
+		CharacterStateCache.resetAll();
+		QuestEventIndex.resetAll();
 		SetupCardUtility.reset();
 		RealmLogWindow.killSingleton();
 		System.gc();
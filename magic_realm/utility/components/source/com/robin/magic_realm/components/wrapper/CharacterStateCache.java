@@ -0,0 +1,305 @@
+/* 
+ * RealmSpeak is the Java application for playing the board game Magic Realm.
+ * Copyright (c) 2005-2015 Robin Warren
+ * E-mail: robin@dewkid.com
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the
+ * implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ *
+ * http://www.gnu.org/licenses/
+ */
+package com.robin.magic_realm.components.wrapper;
+
+import java.util.*;
+
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
+
+import com.robin.game.objects.GameData;
+import com.robin.game.objects.GameObject;
+import com.robin.magic_realm.components.attribute.Strength;
+
+/**
+ * Keeps what the inventory queries of each character are built from, so that the many calls made for every repaint
+ * or action don't have to walk the hold, look up every RealmComponent, and scan every item again.
+ * 
+ * The inventory lists (and the index of "this" keys on the active inventory) only depend on the character and what
+ * it holds, so the cache listens to the GameData, and drops a character's state when the character, or anything it
+ * holds, is modified.  The needed support weight also depends on things elsewhere in the data (spells, the clearing,
+ * transmorph, the horses of hirelings), so it is only kept until anything in the data changes.
+ * 
+ * Set verify to check every cached state against a freshly built one (for tests), or turn the cache off altogether
+ * with setEnabled(false).
+ */
+public class CharacterStateCache implements ChangeListener {
+	
+	private static volatile boolean enabled = true;
+	private static volatile boolean verify = false;
+	
+	private GameData data;
+	private HashMap<Long,CharacterState> states; // character id -> state
+	private HashMap<Long,HashSet<Long>> dependents; // object id -> ids of the characters whose state depends on it
+	private long modificationCount = 0;
+	
+	private long hits = 0;
+	private long misses = 0;
+	
+	/**
+	 * The state of one character, as built by CharacterWrapper.buildState().  The lists are never changed once the
+	 * state is built, so hand out copies!
+	 */
+	static class CharacterState {
+		ArrayList<GameObject> inventory;
+		ArrayList<GameObject> activeInventory;
+		ArrayList<GameObject> followingHirelings;
+		ArrayList<GameObject> followingTravelers;
+		ArrayList<GameObject> minorCharacters;
+		ArrayList<GameObject> inventoryAndTravelers;
+		ArrayList<GameObject> activeInventoryAndTravelers;
+		
+		private HashMap<String,ArrayList<GameObject>> activeKeys = new HashMap<String,ArrayList<GameObject>>(); // key -> objects in activeInventoryAndTravelers with that "this" key
+		
+		private long weightCount = -1;
+		private Strength[] supportWeight = new Strength[2]; // without and with character weight
+		
+		/**
+		 * @return		The objects in activeInventoryAndTravelers that have the key in their "this" block, in order
+		 */
+		synchronized ArrayList<GameObject> getActiveWithKey(String key) {
+			ArrayList<GameObject> list = activeKeys.get(key);
+			if (list==null) {
+				list = findWithKey(activeInventoryAndTravelers,key);
+				activeKeys.put(key,list);
+			}
+			return list;
+		}
+		synchronized Strength getSupportWeight(boolean includeCharacterWeight,long count) {
+			return weightCount==count?supportWeight[includeCharacterWeight?1:0]:null;
+		}
+		synchronized void setSupportWeight(boolean includeCharacterWeight,long count,Strength weight) {
+			if (weightCount!=count) {
+				weightCount = count;
+				supportWeight[0] = null;
+				supportWeight[1] = null;
+			}
+			supportWeight[includeCharacterWeight?1:0] = weight;
+		}
+		private static ArrayList<GameObject> findWithKey(ArrayList<GameObject> list,String key) {
+			ArrayList<GameObject> ret = new ArrayList<GameObject>();
+			for (GameObject go:list) {
+				if (go.hasThisAttribute(key)) {
+					ret.add(go);
+				}
+			}
+			return ret;
+		}
+		
+		/**
+		 * Throws an IllegalStateException if this (cached) state doesn't match the fresh one
+		 */
+		void verify(CharacterWrapper character,CharacterState fresh) {
+			verify(character,"inventory",inventory,fresh.inventory);
+			verify(character,"activeInventory",activeInventory,fresh.activeInventory);
+			verify(character,"followingHirelings",followingHirelings,fresh.followingHirelings);
+			verify(character,"followingTravelers",followingTravelers,fresh.followingTravelers);
+			verify(character,"minorCharacters",minorCharacters,fresh.minorCharacters);
+			verify(character,"inventoryAndTravelers",inventoryAndTravelers,fresh.inventoryAndTravelers);
+			verify(character,"activeInventoryAndTravelers",activeInventoryAndTravelers,fresh.activeInventoryAndTravelers);
+			synchronized(this) {
+				for (String key:activeKeys.keySet()) {
+					verify(character,"key "+key,activeKeys.get(key),findWithKey(fresh.activeInventoryAndTravelers,key));
+				}
+			}
+		}
+		private static void verify(CharacterWrapper character,String name,ArrayList<GameObject> cached,ArrayList<GameObject> fresh) {
+			if (!cached.equals(fresh)) {
+				throw new IllegalStateException("Cached "+name+" of "+character.getGameObject()+" is stale: "+cached+" should be "+fresh);
+			}
+		}
+	}
+	
+	private CharacterStateCache(GameData data) {
+		this.data = data;
+		states = new HashMap<Long,CharacterState>();
+		dependents = new HashMap<Long,HashSet<Long>>();
+		data.addObjectChangeListener(this);
+	}
+	
+	/**
+	 * @return		The cache for the data, or null if the character doesn't belong to any data (or the cache is off)
+	 */
+	private static CharacterStateCache getCharacterStateCache(GameData data) {
+		if (!isEnabled() || data==null) {
+			return null;
+		}
+		CharacterStateCache cache = (CharacterStateCache)data.getAttachment(CharacterStateCache.class);
+		if (cache==null) {
+			synchronized(CharacterStateCache.class) {
+				cache = (CharacterStateCache)data.getAttachment(CharacterStateCache.class);
+				if (cache==null) {
+					cache = new CharacterStateCache(data);
+					data.setAttachment(CharacterStateCache.class,cache);
+				}
+			}
+		}
+		return cache;
+	}
+	
+	/**
+	 * @return		The current state of the character.  Don't change it!
+	 */
+	static CharacterState getState(CharacterWrapper character) {
+		CharacterStateCache cache = getCharacterStateCache(character.getGameObject().getGameData());
+		if (cache==null) {
+			return character.buildState();
+		}
+		return cache.get(character);
+	}
+	
+	/**
+	 * @return		The needed support weight of the character, which is kept until anything in the data changes
+	 */
+	static Strength getNeededSupportWeight(CharacterWrapper character,boolean includeCharacterWeight) {
+		CharacterStateCache cache = getCharacterStateCache(character.getGameObject().getGameData());
+		if (cache==null) {
+			return character.buildNeededSupportWeight(includeCharacterWeight);
+		}
+		return cache.getWeight(character,includeCharacterWeight);
+	}
+	
+	/**
+	 * Forgets the states for one GameData
+	 */
+	public static synchronized void reset(GameData data) {
+		CharacterStateCache cache = (CharacterStateCache)data.setAttachment(CharacterStateCache.class,null);
+		if (cache!=null) {
+			data.removeObjectChangeListener(cache);
+		}
+	}
+	
+	public static synchronized void resetAll() {
+		for (Object cache:GameData.removeAllAttachments(CharacterStateCache.class)) {
+			((CharacterStateCache)cache).data.removeObjectChangeListener((CharacterStateCache)cache);
+		}
+	}
+	
+	public static synchronized void setEnabled(boolean val) {
+		enabled = val;
+		if (!enabled) {
+			resetAll();
+		}
+	}
+	public static boolean isEnabled() {
+		return enabled;
+	}
+	public static void setVerify(boolean val) {
+		verify = val;
+	}
+	public static boolean isVerify() {
+		return verify;
+	}
+	
+	public synchronized void stateChanged(ChangeEvent ev) {
+		Long id = new Long(((GameObject)ev.getSource()).getId());
+		modificationCount++;
+		HashSet<Long> characterIds = dependents.remove(id);
+		if (characterIds!=null) {
+			for (Long characterId:characterIds) {
+				states.remove(characterId);
+			}
+		}
+	}
+	
+	private CharacterState get(CharacterWrapper character) {
+		Long id = new Long(character.getGameObject().getId());
+		CharacterState state;
+		long count;
+		synchronized(this) {
+			state = states.get(id);
+			count = modificationCount;
+			if (state!=null) {
+				hits++;
+			}
+		}
+		if (state!=null) {
+			if (isVerify()) {
+				state.verify(character,character.buildState());
+			}
+			return state;
+		}
+		
+		// Build without holding the lock, since it can end up waiting on the GameData
+		state = character.buildState();
+		ArrayList<GameObject> sources = new ArrayList<GameObject>(character.getGameObject().getHold());
+		sources.add(character.getGameObject());
+		synchronized(this) {
+			misses++;
+			if (count==modificationCount) { // otherwise something changed while building, so it may already be stale
+				states.put(id,state);
+				for (GameObject go:sources) {
+					addDependent(id,go);
+				}
+			}
+		}
+		return state;
+	}
+	
+	private Strength getWeight(CharacterWrapper character,boolean includeCharacterWeight) {
+		CharacterState state = get(character);
+		long count;
+		synchronized(this) {
+			count = modificationCount;
+		}
+		Strength weight = state.getSupportWeight(includeCharacterWeight,count);
+		if (weight!=null) {
+			if (isVerify()) {
+				Strength fresh = character.buildNeededSupportWeight(includeCharacterWeight);
+				if (!fresh.equals(weight)) {
+					throw new IllegalStateException("Cached support weight of "+character.getGameObject()+" is stale: "+weight+" should be "+fresh);
+				}
+			}
+			return weight;
+		}
+		weight = character.buildNeededSupportWeight(includeCharacterWeight);
+		synchronized(this) {
+			if (count==modificationCount) {
+				state.setSupportWeight(includeCharacterWeight,count,weight);
+			}
+		}
+		return weight;
+	}
+	
+	private void addDependent(Long characterId,GameObject go) {
+		Long id = new Long(go.getId());
+		HashSet<Long> characterIds = dependents.get(id);
+		if (characterIds==null) {
+			characterIds = new HashSet<Long>();
+			dependents.put(id,characterIds);
+		}
+		characterIds.add(characterId);
+	}
+	
+	public synchronized long getHits() {
+		return hits;
+	}
+	public synchronized long getMisses() {
+		return misses;
+	}
+	public synchronized int size() {
+		return states.size();
+	}
+	
+	/**
+	 * @return		The cache for the data, if there is one (for tests and benchmarks)
+	 */
+	public static CharacterStateCache findCharacterStateCache(GameData data) {
+		return (CharacterStateCache)data.getAttachment(CharacterStateCache.class);
+	}
+}
@@ -632,6 +632,7 @@ public class CharacterWrapper extends GameObjectWrapper {
 		}
 		
 		// Search
+		Strength heaviestInv = null;
 		for (Iterator i=searchList.iterator();i.hasNext();) {
 			RealmComponent rc = (RealmComponent)i.next();
 //			if (rc.isHorse()) { // Removed this for v0.31 (messing up combat)
@@ -645,7 +646,9 @@ public class CharacterWrapper extends GameObjectWrapper {
 				Speed speed;
 				if (rc.isHorse()) {
 					// see if the gallop side can be used, if not, use trot speed
-					Strength heaviestInv = getNeededSupportWeight();
+					if (heaviestInv==null) {
+						heaviestInv = getNeededSupportWeight();
+					}
 					SteedChitComponent horse = (SteedChitComponent)rc;
 					if (horse.getGallopStrength().strongerOrEqualTo(heaviestInv)) {
 						if (flipHorses) horse.setGallop();
@@ -758,6 +761,9 @@ public class CharacterWrapper extends GameObjectWrapper {
 		return getNeededSupportWeight(true);
 	}
 	public Strength getNeededSupportWeight(boolean includeCharacterWeight) {
+		return new Strength(CharacterStateCache.getNeededSupportWeight(this,includeCharacterWeight));
+	}
+	Strength buildNeededSupportWeight(boolean includeCharacterWeight) {
 		Strength active = getActiveWeight(includeCharacterWeight);
 		Strength inactive = getInactiveWeight();
 		Strength convoy = getConvoyStrength();
@@ -2286,7 +2292,50 @@ public class CharacterWrapper extends GameObjectWrapper {
 		ArrayList list = getList(MINION_ID);
 		return list==null?0:list.size();
 	}
+	/**
+	 * @return		The state that the inventory queries are answered from (see CharacterStateCache).  Don't change it!
+	 */
+	private CharacterStateCache.CharacterState getState() {
+		return CharacterStateCache.getState(this);
+	}
+	CharacterStateCache.CharacterState buildState() {
+		CharacterStateCache.CharacterState state = new CharacterStateCache.CharacterState();
+		state.inventory = buildInventory();
+		state.activeInventory = new ArrayList<GameObject>();
+		state.minorCharacters = new ArrayList<GameObject>();
+		for (GameObject go:state.inventory) {
+			RealmComponent rc = RealmComponent.getRealmComponent(go);
+			if (rc.isActivated()) {
+				state.activeInventory.add(go);
+				if (go.hasThisAttribute(Quest.QUEST_MINOR_CHARS)) {
+					state.minorCharacters.add(go);
+				}
+			}
+		}
+		state.followingHirelings = new ArrayList<GameObject>();
+		state.followingTravelers = new ArrayList<GameObject>();
+		for (Iterator i=getGameObject().getHold().iterator();i.hasNext();) {
+			GameObject go = (GameObject)i.next();
+			RealmComponent rc = RealmComponent.getRealmComponent(go);
+			if (rc!=null && (rc.isNative() || rc.isMonster() || rc.isTraveler())) {
+				state.followingHirelings.add(go);
+				if (rc.isTraveler()) {
+					state.followingTravelers.add(go);
+				}
+			}
+		}
+		state.inventoryAndTravelers = new ArrayList<GameObject>(state.inventory);
+		state.inventoryAndTravelers.addAll(state.followingTravelers);
+		state.activeInventoryAndTravelers = new ArrayList<GameObject>(state.activeInventory);
+		state.activeInventoryAndTravelers.addAll(state.followingTravelers);
+		state.activeInventoryAndTravelers.addAll(state.minorCharacters);
+		state.activeInventoryAndTravelers.add(getGameObject());
+		return state;
+	}
 	public ArrayList<GameObject> getInventory() {
+		return new ArrayList<GameObject>(getState().inventory);
+	}
+	private ArrayList<GameObject> buildInventory() {
 		ArrayList<GameObject> ret = new ArrayList<GameObject>();
 		for (Iterator i=getGameObject().getHold().iterator();i.hasNext();) {
 			GameObject go = (GameObject)i.next();
@@ -2356,10 +2405,7 @@ public class CharacterWrapper extends GameObjectWrapper {
 		return carryable;
 	}
 	public GameObject getActiveInventoryThisKey(String key) {
-		ArrayList<GameObject> inv = getInventory();
-		inv.addAll(getFollowingTravelers());
-		
-		for (GameObject go:inv) {
+		for (GameObject go:getState().inventoryAndTravelers) {
 			RealmComponent rc = RealmComponent.getRealmComponent(go);
 			if (rc.isActivated() && go.hasThisAttribute(key)) {
 				return go;
@@ -2373,24 +2419,24 @@ public class CharacterWrapper extends GameObjectWrapper {
 			|| SpellUtility.affectedByBewitchingSpellKey(getGameObject(),key);
 	}
 	
-	private ArrayList<GameObject> getActiveInventoryAndTravelers() {
-		ArrayList<GameObject> ret = getActiveInventory();
-		ret.addAll(getFollowingTravelers());
-		ret.addAll(getMinorCharacters());
-		ret.add(getGameObject());
-		return ret;
-	}
-	
 	public boolean hasActiveInventoryThisKey(String key) {
 		return hasActiveInventoryThisKeyAndValue(key,null);
 	}
 	public boolean hasActiveInventoryThisKeyAndValue(String key,String value) {
+		ArrayList<GameObject> withKey = getState().getActiveWithKey(key);
+		if (value==null || withKey.isEmpty()) {
+			return !withKey.isEmpty();
+		}
 		GameQuery query = new GameQuery("this");
-		return query.hasGameObjectWithKeyAndValue(getActiveInventoryAndTravelers(),key,value);
+		return query.hasGameObjectWithKeyAndValue(withKey,key,value);
 	}
 	public ArrayList<GameObject> getAllActiveInventoryThisKeyAndValue(String key,String value) {
+		ArrayList<GameObject> withKey = getState().getActiveWithKey(key);
+		if (value==null) {
+			return new ArrayList<GameObject>(withKey);
+		}
 		GameQuery query = new GameQuery("this");
-		return query.allGameObjectsWithKeyAndValue(getActiveInventoryAndTravelers(),key,value);
+		return query.allGameObjectsWithKeyAndValue(withKey,key,value);
 	}
 	public ArrayList<String> getActiveInventoryValuesForThisKey(String key,String delim) {
 		ArrayList<String> values = new ArrayList<String>();
@@ -2493,16 +2539,7 @@ public class CharacterWrapper extends GameObjectWrapper {
 		}
 	}
 	public ArrayList<GameObject> getActiveInventory() {
-		ArrayList<GameObject> active = new ArrayList<GameObject>();
-		Collection inv = getInventory();
-		for (Iterator i=inv.iterator();i.hasNext();) {
-			GameObject go = (GameObject)i.next();
-			RealmComponent rc = RealmComponent.getRealmComponent(go);
-			if (rc.isActivated()) {
-				active.add(go);
-			}
-		}
-		return active;
+		return new ArrayList<GameObject>(getState().activeInventory);
 	}
 	public ArrayList<GameObject> getInactiveInventory() {
 		return getInactiveInventory(false);
@@ -2548,22 +2585,10 @@ public class CharacterWrapper extends GameObjectWrapper {
 		return activatedTreasures;
 	}
 	public ArrayList<GameObject> getMinorCharacters() {
-		ArrayList<GameObject> minorChars = new ArrayList<GameObject>();
-		for (GameObject go:getActiveInventory()) {
-			if (go.hasThisAttribute(Quest.QUEST_MINOR_CHARS)) {
-				minorChars.add(go);
-			}
-		}
-		return minorChars;
+		return new ArrayList<GameObject>(getState().minorCharacters);
 	}
 	public ArrayList<GameObject> getFollowingTravelers() {
-		ArrayList<GameObject> travelers = new ArrayList<GameObject>();
-		for (RealmComponent rc:getFollowingHirelings()) {
-			if (rc.isTraveler()) {
-				travelers.add(rc.getGameObject());
-			}
-		}
-		return travelers;
+		return new ArrayList<GameObject>(getState().followingTravelers);
 	}
 	public Score getQuestPointScore() {
 		int count = 0;
@@ -5554,12 +5579,8 @@ public class CharacterWrapper extends GameObjectWrapper {
 	 */
 	public ArrayList<RealmComponent> getFollowingHirelings() {
 		ArrayList<RealmComponent> list = new ArrayList<RealmComponent>();
-		for (Iterator i=getGameObject().getHold().iterator();i.hasNext();) {
-			GameObject go = (GameObject)i.next();
-			RealmComponent rc = RealmComponent.getRealmComponent(go);
-			if (rc.isNative() || rc.isMonster() || rc.isTraveler()) {
-				list.add(rc);
-			}
+		for (GameObject go:getState().followingHirelings) {
+			list.add(RealmComponent.getRealmComponent(go));
 		}
 		return list;
 	}
@@ -6333,7 +6354,7 @@ public class CharacterWrapper extends GameObjectWrapper {
 		boolean reward = false;
 		if (processPost && processPostQuestParams(parentFrame)) reward = true; // Process anything that might have been missed before testing new reqParams
 		ArrayList<Integer> cardTypesWithReward = new ArrayList<Integer>();
-		for(Quest quest:getAllQuests()) {
+		for(Quest quest:QuestEventIndex.getAllQuests(this)) {
 			int uid = quest.getUniqueId();
 			if (cardTypesWithReward.contains(uid)) continue;
 			if (quest.testRequirements(parentFrame,this,reqParams)) {
@@ -24,6 +24,7 @@ import com.robin.general.swing.DieRoller;
 import com.robin.general.util.RandomNumber;
 import com.robin.magic_realm.components.utility.Constants;
 import com.robin.magic_realm.components.utility.RealmCalendar;
+import com.robin.magic_realm.components.utility.RealmGameContext;
 
 public class GameWrapper extends GameObjectWrapper {
 
@@ -345,19 +346,20 @@ public class GameWrapper extends GameObjectWrapper {
 	}
 	
 	///////////////////////////////////////////////
-	public static Long GAME_ID = null;
 	public static GameWrapper findGame(GameData data) {
-		if (GAME_ID==null) {
+		RealmGameContext context = RealmGameContext.getContext(data);
+		Long id = context.getObjectId(GameWrapper.class);
+		if (id==null) {
 			GamePool pool = new GamePool(data.getGameObjects());
 			ArrayList list = pool.find(getKeyVals());
 			if (list.size()==1) {
 				GameObject gw = (GameObject)list.get(0);
-				GAME_ID = new Long(gw.getId());
+				context.setObjectId(GameWrapper.class,new Long(gw.getId()));
 				return new GameWrapper(gw);
 			}
 		}
 		else {
-			return new GameWrapper(data.getGameObject(GAME_ID));
+			return new GameWrapper(data.getGameObject(id));
 			/*
 			 * Hi Robin - Are you here because of a null game object?  Did you happen to have just run the TileEditor?  There's a bug
 			 * there that adds a game object to the base XML before saving it, and that confuses THIS code.  Not sure why, but I don't feel
@@ -372,7 +374,7 @@ public class GameWrapper extends GameObjectWrapper {
 		
 		GameWrapper game = new GameWrapper(go);
 		game.setInitialValues();
-		GAME_ID = new Long(go.getId());
+		context.setObjectId(GameWrapper.class,new Long(go.getId()));
 		
 		return game;
 	}
@@ -21,6 +21,7 @@ import java.util.*;
 
 import com.robin.game.objects.*;
 import com.robin.magic_realm.components.utility.Constants;
+import com.robin.magic_realm.components.utility.RealmGameContext;
 
 public class HostPrefWrapper extends GameObjectWrapper {
 
@@ -280,28 +281,29 @@ public class HostPrefWrapper extends GameObjectWrapper {
 		}
 		return hostPrefs;
 	}
-	public static Long HOST_PREF_ID = null; // needs to be renulled when a new game starts or ends!
 	/**
 	 * Identifies and returns the host preference object, or null if not found.
 	 */
 	public static HostPrefWrapper findHostPrefs(GameData data) {
-		if (HOST_PREF_ID==null) {
+		RealmGameContext context = RealmGameContext.getContext(data);
+		Long id = context.getObjectId(HostPrefWrapper.class);
+		if (id==null) {
 			GamePool pool = new GamePool(data.getGameObjects());
 			Collection c = pool.extract(HostPrefWrapper.getKeyVals());
 			if (c!=null && c.size()==1) {
 				GameObject hp = (GameObject)c.iterator().next();
-				HOST_PREF_ID = new Long(hp.getId());
+				context.setObjectId(HostPrefWrapper.class,new Long(hp.getId()));
 				return new HostPrefWrapper(hp);
 			}
 		}
 		else {
-			GameObject go = data.getGameObject(HOST_PREF_ID);
+			GameObject go = data.getGameObject(id);
 			if (go==null || !go.hasAttributeBlock(HOST_PREF_BLOCK)) {
 				// Not sure why/how this happens, but this will guarantee it works
-				HOST_PREF_ID = null;
+				context.setObjectId(HostPrefWrapper.class,null);
 				return findHostPrefs(data);
 			}
-			return new HostPrefWrapper(data.getGameObject(HOST_PREF_ID));
+			return new HostPrefWrapper(go);
 		}
 		return null;
 	}
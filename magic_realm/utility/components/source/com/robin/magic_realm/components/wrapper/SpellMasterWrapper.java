@@ -30,6 +30,7 @@ import com.robin.general.util.RandomNumber;
 import com.robin.magic_realm.components.attribute.ColorMagic;
 import com.robin.magic_realm.components.attribute.TileLocation;
 import com.robin.magic_realm.components.utility.RealmCalendar;
+import com.robin.magic_realm.components.utility.RealmGameContext;
 
 /**
  * A Class to encapsulate permanent/day spell handling
@@ -465,11 +466,10 @@ public class SpellMasterWrapper extends GameObjectWrapper {
 	}
 	
 	private static final String SPELL_MASTER_KEY = "__RealmSpellMaster_";
-	public static Long MASTER_ID = null;
 	public static SpellMasterWrapper getSpellMaster(GameData data) {
-//System.out.println("MASTER_ID = "+MASTER_ID+", dataid = "+data.dataid);
-		if (MASTER_ID==null) {
-//System.out.println(data.toIdentifier()+": MASTER_ID is null");
+		RealmGameContext context = RealmGameContext.getContext(data);
+		Long id = context.getObjectId(SpellMasterWrapper.class);
+		if (id==null) {
 			GamePool pool = new GamePool(data.getGameObjects());
 			ArrayList list = pool.find(SPELL_MASTER_KEY);
 			GameObject gm = null;
@@ -483,11 +483,11 @@ public class SpellMasterWrapper extends GameObjectWrapper {
 				gm.setThisAttribute(SPELL_MASTER_KEY);
 //System.out.println(data.toIdentifier()+": Creating a new SpellMaster!");
 			}
-			MASTER_ID = new Long(gm.getId());
+			context.setObjectId(SpellMasterWrapper.class,new Long(gm.getId()));
 			return new SpellMasterWrapper(gm);
 		}
 		else {
-			return new SpellMasterWrapper(data.getGameObject(MASTER_ID));
+			return new SpellMasterWrapper(data.getGameObject(id));
 		}
 	}
 }
\ No newline at end of file
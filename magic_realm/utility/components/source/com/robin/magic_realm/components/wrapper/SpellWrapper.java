@@ -708,13 +708,14 @@ public class SpellWrapper extends GameObjectWrapper implements BattleChit {
 			GameData data = getGameObject().getGameData();
 			if (GameHost.DATA_NAME.equals(data.getDataName())) {
 				// Should never "affectTargets" from the host.  Do it on the caster's client.
-				if (GameHost.mostRecentHost!=null) {
-					GameHost.mostRecentHost.distributeInfo(
+				GameHost host = GameHost.findHost(data);
+				if (host!=null) {
+					host.distributeInfo(
 							buildAnInfoObject(destClientName,data,command));
 					return;
 				}
 				else {
-					throw new IllegalStateException("mostRecentHost is null?");
+					throw new IllegalStateException("No host for the host data?");
 				}
 			}
 			else if (GameClient.DATA_NAME.equals(data.getDataName())) {
@@ -21,6 +21,7 @@ import java.util.ArrayList;
 import java.util.Iterator;
 
 import com.robin.game.objects.*;
+import com.robin.magic_realm.components.utility.RealmGameContext;
 
 public class SummaryEventWrapper extends GameObjectWrapper {
 
@@ -48,9 +49,10 @@ public class SummaryEventWrapper extends GameObjectWrapper {
 	}
 	
 	private static final String SUMMARY_EVENT_WRAPPER = "__SummEventWrapper_";
-	public static Long SEW_ID = null;
 	public static SummaryEventWrapper getSummaryEventWrapper(GameData data) {
-		if (SEW_ID==null) {
+		RealmGameContext context = RealmGameContext.getContext(data);
+		Long id = context.getObjectId(SummaryEventWrapper.class);
+		if (id==null) {
 			GamePool pool = new GamePool(data.getGameObjects());
 			ArrayList list = pool.find(SUMMARY_EVENT_WRAPPER);
 			GameObject gm = null;
@@ -62,11 +64,11 @@ public class SummaryEventWrapper extends GameObjectWrapper {
 				gm.setName(SUMMARY_EVENT_WRAPPER);
 				gm.setThisAttribute(SUMMARY_EVENT_WRAPPER);
 			}
-			SEW_ID = new Long(gm.getId());
+			context.setObjectId(SummaryEventWrapper.class,new Long(gm.getId()));
 			return new SummaryEventWrapper(gm);
 		}
 		else {
-			return new SummaryEventWrapper(data.getGameObject(SEW_ID));
+			return new SummaryEventWrapper(data.getGameObject(id));
 		}
 	}
 }
\ No newline at end of file
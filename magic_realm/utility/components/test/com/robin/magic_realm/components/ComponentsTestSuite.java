@@ -22,8 +22,11 @@ import org.junit.runners.Suite;
 import org.junit.runners.Suite.SuiteClasses;
 
 import com.robin.magic_realm.components.attribute.ColorModTest;
+import com.robin.magic_realm.components.quest.QuestEventIndexTest;
+import com.robin.magic_realm.components.quest.QuestLibraryTest;
 import com.robin.magic_realm.components.quest.requirement.QuestRequirementParamsTest;
 import com.robin.magic_realm.components.utility.*;
+import com.robin.magic_realm.components.wrapper.CharacterStateCacheTest;
 import com.robin.magic_realm.components.wrapper.CharacterWrapper_WeightTest;
 import com.robin.magic_realm.components.wrapper.SpellWrapper_DieModTest;
 
@@ -35,11 +38,17 @@ import com.robin.magic_realm.components.wrapper.SpellWrapper_DieModTest;
 		DieRuleTest.class,
 		//RealmUtilityTest.class,
 		TreasureUtilityTest.class,
+		RealmGameContextTest.class,
+		RealmLogJournalTest.class,
+		RealmLogParserTest.class,
 		
 		CharacterWrapper_WeightTest.class,
+		CharacterStateCacheTest.class,
 		SpellWrapper_DieModTest.class,
 		
 		QuestRequirementParamsTest.class,
+		QuestEventIndexTest.class,
+		QuestLibraryTest.class,
 	}
 )
 public class ComponentsTestSuite {
@@ -26,7 +26,9 @@ import org.junit.*;
 
 import com.robin.game.objects.GameObject;
 import com.robin.game.objects.GamePool;
+import com.robin.magic_realm.components.quest.QuestEventIndex;
 import com.robin.magic_realm.components.utility.*;
+import com.robin.magic_realm.components.wrapper.CharacterStateCache;
 import com.robin.magic_realm.components.wrapper.GameWrapper;
 import com.robin.magic_realm.components.wrapper.HostPrefWrapper;
 
@@ -50,6 +52,8 @@ public abstract class TestBaseWithLoader {
 	 */
 	@Before
 	public void setUp() {
+		CharacterStateCache.setVerify(true); // every cached character state is checked against a fresh one
+		QuestEventIndex.setVerify(true); // every skipped quest step is tested anyway
 		loader = new RealmLoader();
 		ArrayList keyVals = new ArrayList();
 		keyVals.add("original_game");
@@ -66,6 +70,8 @@ public abstract class TestBaseWithLoader {
 	@After
 	public void tearDown() {
 		RealmUtility.resetGame();
+		CharacterStateCache.setVerify(false);
+		QuestEventIndex.setVerify(false);
 		loader = null;
 	}
 	
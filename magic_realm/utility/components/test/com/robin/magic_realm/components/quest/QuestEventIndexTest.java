@@ -0,0 +1,113 @@
+/* 
+ * RealmSpeak is the Java application for playing the board game Magic Realm.
+ * Copyright (c) 2005-2015 Robin Warren
+ * E-mail: robin@dewkid.com
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the
+ * implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ *
+ * http://www.gnu.org/licenses/
+ */
+package com.robin.magic_realm.components.quest;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.robin.game.objects.GameData;
+import com.robin.magic_realm.components.TestBaseWithLoader;
+import com.robin.magic_realm.components.quest.requirement.*;
+import com.robin.magic_realm.components.quest.requirement.QuestRequirement.RequirementType;
+import com.robin.magic_realm.components.wrapper.CharacterWrapper;
+
+public class QuestEventIndexTest extends TestBaseWithLoader {
+	
+	private CharacterWrapper createCharacter() {
+		CharacterWrapper character = new CharacterWrapper(findGameObject("Amazon"));
+		character.setCurrentMonth(1);
+		character.setCurrentDay(1);
+		return character;
+	}
+	
+	private Quest createQuest(CharacterWrapper character,RequirementType type) {
+		GameData data = character.getGameObject().getGameData();
+		Quest quest = new Quest(data.createNewObject());
+		quest.init();
+		quest.setName("Test Quest");
+		QuestStep step = quest.createQuestStep(false);
+		QuestRequirement req = step.createRequirement(type);
+		if (type==RequirementType.Inventory) {
+			req.setString(QuestRequirementLoot.TREASURE_TYPE,TreasureType.Any.toString());
+			req.setString(QuestRequirementLoot.REGEX_FILTER,"Bane Sword");
+			req.setInt(QuestRequirementInventory.NUMBER,1);
+		}
+		else if (type==RequirementType.GamePhase) {
+			req.setString(QuestRequirementGamePhase.GAME_PHASE_TYPE,GamePhaseType.EndOfPhase.toString());
+		}
+		character.addQuest(null,quest);
+		quest.setState(QuestState.Active,character.getCurrentDayKey(),character);
+		return quest;
+	}
+	
+	private QuestEventIndex.QuestStats getStats(Quest quest) {
+		return QuestEventIndex.findQuestEventIndex(quest.getGameData()).getQuestStats(quest);
+	}
+	
+	@Test
+	public void testStepIsOnlyTestedAfterItsEvent() {
+		CharacterWrapper character = createCharacter();
+		Quest quest = createQuest(character,RequirementType.Inventory);
+		character.testQuestRequirements(null);
+		long tests = getStats(quest).getTests();
+		
+		character.testQuestRequirements(null);
+		Assert.assertEquals(tests,getStats(quest).getTests());
+		Assert.assertEquals(1,getStats(quest).getSkips());
+		
+		// Nothing the step waits on
+		character.addFame(5);
+		character.getGameObject().add(findGameObject("Flowers of Rest"));
+		character.testQuestRequirements(null);
+		Assert.assertEquals(tests+1,getStats(quest).getTests()); // the inventory did change
+		character.addFame(5);
+		character.testQuestRequirements(null);
+		Assert.assertEquals(tests+1,getStats(quest).getTests());
+		Assert.assertEquals(QuestStepState.Ready,quest.getSteps().get(0).getState());
+		
+		character.getGameObject().add(findGameObject("Bane Sword"));
+		character.testQuestRequirements(null);
+		Assert.assertEquals(QuestStepState.Finished,quest.getSteps().get(0).getState());
+	}
+	
+	@Test
+	public void testCallEventsAreCompared() {
+		CharacterWrapper character = createCharacter();
+		Quest quest = createQuest(character,RequirementType.GamePhase);
+		character.testQuestRequirements(null);
+		character.testQuestRequirements(null);
+		Assert.assertEquals(QuestStepState.Ready,quest.getSteps().get(0).getState());
+		Assert.assertTrue(getStats(quest).getSkips()>0);
+		
+		QuestRequirementParams qp = new QuestRequirementParams();
+		qp.timeOfCall = GamePhaseType.EndOfPhase;
+		Assert.assertTrue(character.testQuestRequirements(null,qp));
+		Assert.assertEquals(QuestStepState.Finished,quest.getSteps().get(0).getState());
+	}
+	
+	@Test
+	public void testKillingEverythingDependsOnAnything() {
+		CharacterWrapper character = createCharacter();
+		Quest quest = createQuest(character,RequirementType.Kill);
+		QuestRequirement req = quest.getSteps().get(0).getRequirements().get(0);
+		req.setInt(QuestRequirementKill.VALUE,QuestConstants.ALL_VALUE);
+		Assert.assertTrue(quest.getSteps().get(0).getEvents().contains(QuestEventType.Any));
+		req.setInt(QuestRequirementKill.VALUE,3);
+		Assert.assertFalse(quest.getSteps().get(0).getEvents().contains(QuestEventType.Any));
+	}
+}
@@ -0,0 +1,130 @@
+/* 
+ * RealmSpeak is the Java application for playing the board game Magic Realm.
+ * Copyright (c) 2005-2015 Robin Warren
+ * E-mail: robin@dewkid.com
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the
+ * implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ *
+ * http://www.gnu.org/licenses/
+ */
+package com.robin.magic_realm.components.quest;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+
+import org.junit.*;
+
+import com.robin.game.objects.GameData;
+
+public class QuestLibraryTest {
+	File folder;
+	
+	/**
+	 * Sets up the test fixture. (Called before every test case method.)
+	 */
+	@Before
+	public void setUp() throws IOException {
+		folder = File.createTempFile("quests","");
+		folder.delete();
+		folder.mkdir();
+		writeQuest("Alpha",true);
+		writeQuest("Beta",false);
+		writeQuest("Gamma",true);
+	}
+	
+	@After
+	public void tearDown() {
+		for (File file:folder.listFiles()) {
+			file.delete();
+		}
+		folder.delete();
+		QuestLibrary.resetAll();
+	}
+	
+	private File writeQuest(String name,boolean questCard) {
+		GameData data = new GameData();
+		data.ignoreRandomSeed = true;
+		Quest quest = new Quest(data.createNewObject());
+		quest.init();
+		quest.setName(name);
+		quest.setBoolean(QuestConstants.WORKS_WITH_QTR,questCard);
+		quest.createQuestStep(false);
+		File file = new File(folder,name+"."+QuestConstants.DEFAULT_EXTENSION);
+		Assert.assertTrue(data.zipToFile(file));
+		return file;
+	}
+	
+	private static ArrayList<String> getNames(ArrayList<Quest> quests) {
+		ArrayList<String> names = new ArrayList<String>();
+		for (Quest quest:quests) {
+			names.add(quest.getName());
+		}
+		return names;
+	}
+	
+	@Test
+	public void testFilesAreReadOnce() {
+		QuestLibrary library = QuestLibrary.getQuestLibrary(folder.getPath());
+		Assert.assertEquals(3,library.getQuests().size());
+		Assert.assertEquals(3,library.getReadCount());
+		
+		Assert.assertEquals("Beta",library.getQuest("Beta").getName());
+		Assert.assertNull(library.getQuest("Delta"));
+		Assert.assertEquals(3,library.getQuests().size());
+		Assert.assertSame(library,QuestLibrary.getQuestLibrary(folder.getAbsolutePath()+File.separator));
+		Assert.assertEquals(3,library.getReadCount());
+	}
+	
+	@Test
+	public void testQuestsAreCopies() {
+		QuestLibrary library = QuestLibrary.getQuestLibrary(folder.getPath());
+		Quest quest = library.getQuest("Alpha");
+		Assert.assertFalse(quest.getGameData().isModified());
+		Assert.assertTrue(quest.filepath.endsWith("Alpha."+QuestConstants.DEFAULT_EXTENSION));
+		quest.setName("Changed");
+		quest.createQuestStep(true);
+		
+		Quest again = library.getQuest("Alpha");
+		Assert.assertNotSame(quest.getGameData(),again.getGameData());
+		Assert.assertEquals("Alpha",again.getName());
+		Assert.assertEquals(1,again.getSteps().size());
+	}
+	
+	@Test
+	public void testRuleIndex() {
+		QuestLibrary library = QuestLibrary.getQuestLibrary(folder.getPath());
+		ArrayList<String> cards = getNames(library.getQuests(QuestConstants.WORKS_WITH_QTR));
+		Assert.assertEquals(2,cards.size());
+		Assert.assertTrue(cards.contains("Alpha"));
+		Assert.assertTrue(cards.contains("Gamma"));
+		Assert.assertEquals(0,library.getQuests(QuestConstants.WORKS_WITH_BOQ).size());
+		Assert.assertEquals(2,library.getQuests(QuestConstants.WORKS_WITH_BOQ,QuestConstants.WORKS_WITH_QTR).size());
+	}
+	
+	@Test
+	public void testOnlyChangedFilesAreRead() {
+		QuestLibrary library = QuestLibrary.getQuestLibrary(folder.getPath());
+		library.getQuests();
+		
+		File beta = writeQuest("Beta",true);
+		beta.setLastModified(beta.lastModified()+2000); // in case the file system time is coarse
+		writeQuest("Delta",false);
+		Assert.assertEquals(4,library.getQuests().size());
+		Assert.assertEquals(5,library.getReadCount());
+		Assert.assertEquals(3,library.getQuests(QuestConstants.WORKS_WITH_QTR).size());
+		
+		new File(folder,"Alpha."+QuestConstants.DEFAULT_EXTENSION).delete();
+		Assert.assertEquals(3,library.getQuests().size());
+		Assert.assertNull(library.getQuest("Alpha"));
+		Assert.assertEquals(5,library.getReadCount());
+	}
+}
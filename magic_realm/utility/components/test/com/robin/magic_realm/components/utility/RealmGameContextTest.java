@@ -0,0 +1,132 @@
+/* 
+ * RealmSpeak is the Java application for playing the board game Magic Realm.
+ * Copyright (c) 2005-2015 Robin Warren
+ * E-mail: robin@dewkid.com
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the
+ * implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ *
+ * http://www.gnu.org/licenses/
+ */
+package com.robin.magic_realm.components.utility;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.robin.game.objects.GameData;
+import com.robin.general.util.RandomNumber;
+import com.robin.general.util.RandomNumberType;
+import com.robin.magic_realm.components.TestBaseWithLoader;
+import com.robin.magic_realm.components.wrapper.GameWrapper;
+import com.robin.magic_realm.components.wrapper.HostPrefWrapper;
+
+public class RealmGameContextTest extends TestBaseWithLoader {
+	
+	private GameData createOtherGame() {
+		RealmLoader other = new RealmLoader();
+		ArrayList keyVals = new ArrayList();
+		keyVals.add("original_game");
+		other.getData().doSetup("standard_game",keyVals);
+		HostPrefWrapper otherPrefs = HostPrefWrapper.createDefaultHostPrefs(other.getData());
+		otherPrefs.setStartingSeason("No Seasons");
+		otherPrefs.setGameTitle("Other");
+		return other.getData();
+	}
+	
+	@Test
+	public void testGamesDontShareState() {
+		GameData data = game.getGameObject().getGameData();
+		hostPrefs.setGameTitle("First");
+		GameData otherData = createOtherGame();
+		
+		Assert.assertEquals("First",HostPrefWrapper.findHostPrefs(data).getGameTitle());
+		Assert.assertEquals("Other",HostPrefWrapper.findHostPrefs(otherData).getGameTitle());
+		Assert.assertSame(otherData,GameWrapper.findGame(otherData).getGameObject().getGameData());
+		Assert.assertSame(data,GameWrapper.findGame(data).getGameObject().getGameData());
+		Assert.assertNotSame(RealmCalendar.getCalendar(data),RealmCalendar.getCalendar(otherData));
+		Assert.assertNotSame(RealmGameContext.getContext(data),RealmGameContext.getContext(otherData));
+	}
+	
+	@Test
+	public void testRunUsesTheGamesDiceAndLog() {
+		final RealmGameContext context = RealmGameContext.getContext(game.getGameObject().getGameData());
+		context.setRandomNumber(RandomNumber.newInstance(42));
+		final int[] rolls = new int[10];
+		context.run(new Runnable() {
+			public void run() {
+				Assert.assertSame(context,RealmGameContext.getCurrent());
+				for (int i=0;i<rolls.length;i++) {
+					rolls[i] = RandomNumber.getDieRoll();
+				}
+				RealmLogging.logMessage("Test","Logged to the game");
+			}
+		});
+		Assert.assertNull(RealmGameContext.getCurrent());
+		Assert.assertNull(RandomNumber.setThreadInstance(null));
+		Assert.assertEquals(1,context.getJournal().size());
+		
+		RandomNumber same = RandomNumber.newInstance(42);
+		RandomNumber.setThreadInstance(same);
+		try {
+			for (int i=0;i<rolls.length;i++) {
+				Assert.assertEquals(rolls[i],RandomNumber.getDieRoll());
+			}
+		}
+		finally {
+			RandomNumber.setThreadInstance(null);
+		}
+	}
+	
+	@Test
+	public void testLoadRestoresTheGamesDice() throws IOException {
+		final GameData data = game.getGameObject().getGameData();
+		final RealmGameContext context = RealmGameContext.getContext(data);
+		context.setRandomNumber(RandomNumber.newInstance(RandomNumberType.SplitMix64,42L,0));
+		final File file = File.createTempFile("RealmGameContextTest",".rsgame");
+		final int[] expected = new int[10];
+		try {
+			context.run(new Runnable() {
+				public void run() {
+					for (int i=0;i<100;i++) {
+						RandomNumber.getDieRoll();
+					}
+					Assert.assertTrue(data.zipToFile(file));
+					for (int i=0;i<expected.length;i++) {
+						expected[i] = RandomNumber.getDieRoll();
+					}
+				}
+			});
+			
+			long sharedCount = RandomNumber.getCount();
+			RandomNumberType sharedType = RandomNumber.getRandomNumberGenerator();
+			final GameData loaded = new GameData();
+			final RealmGameContext loadedContext = RealmGameContext.getContext(loaded);
+			loadedContext.run(new Runnable() {
+				public void run() {
+					Assert.assertTrue(loaded.zipFromFile(file));
+					Assert.assertEquals(RandomNumberType.SplitMix64,RandomNumber.getRandomNumberGenerator());
+					Assert.assertEquals(100,RandomNumber.getCount());
+					for (int i=0;i<expected.length;i++) {
+						Assert.assertEquals(expected[i],RandomNumber.getDieRoll());
+					}
+				}
+			});
+			Assert.assertEquals(sharedType,RandomNumber.getRandomNumberGenerator());
+			Assert.assertEquals(sharedCount,RandomNumber.getCount());
+		}
+		finally {
+			file.delete();
+		}
+	}
+}
@@ -0,0 +1,192 @@
+/* 
+ * RealmSpeak is the Java application for playing the board game Magic Realm.
+ * Copyright (c) 2005-2015 Robin Warren
+ * E-mail: robin@dewkid.com
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the
+ * implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ *
+ * http://www.gnu.org/licenses/
+ */
+package com.robin.magic_realm.components.utility;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.zip.DeflaterOutputStream;
+
+import org.junit.*;
+
+public class RealmLogJournalTest {
+	
+	private RealmLogJournal journal;
+	
+	@Before
+	public void setUp() {
+		journal = new RealmLogJournal();
+	}
+	
+	@After
+	public void tearDown() {
+		journal.close();
+	}
+	
+	private static String[] line(int n) {
+		return new String[] {n%3==0?"host":"Player"+(n%5),"Message number "+n};
+	}
+	
+	private static void fill(RealmLogJournal journal,int count) {
+		for (int i=0;i<count;i++) {
+			String[] line = line(i);
+			journal.append(line[0],line[1]);
+		}
+	}
+	
+	private static void assertLines(RealmLogJournal journal,int count) {
+		Assert.assertEquals(count,journal.size());
+		ArrayList<String[]> lines = journal.getLines(0,count);
+		for (int i=0;i<count;i++) {
+			Assert.assertArrayEquals(line(i),lines.get(i));
+		}
+	}
+	
+	private static byte[] write(RealmLogJournal.Snapshot snapshot) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		snapshot.write(bytes);
+		return bytes.toByteArray();
+	}
+	
+	@Test
+	public void testAcrossBlocks() {
+		int count = RealmLogJournal.BLOCK_SIZE*2+10;
+		fill(journal,count);
+		assertLines(journal,count);
+		
+		// Ranges that start and end in different blocks (and in the unfinished one)
+		int b = RealmLogJournal.BLOCK_SIZE;
+		ArrayList<String[]> lines = journal.getLines(b-5,2*b+5);
+		Assert.assertEquals(b+10,lines.size());
+		for (int i=0;i<lines.size();i++) {
+			Assert.assertArrayEquals(line(b-5+i),lines.get(i));
+		}
+		for (int n:new int[] {0,b-1,b,2*b-1,2*b,count-1}) {
+			Assert.assertArrayEquals(line(n),journal.getLine(n));
+		}
+	}
+	
+	@Test
+	public void testSnapshotRoundTrip() throws IOException {
+		int count = RealmLogJournal.BLOCK_SIZE*2+10;
+		fill(journal,count);
+		journal.append("host","Month 1, Day 2");
+		journal.append(RealmLogging.BATTLE,"Evening of month 1, day 2, in clearing Cavern 4");
+		journal.append(RealmLogging.BATTLE,"--  Combat Round 1");
+		byte[] bytes = write(journal.snapshot());
+		
+		// Ends with the magic number, so a truncated file can be caught
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes,bytes.length-4,4));
+		Assert.assertEquals(0x52534c4a,in.readInt());
+		
+		RealmLogJournal read = new RealmLogJournal();
+		try {
+			read.load(new ByteArrayInputStream(bytes));
+			Assert.assertEquals(count+3,read.size());
+			Assert.assertArrayEquals(journal.getLines(0,count).toArray(),read.getLines(0,count).toArray());
+			Assert.assertEquals(count,read.getDayStart(1,2));
+			Assert.assertEquals(count+1,read.getBattleStart(1,2,"Cavern 4"));
+			Assert.assertEquals(count+2,read.getRoundStart(count+1,1));
+			
+			// The unfinished block can keep filling up
+			read.append("host","After the load");
+			Assert.assertArrayEquals(new String[] {"host","After the load"},read.getLine(count+3));
+			
+			// A truncated log doesn't load
+			try {
+				read.load(new ByteArrayInputStream(Arrays.copyOf(bytes,bytes.length-4)));
+				Assert.fail("Loaded a truncated log");
+			}
+			catch(IOException ex) {
+				// expected
+			}
+			Assert.assertEquals(0,read.size());
+		}
+		finally {
+			read.close();
+		}
+	}
+	
+	@Test
+	public void testOldFormat() throws IOException {
+		int count = RealmLogJournal.BLOCK_SIZE+10;
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		PrintStream stream = new PrintStream(new DeflaterOutputStream(bytes));
+		stream.println(count);
+		for (int i=0;i<count;i++) {
+			String[] line = line(i);
+			stream.println(line[0]);
+			stream.println(line[1]);
+		}
+		stream.close();
+		
+		journal.load(new ByteArrayInputStream(bytes.toByteArray()));
+		assertLines(journal,count);
+	}
+	
+	@Test
+	public void testClearTruncatesTheFile() throws IOException {
+		fill(journal,RealmLogJournal.BLOCK_SIZE*3);
+		Assert.assertTrue(journal.getFileLength()>0);
+		RealmLogJournal.Snapshot snapshot = journal.snapshot();
+		
+		journal.clear();
+		Assert.assertEquals(0,journal.getFileLength());
+		Assert.assertEquals(0,journal.size());
+		
+		// The new log starts at the beginning of the file, and the old snapshot can still be saved
+		fill(journal,RealmLogJournal.BLOCK_SIZE+1);
+		assertLines(journal,RealmLogJournal.BLOCK_SIZE+1);
+		RealmLogJournal read = new RealmLogJournal();
+		try {
+			read.load(new ByteArrayInputStream(write(snapshot)));
+			assertLines(read,RealmLogJournal.BLOCK_SIZE*3);
+		}
+		finally {
+			read.close();
+		}
+		
+		// Loading truncates too
+		fill(journal,RealmLogJournal.BLOCK_SIZE*2);
+		long length = journal.getFileLength();
+		journal.load(new ByteArrayInputStream(write(journal.snapshot())));
+		Assert.assertEquals(length,journal.getFileLength());
+	}
+	
+	@Test
+	public void testClose() throws IOException {
+		fill(journal,RealmLogJournal.BLOCK_SIZE+1);
+		RealmLogJournal.Snapshot snapshot = journal.snapshot();
+		journal.close();
+		Assert.assertEquals(-1,journal.getFileLength());
+		Assert.assertEquals(0,journal.size());
+		
+		RealmLogJournal read = new RealmLogJournal();
+		try {
+			read.load(new ByteArrayInputStream(write(snapshot)));
+			assertLines(read,RealmLogJournal.BLOCK_SIZE+1);
+		}
+		finally {
+			read.close();
+		}
+		
+		// Still works (in memory) if it is used anyway
+		fill(journal,RealmLogJournal.BLOCK_SIZE+1);
+		assertLines(journal,RealmLogJournal.BLOCK_SIZE+1);
+	}
+}
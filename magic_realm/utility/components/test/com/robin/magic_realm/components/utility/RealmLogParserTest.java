@@ -0,0 +1,121 @@
+/* 
+ * RealmSpeak is the Java application for playing the board game Magic Realm.
+ * Copyright (c) 2005-2015 Robin Warren
+ * E-mail: robin@dewkid.com
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the
+ * implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ *
+ * http://www.gnu.org/licenses/
+ */
+package com.robin.magic_realm.components.utility;
+
+import java.util.ArrayList;
+import java.util.regex.Pattern;
+
+import org.junit.*;
+
+import com.robin.general.util.StringUtilities;
+import com.robin.magic_realm.components.*;
+import com.robin.magic_realm.components.attribute.TileLocation;
+
+public class RealmLogParserTest extends TestBaseWithLoader {
+	
+	private RealmLogJournal journal;
+	
+	@Before
+	public void setUpJournal() {
+		journal = new RealmLogJournal();
+	}
+	
+	@After
+	public void tearDownJournal() {
+		journal.close();
+	}
+	
+	private TileLocation getTileLocation(String tileName,int clearingNum) {
+		TileComponent tile = (TileComponent)RealmComponent.getRealmComponent(findGameObject(tileName));
+		return new TileLocation(tile.getClearing(clearingNum));
+	}
+	
+	private void filler(int count) {
+		for (int i=0;i<count;i++) {
+			journal.append(i%2==0?"host":"Amazon","Something happens "+i);
+		}
+	}
+	
+	private void battle(int month,int day,TileLocation tl,int rounds) {
+		journal.append(RealmLogging.BATTLE,"=======================");
+		journal.append(RealmLogging.BATTLE,"Evening of month "+month+", day "+day+", in clearing "+tl.tile.getGameObject().getName()+" "+tl.clearing.getNum());
+		for (int r=1;r<=rounds;r++) {
+			journal.append(RealmLogging.BATTLE,"-----------------------");
+			journal.append(RealmLogging.BATTLE,"--  Combat Round "+r);
+			journal.append(RealmLogging.BATTLE,"-----------------------");
+			filler(400);
+		}
+	}
+	
+	/**
+	 * The way getBattleLogFor used to work:  by searching the whole detail log, line by line.
+	 */
+	private String searchBattleLogFor(int month,int day,TileLocation tl,int round) {
+		ArrayList<String> lines = StringUtilities.stringToCollection(journal.getHtml(0,journal.size()),"\n");
+		int logStart = find(lines,"<br>[\\w\\W]* - Evening of month "+month+", day "+day+", in clearing "
+				+tl.tile.getGameObject().getName()+" "+tl.clearing.getNum()+"$",0)-1;
+		if (round>0) {
+			logStart = find(lines,"<br>[\\w\\W]*Combat Round "+round+"$",logStart)-1;
+		}
+		return StringUtilities.collectionToString(lines.subList(logStart,lines.size()-1),"\n");
+	}
+	
+	private static int find(ArrayList<String> lines,String pattern,int lineStart) {
+		Pattern p = Pattern.compile(pattern);
+		for (int i=lineStart;i<lines.size();i++) {
+			if (p.matcher(lines.get(i).trim()).matches()) {
+				return i;
+			}
+		}
+		return -1;
+	}
+	
+	@Test
+	public void testMultipleBattles() {
+		TileLocation[] locations = {
+			getTileLocation("Borderland",3),
+			getTileLocation("Borderland",5),
+			getTileLocation("Cavern",4),
+		};
+		for (int day=1;day<=3;day++) {
+			journal.append("host","========================================");
+			journal.append("host","Month 1, Day "+day);
+			journal.append("host","========================================");
+			filler(300);
+			for (TileLocation tl:locations) {
+				battle(1,day,tl,3);
+			}
+		}
+		Assert.assertTrue(journal.size()>RealmLogJournal.BLOCK_SIZE*4);
+		
+		RealmLogParser parser = new RealmLogParser(journal);
+		for (int day=1;day<=3;day++) {
+			for (TileLocation tl:locations) {
+				Assert.assertEquals(searchBattleLogFor(1,day,tl,0),parser.getBattleLogFor(1,day,tl));
+				for (int round=1;round<=3;round++) {
+					Assert.assertEquals(searchBattleLogFor(1,day,tl,round),parser.getBattleLogFor(1,day,tl,round));
+				}
+			}
+		}
+		
+		// The first battle of the evening, wherever it is
+		Assert.assertEquals(parser.getBattleLogFor(1,2,locations[0]),parser.getBattleLogFor(1,2));
+		Assert.assertEquals("",parser.getBattleLogFor(1,4,locations[0]));
+		Assert.assertEquals("",parser.getBattleLogFor(1,2,locations[0],4));
+	}
+}
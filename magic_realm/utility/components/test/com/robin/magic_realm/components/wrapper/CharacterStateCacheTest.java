@@ -0,0 +1,91 @@
+/* 
+ * RealmSpeak is the Java application for playing the board game Magic Realm.
+ * Copyright (c) 2005-2015 Robin Warren
+ * E-mail: robin@dewkid.com
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU General Public License as published by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the
+ * implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ *
+ * http://www.gnu.org/licenses/
+ */
+package com.robin.magic_realm.components.wrapper;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.robin.game.objects.GameObject;
+import com.robin.magic_realm.components.TestBaseWithLoader;
+import com.robin.magic_realm.components.utility.Constants;
+
+public class CharacterStateCacheTest extends TestBaseWithLoader {
+	
+	@Test
+	public void testInventoryFollowsChanges() {
+		CharacterWrapper woodsgirl = new CharacterWrapper(findGameObject("Woods Girl"));
+		GameObject sword = findGameObject("Bane Sword");
+		Assert.assertFalse(woodsgirl.getInventory().contains(sword));
+		
+		woodsgirl.getGameObject().add(sword);
+		Assert.assertTrue(woodsgirl.getInventory().contains(sword));
+		Assert.assertFalse(woodsgirl.getActiveInventory().contains(sword));
+		
+		sword.setThisAttribute(Constants.ACTIVATED);
+		Assert.assertTrue(woodsgirl.getActiveInventory().contains(sword));
+		
+		woodsgirl.getGameObject().remove(sword);
+		Assert.assertFalse(woodsgirl.getInventory().contains(sword));
+		Assert.assertFalse(woodsgirl.getActiveInventory().contains(sword));
+	}
+	
+	@Test
+	public void testActiveKeysFollowChanges() {
+		CharacterWrapper woodsgirl = new CharacterWrapper(findGameObject("Woods Girl"));
+		GameObject bag = findGameObject("Bag of Weightless");
+		Assert.assertFalse(woodsgirl.hasActiveInventoryThisKey(Constants.REDUCE_WEIGHT));
+		
+		woodsgirl.getGameObject().add(bag);
+		Assert.assertFalse(woodsgirl.hasActiveInventoryThisKey(Constants.REDUCE_WEIGHT));
+		
+		bag.setThisAttribute(Constants.ACTIVATED);
+		Assert.assertTrue(woodsgirl.hasActiveInventoryThisKey(Constants.REDUCE_WEIGHT));
+		Assert.assertEquals(bag,woodsgirl.getActiveInventoryThisKey(Constants.REDUCE_WEIGHT));
+		
+		bag.removeThisAttribute(Constants.REDUCE_WEIGHT);
+		Assert.assertFalse(woodsgirl.hasActiveInventoryThisKey(Constants.REDUCE_WEIGHT));
+		Assert.assertTrue(woodsgirl.getAllActiveInventoryThisKeyAndValue(Constants.REDUCE_WEIGHT,null).isEmpty());
+	}
+	
+	@Test
+	public void testCharacterKeysAreIncluded() {
+		CharacterWrapper woodsgirl = new CharacterWrapper(findGameObject("Woods Girl"));
+		Assert.assertFalse(woodsgirl.hasActiveInventoryThisKeyAndValue(Constants.SPECIAL_ACTION,"HEAL"));
+		woodsgirl.getGameObject().setThisAttribute(Constants.SPECIAL_ACTION,"HEAL");
+		Assert.assertTrue(woodsgirl.hasActiveInventoryThisKeyAndValue(Constants.SPECIAL_ACTION,"HEAL"));
+		Assert.assertFalse(woodsgirl.hasActiveInventoryThisKeyAndValue(Constants.SPECIAL_ACTION,"REPAIR"));
+	}
+	
+	@Test
+	public void testRepeatedQueriesHitTheCache() {
+		CharacterWrapper woodsgirl = new CharacterWrapper(findGameObject("Woods Girl"));
+		woodsgirl.getGameObject().add(findGameObject("Bane Sword"));
+		woodsgirl.getNeededSupportWeight();
+		CharacterStateCache cache = CharacterStateCache.findCharacterStateCache(woodsgirl.getGameObject().getGameData());
+		long misses = cache.getMisses();
+		for (int i=0;i<10;i++) {
+			Assert.assertEquals("T",woodsgirl.getNeededSupportWeight().getChar());
+			woodsgirl.getInventory();
+		}
+		Assert.assertEquals(misses,cache.getMisses());
+		
+		woodsgirl.getGameObject().add(findGameObject("Bag of Weightless",true));
+		Assert.assertFalse("T".equals(woodsgirl.getNeededSupportWeight().getChar())); // the sword is weightless now
+		Assert.assertEquals(misses+1,cache.getMisses());
+	}
+}
@@ -143,6 +143,21 @@ public class Tile {
 			side = SIDE_ENCHANTED;
 		}
 	}
+	/**
+	 * Creates a working copy of the tile, with its own name, position and rotation.  The clearings and paths are
+	 * never changed once built, so they are shared with the original.  This lets several maps be built at the
+	 * same time from one set of tiles, without touching the GameObject until writeToGameObject is called.
+	 */
+	public Tile(Tile tile) {
+		gameObject = tile.gameObject;
+		name = tile.name;
+		clearings = tile.clearings;
+		paths = tile.paths;
+		position = tile.position;
+		rotation = tile.rotation;
+		side = tile.side;
+		unrotatedPathState = tile.unrotatedPathState;
+	}
 	public void build() {
 		clearings = new ArrayList();
 		paths = new Hashtable[2];